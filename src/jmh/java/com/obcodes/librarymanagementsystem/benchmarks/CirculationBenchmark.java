@@ -0,0 +1,70 @@
+package com.obcodes.librarymanagementsystem.benchmarks;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.Library;
+import java.io.PrintStream;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Checkout and return on an in-memory library, without persistence.
+ * Each operation picks a random member and book, so with several threads
+ * (-t) the same book is sometimes contested. Console output from the library
+ * is discarded, so string formatting is measured but terminal I/O is not.
+ *
+ * @author Obakeng Phale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CirculationBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private Library library;
+    private int memberCount;
+    private PrintStream console;
+
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom();
+
+        long isbn(int catalogSize) {
+            return SyntheticCatalog.isbn(random.nextInt(catalogSize));
+        }
+
+        long memberID(int memberCount) {
+            return SyntheticCatalog.memberID(random.nextInt(memberCount));
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        memberCount = SyntheticCatalog.memberCountFor(catalogSize);
+        library = SyntheticCatalog.library(catalogSize, memberCount, SyntheticCatalog.DEFAULT_SEED);
+        console = System.out;
+        System.setOut(SyntheticCatalog.NULL_OUT);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+    }
+
+    @Benchmark
+    public boolean checkoutAndReturn(Picker picker) {
+        long memberID = picker.memberID(memberCount);
+        long ISBN = picker.isbn(catalogSize);
+        return library.checkoutBook(memberID, ISBN) && library.returnBook(memberID, ISBN);
+    }
+
+    @Benchmark
+    public Book findBook(Picker picker) {
+        return library.findBook(picker.isbn(catalogSize));
+    }
+}
@@ -0,0 +1,99 @@
+package com.obcodes.librarymanagementsystem.benchmarks;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.services.FileService;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Saving and loading the book catalog, in the legacy serialized format
+ * (books.dat) and the binary record format (books.bin). Each save includes
+ * the backup copy FileService makes first. Files live in a temporary data
+ * directory that is deleted afterwards; the real data/ directory is not touched.
+ *
+ * @author Obakeng Phale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class PersistenceBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private Path dataDir;
+    private FileService fileService;
+    private ArrayList<Book> books;
+    private HashMap<Long, Book> bookMap;
+    private PrintStream console;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        console = System.out;
+        System.setOut(SyntheticCatalog.NULL_OUT);
+
+        dataDir = Files.createTempDirectory("lms-bench");
+        fileService = new FileService(dataDir.toString());
+        books = SyntheticCatalog.books(catalogSize, SyntheticCatalog.DEFAULT_SEED);
+        bookMap = new HashMap<>();
+        for (Book book : books) {
+            bookMap.put(book.getISBN(), book);
+        }
+
+        // Both files exist before the first load is measured
+        fileService.saveBooks(bookMap);
+        fileService.saveBookRecords(books);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(console);
+        SyntheticCatalog.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public boolean saveBooksSerialized() {
+        return fileService.saveBooks(bookMap);
+    }
+
+    @Benchmark
+    public HashMap<Long, Book> loadBooksSerialized() {
+        return fileService.loadBooks();
+    }
+
+    @Benchmark
+    public boolean saveBookRecords() {
+        return fileService.saveBookRecords(books);
+    }
+
+    /**
+     * Startup cost: the record file is mapped and books are read on demand
+     */
+    @Benchmark
+    public Library openBookRecords() {
+        Library library = new Library();
+        fileService.loadRecords(library);
+        return library;
+    }
+
+    /**
+     * Full load: every record is decoded into the library and indexed
+     */
+    @Benchmark
+    public Library loadAllBookRecords() {
+        Library library = new Library();
+        fileService.loadRecords(library);
+        library.loadCatalog();
+        return library;
+    }
+}
@@ -0,0 +1,64 @@
+package com.obcodes.librarymanagementsystem.benchmarks;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.Library;
+import java.util.ArrayList;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * Title and author search. Queries are a vocabulary word (about 1% of
+ * titles contain each one), the start of a word (prefix match), or an
+ * author's surname, so result sizes grow with the catalog as they would
+ * for real users.
+ *
+ * @author Obakeng Phale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private Library library;
+
+    @State(Scope.Thread)
+    public static class Picker {
+        private final SplittableRandom random = new SplittableRandom();
+
+        String word() {
+            return SyntheticCatalog.word(random.nextInt(256));
+        }
+
+        String surname() {
+            String author = SyntheticCatalog.author(random.nextInt(1 << 14));
+            return author.substring(author.indexOf(' ') + 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        library = SyntheticCatalog.library(catalogSize, 0, SyntheticCatalog.DEFAULT_SEED);
+    }
+
+    @Benchmark
+    public ArrayList<Book> searchByTitleWord(Picker picker) {
+        return library.searchBooksByTitle(picker.word());
+    }
+
+    @Benchmark
+    public ArrayList<Book> searchByTitlePrefix(Picker picker) {
+        return library.searchBooksByTitle(picker.word().substring(0, 3));
+    }
+
+    @Benchmark
+    public ArrayList<Book> searchByAuthor(Picker picker) {
+        return library.searchBooksByAuthor(picker.surname());
+    }
+}
@@ -0,0 +1,66 @@
+package com.obcodes.librarymanagementsystem.benchmarks;
+
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.services.FileService;
+import com.obcodes.librarymanagementsystem.services.LibraryService;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+/**
+ * The statistics report shown on the dashboard. About a third of the
+ * members have between one and five books out when it is measured.
+ *
+ * @author Obakeng Phale
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class StatsBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int catalogSize;
+
+    private Path dataDir;
+    private LibraryService libraryService;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        int memberCount = SyntheticCatalog.memberCountFor(catalogSize);
+        Library library = SyntheticCatalog.library(catalogSize, memberCount, SyntheticCatalog.DEFAULT_SEED);
+
+        PrintStream console = System.out;
+        System.setOut(SyntheticCatalog.NULL_OUT);
+        try {
+            SplittableRandom random = new SplittableRandom(SyntheticCatalog.DEFAULT_SEED);
+            for (int m = 0; m < memberCount; m += 3) {
+                int loans = 1 + random.nextInt(5);
+                for (int i = 0; i < loans; i++) {
+                    library.checkoutBook(SyntheticCatalog.memberID(m),
+                            SyntheticCatalog.isbn(random.nextInt(catalogSize)));
+                }
+            }
+            dataDir = Files.createTempDirectory("lms-bench");
+            libraryService = new LibraryService(library, new FileService(dataDir.toString()));
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SyntheticCatalog.deleteRecursively(dataDir);
+    }
+
+    @Benchmark
+    public String getLibraryStats() {
+        return libraryService.getLibraryStats();
+    }
+}
@@ -0,0 +1,170 @@
+package com.obcodes.librarymanagementsystem.benchmarks;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.stream.Stream;
+
+/**
+ * Generates reproducible catalogs of any size for the benchmarks.
+ * Titles are three words from a 256-word vocabulary and authors are one of
+ * 16,384 names, so title and author searches match a realistic share of the
+ * catalog. The same seed always produces the same catalog.
+ *
+ * @author Obakeng Phale
+ */
+public final class SyntheticCatalog {
+    public static final long FIRST_ISBN = 9780000000000L;
+    public static final long FIRST_MEMBER_ID = 100000000000L;
+    public static final long DEFAULT_SEED = 42;
+
+    private static final String[] PREFIXES = {
+        "al", "bar", "cor", "dun", "el", "far", "gal", "hal",
+        "ir", "jor", "kel", "lor", "mar", "nor", "or", "pel"
+    };
+    private static final String[] SUFFIXES = {
+        "a", "ion", "ard", "en", "ith", "os", "wyn", "ane",
+        "or", "is", "ell", "um", "ath", "ir", "ow", "ent"
+    };
+    private static final String[] FIRST_NAMES = {
+        "Amara", "Bongani", "Chen", "Dara", "Emeka", "Farah", "Gustav", "Hana",
+        "Ines", "Jomo", "Kiri", "Lerato", "Mateo", "Naledi", "Oren", "Priya",
+        "Quinn", "Rafael", "Sipho", "Tova", "Ume", "Vikram", "Wanjiru", "Xolani",
+        "Yara", "Zanele", "Anders", "Bea", "Caleb", "Dineo", "Eitan", "Femi",
+        "Grace", "Hugo", "Ingrid", "Jabu", "Kofi", "Lina", "Musa", "Nia",
+        "Omar", "Palesa", "Rosa", "Sanjay", "Thabo", "Uma", "Viktor", "Willa",
+        "Ximena", "Yusuf", "Zola", "Ayo", "Bram", "Clara", "Dmitri", "Esi",
+        "Felix", "Gita", "Hiro", "Ivy", "Joel", "Kagiso", "Luca", "Mbali"
+    };
+
+    /** Stream that discards everything, used to silence per-operation console output */
+    public static final PrintStream NULL_OUT = new PrintStream(OutputStream.nullOutputStream());
+
+    private SyntheticCatalog() {
+    }
+
+    /**
+     * Get one of the 256 vocabulary words
+     * @param index Any non-negative number
+     * @return The word
+     */
+    public static String word(int index) {
+        return PREFIXES[(index >>> 4) & 15] + SUFFIXES[index & 15];
+    }
+
+    /**
+     * Get one of the 16,384 author names
+     * @param index Any non-negative number
+     * @return The author's name
+     */
+    public static String author(int index) {
+        String last = word(index >>> 6);
+        return FIRST_NAMES[index & 63] + " " + Character.toUpperCase(last.charAt(0)) + last.substring(1);
+    }
+
+    public static long isbn(int index) {
+        return FIRST_ISBN + index;
+    }
+
+    public static long memberID(int index) {
+        return FIRST_MEMBER_ID + index;
+    }
+
+    /**
+     * Generate books
+     * @param count Number of books, up to 10,000,000 or more
+     * @param seed Random seed
+     * @return The books, all available
+     */
+    public static ArrayList<Book> books(int count, long seed) {
+        Random random = new Random(seed);
+        ArrayList<Book> books = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            String title = capitalize(word(random.nextInt(256))) + " "
+                    + word(random.nextInt(256)) + " " + word(random.nextInt(256));
+            books.add(new Book(title, author(random.nextInt(1 << 14)), isbn(i), BookStatus.AVAILABLE));
+        }
+        return books;
+    }
+
+    /**
+     * Generate members
+     * @param count Number of members
+     * @return The members, with no loans
+     */
+    public static ArrayList<Member> members(int count) {
+        ArrayList<Member> members = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            members.add(new Member(memberID(i), author(i)));
+        }
+        return members;
+    }
+
+    /**
+     * Build a library holding a generated catalog. Console output from the
+     * library is discarded while it is built.
+     * @param bookCount Number of books
+     * @param memberCount Number of members
+     * @param seed Random seed
+     * @return The library
+     */
+    public static Library library(int bookCount, int memberCount, long seed) {
+        PrintStream console = System.out;
+        System.setOut(NULL_OUT);
+        try {
+            Library library = new Library();
+            for (Book book : books(bookCount, seed)) {
+                library.addBook(book);
+            }
+            for (Member member : members(memberCount)) {
+                library.addMember(member);
+            }
+            return library;
+        } finally {
+            System.setOut(console);
+        }
+    }
+
+    /**
+     * Number of members to generate for a catalog size: one per ten books,
+     * at least 100 and at most 1,000,000
+     */
+    public static int memberCountFor(int bookCount) {
+        return Math.max(100, Math.min(1_000_000, bookCount / 10));
+    }
+
+    /**
+     * Delete a benchmark data directory and everything in it
+     * @param dir The directory
+     */
+    public static void deleteRecursively(Path dir) {
+        if (dir == null || !Files.exists(dir)) {
+            return;
+        }
+        try (Stream<Path> paths = Files.walk(dir)) {
+            paths.sorted(Comparator.reverseOrder()).forEach(path -> {
+                try {
+                    Files.delete(path);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String capitalize(String word) {
+        return Character.toUpperCase(word.charAt(0)) + word.substring(1);
+    }
+}
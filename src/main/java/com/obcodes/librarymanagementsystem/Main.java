@@ -1,6 +1,32 @@
 package com.obcodes.librarymanagementsystem;
 
+import com.obcodes.librarymanagementsystem.events.AsyncAppender;
+import com.obcodes.librarymanagementsystem.events.ConsoleSink;
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.events.Level;
+import com.obcodes.librarymanagementsystem.metrics.HistogramSnapshot;
+import com.obcodes.librarymanagementsystem.metrics.Metrics;
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.HoldQueues;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.Member;
+import com.obcodes.librarymanagementsystem.models.Page;
+import com.obcodes.librarymanagementsystem.services.BackupVersion;
+import com.obcodes.librarymanagementsystem.services.FileService;
+import com.obcodes.librarymanagementsystem.services.ImportReport;
 import com.obcodes.librarymanagementsystem.services.LibraryService;
+import com.obcodes.librarymanagementsystem.server.LibraryServer;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.List;
 import java.util.Scanner;
 import java.util.InputMismatchException;
 
@@ -15,8 +41,55 @@ public class Main {
     private static Scanner scanner;
     private static final String VERSION = "1.0.0";
     private static final String APP_NAME = "Library Management System";
+    // Books or members shown at a time in listings
+    private static final int PAGE_SIZE = 20;
+    // Backup times as listed by --backups
+    private static final DateTimeFormatter BACKUP_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    
+    // Lowest level of library messages shown (DEBUG, INFO, WARN or ERROR)
+    public static final String LOG_LEVEL_PROPERTY = "library.logLevel";
+    // Show library messages as structured name=value lines
+    public static final String STRUCTURED_LOG_PROPERTY = "library.structuredLog";
+    
+    // Prints library messages on its own thread so operations never wait for the console
+    private static AsyncAppender eventLog;
+    
+    // Metrics are written to this file for a local scraper, every interval and at exit
+    public static final String METRICS_FILE_PROPERTY = "library.metricsFile";
+    public static final String METRICS_INTERVAL_PROPERTY = "library.metricsIntervalMillis";
+    private static final String DEFAULT_METRICS_FILE = FileService.DEFAULT_DATA_DIR + "/metrics.prom";
+    private static final long DEFAULT_METRICS_INTERVAL_MILLIS = 10000;
+    
+    // Stops the metrics dump, null if it is not running
+    private static AutoCloseable metricsDump;
     
     public static void main(String[] args) {
+        startEventLog();
+        
+        // Headless bulk import instead of the menu
+        if (args.length > 0 && args[0].equals("--import")) {
+            int status = runImport(args);
+            eventLog.close();
+            System.exit(status);
+        }
+        
+        // List or restore backup versions instead of the menu
+        if (args.length > 0 && (args[0].equals("--backups") || args[0].equals("--restore"))) {
+            int status = runBackupCommand(args);
+            eventLog.close();
+            System.exit(status);
+        }
+        
+        // Serve the library over HTTP instead of the menu
+        if (args.length > 0 && args[0].equals("--serve")) {
+            int status = runServer(args);
+            if (status != 0) {
+                eventLog.close();
+                System.exit(status);
+            }
+            return;
+        }
+        
         try {
             // Initialize the system
             initializeSystem();
@@ -37,6 +110,8 @@ public class Main {
                 System.out.println("Attempting to save data before exiting...");
                 libraryService.shutdown();
             }
+            stopMetricsDump();
+            eventLog.close();
             
             if (scanner != null) {
                 scanner.close();
@@ -46,6 +121,60 @@ public class Main {
         }
     }
     
+    /**
+     * Subscribe the console to library messages
+     */
+    private static void startEventLog() {
+        Level level = Level.INFO;
+        String configured = System.getProperty(LOG_LEVEL_PROPERTY);
+        if (configured != null) {
+            try {
+                level = Level.valueOf(configured.trim().toUpperCase());
+            } catch (IllegalArgumentException e) {
+                System.err.println("[WARNING] Unknown log level '" + configured + "', using INFO");
+            }
+        }
+        
+        boolean structured = Boolean.getBoolean(STRUCTURED_LOG_PROPERTY);
+        eventLog = new AsyncAppender(new ConsoleSink(System.out, System.err, structured));
+        Events.subscribe(eventLog, level);
+        Metrics.gauge("event_log_dropped_total", "Messages dropped because the console fell behind",
+                eventLog::getDropped);
+    }
+    
+    /**
+     * Write metrics to a file at an interval, unless the interval is set to 0
+     */
+    private static void startMetricsDump() {
+        long interval = Long.getLong(METRICS_INTERVAL_PROPERTY, DEFAULT_METRICS_INTERVAL_MILLIS);
+        if (interval > 0) {
+            Path file = Path.of(System.getProperty(METRICS_FILE_PROPERTY, DEFAULT_METRICS_FILE));
+            metricsDump = Metrics.startDumping(file, interval);
+        }
+    }
+    
+    /**
+     * Write the metrics one last time and stop the dump
+     */
+    private static void stopMetricsDump() {
+        if (metricsDump != null) {
+            try {
+                metricsDump.close();
+            } catch (Exception e) {
+                System.err.println("[WARNING] Could not write metrics: " + e.getMessage());
+            }
+            metricsDump = null;
+        }
+    }
+    
+    /**
+     * Wait until the library's messages so far are printed, so what is
+     * printed next comes after them
+     */
+    private static void showEvents() {
+        eventLog.flush();
+    }
+    
     /**
      * Initialize the system components
      */
@@ -60,12 +189,15 @@ public class Main {
             
             // Create service instances - using the default constructor
             libraryService = new LibraryService();
+            showEvents();
+            startMetricsDump();
             
             System.out.println("[INFO] System components initialized");
             
             // Load existing data
             System.out.print("Loading existing data... ");
             boolean dataLoaded = libraryService.loadAllData();
+            showEvents();
             
             if (dataLoaded) {
                 System.out.println("[SUCCESS] Data loaded successfully");
@@ -83,6 +215,181 @@ public class Main {
         }
     }
     
+    /**
+     * Import a book file without starting the menu.
+     * Usage: --import <file> [--rejects <file>] [--no-check-digit]
+     * 
+     * @param args The command line arguments
+     * @return Exit code: 0 if the import finished and was saved
+     */
+    private static int runImport(String[] args) {
+        Path file = null;
+        Path rejects = null;
+        boolean verifyCheckDigits = true;
+        
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--rejects" -> {
+                    if (++i == args.length) {
+                        return printImportUsage();
+                    }
+                    rejects = Path.of(args[i]);
+                }
+                case "--no-check-digit" -> verifyCheckDigits = false;
+                default -> {
+                    if (file != null || args[i].startsWith("--")) {
+                        return printImportUsage();
+                    }
+                    file = Path.of(args[i]);
+                }
+            }
+        }
+        if (file == null) {
+            return printImportUsage();
+        }
+        
+        // No background writer or group commit: the import saves once when it is done
+        FileService fileService = new FileService();
+        fileService.enableJournaling();
+        LibraryService service = new LibraryService(new Library(), fileService);
+        try {
+            if (!service.loadAllData()) {
+                return 1;
+            }
+            showEvents();
+            System.out.println("Importing " + file + "...");
+            ImportReport report = service.importBooks(file, rejects, verifyCheckDigits);
+            showEvents();
+            System.out.println(report);
+            if (rejects != null && report.getRejected() > 0) {
+                System.out.println("Rejected lines written to " + rejects);
+            }
+            return report.isSaved() ? 0 : 1;
+        } catch (IOException e) {
+            System.err.println("[ERROR] Import failed: " + e.getMessage());
+            return 1;
+        } finally {
+            fileService.closeJournal();
+        }
+    }
+    
+    private static int printImportUsage() {
+        System.err.println("Usage: --import <file> [--rejects <file>] [--no-check-digit]");
+        System.err.println("Each line: ISBN, title, author[, status], separated by commas, tabs or |");
+        return 2;
+    }
+    
+    /**
+     * List the backup versions, or restore the record files to a point in time.
+     * Usage: --backups | --restore <time>, where time is an ISO-8601 instant
+     * such as 2024-05-01T09:30:00Z or a local date-time such as 2024-05-01T11:30
+     * 
+     * @param args The command line arguments
+     * @return Exit code: 0 if the listing or restore succeeded
+     */
+    private static int runBackupCommand(String[] args) {
+        FileService fileService = new FileService();
+        if (args[0].equals("--backups")) {
+            if (args.length != 1) {
+                return printBackupUsage();
+            }
+            showEvents();
+            List<BackupVersion> versions = fileService.listBackups();
+            for (BackupVersion version : versions) {
+                System.out.printf("%6d  %s  %-18s %,14d bytes  %,7d chunks%n", version.getSequence(),
+                        LocalDateTime.ofInstant(version.getTime(), ZoneId.systemDefault()).format(BACKUP_TIME_FORMAT),
+                        version.getFileName(), version.getSize(), version.getChunkCount());
+            }
+            System.out.println(versions.size() + " backup version(s)");
+            return 0;
+        }
+        
+        if (args.length != 2) {
+            return printBackupUsage();
+        }
+        Instant time;
+        try {
+            time = Instant.parse(args[1]);
+        } catch (DateTimeParseException e) {
+            try {
+                time = LocalDateTime.parse(args[1]).atZone(ZoneId.systemDefault()).toInstant();
+            } catch (DateTimeParseException notLocal) {
+                return printBackupUsage();
+            }
+        }
+        boolean restored = fileService.restoreAsOf(time);
+        showEvents();
+        return restored ? 0 : 1;
+    }
+    
+    private static int printBackupUsage() {
+        System.err.println("Usage: --backups | --restore <time>");
+        System.err.println("Time: an instant such as 2024-05-01T09:30:00Z or a local date-time such as 2024-05-01T11:30");
+        return 2;
+    }
+    
+    /**
+     * Serve the library over HTTP until the process is stopped, e.g. with Ctrl+C.
+     * Usage: --serve [port] [--host <address>]. The server listens on the
+     * loopback address unless a host is given, so only this machine can reach it.
+     * 
+     * @param args The command line arguments
+     * @return Exit code: 0 once the server is running
+     */
+    private static int runServer(String[] args) {
+        int port = LibraryServer.DEFAULT_PORT;
+        String host = InetAddress.getLoopbackAddress().getHostAddress();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--host")) {
+                if (++i == args.length) {
+                    return printServerUsage();
+                }
+                host = args[i];
+            } else {
+                try {
+                    port = Integer.parseInt(args[i]);
+                } catch (NumberFormatException e) {
+                    return printServerUsage();
+                }
+                if (port < 0 || port > 65535) {
+                    return printServerUsage();
+                }
+            }
+        }
+        
+        libraryService = new LibraryService();
+        startMetricsDump();
+        LibraryServer server;
+        try {
+            server = new LibraryServer(libraryService, new InetSocketAddress(host, port));
+        } catch (IOException e) {
+            System.err.println("[ERROR] Could not start the server on " + host + ":" + port + ": " + e.getMessage());
+            libraryService.shutdown();
+            stopMetricsDump();
+            return 1;
+        }
+        showEvents();
+        
+        // Answer the requests in progress and save before the process exits
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            server.close();
+            libraryService.shutdown();
+            stopMetricsDump();
+            eventLog.close();
+        }, "library-shutdown"));
+        
+        InetSocketAddress address = server.getAddress();
+        System.out.println("Serving " + APP_NAME + " on http://" + address.getHostString() + ":"
+                + address.getPort() + "/ (Ctrl+C to stop)");
+        return 0;
+    }
+    
+    private static int printServerUsage() {
+        System.err.println("Usage: --serve [port] [--host <address>]");
+        System.err.println("Port defaults to " + LibraryServer.DEFAULT_PORT + "; host defaults to the loopback address");
+        return 2;
+    }
+    
     /**
      * Display welcome message
      */
@@ -138,6 +445,7 @@ public class Main {
                     }
                 }
                 
+                showEvents();
                 if (running && choice != 10) { // Don't pause after tests
                     System.out.println("\nPress Enter to continue...");
                     scanner.nextLine(); // Clear the buffer
@@ -145,6 +453,7 @@ public class Main {
                 }
                 
             } catch (Exception e) {
+                showEvents();
                 System.err.println("\n[ERROR] An error occurred: " + e.getMessage());
                 System.out.println("Returning to main menu...\n");
                 
@@ -258,6 +567,7 @@ public class Main {
             } else {
                 isbn = libraryService.addNewBook(title, author);
             }
+            showEvents();
             
             System.out.println("\n" + "=".repeat(40));
             System.out.println("[SUCCESS] BOOK ADDED SUCCESSFULLY!");
@@ -292,6 +602,7 @@ public class Main {
             }
             
             long memberID = libraryService.registerMember(name);
+            showEvents();
             
             System.out.println("\n" + "=".repeat(40));
             System.out.println("[SUCCESS] MEMBER REGISTERED SUCCESSFULLY!");
@@ -339,9 +650,12 @@ public class Main {
             long isbn = Long.parseLong(isbnInput);
             
             boolean success = libraryService.borrowBook(memberID, isbn);
+            showEvents();
             
             if (success) {
                 System.out.println("\n[SUCCESS] Book borrowed successfully!");
+            } else if (canQueueFor(memberID, isbn)) {
+                offerHold(memberID, isbn);
             } else {
                 System.out.println("\n[INFO] Book borrowing failed. Please check:");
                 System.out.println("   - Is the book available?");
@@ -358,6 +672,37 @@ public class Main {
         }
     }
     
+    /**
+     * Check whether a member who could not borrow a book could queue for it instead
+     */
+    private static boolean canQueueFor(long memberID, long isbn) {
+        Book book = libraryService.getLibrary().findBook(isbn);
+        if (book == null || libraryService.getHoldPosition(memberID, isbn) != HoldQueues.NOT_HELD) {
+            return false;
+        }
+        BookStatus status = book.getStatus();
+        return status == BookStatus.BORROWED || status == BookStatus.RESERVED;
+    }
+    
+    /**
+     * Offer a place in the queue for a book that is out
+     */
+    private static void offerHold(long memberID, long isbn) {
+        System.out.print("\nThe book is out. Place a hold on it? (y/n): ");
+        String answer = scanner.nextLine().trim().toLowerCase();
+        if (!answer.equals("y") && !answer.equals("yes")) {
+            return;
+        }
+        int position = libraryService.placeHold(memberID, isbn);
+        showEvents();
+        if (position > 0) {
+            System.out.println("\n[SUCCESS] Hold placed. Position in queue: " + position);
+            System.out.println("The book will be set aside for the member when it comes back.");
+        } else {
+            System.out.println("\n[INFO] The hold could not be placed.");
+        }
+    }
+    
     /**
      * Return a book
      */
@@ -367,14 +712,6 @@ public class Main {
         System.out.println("=".repeat(40));
         
         try {
-            System.out.print("Enter member ID: ");
-            String memberIdInput = scanner.nextLine().trim();
-            
-            if (memberIdInput.isEmpty()) {
-                System.out.println("[ERROR] Member ID cannot be empty.");
-                return;
-            }
-            
             System.out.print("Enter book ISBN: ");
             String isbnInput = scanner.nextLine().trim();
             
@@ -383,17 +720,24 @@ public class Main {
                 return;
             }
             
-            long memberID = Long.parseLong(memberIdInput);
             long isbn = Long.parseLong(isbnInput);
             
-            boolean success = libraryService.returnBook(memberID, isbn);
+            // The loan table knows who has the book, so the member ID is not needed
+            Member borrower = libraryService.getBorrower(isbn);
+            if (borrower != null) {
+                System.out.println("Borrowed by: " + borrower.getName() + 
+                                 " (ID: " + borrower.getMemberID() + ")");
+            }
+            
+            boolean success = libraryService.returnBook(isbn);
+            showEvents();
             
             if (success) {
                 System.out.println("\n[SUCCESS] Book returned successfully!");
             } else {
                 System.out.println("\n[INFO] Book return failed. Please check:");
-                System.out.println("   - Does the member have this book borrowed?");
-                System.out.println("   - Are the member ID and ISBN correct?");
+                System.out.println("   - Is the book currently borrowed?");
+                System.out.println("   - Is the ISBN correct?");
             }
             
         } catch (NumberFormatException e) {
@@ -537,19 +881,56 @@ public class Main {
             return;
         }
         
-        String result = "";
-        
-        switch (choice) {
-            case 1 -> result = libraryService.getAllBooks();
-            case 2 -> result = libraryService.getAvailableBooks();
-            case 3 -> result = libraryService.getBorrowedBooks();
-        }
+        BookStatus status = switch (choice) {
+            case 2 -> BookStatus.AVAILABLE;
+            case 3 -> BookStatus.BORROWED;
+            default -> null;
+        };
+        String heading = switch (choice) {
+            case 2 -> "AVAILABLE BOOKS";
+            case 3 -> "BORROWED BOOKS";
+            default -> "ALL BOOKS";
+        };
+        int total = status == null ? libraryService.getLibrary().getTotalBooks()
+                                   : libraryService.getLibrary().getBooksCount(status);
         
         System.out.println("\n" + "=".repeat(60));
-        System.out.println(result);
+        System.out.println("=== " + heading + " (" + total + ") ===");
+        
+        // Only one page is held at a time, however large the catalog
+        long cursor = Page.START;
+        int shown = 0;
+        while (true) {
+            Page<Book> page = libraryService.getBooksPage(cursor, PAGE_SIZE, status);
+            for (Book book : page.getItems()) {
+                System.out.println(libraryService.describeBook(book, status == null));
+            }
+            shown += page.getItems().size();
+            cursor = page.getNextCursor();
+            
+            if (shown == 0) {
+                System.out.println(status == null ? "No books in the library."
+                                                  : "No " + status.getLabel().toLowerCase() + " books.");
+            }
+            if (!page.hasMore() || !askForNextPage(shown)) {
+                break;
+            }
+        }
         System.out.println("=".repeat(60));
     }
     
+    /**
+     * Ask whether to show the next page of a listing
+     * 
+     * @param shown Number of entries shown so far
+     * @return true to show the next page
+     */
+    private static boolean askForNextPage(int shown) {
+        System.out.print("-- " + shown + " shown. Press Enter for more, or q to stop: ");
+        String input = scanner.nextLine().trim();
+        return !input.equalsIgnoreCase("q");
+    }
+    
     /**
      * Display all members
      */
@@ -558,8 +939,23 @@ public class Main {
         System.out.println("                    ALL MEMBERS");
         System.out.println("=".repeat(60));
         
-        String allMembers = libraryService.getAllMembers();
-        System.out.println(allMembers);
+        long cursor = Page.START;
+        int shown = 0;
+        while (true) {
+            Page<Member> page = libraryService.getMembersPage(cursor, PAGE_SIZE);
+            for (Member member : page.getItems()) {
+                System.out.println(libraryService.describeMember(member));
+            }
+            shown += page.getItems().size();
+            cursor = page.getNextCursor();
+            
+            if (shown == 0) {
+                System.out.println("No members registered.");
+            }
+            if (!page.hasMore() || !askForNextPage(shown)) {
+                break;
+            }
+        }
         System.out.println("=".repeat(60));
     }
     
@@ -573,9 +969,26 @@ public class Main {
         
         String stats = libraryService.getLibraryStats();
         System.out.println(stats);
+        System.out.println(libraryService.getOverdueReport(10));
+        
+        
+        // Latency of the operations used so far, from the metrics registry
+        System.out.println("Operation latency (ms)                  count      p50      p99      max");
+        Metrics.snapshot().getHistograms().forEach((name, histogram) -> {
+            if (histogram.getCount() > 0) {
+                System.out.printf("%-38s %7d %8.3f %8.3f %8.3f%n",
+                        name.replaceFirst("^library_service_", "").replaceFirst("_seconds$", ""),
+                        histogram.getCount(), millis(histogram, 50), millis(histogram, 99),
+                        histogram.getMaxNanos() / 1e6);
+            }
+        });
         System.out.println("=".repeat(60));
     }
     
+    private static double millis(HistogramSnapshot histogram, double percentile) {
+        return histogram.getValueAtPercentile(percentile) / 1e6;
+    }
+    
     /**
      * Run system tests (hidden feature for developers)
      */
@@ -604,16 +1017,19 @@ public class Main {
             long book2ISBN = testService.addNewBook("Test Book 2", "Test Author 2");
             long member1ID = testService.registerMember("Test Member 1");
             long member2ID = testService.registerMember("Test Member 2");
+            showEvents();
             System.out.println("[SUCCESS] Test data created");
             
             System.out.println("\nTest 2: Borrowing books...");
             boolean borrow1 = testService.borrowBook(member1ID, book1ISBN);
             boolean borrow2 = testService.borrowBook(member2ID, book2ISBN);
+            showEvents();
             System.out.println("[INFO] Borrow operations: " + borrow1 + ", " + borrow2);
             
             System.out.println("\nTest 3: Returning books...");
             boolean return1 = testService.returnBook(member1ID, book1ISBN);
             boolean return2 = testService.returnBook(member2ID, book2ISBN);
+            showEvents();
             System.out.println("[INFO] Return operations: " + return1 + ", " + return2);
             
             System.out.println("\nTest 4: Search operations...");
@@ -624,6 +1040,7 @@ public class Main {
             System.out.println("\nTest 5: Data persistence...");
             boolean saved = testService.saveAllData();
             boolean loaded = testService.loadAllData();
+            showEvents();
             System.out.println("[INFO] Data persistence: Save=" + saved + ", Load=" + loaded);
             
             System.out.println("\n" + "=".repeat(60));
@@ -653,6 +1070,7 @@ public class Main {
         try {
             System.out.print("Saving data... ");
             libraryService.shutdown();
+            showEvents();
             System.out.println("[SUCCESS] Data saved successfully");
             
             scanner.close();
@@ -669,5 +1087,7 @@ public class Main {
             System.err.println("\n[WARNING] Error during shutdown: " + e.getMessage());
             System.err.println("Some data may not have been saved properly.");
         }
+        stopMetricsDump();
+        eventLog.close();
     }
 }
\ No newline at end of file
@@ -0,0 +1,188 @@
+package com.obcodes.librarymanagementsystem.events;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A sink that hands events to another sink on a background thread, so the
+ * threads emitting them never wait for a slow console or file.
+ *
+ * Events go into a fixed ring of slots. An emitting thread claims the next
+ * sequence number with a compare-and-set and writes the event into that
+ * slot; the appender thread takes events out in sequence order and passes
+ * them on. Nothing is locked, and the ring allocates nothing per event.
+ *
+ * When the ring is full, DEBUG and INFO events are dropped and counted, so a
+ * flood of routine events slows nobody down; WARN and ERROR events wait for
+ * a free slot, so problems are never lost.
+ *
+ * @author Obakeng Phale
+ */
+public final class AsyncAppender implements EventSink, AutoCloseable {
+    public static final int DEFAULT_CAPACITY = 8192;
+
+    // How long the appender thread sleeps when idle before checking again,
+    // in case a wake-up is missed
+    private static final long IDLE_PARK_NANOS = 10_000_000;
+
+    private final EventSink target;
+    private final AtomicReferenceArray<Event> slots;
+    private final int mask;
+    private final Thread thread;
+
+    // Next sequence number to claim
+    private final AtomicLong claimed = new AtomicLong();
+    // Next sequence number the appender thread will take; slots below it are free
+    private volatile long taken;
+    // Sequence numbers below this have been passed to the target
+    private volatile long delivered;
+
+    // Emitters between checking closed and publishing their event
+    private final AtomicInteger publishing = new AtomicInteger();
+    private volatile boolean closed;
+    private volatile boolean idle;
+    private final LongAdder dropped = new LongAdder();
+
+    public AsyncAppender(EventSink target) {
+        this(target, DEFAULT_CAPACITY);
+    }
+
+    /**
+     * Start an appender and its thread
+     * @param target The sink to pass events to, called only from the appender thread
+     * @param capacity Number of events the ring holds, rounded up to a power of two
+     */
+    public AsyncAppender(EventSink target, int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.target = target;
+        int size = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1);
+        this.slots = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+
+        this.thread = new Thread(this::run, "library-events");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    @Override
+    public void accept(Event event) {
+        publishing.incrementAndGet();
+        try {
+            if (closed) {
+                // The appender thread has stopped or is stopping; deliver here
+                deliverSafely(event);
+                return;
+            }
+
+            long sequence;
+            while (true) {
+                sequence = claimed.get();
+                if (sequence - taken >= slots.length()) {
+                    if (!event.getLevel().isAtLeast(Level.WARN)) {
+                        dropped.increment();
+                        return;
+                    }
+                    LockSupport.unpark(thread);
+                    Thread.onSpinWait();
+                    continue;
+                }
+                if (claimed.compareAndSet(sequence, sequence + 1)) {
+                    break;
+                }
+            }
+            slots.set((int) sequence & mask, event);
+        } finally {
+            publishing.decrementAndGet();
+        }
+        if (idle) {
+            LockSupport.unpark(thread);
+        }
+    }
+
+    /**
+     * Wait until every event accepted before this call has been passed to the
+     * target, e.g. before printing something that must come after them
+     */
+    public void flush() {
+        long upTo = claimed.get();
+        while (delivered < upTo && thread.isAlive()) {
+            LockSupport.unpark(thread);
+            LockSupport.parkNanos(50_000);
+        }
+    }
+
+    /**
+     * Get the number of DEBUG and INFO events dropped because the ring was full
+     * @return Events dropped so far
+     */
+    public long getDropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * Deliver the events already accepted and stop the appender thread.
+     * Events accepted afterwards are delivered on the emitting thread.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        LockSupport.unpark(thread);
+        boolean interrupted = false;
+        while (thread.isAlive()) {
+            try {
+                thread.join();
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        long next = 0;
+        while (true) {
+            int index = (int) next & mask;
+            Event event = slots.get(index);
+            if (event != null) {
+                // Free the slot before delivering, so emitters can reuse it meanwhile
+                slots.set(index, null);
+                taken = ++next;
+                deliverSafely(event);
+                delivered = next;
+                continue;
+            }
+
+            if (claimed.get() != next) {
+                // Claimed but not written yet
+                Thread.onSpinWait();
+                continue;
+            }
+            // Every emitter that saw closed == false has finished publishing
+            // once this reads zero, so an empty ring now stays empty
+            if (closed && publishing.get() == 0 && claimed.get() == next) {
+                return;
+            }
+
+            idle = true;
+            if (claimed.get() == next && !closed) {
+                LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+            }
+            idle = false;
+        }
+    }
+
+    private void deliverSafely(Event event) {
+        try {
+            target.accept(event);
+        } catch (RuntimeException e) {
+            System.err.println("Event sink failed: " + e);
+        }
+    }
+}
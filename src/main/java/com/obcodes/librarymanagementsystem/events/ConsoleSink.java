@@ -0,0 +1,36 @@
+package com.obcodes.librarymanagementsystem.events;
+
+import java.io.PrintStream;
+
+/**
+ * Prints events for a person at a terminal: each event's message on its
+ * own line, errors on the error stream with their stack trace. In
+ * structured mode each event is printed in its name=value form instead,
+ * for piping into other tools.
+ *
+ * @author Obakeng Phale
+ */
+public class ConsoleSink implements EventSink {
+    private final PrintStream out;
+    private final PrintStream err;
+    private final boolean structured;
+
+    public ConsoleSink() {
+        this(System.out, System.err, false);
+    }
+
+    public ConsoleSink(PrintStream out, PrintStream err, boolean structured) {
+        this.out = out;
+        this.err = err;
+        this.structured = structured;
+    }
+
+    @Override
+    public void accept(Event event) {
+        PrintStream stream = event.getLevel() == Level.ERROR ? err : out;
+        stream.println(structured ? event.toString() : event.getMessage());
+        if (!structured && event.getCause() != null) {
+            event.getCause().printStackTrace(stream);
+        }
+    }
+}
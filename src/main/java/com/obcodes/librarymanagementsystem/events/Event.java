@@ -0,0 +1,88 @@
+package com.obcodes.librarymanagementsystem.events;
+
+import java.time.Instant;
+
+/**
+ * Something that happened in the library: a type, a level, the time and the
+ * values the type names. Nothing is formatted when the event is created;
+ * {@link #getMessage()} renders the type's template when a sink asks for it,
+ * and {@link #toString()} gives a structured one-line form.
+ *
+ * @author Obakeng Phale
+ */
+public final class Event {
+    private final long timeMillis;
+    private final Level level;
+    private final EventType type;
+    private final Object[] values;
+    private final Throwable cause;
+
+    Event(Level level, EventType type, Object[] values, Throwable cause) {
+        this.timeMillis = System.currentTimeMillis();
+        this.level = level;
+        this.type = type;
+        this.values = values;
+        this.cause = cause;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public EventType getType() {
+        return type;
+    }
+
+    /**
+     * Get one of the event's values
+     * @param field The field name
+     * @return The value, or null if the event's type has no such field
+     */
+    public Object get(String field) {
+        int index = type.indexOf(field);
+        return index < 0 ? null : values[index];
+    }
+
+    /**
+     * Get the exception that caused an error event
+     * @return The exception, or null
+     */
+    public Throwable getCause() {
+        return cause;
+    }
+
+    /**
+     * Render the event's message
+     * @return The type's template filled in with the event's values
+     */
+    public String getMessage() {
+        return type.render(values);
+    }
+
+    /**
+     * Structured form: time, level, type and each field as name=value
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder(64);
+        line.append(Instant.ofEpochMilli(timeMillis)).append(' ')
+            .append(level).append(' ').append(type);
+        for (int i = 0; i < values.length; i++) {
+            line.append(' ').append(type.getFieldName(i)).append('=');
+            Object value = values[i];
+            if (value instanceof CharSequence) {
+                line.append('"').append(value.toString().replace("\"", "\\\"")).append('"');
+            } else {
+                line.append(value);
+            }
+        }
+        if (cause != null) {
+            line.append(" cause=\"").append(cause).append('"');
+        }
+        return line.toString();
+    }
+}
@@ -0,0 +1,12 @@
+package com.obcodes.librarymanagementsystem.events;
+
+/**
+ * Receives events from {@link Events}. Sinks are called on the thread that
+ * emitted the event, so anything slow belongs behind an {@link AsyncAppender}.
+ *
+ * @author Obakeng Phale
+ */
+@FunctionalInterface
+public interface EventSink {
+    void accept(Event event);
+}
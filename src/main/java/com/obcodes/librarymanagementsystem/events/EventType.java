@@ -0,0 +1,135 @@
+package com.obcodes.librarymanagementsystem.events;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The kinds of {@link Event} the library emits. Each type has a level, the
+ * names of the values it carries and a message template in which {name}
+ * stands for the value of that name. Sinks that want the values read them
+ * by name; sinks that want text render the template.
+ *
+ * {@link #MESSAGE} carries free text for messages that are not worth a type
+ * of their own, at whatever level it is emitted with.
+ *
+ * @author Obakeng Phale
+ */
+public enum EventType {
+    MESSAGE(Level.INFO, "{message}", "message"),
+
+    // Library and members
+    BOOK_ADDED(Level.INFO, "Book added: {title}", "isbn", "title"),
+    BOOK_EXISTS(Level.WARN, "Book with ISBN {isbn} already exists", "isbn"),
+    BOOK_NOT_FOUND(Level.WARN, "Book with ISBN {isbn} not found", "isbn"),
+    BOOK_ON_LOAN(Level.WARN, "Cannot remove book '{title}' while it is borrowed", "isbn", "title"),
+    BOOK_REMOVED(Level.INFO, "Book removed: {title}", "isbn", "title"),
+    MEMBER_ADDED(Level.INFO, "Member added: {name}", "memberID", "name"),
+    MEMBER_EXISTS(Level.WARN, "Member with ID {memberID} already exists", "memberID"),
+    MEMBER_NOT_FOUND(Level.WARN, "Member with ID {memberID} not found", "memberID"),
+    MEMBER_NOT_REGISTERED(Level.WARN, "Member {memberID} is not registered with a library", "memberID"),
+    MEMBER_HAS_LOANS(Level.WARN, "Cannot remove member. They have {loans} borrowed book(s)", "memberID", "loans"),
+    MEMBER_REMOVED(Level.INFO, "Member removed: {name}", "memberID", "name"),
+    CHECKOUT_CONFLICT(Level.WARN, "Error: Member or book was removed during checkout", "memberID", "isbn"),
+    BOOK_UNAVAILABLE(Level.WARN, "Error: Book '{title}' is not available", "isbn", "title"),
+    LOAN_LIMIT_REACHED(Level.WARN, "Error: {name} has reached the maximum borrowing limit of {limit}",
+            "memberID", "name", "limit"),
+    ALREADY_BORROWED(Level.WARN, "Error: {name} already has '{title}'", "memberID", "name", "isbn", "title"),
+    NOT_BORROWED_BY(Level.WARN, "Error: {name} hasn't borrowed '{title}'", "memberID", "name", "isbn", "title"),
+    NOT_ON_LOAN(Level.WARN, "Error: Book with ISBN {isbn} is not on loan", "isbn"),
+    BOOK_CHECKED_OUT(Level.INFO, "Success: '{title}' checked out to {name}", "memberID", "name", "isbn", "title"),
+    BOOK_RETURNED(Level.INFO, "Success: '{title}' returned by {name}", "memberID", "name", "isbn", "title"),
+    LOAN_OVERDUE(Level.WARN, "'{title}' borrowed by {name} was due {due}", "memberID", "name", "isbn", "title", "due"),
+    LOANS_OVERDUE(Level.WARN, "{count} loan(s) are overdue", "count"),
+    BOOK_STATUS_CHANGED(Level.INFO, "Success: '{title}' is now {status}", "isbn", "title", "status"),
+    STATUS_CHANGE_REFUSED(Level.WARN, "Error: Book '{title}' cannot go from {from} to {to}",
+            "isbn", "title", "from", "to"),
+
+    // Holds
+    HOLD_PLACED(Level.INFO, "Success: {name} is number {position} in the queue for '{title}'",
+            "memberID", "name", "isbn", "title", "position"),
+    HOLD_READY(Level.INFO, "'{title}' is being held for member {memberID} until {until}", "memberID", "isbn", "title", "until"),
+    HOLD_EXPIRED(Level.INFO, "Hold on '{title}' for member {memberID} was not collected in time", "memberID", "isbn", "title"),
+    HOLD_CANCELLED(Level.INFO, "Hold on '{title}' cancelled for {name}", "memberID", "name", "isbn", "title"),
+    BOOK_ON_HOLD(Level.WARN, "Error: Book '{title}' is being held for another member", "isbn", "title"),
+    HOLD_NOT_NEEDED(Level.WARN, "Error: Book '{title}' is available; borrow it instead", "isbn", "title"),
+    ALREADY_ON_HOLD(Level.WARN, "Error: {name} already has a hold on '{title}'", "memberID", "name", "isbn", "title"),
+    NO_HOLD(Level.WARN, "Error: {name} has no hold on '{title}'", "memberID", "name", "isbn", "title"),
+
+    // Library service
+    MEMBER_REGISTERED(Level.INFO, "New member registered: {name} (ID: {memberID})", "memberID", "name"),
+    BOOK_CREATED(Level.INFO, "New book added: '{title}' by {author} (ISBN: {isbn})", "isbn", "title", "author"),
+
+    // Files
+    RECORDS_SAVED(Level.INFO, "Successfully saved {count} {kind} to {file}", "kind", "count", "file"),
+    RECORDS_LOADED(Level.INFO, "Successfully loaded {count} {kind} from {file}", "kind", "count", "file"),
+    BACKUP_CREATED(Level.INFO, "Backed up {file} as version {version}: {chunks} new chunk(s), {bytes} byte(s) written",
+            "file", "version", "chunks", "bytes");
+
+    private final Level level;
+    private final String[] fields;
+    // The template split at its placeholders: text[0], value of slots[0], text[1], ...
+    private final String[] text;
+    private final int[] slots;
+
+    EventType(Level level, String template, String... fields) {
+        this.level = level;
+        this.fields = fields;
+
+        List<String> parts = new ArrayList<>();
+        List<Integer> found = new ArrayList<>();
+        int start = 0;
+        int open;
+        while ((open = template.indexOf('{', start)) >= 0) {
+            int close = template.indexOf('}', open);
+            int slot = indexOf(template.substring(open + 1, close));
+            if (slot < 0) {
+                throw new IllegalArgumentException("Unknown field in template: " + template);
+            }
+            parts.add(template.substring(start, open));
+            found.add(slot);
+            start = close + 1;
+        }
+        parts.add(template.substring(start));
+        this.text = parts.toArray(new String[0]);
+        this.slots = found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public Level getLevel() {
+        return level;
+    }
+
+    public int getFieldCount() {
+        return fields.length;
+    }
+
+    public String getFieldName(int index) {
+        return fields[index];
+    }
+
+    /**
+     * Find a field by name
+     * @param name The field name
+     * @return Its position in the event's values, or -1 if this type has no such field
+     */
+    public int indexOf(String name) {
+        for (int i = 0; i < fields.length; i++) {
+            if (fields[i].equals(name)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Render the message template with an event's values
+     * @param values The values, in field order
+     * @return The message
+     */
+    String render(Object[] values) {
+        StringBuilder message = new StringBuilder(text[0]);
+        for (int i = 0; i < slots.length; i++) {
+            message.append(values[slots[i]]).append(text[i + 1]);
+        }
+        return message.toString();
+    }
+}
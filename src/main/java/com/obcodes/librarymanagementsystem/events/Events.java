@@ -0,0 +1,131 @@
+package com.obcodes.librarymanagementsystem.events;
+
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Where the library reports what it does. Code emits events; whoever runs
+ * the library subscribes sinks to receive them. With no sink subscribed at
+ * an event's level nothing is created, so bulk work that nobody is watching
+ * costs one volatile read per event.
+ *
+ * Sinks are called on the emitting thread. The menu subscribes a
+ * {@link ConsoleSink} behind an {@link AsyncAppender}, so callers never wait
+ * for the console.
+ *
+ * @author Obakeng Phale
+ */
+public final class Events {
+    private static final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+
+    // Lowest level any sink is subscribed at; above ERROR when there are none
+    private static volatile int threshold = Level.values().length;
+
+    private Events() {
+    }
+
+    /**
+     * Subscribe a sink to events at or above a level
+     * @param sink The sink
+     * @param level The lowest level it receives
+     */
+    public static synchronized void subscribe(EventSink sink, Level level) {
+        subscriptions.add(new Subscription(sink, level));
+        updateThreshold();
+    }
+
+    /**
+     * Stop sending events to a sink
+     * @param sink The sink, as it was subscribed
+     */
+    public static synchronized void unsubscribe(EventSink sink) {
+        subscriptions.removeIf(subscription -> subscription.sink == sink);
+        updateThreshold();
+    }
+
+    /**
+     * Check whether any sink receives events of a level, to skip building
+     * values that would be thrown away
+     * @param level The level
+     * @return true if an event of that level would be delivered
+     */
+    public static boolean isEnabled(Level level) {
+        return level.ordinal() >= threshold;
+    }
+
+    /**
+     * Emit an event at its type's level
+     * @param type The event type
+     * @param values The type's values, in field order
+     */
+    public static void emit(EventType type, Object... values) {
+        if (!isEnabled(type.getLevel())) {
+            return;
+        }
+        if (values.length != type.getFieldCount()) {
+            throw new IllegalArgumentException(type + " takes " + type.getFieldCount() + " value(s)");
+        }
+        deliver(new Event(type.getLevel(), type, values, null));
+    }
+
+    public static void debug(String message) {
+        message(Level.DEBUG, message, null);
+    }
+
+    public static void info(String message) {
+        message(Level.INFO, message, null);
+    }
+
+    public static void warn(String message) {
+        message(Level.WARN, message, null);
+    }
+
+    public static void error(String message) {
+        message(Level.ERROR, message, null);
+    }
+
+    /**
+     * Emit an error message with the exception behind it
+     * @param message The message
+     * @param cause The exception
+     */
+    public static void error(String message, Throwable cause) {
+        message(Level.ERROR, message, cause);
+    }
+
+    private static void message(Level level, String message, Throwable cause) {
+        if (isEnabled(level)) {
+            deliver(new Event(level, EventType.MESSAGE, new Object[] {message}, cause));
+        }
+    }
+
+    private static void deliver(Event event) {
+        for (Subscription subscription : subscriptions) {
+            if (event.getLevel().isAtLeast(subscription.level)) {
+                try {
+                    subscription.sink.accept(event);
+                } catch (RuntimeException e) {
+                    // A broken sink must not fail the operation that emitted the event
+                    System.err.println("Event sink failed: " + e);
+                }
+            }
+        }
+    }
+
+    private static void updateThreshold() {
+        int lowest = Level.values().length;
+        for (Subscription subscription : subscriptions) {
+            lowest = Math.min(lowest, subscription.level.ordinal());
+        }
+        threshold = lowest;
+    }
+
+    private static final class Subscription {
+        final EventSink sink;
+        final Level level;
+
+        Subscription(EventSink sink, Level level) {
+            this.sink = sink;
+            this.level = level;
+        }
+    }
+}
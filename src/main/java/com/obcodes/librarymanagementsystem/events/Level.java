@@ -0,0 +1,23 @@
+package com.obcodes.librarymanagementsystem.events;
+
+/**
+ * Severity of an {@link Event}, lowest first. A sink subscribed at one level
+ * receives events of that level and above.
+ *
+ * @author Obakeng Phale
+ */
+public enum Level {
+    DEBUG,
+    INFO,
+    WARN,
+    ERROR;
+
+    /**
+     * Check whether an event of this level reaches a sink subscribed at another
+     * @param threshold The level the sink subscribed at
+     * @return true if this level is at or above the threshold
+     */
+    public boolean isAtLeast(Level threshold) {
+        return compareTo(threshold) >= 0;
+    }
+}
@@ -0,0 +1,28 @@
+package com.obcodes.librarymanagementsystem.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A count that only goes up, such as refused checkouts. Threads add to
+ * separate cells, so counting from many threads does not contend.
+ *
+ * @author Obakeng Phale
+ */
+public final class Counter {
+    private final LongAdder count = new LongAdder();
+
+    Counter() {
+    }
+
+    public void increment() {
+        count.increment();
+    }
+
+    public void add(long amount) {
+        count.add(amount);
+    }
+
+    public long get() {
+        return count.sum();
+    }
+}
@@ -0,0 +1,56 @@
+package com.obcodes.librarymanagementsystem.metrics;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.function.LongSupplier;
+
+/**
+ * The registry the library records its metrics in. Classes keep the
+ * counters and histograms they update in static fields:
+ *
+ *   private static final LatencyHistogram SAVE_LATENCY =
+ *       Metrics.histogram("library_save_seconds", "Time to save everything");
+ *
+ * and whoever runs the library reads them with {@link #snapshot()} or has
+ * them dumped to a file with {@link #startDumping(Path, long)}.
+ *
+ * @author Obakeng Phale
+ */
+public final class Metrics {
+    private static final MetricsRegistry registry = new MetricsRegistry();
+
+    private Metrics() {
+    }
+
+    public static MetricsRegistry registry() {
+        return registry;
+    }
+
+    public static Counter counter(String name, String help) {
+        return registry.counter(name, help);
+    }
+
+    public static LatencyHistogram histogram(String name, String help) {
+        return registry.histogram(name, help);
+    }
+
+    public static void gauge(String name, String help, LongSupplier value) {
+        registry.gauge(name, help, value);
+    }
+
+    public static boolean removeGauge(String name, LongSupplier value) {
+        return registry.removeGauge(name, value);
+    }
+
+    public static MetricsSnapshot snapshot() {
+        return registry.snapshot();
+    }
+
+    public static void dump(Path file) throws IOException {
+        registry.dump(file);
+    }
+
+    public static AutoCloseable startDumping(Path file, long intervalMillis) {
+        return registry.startDumping(file, intervalMillis);
+    }
+}
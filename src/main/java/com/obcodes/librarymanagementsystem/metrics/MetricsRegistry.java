@@ -0,0 +1,166 @@
+package com.obcodes.librarymanagementsystem.metrics;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Named counters, gauges and latency histograms. Code looks its metrics up
+ * once, usually into static fields, and updates them directly; the registry
+ * is only involved again when a snapshot is taken.
+ *
+ * Names follow the Prometheus conventions (lower case, underscores, unit as
+ * a suffix), so the text form of a snapshot can be read by a Prometheus
+ * scraper, e.g. node_exporter's textfile collector reading the dump file.
+ *
+ * @author Obakeng Phale
+ */
+public class MetricsRegistry {
+    private final Map<String, Metric> metrics = new ConcurrentHashMap<>();
+
+    /**
+     * Get a counter, creating it the first time
+     * @param name The metric name, ending in _total
+     * @param help One line describing it
+     * @return The counter
+     */
+    public Counter counter(String name, String help) {
+        return (Counter) register(name, help, Kind.COUNTER, Counter::new).value;
+    }
+
+    /**
+     * Get a latency histogram, creating it the first time
+     * @param name The metric name, ending in _seconds
+     * @param help One line describing it
+     * @return The histogram
+     */
+    public LatencyHistogram histogram(String name, String help) {
+        return (LatencyHistogram) register(name, help, Kind.HISTOGRAM, LatencyHistogram::new).value;
+    }
+
+    /**
+     * Register a gauge, read whenever a snapshot is taken. A gauge registered
+     * again under the same name replaces the earlier one.
+     * @param name The metric name
+     * @param help One line describing it
+     * @param value Reads the current value
+     */
+    public void gauge(String name, String help, LongSupplier value) {
+        Metric existing = metrics.get(name);
+        if (existing != null && existing.kind != Kind.GAUGE) {
+            throw new IllegalArgumentException(name + " is already registered as a " + existing.kind);
+        }
+        metrics.put(name, new Metric(Kind.GAUGE, help, value));
+    }
+
+    /**
+     * Remove a gauge, unless it has since been replaced by another one
+     * @param name The metric name
+     * @param value The supplier it was registered with
+     * @return true if the gauge was removed
+     */
+    public boolean removeGauge(String name, LongSupplier value) {
+        Metric existing = metrics.get(name);
+        return existing != null && existing.value == value && metrics.remove(name, existing);
+    }
+
+    /**
+     * Read every metric
+     * @return The values, in name order
+     */
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counters = new TreeMap<>();
+        Map<String, Long> gauges = new TreeMap<>();
+        Map<String, HistogramSnapshot> histograms = new TreeMap<>();
+        Map<String, String> help = new TreeMap<>();
+
+        metrics.forEach((name, metric) -> {
+            help.put(name, metric.help);
+            switch (metric.kind) {
+                case COUNTER -> counters.put(name, ((Counter) metric.value).get());
+                case GAUGE -> {
+                    try {
+                        gauges.put(name, ((LongSupplier) metric.value).getAsLong());
+                    } catch (RuntimeException e) {
+                        // A gauge that cannot be read is left out of this snapshot
+                    }
+                }
+                case HISTOGRAM -> histograms.put(name, ((LatencyHistogram) metric.value).snapshot());
+            }
+        });
+        return new MetricsSnapshot(counters, gauges, histograms, help);
+    }
+
+    /**
+     * Write a snapshot in text form to a file, replacing it whole so a
+     * reader never sees half of one
+     * @param file The file
+     * @throws IOException if it cannot be written
+     */
+    public void dump(Path file) throws IOException {
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        Files.writeString(temp, snapshot().toText(), StandardCharsets.UTF_8);
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Dump to a file at a fixed interval on a background thread, and once
+     * more when stopped
+     * @param file The file
+     * @param intervalMillis Time between dumps
+     * @return Stops dumping when closed
+     */
+    public AutoCloseable startDumping(Path file, long intervalMillis) {
+        ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "library-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        Runnable dumpQuietly = () -> {
+            try {
+                dump(file);
+            } catch (IOException e) {
+                // Try again next interval; a scraper keeps reading the last good file
+            }
+        };
+        scheduler.scheduleWithFixedDelay(dumpQuietly, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+        return () -> {
+            scheduler.shutdownNow();
+            dumpQuietly.run();
+        };
+    }
+
+    private Metric register(String name, String help, Kind kind, Supplier<Object> create) {
+        Metric metric = metrics.computeIfAbsent(name, key -> new Metric(kind, help, create.get()));
+        if (metric.kind != kind) {
+            throw new IllegalArgumentException(name + " is already registered as a " + metric.kind);
+        }
+        return metric;
+    }
+
+    private enum Kind {
+        COUNTER, GAUGE, HISTOGRAM
+    }
+
+    private static final class Metric {
+        final Kind kind;
+        final String help;
+        final Object value;
+
+        Metric(Kind kind, String help, Object value) {
+            this.kind = kind;
+            this.help = help;
+            this.value = value;
+        }
+    }
+}
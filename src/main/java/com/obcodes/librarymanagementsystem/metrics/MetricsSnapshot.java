@@ -0,0 +1,94 @@
+package com.obcodes.librarymanagementsystem.metrics;
+
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The values of a registry's metrics at one moment. Histogram durations
+ * are in nanoseconds here and in seconds in the text form.
+ *
+ * @author Obakeng Phale
+ */
+public final class MetricsSnapshot {
+    // Percentiles written for each histogram
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+
+    private final Map<String, Long> counters;
+    private final Map<String, Long> gauges;
+    private final Map<String, HistogramSnapshot> histograms;
+    private final Map<String, String> help;
+
+    MetricsSnapshot(Map<String, Long> counters, Map<String, Long> gauges,
+                    Map<String, HistogramSnapshot> histograms, Map<String, String> help) {
+        this.counters = Collections.unmodifiableMap(counters);
+        this.gauges = Collections.unmodifiableMap(gauges);
+        this.histograms = Collections.unmodifiableMap(histograms);
+        this.help = help;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public Map<String, Long> getGauges() {
+        return gauges;
+    }
+
+    public Map<String, HistogramSnapshot> getHistograms() {
+        return histograms;
+    }
+
+    /**
+     * Get a histogram by name
+     * @param name The metric name
+     * @return The histogram, or null if there is none by that name
+     */
+    public HistogramSnapshot getHistogram(String name) {
+        return histograms.get(name);
+    }
+
+    /**
+     * Render in the Prometheus text exposition format. Histograms are
+     * written as summaries: quantiles, sum and count, in seconds, plus the
+     * largest value as a separate gauge named with a _max suffix.
+     * @return The text
+     */
+    public String toText() {
+        StringBuilder text = new StringBuilder(4096);
+        counters.forEach((name, value) -> family(text, name, "counter").append(name).append(' ')
+                .append(value).append('\n'));
+        gauges.forEach((name, value) -> family(text, name, "gauge").append(name).append(' ')
+                .append(value).append('\n'));
+        histograms.forEach((name, histogram) -> {
+            family(text, name, "summary");
+            for (double quantile : QUANTILES) {
+                text.append(name).append("{quantile=\"").append(quantile).append("\"} ")
+                    .append(seconds(histogram.getValueAtPercentile(quantile * 100))).append('\n');
+            }
+            text.append(name).append("_sum ").append(seconds(histogram.getSumNanos())).append('\n');
+            text.append(name).append("_count ").append(histogram.getCount()).append('\n');
+            text.append("# TYPE ").append(name).append("_max gauge\n");
+            text.append(name).append("_max ").append(seconds(histogram.getMaxNanos())).append('\n');
+        });
+        return text.toString();
+    }
+
+    @Override
+    public String toString() {
+        return toText();
+    }
+
+    private StringBuilder family(StringBuilder text, String name, String type) {
+        String description = help.get(name);
+        if (description != null && !description.isEmpty()) {
+            text.append("# HELP ").append(name).append(' ')
+                .append(description.replace("\\", "\\\\").replace("\n", "\\n")).append('\n');
+        }
+        return text.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static String seconds(long nanos) {
+        return String.format(Locale.ROOT, "%.9f", nanos / 1e9);
+    }
+}
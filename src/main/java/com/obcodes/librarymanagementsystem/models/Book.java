@@ -1,8 +1,17 @@
 package com.obcodes.librarymanagementsystem.models;
+import com.obcodes.librarymanagementsystem.events.Events;
 import java.io.*;
-import java.util.Random;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
+ * A book in the library.
+ * The status is a single byte changed by compare-and-set, so two members
+ * checking out the same copy are decided without taking a lock: exactly one
+ * moves it from Available to Borrowed. The top bit of that byte records
+ * whether the owning library's status counts include the book, so the
+ * counts and the status always change together.
  * @author Obakeng Phale
  */
 public class Book implements Serializable {
@@ -10,34 +19,58 @@ public class Book implements Serializable {
     private static final long serialVersionUID = 1L;  
     private static final String FILENAME = "data/books.dat";
     
+    // Status is written as its code; earlier versions wrote a "status" string
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("title", String.class),
+        new ObjectStreamField("author", String.class),
+        new ObjectStreamField("ISBN", long.class),
+        new ObjectStreamField("state", byte.class)
+    };
+    
+    private static final int COUNTED = 0x80;
+    private static final int STATUS_MASK = 0x7F;
+    private static final VarHandle STATE;
+    
+    static {
+        try {
+            STATE = MethodHandles.lookup().findVarHandle(Book.class, "state", byte.class);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+    
     private String title;
     private String author;
     private long ISBN;
-    private String status = "Available";
+    private volatile byte state;
+    
+    // Library this book belongs to, told about changes to indexed fields and status.
+    // Kept after the book is removed so a status change racing the removal still
+    // reaches the library that counted it.
+    private transient Library library;
   
     // Constructor
-    public Book(String title, String author, long ISBN, String status) {
+    public Book(String title, String author, long ISBN, BookStatus status) {
         this.title = title;
         this.author = author;
         // Use provided ISBN if valid, otherwise generate one
         this.ISBN = (ISBN > 0) ? ISBN : generateISBN();
-        this.status = status;
+        this.state = status.getCode();
     }
     
     // Overloaded constructor that auto-generates ISBN
-    public Book(String title, String author, String status) {
+    public Book(String title, String author, BookStatus status) {
         this.title = title;
         this.author = author;
         this.ISBN = generateISBN();
-        this.status = status;
+        this.state = status.getCode();
     }
   
-    // Auto-generate ISBN
+    // Auto-generate a random ISBN with a valid check digit. Random ISBNs can
+    // collide; LibraryService allocates unique ones from IdAllocator instead.
     private long generateISBN() { 
-        Random random = new Random();
-        long min = 9780000000000L;
-        long max = 9789999999999L;
-        return min + (long)(random.nextDouble() * (max - min + 1));
+        long body = ThreadLocalRandom.current().nextLong(978_000_000_000L, 979_000_000_000L);
+        return body * 10 + Isbn.checkDigit13(body);
     }
     
     // Getters
@@ -53,43 +86,137 @@ public class Book implements Serializable {
         return author;
     }
     
-    public String getStatus() {
-        return status;
+    public BookStatus getStatus() {
+        return BookStatus.fromCode((byte) (state & STATUS_MASK));
     }
     
     // Setters
     public void setTitle(String title) {
         this.title = title;
+        if (library != null) {
+            library.reindexTitle(this);
+        }
     }
     
     public void setAuthor(String author) {
         this.author = author;
+        if (library != null) {
+            library.reindexAuthor(this);
+        }
     }
     
     public void setISBN(long ISBN) {
         this.ISBN = ISBN;
     }
     
-    public void setStatus(String status) {
-        this.status = status;
+    /**
+     * Set the status whatever it currently is (used when loading saved data)
+     * @param status The new status
+     */
+    public void setStatus(BookStatus status) {
+        int current;
+        do {
+            current = state;
+        } while (!STATE.compareAndSet(this, (byte) current, (byte) ((current & COUNTED) | status.getCode())));
+        statusChanged(current, status);
+    }
+    
+    /**
+     * Change the status if it is still the expected one
+     * @param expected The status the book must be in
+     * @param next The new status
+     * @return true if the status was changed, false if it was not the expected one
+     * @throws IllegalArgumentException if a book may never go from the expected status to the new one
+     */
+    public boolean changeStatus(BookStatus expected, BookStatus next) {
+        if (!expected.canChangeTo(next)) {
+            throw new IllegalArgumentException("A book cannot go from " + expected + " to " + next);
+        }
+        while (true) {
+            int current = state;
+            if ((current & STATUS_MASK) != expected.getCode()) {
+                return false;
+            }
+            if (STATE.compareAndSet(this, (byte) current, (byte) ((current & COUNTED) | next.getCode()))) {
+                statusChanged(current, next);
+                return true;
+            }
+        }
+    }
+    
+    /**
+     * Change the status from whatever it currently is, if that status may
+     * go to the new one
+     * @param next The new status
+     * @return true if the book is now in the new status, false if its current
+     *         status may not change to it
+     */
+    public boolean changeStatus(BookStatus next) {
+        while (true) {
+            int current = state;
+            BookStatus status = BookStatus.fromCode((byte) (current & STATUS_MASK));
+            if (status == next) {
+                return true;
+            }
+            if (!status.canChangeTo(next)) {
+                return false;
+            }
+            if (STATE.compareAndSet(this, (byte) current, (byte) ((current & COUNTED) | next.getCode()))) {
+                statusChanged(current, next);
+                return true;
+            }
+        }
+    }
+    
+    private void statusChanged(int previous, BookStatus next) {
+        if ((previous & COUNTED) != 0) {
+            library.statusChanged(this, BookStatus.fromCode((byte) (previous & STATUS_MASK)), next);
+        }
+    }
+    
+    /**
+     * Join a library and start reporting status changes to it
+     * @param library The library
+     * @return The status at the moment the library started counting the book
+     */
+    BookStatus attachTo(Library library) {
+        this.library = library;
+        int current;
+        do {
+            current = state;
+        } while (!STATE.compareAndSet(this, (byte) current, (byte) (current | COUNTED)));
+        return BookStatus.fromCode((byte) (current & STATUS_MASK));
+    }
+    
+    /**
+     * Stop reporting status changes to the library
+     * @return The status at the moment the library stopped counting the book
+     */
+    BookStatus detach() {
+        int current;
+        do {
+            current = state;
+        } while (!STATE.compareAndSet(this, (byte) current, (byte) (current & ~COUNTED)));
+        return BookStatus.fromCode((byte) (current & STATUS_MASK));
+    }
+    
+    /**
+     * Get the status the library is counting the book under
+     * @return The status, or null if no library is counting the book
+     */
+    BookStatus countedStatus() {
+        int current = state;
+        return (current & COUNTED) == 0 ? null : BookStatus.fromCode((byte) (current & STATUS_MASK));
     }
     
     // borrowBook() method
     public boolean borrowBook() {
-        if ("Available".equalsIgnoreCase(status)) {
-            status = "Borrowed";
-            return true;
-        }
-        return false;
+        return changeStatus(BookStatus.AVAILABLE, BookStatus.BORROWED);
     }
     
     // returnBook() method (you'll likely need this too)
     public boolean returnBook() {
-        if ("Borrowed".equalsIgnoreCase(status)) {
-            status = "Available";
-            return true;
-        }
-        return false;
+        return changeStatus(BookStatus.BORROWED, BookStatus.AVAILABLE);
     }
     
     // Save this book to file
@@ -97,9 +224,40 @@ public class Book implements Serializable {
         try (FileOutputStream fileOut = new FileOutputStream(FILENAME);
              ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
             out.writeObject(this);
-            System.out.println("Object Serialized and saved to " + FILENAME);
+            Events.info("Object Serialized and saved to " + FILENAME);
         } catch (IOException e) {
-            e.printStackTrace();
+            Events.error("Error saving to " + FILENAME + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Write the status as its code
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("title", title);
+        fields.put("author", author);
+        fields.put("ISBN", ISBN);
+        fields.put("state", (byte) (state & STATUS_MASK));
+        out.writeFields();
+    }
+    
+    /**
+     * Read either the status code or the status string written by earlier versions
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        title = (String) fields.get("title", null);
+        author = (String) fields.get("author", null);
+        ISBN = fields.get("ISBN", 0L);
+        try {
+            if (fields.getObjectStreamClass().getField("status") != null) {
+                state = BookStatus.parse((String) fields.get("status", null)).getCode();
+            } else {
+                state = BookStatus.fromCode(fields.get("state", (byte) 0)).getCode();
+            }
+        } catch (IllegalArgumentException e) {
+            throw new InvalidObjectException(e.getMessage());
         }
     }
     
@@ -109,7 +267,7 @@ public class Book implements Serializable {
                "ISBN=" + ISBN +
                ", title='" + title + '\'' +
                ", author='" + author + '\'' +
-               ", status='" + status + '\'' +
+               ", status='" + getStatus() + '\'' +
                '}';
     }
 }
\ No newline at end of file
@@ -0,0 +1,40 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.stream.Stream;
+
+/**
+ * A read-only store of books that the library loads from on demand.
+ * Books read from a catalog are new instances each time; the library keeps
+ * the first one it reads so every caller sees the same object.
+ *
+ * @author Obakeng Phale
+ */
+public interface BookCatalog {
+
+    /**
+     * Get the number of books in the catalog
+     * @return Book count
+     */
+    long size();
+
+    /**
+     * Get the number of books in the catalog with a status
+     * @param status The status to count
+     * @return Book count
+     */
+    long count(BookStatus status);
+
+    /**
+     * Read a single book
+     * @param ISBN The ISBN to look up
+     * @return The book if the catalog holds it, null otherwise
+     */
+    Book read(long ISBN);
+
+    /**
+     * Read every book in the catalog, in file order. Books are decoded as
+     * the stream is consumed, so the whole catalog is never held at once.
+     * @return Stream of the books
+     */
+    Stream<Book> stream();
+}
@@ -0,0 +1,95 @@
+package com.obcodes.librarymanagementsystem.models;
+
+/**
+ * The states a book can be in. The code is the byte stored in a {@link Book}
+ * and written to record files; the label is what users see.
+ *
+ * @author Obakeng Phale
+ */
+public enum BookStatus {
+    AVAILABLE(0, "Available"),
+    BORROWED(1, "Borrowed"),
+    RESERVED(2, "Reserved"),
+    LOST(3, "Lost"),
+    IN_REPAIR(4, "In Repair");
+
+    private static final BookStatus[] BY_CODE = values();
+
+    private final byte code;
+    private final String label;
+
+    BookStatus(int code, String label) {
+        this.code = (byte) code;
+        this.label = label;
+    }
+
+    public byte getCode() {
+        return code;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    /**
+     * Check whether a book in this state may move to another. A book that
+     * comes back from being lost or repaired may go straight to Reserved
+     * when a member is waiting for it.
+     * @param next The state to move to
+     * @return true if the change is allowed
+     */
+    public boolean canChangeTo(BookStatus next) {
+        return switch (this) {
+            case AVAILABLE -> next != AVAILABLE;
+            case BORROWED -> next == AVAILABLE || next == RESERVED || next == LOST;
+            case RESERVED -> next == AVAILABLE || next == BORROWED;
+            case LOST -> next == AVAILABLE || next == RESERVED || next == IN_REPAIR;
+            case IN_REPAIR -> next == AVAILABLE || next == RESERVED || next == LOST;
+        };
+    }
+
+    /**
+     * Get the status stored under a code
+     * @param code The code
+     * @return The status
+     * @throws IllegalArgumentException if no status has that code
+     */
+    public static BookStatus fromCode(byte code) {
+        if (code < 0 || code >= BY_CODE.length) {
+            throw new IllegalArgumentException("Unknown book status code: " + code);
+        }
+        return BY_CODE[code];
+    }
+
+    /**
+     * Parse a status label, as written by earlier versions.
+     * Case, spaces and underscores are ignored, so "In Repair", "IN_REPAIR"
+     * and "inrepair" are all accepted.
+     * @param text The label
+     * @return The status
+     * @throws IllegalArgumentException if the text names no status
+     */
+    public static BookStatus parse(String text) {
+        if (text != null) {
+            String key = text.replace(" ", "").replace("_", "");
+            for (BookStatus status : BY_CODE) {
+                if (status.name().replace("_", "").equalsIgnoreCase(key)) {
+                    return status;
+                }
+            }
+        }
+        throw new IllegalArgumentException("Unknown book status: " + text);
+    }
+
+    /**
+     * Number of statuses, one past the highest code
+     */
+    public static int count() {
+        return BY_CODE.length;
+    }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,157 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.ArrayList;
+import java.util.concurrent.locks.StampedLock;
+import java.util.function.Consumer;
+
+/**
+ * A thread-safe map from long keys to objects, used for the library's books
+ * and members. Keys are split across segments, each a {@link LongObjectMap}
+ * guarded by a {@link StampedLock}. Lookups first read optimistically without
+ * locking or allocating, and only take the read lock if a write raced them.
+ *
+ * @author Obakeng Phale
+ */
+final class ConcurrentLongObjectMap<V> {
+    private static final int SEGMENT_BITS = 6;
+
+    private final Segment<V>[] segments;
+
+    @SuppressWarnings("unchecked")
+    ConcurrentLongObjectMap() {
+        segments = (Segment<V>[]) new Segment<?>[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment<>();
+        }
+    }
+
+    /**
+     * Get the value stored for a key
+     * @param key The key
+     * @return The value, or null if the key is absent
+     */
+    V get(long key) {
+        Segment<V> segment = segmentFor(key);
+        StampedLock lock = segment.lock;
+
+        long stamp = lock.tryOptimisticRead();
+        V value = segment.map.get(key);
+        if (lock.validate(stamp)) {
+            return value;
+        }
+
+        stamp = lock.readLock();
+        try {
+            return segment.map.get(key);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    boolean containsKey(long key) {
+        return get(key) != null;
+    }
+
+    /**
+     * Store a value for a key
+     * @param key The key
+     * @param value The value, not null
+     * @return The previous value, or null if the key was absent
+     */
+    V put(long key, V value) {
+        Segment<V> segment = segmentFor(key);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.map.put(key, value);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Store a value only if the key is absent
+     * @param key The key
+     * @param value The value, not null
+     * @return The existing value, or null if the value was stored
+     */
+    V putIfAbsent(long key, V value) {
+        Segment<V> segment = segmentFor(key);
+        long stamp = segment.lock.writeLock();
+        try {
+            V existing = segment.map.get(key);
+            if (existing == null) {
+                segment.map.put(key, value);
+            }
+            return existing;
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * Remove a key
+     * @param key The key
+     * @return The removed value, or null if the key was absent
+     */
+    V remove(long key) {
+        Segment<V> segment = segmentFor(key);
+        long stamp = segment.lock.writeLock();
+        try {
+            return segment.map.remove(key);
+        } finally {
+            segment.lock.unlockWrite(stamp);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                size += segment.map.size();
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Visit every value. Each segment is read-locked only while it is visited,
+     * so the action must not write to this map.
+     * @param action Called once for each value
+     */
+    void forEachValue(Consumer<? super V> action) {
+        for (Segment<V> segment : segments) {
+            long stamp = segment.lock.readLock();
+            try {
+                segment.map.forEachValue(action);
+            } finally {
+                segment.lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * Copy every value into a list
+     * @return Snapshot of the values
+     */
+    ArrayList<V> values() {
+        ArrayList<V> values = new ArrayList<>();
+        forEachValue(values::add);
+        return values;
+    }
+
+    private Segment<V> segmentFor(long key) {
+        return segments[LongHash.segment(key, SEGMENT_BITS)];
+    }
+
+    private static final class Segment<V> {
+        final StampedLock lock = new StampedLock();
+        final LongObjectMap<V> map = new LongObjectMap<>();
+    }
+}
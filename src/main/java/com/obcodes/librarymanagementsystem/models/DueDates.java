@@ -0,0 +1,156 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.Arrays;
+
+/**
+ * Books on loan ordered by due date: a sorted set of the due times in use,
+ * and for each due time the ISBNs due then. Finding the loans due in a
+ * range is a search for its start and then a walk over only the loans in
+ * it, so an overdue report costs the size of the report rather than the
+ * number of loans. Books due at the same time are read in ISBN order, so a
+ * read can stop part way through them and carry on from where it stopped.
+ *
+ * Not thread-safe: callers provide their own locking.
+ *
+ * @author Obakeng Phale
+ */
+final class DueDates {
+    private final LongSortedSet times = new LongSortedSet();
+    // Due time -> ISBNs due then in ascending order, usually just one
+    private final LongObjectMap<long[]> booksDue = new LongObjectMap<>();
+
+    /**
+     * Add a book
+     * @param ISBN The book's ISBN
+     * @param dueMillis When it is due
+     */
+    void add(long ISBN, long dueMillis) {
+        long[] isbns = booksDue.get(dueMillis);
+        if (isbns == null) {
+            isbns = new long[] {ISBN};
+            times.add(dueMillis);
+        } else {
+            int at = -Arrays.binarySearch(isbns, ISBN) - 1;
+            if (at < 0) { // Already present
+                return;
+            }
+            long[] more = new long[isbns.length + 1];
+            System.arraycopy(isbns, 0, more, 0, at);
+            more[at] = ISBN;
+            System.arraycopy(isbns, at, more, at + 1, isbns.length - at);
+            isbns = more;
+        }
+        booksDue.put(dueMillis, isbns);
+    }
+
+    /**
+     * Remove a book
+     * @param ISBN The book's ISBN
+     * @param dueMillis When it was due
+     */
+    void remove(long ISBN, long dueMillis) {
+        long[] isbns = booksDue.get(dueMillis);
+        if (isbns == null) {
+            return;
+        }
+        for (int i = 0; i < isbns.length; i++) {
+            if (isbns[i] == ISBN) {
+                if (isbns.length == 1) {
+                    booksDue.remove(dueMillis);
+                    times.remove(dueMillis);
+                } else {
+                    long[] remaining = new long[isbns.length - 1];
+                    System.arraycopy(isbns, 0, remaining, 0, i);
+                    System.arraycopy(isbns, i + 1, remaining, i, remaining.length - i);
+                    booksDue.put(dueMillis, remaining);
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * Copy the books due after a position and before a time, ordered by due
+     * time and then ISBN
+     * @param afterDue Due time of the position; books due earlier are skipped
+     * @param afterISBN ISBN of the position; books due at afterDue are only
+     *                  copied if their ISBN is greater
+     * @param toMillis Books due at or after this are not copied
+     * @param out Array to copy due time and ISBN pairs into, at most out.length / 2 of them
+     * @return Number of pairs copied
+     */
+    int dueAfter(long afterDue, long afterISBN, long toMillis, long[] out) {
+        int limit = out.length / 2;
+        int count = 0;
+        if (afterDue < toMillis) {
+            long[] rest = booksDue.get(afterDue);
+            if (rest != null) {
+                count = copy(afterDue, rest, afterISBN, out, count, limit);
+            }
+        }
+        long[] batch = new long[Math.min(limit, 64)];
+        long after = afterDue;
+        while (count < limit) {
+            int n = times.keysAfter(after, batch, 0, batch.length);
+            for (int i = 0; i < n && count < limit; i++) {
+                long due = batch[i];
+                if (due >= toMillis) {
+                    return count;
+                }
+                count = copy(due, booksDue.get(due), Long.MIN_VALUE, out, count, limit);
+            }
+            if (n < batch.length) {
+                break;
+            }
+            after = batch[n - 1];
+        }
+        return count;
+    }
+
+    /**
+     * Count the books due before a time
+     * @param toMillis Books due at or after this are not counted
+     * @return Number of books due before toMillis
+     */
+    int countBefore(long toMillis) {
+        long[] first = toMillis > Long.MIN_VALUE ? booksDue.get(Long.MIN_VALUE) : null;
+        int count = first == null ? 0 : first.length;
+        long[] batch = new long[64];
+        long after = Long.MIN_VALUE;
+        while (true) {
+            int n = times.keysAfter(after, batch, 0, batch.length);
+            for (int i = 0; i < n; i++) {
+                if (batch[i] >= toMillis) {
+                    return count;
+                }
+                count += booksDue.get(batch[i]).length;
+            }
+            if (n < batch.length) {
+                return count;
+            }
+            after = batch[n - 1];
+        }
+    }
+
+    /**
+     * Copy the books due at one time whose ISBN is greater than a given one, in ISBN order
+     */
+    private static int copy(long due, long[] isbns, long afterISBN, long[] out, int count, int limit) {
+        for (long ISBN : isbns) {
+            if (count == limit) {
+                break;
+            }
+            if (ISBN > afterISBN) {
+                out[count * 2] = due;
+                out[count * 2 + 1] = ISBN;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    void clear() {
+        times.clear();
+        booksDue.clear();
+    }
+}
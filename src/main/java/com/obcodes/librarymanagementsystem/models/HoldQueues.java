@@ -0,0 +1,475 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.function.Consumer;
+
+/**
+ * The members waiting for each book, in the order they asked.
+ *
+ * Each ISBN with holds has a queue kept as a ring of member IDs, so the
+ * next member is found and taken off the front without searching, and
+ * at most one ready hold: the member the book has been set aside for and
+ * when their pickup window ends. Queues are kept by ISBN in primitive maps
+ * split into segments with their own locks, like the {@link LoanTable}.
+ *
+ * A queue is dropped once it has no waiting members and no ready hold, so
+ * books nobody is waiting for cost nothing here.
+ *
+ * @author Obakeng Phale
+ */
+public class HoldQueues {
+    /** Member ID returned when no member is waiting or ready */
+    public static final long NO_HOLDER = 0;
+
+    /** Position of a member with no hold on a book */
+    public static final int NOT_HELD = -1;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final long[] NONE = new long[0];
+
+    private final Segment[] segments;
+
+    public HoldQueues() {
+        segments = new Segment[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Add a member to the back of a book's queue
+     * @param ISBN The book's ISBN
+     * @param memberID The member's ID
+     * @param placedMillis When the hold was placed
+     * @return The member's position, counting from 1, or {@link #NOT_HELD}
+     *         if they are already waiting or the book is ready for them
+     */
+    public int add(long ISBN, long memberID, long placedMillis) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            if (queue == null) {
+                queue = new Queue(ISBN);
+                segment.queues.put(ISBN, queue);
+            } else if (queue.readyMember == memberID || queue.indexOf(memberID) >= 0) {
+                return NOT_HELD;
+            }
+            queue.add(memberID, placedMillis);
+            return queue.size;
+        }
+    }
+
+    /**
+     * Take a member out of a book's queue. A ready hold is not affected.
+     * @param ISBN The book's ISBN
+     * @param memberID The member's ID
+     * @return true if the member was waiting
+     */
+    public boolean remove(long ISBN, long memberID) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            int index = queue == null ? -1 : queue.indexOf(memberID);
+            if (index < 0) {
+                return false;
+            }
+            queue.removeAt(index);
+            dropIfEmpty(segment, ISBN, queue);
+            return true;
+        }
+    }
+
+    /**
+     * Find where a member stands for a book
+     * @param ISBN The book's ISBN
+     * @param memberID The member's ID
+     * @return 0 if the book is ready for them, their place in the queue
+     *         counting from 1, or {@link #NOT_HELD}
+     */
+    public int position(long ISBN, long memberID) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            if (queue == null) {
+                return NOT_HELD;
+            }
+            if (queue.readyMember == memberID) {
+                return 0;
+            }
+            int index = queue.indexOf(memberID);
+            return index < 0 ? NOT_HELD : index + 1;
+        }
+    }
+
+    /**
+     * Get the first member waiting for a book without taking them out
+     * @param ISBN The book's ISBN
+     * @return The member's ID, or {@link #NO_HOLDER}
+     */
+    public long peek(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            return queue == null || queue.size == 0 ? NO_HOLDER : queue.members[queue.head];
+        }
+    }
+
+    /**
+     * Take the first member waiting for a book out of the queue
+     * @param ISBN The book's ISBN
+     * @return The member's ID, or {@link #NO_HOLDER}
+     */
+    public long poll(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            if (queue == null || queue.size == 0) {
+                return NO_HOLDER;
+            }
+            long memberID = queue.poll();
+            dropIfEmpty(segment, ISBN, queue);
+            return memberID;
+        }
+    }
+
+    /**
+     * Count the members waiting for a book, not counting a ready hold
+     * @param ISBN The book's ISBN
+     * @return Queue length
+     */
+    public int queueLength(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            return queue == null ? 0 : queue.size;
+        }
+    }
+
+    /**
+     * Set a book aside for a member
+     * @param ISBN The book's ISBN
+     * @param memberID The member's ID
+     * @param untilMillis When their pickup window ends
+     */
+    public void setReady(long ISBN, long memberID, long untilMillis) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            if (queue == null) {
+                queue = new Queue(ISBN);
+                segment.queues.put(ISBN, queue);
+            }
+            queue.readyMember = memberID;
+            queue.readyUntil = untilMillis;
+        }
+    }
+
+    /**
+     * Find who a book has been set aside for
+     * @param ISBN The book's ISBN
+     * @return The member's ID, or {@link #NO_HOLDER}
+     */
+    public long readyFor(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            return queue == null ? NO_HOLDER : queue.readyMember;
+        }
+    }
+
+    /**
+     * Find when the pickup window of a book's ready hold ends
+     * @param ISBN The book's ISBN
+     * @return The time in milliseconds, or 0 if the book is not set aside
+     */
+    public long readyUntil(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            return queue == null || queue.readyMember == NO_HOLDER ? 0 : queue.readyUntil;
+        }
+    }
+
+    /**
+     * End a book's ready hold if it is for a member
+     * @param ISBN The book's ISBN
+     * @param memberID The member's ID
+     * @return true if the book was set aside for them
+     */
+    public boolean clearReady(long ISBN, long memberID) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            if (queue == null || queue.readyMember != memberID || memberID == NO_HOLDER) {
+                return false;
+            }
+            queue.readyMember = NO_HOLDER;
+            queue.readyUntil = 0;
+            dropIfEmpty(segment, ISBN, queue);
+            return true;
+        }
+    }
+
+    /**
+     * Check whether anyone is waiting for a book or has it set aside
+     * @param ISBN The book's ISBN
+     * @return true if the book has holds
+     */
+    public boolean isHeld(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            return segment.queues.get(ISBN) != null;
+        }
+    }
+
+    /**
+     * Copy a book's holds
+     * @param ISBN The book's ISBN
+     * @return The holds, with no ready hold and no members if there are none
+     */
+    public State get(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            Queue queue = segment.queues.get(ISBN);
+            return queue == null ? new State(ISBN, NO_HOLDER, 0, NONE, NONE) : queue.state();
+        }
+    }
+
+    /**
+     * Replace a book's holds (used when rebuilding state)
+     * @param state The holds to keep; a state with no holds drops the book's queue
+     */
+    public void restore(State state) {
+        Segment segment = segmentFor(state.ISBN);
+        synchronized (segment) {
+            if (state.isEmpty()) {
+                segment.queues.remove(state.ISBN);
+                return;
+            }
+            Queue queue = new Queue(state.ISBN);
+            for (int i = 0; i < state.members.length; i++) {
+                queue.add(state.members[i], state.placedMillis[i]);
+            }
+            queue.readyMember = state.readyMember;
+            queue.readyUntil = state.readyMember == NO_HOLDER ? 0 : state.readyUntil;
+            segment.queues.put(state.ISBN, queue);
+        }
+    }
+
+    /**
+     * Drop every hold on a book
+     * @param ISBN The book's ISBN
+     */
+    public void clear(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            segment.queues.remove(ISBN);
+        }
+    }
+
+    /**
+     * Get the number of books with holds
+     * @return Book count
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.queues.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Visit the holds of every book that has any. Each segment is locked
+     * only while it is being read.
+     * @param action Called with a copy of each book's holds
+     */
+    public void forEach(Consumer<State> action) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.queues.forEachValue(queue -> action.accept(queue.state()));
+            }
+        }
+    }
+
+    /**
+     * Remove every hold
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.queues.clear();
+            }
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private Segment segmentFor(long ISBN) {
+        return segments[LongHash.segment(ISBN, SEGMENT_BITS)];
+    }
+
+    private static void dropIfEmpty(Segment segment, long ISBN, Queue queue) {
+        if (queue.size == 0 && queue.readyMember == NO_HOLDER) {
+            segment.queues.remove(ISBN);
+        }
+    }
+
+    private static final class Segment {
+        // ISBN -> holds for books whose ISBN falls in this segment
+        final LongObjectMap<Queue> queues = new LongObjectMap<>();
+    }
+
+    /**
+     * One book's waiting members as a ring whose capacity is a power of two
+     */
+    private static final class Queue {
+        final long ISBN;
+        long[] members = new long[4];
+        long[] placedMillis = new long[4];
+        int head;
+        int size;
+        long readyMember = NO_HOLDER;
+        long readyUntil;
+
+        Queue(long ISBN) {
+            this.ISBN = ISBN;
+        }
+
+        void add(long memberID, long placed) {
+            if (size == members.length) {
+                grow();
+            }
+            int at = (head + size) & (members.length - 1);
+            members[at] = memberID;
+            placedMillis[at] = placed;
+            size++;
+        }
+
+        long poll() {
+            long memberID = members[head];
+            head = (head + 1) & (members.length - 1);
+            size--;
+            return memberID;
+        }
+
+        int indexOf(long memberID) {
+            int mask = members.length - 1;
+            for (int i = 0; i < size; i++) {
+                if (members[(head + i) & mask] == memberID) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        void removeAt(int index) {
+            int mask = members.length - 1;
+            for (int i = index; i < size - 1; i++) {
+                int to = (head + i) & mask;
+                int from = (head + i + 1) & mask;
+                members[to] = members[from];
+                placedMillis[to] = placedMillis[from];
+            }
+            size--;
+        }
+
+        private void grow() {
+            long[] grownMembers = new long[members.length * 2];
+            long[] grownPlaced = new long[members.length * 2];
+            int mask = members.length - 1;
+            for (int i = 0; i < size; i++) {
+                grownMembers[i] = members[(head + i) & mask];
+                grownPlaced[i] = placedMillis[(head + i) & mask];
+            }
+            members = grownMembers;
+            placedMillis = grownPlaced;
+            head = 0;
+        }
+
+        State state() {
+            long[] waiting = new long[size];
+            long[] placed = new long[size];
+            int mask = members.length - 1;
+            for (int i = 0; i < size; i++) {
+                waiting[i] = members[(head + i) & mask];
+                placed[i] = placedMillis[(head + i) & mask];
+            }
+            return new State(ISBN, readyMember, readyUntil, waiting, placed);
+        }
+    }
+
+    /**
+     * A copy of one book's holds, for saving and rebuilding them
+     */
+    public static final class State {
+        private final long ISBN;
+        private final long readyMember;
+        private final long readyUntil;
+        private final long[] members;
+        private final long[] placedMillis;
+
+        /**
+         * @param ISBN The book's ISBN
+         * @param readyMember Member the book is set aside for, or {@link #NO_HOLDER}
+         * @param readyUntil When their pickup window ends
+         * @param members Waiting members, first in line first
+         * @param placedMillis When each waiting member placed their hold
+         */
+        public State(long ISBN, long readyMember, long readyUntil, long[] members, long[] placedMillis) {
+            if (members.length != placedMillis.length) {
+                throw new IllegalArgumentException("Each waiting member needs the time their hold was placed");
+            }
+            this.ISBN = ISBN;
+            this.readyMember = readyMember;
+            this.readyUntil = readyUntil;
+            this.members = members;
+            this.placedMillis = placedMillis;
+        }
+
+        public long getISBN() {
+            return ISBN;
+        }
+
+        public long getReadyMember() {
+            return readyMember;
+        }
+
+        public long getReadyUntil() {
+            return readyUntil;
+        }
+
+        /**
+         * Get the waiting members
+         * @return Copy of their IDs, first in line first
+         */
+        public long[] getMembers() {
+            return members.clone();
+        }
+
+        /**
+         * Get when each waiting member placed their hold
+         * @return Copy of the times, in the same order as {@link #getMembers()}
+         */
+        public long[] getPlacedMillis() {
+            return placedMillis.clone();
+        }
+
+        /**
+         * Get the number of waiting members
+         * @return Queue length
+         */
+        public int getQueueLength() {
+            return members.length;
+        }
+
+        /**
+         * Check whether the book has no holds
+         * @return true if nobody is waiting and the book is not set aside
+         */
+        public boolean isEmpty() {
+            return members.length == 0 && readyMember == NO_HOLDER;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.obcodes.librarymanagementsystem.models;
+
+/**
+ * ISBN parsing and check digits. ISBNs are held as 13-digit longs;
+ * ISBN-10s are converted to their 978-prefixed ISBN-13.
+ *
+ * @author Obakeng Phale
+ */
+public final class Isbn {
+    /** Returned by {@link #parse(String, boolean)} when the text is not an ISBN */
+    public static final long INVALID = -1;
+    /** Returned by {@link #parse(String, boolean)} when the digits are fine but the check digit is wrong */
+    public static final long BAD_CHECK_DIGIT = -2;
+
+    private Isbn() {
+    }
+
+    /**
+     * Parse an ISBN-10 or ISBN-13, ignoring hyphens and spaces
+     * @param text The ISBN as written
+     * @param verifyCheckDigit true to reject ISBNs whose check digit is wrong
+     * @return The ISBN-13, {@link #INVALID} or {@link #BAD_CHECK_DIGIT}
+     */
+    public static long parse(String text, boolean verifyCheckDigit) {
+        long value = 0;
+        int digits = 0;
+        boolean tenX = false;
+
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c >= '0' && c <= '9' && !tenX) {
+                if (++digits > 13) {
+                    return INVALID;
+                }
+                value = value * 10 + (c - '0');
+            } else if ((c == 'X' || c == 'x') && digits == 9 && !tenX) {
+                // ISBN-10 check digit of ten
+                tenX = true;
+                digits++;
+                value = value * 10 + 10;
+            } else if (c != '-' && c != ' ') {
+                return INVALID;
+            }
+        }
+
+        if (digits == 10) {
+            long body = tenX ? (value - 10) / 10 : value / 10;
+            int check = tenX ? 10 : (int) (value % 10);
+            if (verifyCheckDigit && check != checkDigit10(body)) {
+                return BAD_CHECK_DIGIT;
+            }
+            long prefixed = 978_000_000_000L + body;
+            return prefixed * 10 + checkDigit13(prefixed);
+        }
+        if (digits == 13) {
+            if (verifyCheckDigit && value % 10 != checkDigit13(value / 10)) {
+                return BAD_CHECK_DIGIT;
+            }
+            return value;
+        }
+        return INVALID;
+    }
+
+    /**
+     * Check digit for the first twelve digits of an ISBN-13
+     * @param first12 The ISBN without its check digit
+     * @return The check digit, 0 to 9
+     */
+    public static int checkDigit13(long first12) {
+        int sum = 0;
+        for (int i = 0; i < 12; i++) {
+            int digit = (int) (first12 % 10);
+            // Counting from the right, the digit next to the check digit has weight 3
+            sum += (i % 2 == 0) ? digit * 3 : digit;
+            first12 /= 10;
+        }
+        return (10 - sum % 10) % 10;
+    }
+
+    /**
+     * Check digit for the first nine digits of an ISBN-10
+     * @param first9 The ISBN without its check digit
+     * @return The check digit, 0 to 10 (written X)
+     */
+    public static int checkDigit10(long first9) {
+        int sum = 0;
+        for (int weight = 2; weight <= 10; weight++) {
+            sum += (int) (first9 % 10) * weight;
+            first9 /= 10;
+        }
+        return (11 - sum % 11) % 11;
+    }
+
+    /**
+     * Check whether a number is an ISBN-13 with a correct check digit
+     * @param ISBN The number
+     * @return true if valid
+     */
+    public static boolean isValid(long ISBN) {
+        return ISBN >= 1_000_000_000_000L && ISBN <= 9_999_999_999_999L
+                && ISBN % 10 == checkDigit13(ISBN / 10);
+    }
+}
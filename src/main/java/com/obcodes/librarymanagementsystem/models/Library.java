@@ -1,22 +1,160 @@
 package com.obcodes.librarymanagementsystem.models;
+import com.obcodes.librarymanagementsystem.events.EventType;
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.metrics.Counter;
+import com.obcodes.librarymanagementsystem.metrics.LatencyHistogram;
+import com.obcodes.librarymanagementsystem.metrics.Metrics;
 import java.io.*;
-import java.util.HashMap;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.IntConsumer;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
  * Library Management System - Central management class
+ * Safe for concurrent callers: books and members live in concurrent primitive
+ * long-keyed maps, and each change locks only the stripes of the book and
+ * member it touches. Checkouts lock only the member: the book's own
+ * compare-and-set status decides who gets a contested copy. Returns, and
+ * checkouts of a book set aside for the member, lock the book too.
+ * When both are needed the member stripe is always locked first.
+ * 
+ * Books can also come from an attached {@link BookCatalog}. Lookups by ISBN
+ * read single books from the catalog as they are needed; searches and
+ * listings load the rest of the catalog first. The search indexes are built
+ * when that happens rather than one book at a time. Saving streams the books
+ * in memory and then the rest of the catalog, so it loads nothing.
+ * 
+ * Statistics are counted as books and loans change rather than computed on
+ * request, so reading them costs the same whatever the size of the library.
+ * Listings are read a page at a time in ISBN or member ID order, from
+ * indexes kept sorted as books and members come and go. Books are also
+ * indexed by status, so listing the available or borrowed books only
+ * visits those books.
+ * 
+ * Members can queue for a book that is out. When it comes back it is
+ * Reserved for the first member in the queue, who has a pickup window to
+ * borrow it before it passes to the next. Pickup deadlines are kept on a
+ * timer wheel, so finding the holds that have run out does not scan them.
+ * Hold changes lock the book's stripe, after the member's when both are needed.
+ * 
+ * Every loan is due back a loan period after it was borrowed. The loan
+ * table keeps loans in due date order, so the overdue loans and those due
+ * soon are read without visiting any other loan.
  * @author Obakeng Phale
  */
 public class Library implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final String LIBRARY_DATA_FILE = "data/library.dat";
+    private static final int LOCK_STRIPES = 1024;
+    // Keys read per step when filling a page or streaming
+    private static final int PAGE_BATCH = 256;
     
-    private HashMap<Long, Book> books;
-    private HashMap<Long, Member> members;
+    // Checkouts and returns as the library sees them: locking, the status change
+    // and the onSuccess callback that records it
+    private static final LatencyHistogram CHECKOUT_LATENCY =
+        Metrics.histogram("library_checkout_seconds", "Time to check out a book, including recording the change");
+    private static final Counter CHECKOUTS_REFUSED =
+        Metrics.counter("library_checkouts_refused_total", "Checkouts refused or lost to another member");
+    private static final LatencyHistogram RETURN_LATENCY =
+        Metrics.histogram("library_return_seconds", "Time to return a book, including recording the change");
+    private static final Counter RETURNS_REFUSED =
+        Metrics.counter("library_returns_refused_total", "Returns refused");
+    private static final Counter HOLDS_PLACED =
+        Metrics.counter("library_holds_placed_total", "Holds placed");
+    private static final Counter HOLDS_EXPIRED =
+        Metrics.counter("library_holds_expired_total", "Books set aside and not collected in time");
+    
+    /** How long a member may keep a book */
+    public static final long DEFAULT_LOAN_PERIOD_MILLIS = 14L * 24 * 60 * 60 * 1000;
+    
+    /** How long a returned book is set aside for the next member in its queue */
+    public static final long DEFAULT_HOLD_PICKUP_MILLIS = 3L * 24 * 60 * 60 * 1000;
+    /** Resolution of pickup deadlines */
+    public static final long HOLD_TIMER_TICK_MILLIS = 1000;
+    private static final int HOLD_TIMER_SLOTS = 4096;
+    
+    // Serialized form is unchanged from when books and members were ConcurrentHashMaps
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("books", ConcurrentHashMap.class),
+        new ObjectStreamField("members", ConcurrentHashMap.class)
+    };
+    
+    private transient ConcurrentLongObjectMap<Book> books;
+    private transient ConcurrentLongObjectMap<Member> members;
+    
+    // Search indexes, rebuilt from books after deserialization
+    private transient TokenIndex titleIndex;
+    private transient TokenIndex authorIndex;
+    
+    // ISBNs and member IDs in order, for paged listings
+    private transient OrderedKeyIndex bookOrder;
+    private transient OrderedKeyIndex memberOrder;
+    
+    // ISBNs in order by status, kept up to date by the books' status changes
+    private transient StatusIndex statusIndex;
+    
+    // Who has borrowed what, rebuilt from the members after deserialization
+    private transient LoanTable loans;
+    private transient volatile long loanPeriodMillis;
+    
+    // Per-key locks for check-then-act operations
+    private transient LockStripes bookLocks;
+    private transient LockStripes memberLocks;
+    
+    // Catalog that books not yet in the books map are read from, null once fully loaded
+    private transient volatile BookCatalog catalog;
+    private transient Set<Long> catalogRemovals;
+    private transient AtomicLong catalogPending;
+    
+    // Books by status code, including those still in the catalog
+    private transient LongAdder[] statusCounts;
+    
+    // Members waiting for books, and when each book set aside stops waiting
+    private transient HoldQueues holds;
+    private transient TimerWheel holdTimers;
+    private transient volatile long holdPickupMillis;
     
     public Library() {
-        books = new HashMap<>();
-        members = new HashMap<>();
+        initTransientState();
+    }
+    
+    private void initTransientState() {
+        books = new ConcurrentLongObjectMap<>();
+        members = new ConcurrentLongObjectMap<>();
+        titleIndex = new TokenIndex();
+        authorIndex = new TokenIndex();
+        bookOrder = new OrderedKeyIndex();
+        memberOrder = new OrderedKeyIndex();
+        statusIndex = new StatusIndex();
+        loans = new LoanTable();
+        loanPeriodMillis = DEFAULT_LOAN_PERIOD_MILLIS;
+        bookLocks = new LockStripes(LOCK_STRIPES);
+        memberLocks = new LockStripes(LOCK_STRIPES);
+        catalogRemovals = ConcurrentHashMap.newKeySet();
+        catalogPending = new AtomicLong();
+        statusCounts = new LongAdder[BookStatus.count()];
+        for (int i = 0; i < statusCounts.length; i++) {
+            statusCounts[i] = new LongAdder();
+        }
+        holds = new HoldQueues();
+        holdTimers = new TimerWheel(HOLD_TIMER_SLOTS, HOLD_TIMER_TICK_MILLIS, System.currentTimeMillis());
+        holdPickupMillis = DEFAULT_HOLD_PICKUP_MILLIS;
     }
     
     // ==================== BOOK MANAGEMENT ====================
@@ -27,34 +165,124 @@ public class Library implements Serializable {
      * @return true if added successfully, false if ISBN already exists
      */
     public boolean addBook(Book book) {
+        return addBook(book, null);
+    }
+    
+    /**
+     * Add a new book to the library
+     * @param book The book to add
+     * @param onSuccess Run while the book is still locked if it was added, may be null
+     * @return true if added successfully, false if ISBN already exists
+     */
+    public boolean addBook(Book book, Runnable onSuccess) {
         if (book == null) {
-            System.out.println("Cannot add null book");
+            Events.warn("Cannot add null book");
             return false;
         }
         
-        if (books.containsKey(book.getISBN())) {
-            System.out.println("Book with ISBN " + book.getISBN() + " already exists");
-            return false;
+        ReentrantLock lock = bookLocks.lockFor(book.getISBN());
+        lock.lock();
+        try {
+            if (findBook(book.getISBN()) != null) {
+                Events.emit(EventType.BOOK_EXISTS, book.getISBN());
+                return false;
+            }
+            
+            attach(book, false);
+            runIfPresent(onSuccess);
+        } finally {
+            lock.unlock();
         }
-        
-        books.put(book.getISBN(), book);
-        System.out.println("Book added: " + book.getTitle());
+        Events.emit(EventType.BOOK_ADDED, book.getISBN(), book.getTitle());
         return true;
     }
     
+    /**
+     * Add a batch of books, skipping any whose ISBN is already in the library.
+     * Nothing is printed per book, so this is the way to load large imports.
+     * Books are added in list order: of two with the same ISBN the first is kept.
+     * @param batch The books to add
+     * @param duplicate Called with the position in the batch of each book skipped
+     *                  because its ISBN exists, may be null
+     * @return Number of books added
+     */
+    public int addBooks(List<Book> batch, IntConsumer duplicate) {
+        int added = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            Book book = batch.get(i);
+            ReentrantLock lock = bookLocks.lockFor(book.getISBN());
+            lock.lock();
+            try {
+                if (findBook(book.getISBN()) == null) {
+                    attach(book, false);
+                    added++;
+                    continue;
+                }
+            } finally {
+                lock.unlock();
+            }
+            if (duplicate != null) {
+                duplicate.accept(i);
+            }
+        }
+        return added;
+    }
+    
     /**
      * Remove a book from the library
      * @param ISBN The ISBN of the book to remove
      * @return true if removed successfully, false otherwise
      */
     public boolean removeBook(long ISBN) {
-        Book book = books.remove(ISBN);
-        if (book != null) {
-            System.out.println("Book removed: " + book.getTitle());
-            return true;
+        return removeBook(ISBN, null);
+    }
+    
+    /**
+     * Remove a book from the library. Borrowed books cannot be removed.
+     * @param ISBN The ISBN of the book to remove
+     * @param onSuccess Run while the book is still locked if it was removed, may be null
+     * @return true if removed successfully, false otherwise
+     */
+    public boolean removeBook(long ISBN, Runnable onSuccess) {
+        Book book;
+        ReentrantLock lock = bookLocks.lockFor(ISBN);
+        lock.lock();
+        try {
+            book = findBook(ISBN);
+            if (book == null) {
+                Events.emit(EventType.BOOK_NOT_FOUND, ISBN);
+                return false;
+            }
+            
+            if (book.getStatus() == BookStatus.BORROWED) {
+                Events.emit(EventType.BOOK_ON_LOAN, ISBN, book.getTitle());
+                return false;
+            }
+            
+            books.remove(ISBN);
+            if (book.getStatus() == BookStatus.BORROWED) {
+                // A checkout won the book before it left the map
+                books.put(ISBN, book);
+                Events.emit(EventType.BOOK_ON_LOAN, ISBN, book.getTitle());
+                return false;
+            }
+            if (catalog != null) {
+                // Keep the catalog's copy from being read back in
+                catalogRemovals.add(ISBN);
+            }
+            BookStatus status = book.detach();
+            statusCounts[status.getCode()].decrement();
+            statusIndex.update(book, status);
+            titleIndex.remove(ISBN);
+            authorIndex.remove(ISBN);
+            bookOrder.remove(ISBN);
+            holds.clear(ISBN);
+            runIfPresent(onSuccess);
+        } finally {
+            lock.unlock();
         }
-        System.out.println("Book with ISBN " + ISBN + " not found");
-        return false;
+        Events.emit(EventType.BOOK_REMOVED, ISBN, book.getTitle());
+        return true;
     }
     
     /**
@@ -63,7 +291,182 @@ public class Library implements Serializable {
      * @return The book if found, null otherwise
      */
     public Book findBook(long ISBN) {
-        return books.get(ISBN);
+        Book book = books.get(ISBN);
+        if (book != null || catalog == null) {
+            return book;
+        }
+        return readFromCatalog(ISBN);
+    }
+    
+    /**
+     * Read a book from the catalog and keep it
+     * @param ISBN The ISBN to read
+     * @return The book if found, null otherwise
+     */
+    private Book readFromCatalog(long ISBN) {
+        ReentrantLock lock = bookLocks.lockFor(ISBN);
+        lock.lock();
+        try {
+            BookCatalog source = catalog;
+            Book book = books.get(ISBN);
+            if (book != null || source == null || catalogRemovals.contains(ISBN)) {
+                return book;
+            }
+            
+            book = source.read(ISBN);
+            if (book != null) {
+                attach(book, true);
+                catalogPending.decrementAndGet();
+            }
+            return book;
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * Attach a catalog to read books from on demand.
+     * Only books the library does not hold are read from it.
+     * @param catalog The catalog
+     * @throws IllegalStateException if the library already holds books or a catalog
+     */
+    public void attachCatalog(BookCatalog catalog) {
+        synchronized (catalogRemovals) {
+            if (!books.isEmpty() || this.catalog != null) {
+                throw new IllegalStateException("A catalog can only be attached to an empty library");
+            }
+            catalogPending.set(catalog.size());
+            for (BookStatus status : BookStatus.values()) {
+                statusCounts[status.getCode()].add(catalog.count(status));
+            }
+            this.catalog = catalog;
+        }
+    }
+    
+    /**
+     * Read every book still in the catalog and detach it.
+     * Afterwards the library holds all of its books in memory.
+     */
+    public void loadCatalog() {
+        if (catalog == null) {
+            return;
+        }
+        
+        synchronized (catalogRemovals) {
+            BookCatalog source = catalog;
+            if (source == null) {
+                return;
+            }
+            
+            source.stream().forEach(book -> {
+                ReentrantLock lock = bookLocks.lockFor(book.getISBN());
+                lock.lock();
+                try {
+                    if (!books.containsKey(book.getISBN()) 
+                            && !catalogRemovals.contains(book.getISBN())) {
+                        attach(book, true);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            });
+            
+            catalog = null;
+            catalogRemovals.clear();
+            catalogPending.set(0);
+            
+            for (Book book : books.values()) {
+                ReentrantLock lock = bookLocks.lockFor(book.getISBN());
+                lock.lock();
+                try {
+                    if (books.get(book.getISBN()) == book) {
+                        index(book);
+                    }
+                } finally {
+                    lock.unlock();
+                }
+            }
+        }
+    }
+    
+    /**
+     * Stream every book for saving, without loading the catalog or taking
+     * any book's lock: first the books in memory, then the catalog's copies
+     * of those still only in the catalog, decoded as the stream is read.
+     * Each ISBN appears once. A book added or removed while the stream is
+     * read may or may not be included, as with any snapshot taken while the
+     * library is in use.
+     * @return Stream of books
+     */
+    public Stream<Book> snapshotBooks() {
+        BookCatalog source = catalog;
+        ArrayList<Book> inMemory = books.values();
+        if (source == null) {
+            return inMemory.stream();
+        }
+        // The catalog's copies of these are stale or removed
+        LongLongMap seen = new LongLongMap(0);
+        for (Book book : inMemory) {
+            seen.put(book.getISBN(), 1);
+        }
+        return Stream.concat(inMemory.stream(), source.stream()
+                .filter(book -> seen.get(book.getISBN()) == 0)
+                .map(book -> currentCopy(source, book))
+                .filter(book -> book != null));
+    }
+    
+    /**
+     * The book to save for one the catalog holds: the library's copy if it
+     * has been read in since the snapshot started, otherwise the catalog's,
+     * unless the book has been removed
+     */
+    private Book currentCopy(BookCatalog source, Book stored) {
+        Book live = books.get(stored.getISBN());
+        if (live != null) {
+            return live;
+        }
+        if (catalogRemovals.contains(stored.getISBN())) {
+            return null;
+        }
+        // Once the catalog is detached every book it held is in the map or was removed
+        return catalog == source ? stored : null;
+    }
+    
+    /**
+     * Put a book in the map, and in the search indexes unless a catalog is
+     * still attached. The caller holds the book's stripe.
+     * @param book The book to attach
+     * @param fromCatalog true if the book was read from the catalog, whose
+     *                    totals already include its status
+     */
+    private void attach(Book book, boolean fromCatalog) {
+        BookStatus status = book.attachTo(this);
+        if (!fromCatalog) {
+            statusCounts[status.getCode()].increment();
+        }
+        books.put(book.getISBN(), book);
+        if (catalog == null) {
+            index(book);
+        }
+    }
+    
+    private void index(Book book) {
+        titleIndex.put(book.getISBN(), book.getTitle());
+        authorIndex.put(book.getISBN(), book.getAuthor());
+        bookOrder.add(book.getISBN());
+        statusIndex.update(book, null);
+    }
+    
+    /**
+     * Move a book between the status counts and status index after its status has changed
+     * @param book The book
+     * @param previous The old status
+     * @param current The new status
+     */
+    void statusChanged(Book book, BookStatus previous, BookStatus current) {
+        statusCounts[previous.getCode()].decrement();
+        statusCounts[current.getCode()].increment();
+        statusIndex.update(book, previous);
     }
     
     /**
@@ -72,16 +475,8 @@ public class Library implements Serializable {
      * @return List of matching books
      */
     public ArrayList<Book> searchBooksByTitle(String title) {
-        ArrayList<Book> results = new ArrayList<>();
-        String searchTerm = title.toLowerCase();
-        
-        for (Book book : books.values()) {
-            if (book.getTitle().toLowerCase().contains(searchTerm)) {
-                results.add(book);
-            }
-        }
-        
-        return results;
+        loadCatalog();
+        return resolveBooks(titleIndex.search(title));
     }
     
     /**
@@ -90,24 +485,53 @@ public class Library implements Serializable {
      * @return List of matching books
      */
     public ArrayList<Book> searchBooksByAuthor(String author) {
-        ArrayList<Book> results = new ArrayList<>();
-        String searchTerm = author.toLowerCase();
-        
-        for (Book book : books.values()) {
-            if (book.getAuthor().toLowerCase().contains(searchTerm)) {
+        loadCatalog();
+        return resolveBooks(authorIndex.search(author));
+    }
+    
+    /**
+     * Look up the books for a list of ISBNs returned by an index
+     * @param isbns ISBNs to resolve
+     * @return List of books
+     */
+    private ArrayList<Book> resolveBooks(ArrayList<Long> isbns) {
+        ArrayList<Book> results = new ArrayList<>(isbns.size());
+        for (Long ISBN : isbns) {
+            Book book = books.get(ISBN);
+            if (book != null) {
                 results.add(book);
             }
         }
-        
         return results;
     }
     
+    /**
+     * Update the title index after a book's title has changed
+     * @param book The book whose title changed
+     */
+    void reindexTitle(Book book) {
+        if (catalog == null && books.get(book.getISBN()) == book) {
+            titleIndex.put(book.getISBN(), book.getTitle());
+        }
+    }
+    
+    /**
+     * Update the author index after a book's author has changed
+     * @param book The book whose author changed
+     */
+    void reindexAuthor(Book book) {
+        if (catalog == null && books.get(book.getISBN()) == book) {
+            authorIndex.put(book.getISBN(), book.getAuthor());
+        }
+    }
+    
     /**
      * Get all books in the library
      * @return ArrayList of all books
      */
     public ArrayList<Book> getAllBooks() {
-        return new ArrayList<>(books.values());
+        loadCatalog();
+        return books.values();
     }
     
     /**
@@ -115,13 +539,41 @@ public class Library implements Serializable {
      * @return ArrayList of available books
      */
     public ArrayList<Book> getAvailableBooks() {
-        ArrayList<Book> available = new ArrayList<>();
-        for (Book book : books.values()) {
-            if ("Available".equalsIgnoreCase(book.getStatus())) {
-                available.add(book);
-            }
+        return streamBooks(BookStatus.AVAILABLE).collect(Collectors.toCollection(ArrayList::new));
+    }
+    
+    /**
+     * Get one page of books in ISBN order. Start with {@link Page#START} and
+     * pass each page's {@link Page#getNextCursor()} to get the next one.
+     * @param afterISBN Only books with a greater ISBN are returned
+     * @param limit Maximum number of books on the page
+     * @param status Only books with this status are returned, or null for all books
+     * @return The page
+     */
+    public Page<Book> getBooksPage(long afterISBN, int limit, BookStatus status) {
+        loadCatalog();
+        if (status == null) {
+            return page(bookOrder::keysAfter, books, afterISBN, limit, null);
+        }
+        // The status may change between reading the index and reading the book
+        return page((after, out) -> statusIndex.keysAfter(status, after, out), books,
+                afterISBN, limit, book -> book.getStatus() == status);
+    }
+    
+    /**
+     * Stream books in ISBN order, reading them a page at a time so memory use
+     * does not grow with the library. Books added or removed while the stream
+     * is read may or may not be included.
+     * @param status Only books with this status are streamed, or null for all books
+     * @return Stream of books
+     */
+    public Stream<Book> streamBooks(BookStatus status) {
+        loadCatalog();
+        if (status == null) {
+            return stream(bookOrder::keysAfter, books, null);
         }
-        return available;
+        return stream((after, out) -> statusIndex.keysAfter(status, after, out), books,
+                book -> book.getStatus() == status);
     }
     
     // ==================== MEMBER MANAGEMENT ====================
@@ -132,43 +584,120 @@ public class Library implements Serializable {
      * @return true if added successfully, false if member ID already exists
      */
     public boolean addMember(Member member) {
+        return addMember(member, null);
+    }
+    
+    /**
+     * Add a new member to the library
+     * @param member The member to add
+     * @param onSuccess Run while the member is still locked if it was added, may be null
+     * @return true if added successfully, false if member ID already exists
+     */
+    public boolean addMember(Member member, Runnable onSuccess) {
         if (member == null) {
-            System.out.println("Cannot add null member");
+            Events.warn("Cannot add null member");
             return false;
         }
         
-        if (members.containsKey(member.getMemberID())) {
-            System.out.println("Member with ID " + member.getMemberID() + " already exists");
-            return false;
+        ReentrantLock lock = memberLocks.lockFor(member.getMemberID());
+        lock.lock();
+        try {
+            if (members.putIfAbsent(member.getMemberID(), member) != null) {
+                Events.emit(EventType.MEMBER_EXISTS, member.getMemberID());
+                return false;
+            }
+            member.setLibrary(this);
+            memberOrder.add(member.getMemberID());
+            runIfPresent(onSuccess);
+        } finally {
+            lock.unlock();
         }
-        
-        members.put(member.getMemberID(), member);
-        System.out.println("Member added: " + member.getName());
+        Events.emit(EventType.MEMBER_ADDED, member.getMemberID(), member.getName());
         return true;
     }
     
+    /**
+     * Add many members at once, e.g. when a library is loaded. The new IDs go
+     * into the ordered ID index in one step first; a page skips IDs that are
+     * not in the map yet, so a member is never in the map without its ID.
+     * Members are then added in parallel on the common fork-join pool, each
+     * under its member lock and attached to the library before it can be
+     * found, without printing anything. A member whose ID is already present
+     * is skipped.
+     * @param batch The members to add
+     * @return Number of members added
+     */
+    public int addMembers(List<Member> batch) {
+        long[] ids = batch.parallelStream()
+                .mapToLong(Member::getMemberID)
+                .filter(memberID -> members.get(memberID) == null)
+                .sorted()
+                .distinct()
+                .toArray();
+        memberOrder.addAll(ids, ids.length);
+        
+        LongAdder added = new LongAdder();
+        batch.parallelStream().forEach(member -> {
+            ReentrantLock lock = memberLocks.lockFor(member.getMemberID());
+            lock.lock();
+            try {
+                if (members.get(member.getMemberID()) == null) {
+                    member.setLibrary(this);
+                    members.put(member.getMemberID(), member);
+                    // Only missing if a member with this ID was removed since the IDs were read
+                    if (!memberOrder.contains(member.getMemberID())) {
+                        memberOrder.add(member.getMemberID());
+                    }
+                    added.increment();
+                }
+            } finally {
+                lock.unlock();
+            }
+        });
+        return added.intValue();
+    }
+    
     /**
      * Remove a member from the library
      * @param memberID The ID of the member to remove
      * @return true if removed successfully, false otherwise
      */
     public boolean removeMember(long memberID) {
-        Member member = members.get(memberID);
-        
-        if (member == null) {
-            System.out.println("Member with ID " + memberID + " not found");
-            return false;
-        }
-        
-        // Check if member has borrowed books
-        if (!member.getBorrowedBooks().isEmpty()) {
-            System.out.println("Cannot remove member. They have " + 
-                             member.getBorrowedBooksCount() + " borrowed book(s)");
-            return false;
+        return removeMember(memberID, null);
+    }
+    
+    /**
+     * Remove a member from the library
+     * @param memberID The ID of the member to remove
+     * @param onSuccess Run while the member is still locked if it was removed, may be null
+     * @return true if removed successfully, false otherwise
+     */
+    public boolean removeMember(long memberID, Runnable onSuccess) {
+        Member member;
+        ReentrantLock lock = memberLocks.lockFor(memberID);
+        lock.lock();
+        try {
+            member = members.get(memberID);
+            
+            if (member == null) {
+                Events.emit(EventType.MEMBER_NOT_FOUND, memberID);
+                return false;
+            }
+            
+            // Check if member has borrowed books
+            if (member.getBorrowedBooksCount() > 0) {
+                Events.emit(EventType.MEMBER_HAS_LOANS, memberID, member.getBorrowedBooksCount());
+                return false;
+            }
+            
+            members.remove(memberID);
+            member.setLibrary(null);
+            memberOrder.remove(memberID);
+            runIfPresent(onSuccess);
+        } finally {
+            lock.unlock();
         }
-        
-        members.remove(memberID);
-        System.out.println("Member removed: " + member.getName());
+        Events.emit(EventType.MEMBER_REMOVED, memberID, member.getName());
         return true;
     }
     
@@ -204,7 +733,163 @@ public class Library implements Serializable {
      * @return ArrayList of all members
      */
     public ArrayList<Member> getAllMembers() {
-        return new ArrayList<>(members.values());
+        return members.values();
+    }
+    
+    /**
+     * Get one page of members in ID order. Start with {@link Page#START} and
+     * pass each page's {@link Page#getNextCursor()} to get the next one.
+     * @param afterID Only members with a greater ID are returned
+     * @param limit Maximum number of members on the page
+     * @return The page
+     */
+    public Page<Member> getMembersPage(long afterID, int limit) {
+        return page(memberOrder::keysAfter, members, afterID, limit, null);
+    }
+    
+    /**
+     * Stream members in ID order, reading them a page at a time
+     * @return Stream of members
+     */
+    public Stream<Member> streamMembers() {
+        return stream(memberOrder::keysAfter, members, null);
+    }
+    
+    /**
+     * Read the values after a key in key order until a page is full
+     * @param keys Source of the map's keys in order
+     * @param map The values
+     * @param after Only values with a greater key are returned
+     * @param limit Maximum number of values on the page
+     * @param filter Values to include, or null for all
+     * @return The page
+     */
+    private static <T> Page<T> page(KeySource keys, ConcurrentLongObjectMap<T> map,
+                                    long after, int limit, Predicate<T> filter) {
+        if (limit < 1) {
+            throw new IllegalArgumentException("Page size must be at least 1");
+        }
+        
+        ArrayList<T> items = new ArrayList<>(Math.min(limit, PAGE_BATCH));
+        long[] batch = new long[Math.min(limit + 1, PAGE_BATCH)];
+        long cursor = after;
+        long last = after;
+        int n;
+        while ((n = keys.keysAfter(cursor, batch)) > 0) {
+            for (int i = 0; i < n; i++) {
+                cursor = batch[i];
+                // Removed since its key was read
+                T value = map.get(cursor);
+                if (value == null || (filter != null && !filter.test(value))) {
+                    continue;
+                }
+                if (items.size() == limit) {
+                    return new Page<>(items, last, true);
+                }
+                items.add(value);
+                last = cursor;
+            }
+        }
+        return new Page<>(items, last, false);
+    }
+    
+    private static <T> Stream<T> stream(KeySource keys, ConcurrentLongObjectMap<T> map,
+                                        Predicate<T> filter) {
+        Iterator<T> pages = new Iterator<>() {
+            private Page<T> page;
+            private int next;
+            
+            @Override
+            public boolean hasNext() {
+                if (page == null || (next == page.getItems().size() && page.hasMore())) {
+                    page = page(keys, map, page == null ? Page.START : page.getNextCursor(),
+                            PAGE_BATCH, filter);
+                    next = 0;
+                }
+                return next < page.getItems().size();
+            }
+            
+            @Override
+            public T next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return page.getItems().get(next++);
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(pages,
+                Spliterator.ORDERED | Spliterator.DISTINCT | Spliterator.NONNULL), false);
+    }
+    
+    /**
+     * Keys of a map in ascending order, read a batch at a time
+     */
+    private interface KeySource {
+        /**
+         * Copy the keys greater than a key, in ascending order
+         * @param after Only keys greater than this are copied
+         * @param out Array to copy into, at most out.length keys are copied
+         * @return Number of keys copied
+         */
+        int keysAfter(long after, long[] out);
+    }
+    
+    /**
+     * Get the table of current loans
+     * @return The loan table
+     */
+    public LoanTable getLoans() {
+        return loans;
+    }
+    
+    /**
+     * Get how long a member may keep a book
+     * @return The loan period in milliseconds
+     */
+    public long getLoanPeriodMillis() {
+        return loanPeriodMillis;
+    }
+    
+    /**
+     * Set how long a member may keep a book. Books already on loan keep the
+     * due date they were given.
+     * @param millis The loan period in milliseconds
+     */
+    public void setLoanPeriodMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Loan period must be positive");
+        }
+        loanPeriodMillis = millis;
+    }
+    
+    /**
+     * Get the loans that are overdue, most overdue first
+     * @param nowMillis The current time
+     * @param limit Maximum number of loans to return
+     * @return The loans due before nowMillis
+     */
+    public List<LoanTable.DueLoan> getOverdueLoans(long nowMillis, int limit) {
+        return loans.dueBetween(Long.MIN_VALUE, nowMillis, limit);
+    }
+    
+    /**
+     * Count the loans that are overdue, without listing them
+     * @param nowMillis The current time
+     * @return Number of loans due before nowMillis
+     */
+    public int countOverdueLoans(long nowMillis) {
+        return loans.countOverdue(nowMillis);
+    }
+    
+    /**
+     * Get the loans due in a time range, earliest first
+     * @param fromMillis Start of the range, inclusive
+     * @param toMillis End of the range, exclusive
+     * @param limit Maximum number of loans to return
+     * @return The loans
+     */
+    public List<LoanTable.DueLoan> getLoansDueBetween(long fromMillis, long toMillis, int limit) {
+        return loans.dueBetween(fromMillis, toMillis, limit);
     }
     
     // ==================== CHECKOUT/RETURN OPERATIONS ====================
@@ -216,41 +901,124 @@ public class Library implements Serializable {
      * @return true if checkout successful, false otherwise
      */
     public boolean checkoutBook(long memberID, long ISBN) {
+        return checkoutBook(memberID, ISBN, null);
+    }
+    
+    /**
+     * Checkout a book to a member
+     * @param memberID The member's ID
+     * @param ISBN The book's ISBN
+     * @param onSuccess Run while the member and book are still locked if the
+     *                  checkout succeeded, may be null
+     * @return true if checkout successful, false otherwise
+     */
+    public boolean checkoutBook(long memberID, long ISBN, Runnable onSuccess) {
+        long start = System.nanoTime();
+        boolean done = false;
+        try {
+            done = tryCheckout(memberID, ISBN, onSuccess);
+            return done;
+        } finally {
+            CHECKOUT_LATENCY.recordSince(start);
+            if (!done) {
+                CHECKOUTS_REFUSED.increment();
+            }
+        }
+    }
+    
+    private boolean tryCheckout(long memberID, long ISBN, Runnable onSuccess) {
         // Find member
         Member member = findMember(memberID);
         if (member == null) {
-            System.out.println("Error: Member with ID " + memberID + " not found");
+            Events.emit(EventType.MEMBER_NOT_FOUND, memberID);
             return false;
         }
         
         // Find book
         Book book = findBook(ISBN);
         if (book == null) {
-            System.out.println("Error: Book with ISBN " + ISBN + " not found");
-            return false;
-        }
-        
-        // Check if book is available
-        if (!"Available".equalsIgnoreCase(book.getStatus())) {
-            System.out.println("Error: Book '" + book.getTitle() + "' is not available");
+            Events.emit(EventType.BOOK_NOT_FOUND, ISBN);
             return false;
         }
         
-        // Check if member can borrow more books
-        if (!member.canBorrowMore()) {
-            System.out.println("Error: " + member.getName() + 
-                             " has reached the maximum borrowing limit");
-            return false;
+        ReentrantLock memberLock = memberLocks.lockFor(memberID);
+        memberLock.lock();
+        try {
+            // The member may have been removed while we were waiting for the lock
+            if (members.get(memberID) != member) {
+                Events.emit(EventType.CHECKOUT_CONFLICT, memberID, ISBN);
+                return false;
+            }
+            
+            // Check if book is available, or set aside for this member
+            BookStatus status = book.getStatus();
+            long heldFor = status == BookStatus.RESERVED ? holds.readyFor(ISBN) : HoldQueues.NO_HOLDER;
+            if (status != BookStatus.AVAILABLE && heldFor != memberID) {
+                Events.emit(heldFor == HoldQueues.NO_HOLDER ? EventType.BOOK_UNAVAILABLE : EventType.BOOK_ON_HOLD,
+                        ISBN, book.getTitle());
+                return false;
+            }
+            
+            // Check if member can borrow more books
+            if (!member.canBorrowMore()) {
+                Events.emit(EventType.LOAN_LIMIT_REACHED, memberID, member.getName(), Member.MAX_BORROWED_BOOKS);
+                return false;
+            }
+            
+            if (heldFor == memberID) {
+                if (!collectHold(member, book, onSuccess)) {
+                    return false;
+                }
+            } else {
+                // Perform checkout; the book's status decides any race for it
+                if (!member.borrowBook(book)) {
+                    return false;
+                }
+                
+                // removeBook checks the status after taking the book out of the map,
+                // so one of the two always sees the other
+                if (books.get(ISBN) != book) {
+                    member.returnBook(book);
+                    Events.emit(EventType.CHECKOUT_CONFLICT, memberID, ISBN);
+                    return false;
+                }
+                runIfPresent(onSuccess);
+            }
+        } finally {
+            memberLock.unlock();
         }
         
-        // Perform checkout
-        if (member.borrowBook(book)) {
-            System.out.println("Success: '" + book.getTitle() + 
-                             "' checked out to " + member.getName());
+        Events.emit(EventType.BOOK_CHECKED_OUT, memberID, member.getName(), ISBN, book.getTitle());
+        return true;
+    }
+    
+    /**
+     * Lend a book that has been set aside for the member. The book's lock
+     * keeps an expiry or removal from acting on it at the same time.
+     */
+    private boolean collectHold(Member member, Book book, Runnable onSuccess) {
+        long ISBN = book.getISBN();
+        ReentrantLock bookLock = bookLocks.lockFor(ISBN);
+        bookLock.lock();
+        try {
+            if (holds.readyFor(ISBN) != member.getMemberID()) {
+                // The pickup window ran out while we were waiting for the lock
+                Events.emit(EventType.BOOK_ON_HOLD, ISBN, book.getTitle());
+                return false;
+            }
+            if (books.get(ISBN) != book) {
+                Events.emit(EventType.CHECKOUT_CONFLICT, member.getMemberID(), ISBN);
+                return false;
+            }
+            if (!member.borrowBook(book, BookStatus.RESERVED)) {
+                return false;
+            }
+            holds.clearReady(ISBN, member.getMemberID());
+            runIfPresent(onSuccess);
             return true;
+        } finally {
+            bookLock.unlock();
         }
-        
-        return false;
     }
     
     /**
@@ -260,35 +1028,479 @@ public class Library implements Serializable {
      * @return true if return successful, false otherwise
      */
     public boolean returnBook(long memberID, long ISBN) {
+        return returnBook(memberID, ISBN, null);
+    }
+    
+    /**
+     * Return a book from a member
+     * @param memberID The member's ID
+     * @param ISBN The book's ISBN
+     * @param onSuccess Run while the member and book are still locked if the
+     *                  return succeeded, may be null
+     * @return true if return successful, false otherwise
+     */
+    public boolean returnBook(long memberID, long ISBN, Runnable onSuccess) {
+        long start = System.nanoTime();
+        boolean done = false;
+        try {
+            done = tryReturn(memberID, ISBN, onSuccess);
+            return done;
+        } finally {
+            RETURN_LATENCY.recordSince(start);
+            if (!done) {
+                RETURNS_REFUSED.increment();
+            }
+        }
+    }
+    
+    private boolean tryReturn(long memberID, long ISBN, Runnable onSuccess) {
         // Find member
         Member member = findMember(memberID);
         if (member == null) {
-            System.out.println("Error: Member with ID " + memberID + " not found");
+            Events.emit(EventType.MEMBER_NOT_FOUND, memberID);
             return false;
         }
         
         // Find book
         Book book = findBook(ISBN);
         if (book == null) {
-            System.out.println("Error: Book with ISBN " + ISBN + " not found");
+            Events.emit(EventType.BOOK_NOT_FOUND, ISBN);
             return false;
         }
         
-        // Check if member has this book
-        if (!member.getBorrowedBooks().contains(book)) {
-            System.out.println("Error: " + member.getName() + 
-                             " hasn't borrowed '" + book.getTitle() + "'");
-            return false;
+        long next = HoldQueues.NO_HOLDER;
+        long readyUntil = 0;
+        ReentrantLock memberLock = memberLocks.lockFor(memberID);
+        memberLock.lock();
+        try {
+            // Check if member has this book
+            if (!member.hasBorrowed(ISBN)) {
+                Events.emit(EventType.NOT_BORROWED_BY, memberID, member.getName(), ISBN, book.getTitle());
+                return false;
+            }
+            // A book on loan cannot be removed, so the copy in the library now is the
+            // one that was lent even if the lookup above found an older copy
+            book = findBook(ISBN);
+            
+            // The book's lock makes a hold placed now either wait for the book
+            // to be set aside or find it still on loan
+            ReentrantLock bookLock = bookLocks.lockFor(ISBN);
+            bookLock.lock();
+            try {
+                next = nextWaitingMember(ISBN);
+                
+                // Perform return, setting the book aside if anyone is waiting for it
+                if (!member.returnBook(book, next == HoldQueues.NO_HOLDER
+                        ? BookStatus.AVAILABLE : BookStatus.RESERVED)) {
+                    return false;
+                }
+                if (next != HoldQueues.NO_HOLDER) {
+                    readyUntil = setAside(ISBN, next, System.currentTimeMillis());
+                }
+                runIfPresent(onSuccess);
+            } finally {
+                bookLock.unlock();
+            }
+        } finally {
+            memberLock.unlock();
         }
         
-        // Perform return
-        if (member.returnBook(book)) {
-            System.out.println("Success: '" + book.getTitle() + 
-                             "' returned by " + member.getName());
+        Events.emit(EventType.BOOK_RETURNED, memberID, member.getName(), ISBN, book.getTitle());
+        if (next != HoldQueues.NO_HOLDER) {
+            Events.emit(EventType.HOLD_READY, next, ISBN, book.getTitle(), Instant.ofEpochMilli(readyUntil));
+        }
+        return true;
+    }
+    
+    /**
+     * Return a book from whichever member has borrowed it, for when only
+     * the book is at hand. The borrower is found in the loan table.
+     * @param ISBN The book's ISBN
+     * @return true if return successful, false otherwise
+     */
+    public boolean returnBook(long ISBN) {
+        long memberID = loans.borrowerOf(ISBN);
+        if (memberID == LoanTable.NO_BORROWER) {
+            Events.emit(EventType.NOT_ON_LOAN, ISBN);
+            return false;
+        }
+        return returnBook(memberID, ISBN, null);
+    }
+    
+    /**
+     * Find the member who has borrowed a book
+     * @param ISBN The book's ISBN
+     * @return The borrower, or null if the book is not on loan
+     */
+    public Member findBorrower(long ISBN) {
+        long memberID = loans.borrowerOf(ISBN);
+        return memberID == LoanTable.NO_BORROWER ? null : findMember(memberID);
+    }
+
+    /**
+     * Mark a book lost, send it for repair or put it back on the shelf.
+     * A borrowed book marked lost ends its loan; a book put back on the shelf
+     * is set aside for the first member waiting for it.
+     * @param ISBN The book's ISBN
+     * @param next Available, Lost or In Repair
+     * @param onSuccess Run while the book, and its borrower if it had one,
+     *                  are still locked if the status changed, may be null
+     * @return true if the status changed, false if the book is not found or
+     *         may not go from its current status to the new one
+     * @throws IllegalArgumentException if the new status is Borrowed or Reserved,
+     *         which only checkouts, returns and holds give
+     */
+    public boolean changeBookStatus(long ISBN, BookStatus next, Runnable onSuccess) {
+        if (next == BookStatus.BORROWED || next == BookStatus.RESERVED) {
+            throw new IllegalArgumentException("A book becomes " + next + " through a loan or hold");
+        }
+        Book book = findBook(ISBN);
+        if (book == null) {
+            Events.emit(EventType.BOOK_NOT_FOUND, ISBN);
+            return false;
+        }
+
+        while (true) {
+            // A borrower is locked before the book, as checkouts and returns do
+            long borrowerID = loans.borrowerOf(ISBN);
+            ReentrantLock memberLock = borrowerID == LoanTable.NO_BORROWER ? null : memberLocks.lockFor(borrowerID);
+            if (memberLock != null) {
+                memberLock.lock();
+            }
+            BookStatus current;
+            long waiting = HoldQueues.NO_HOLDER;
+            long readyUntil = 0;
+            try {
+                ReentrantLock bookLock = bookLocks.lockFor(ISBN);
+                bookLock.lock();
+                try {
+                    // The copy in the library now, in case it was replaced while we waited
+                    Book found = findBook(ISBN);
+                    if (found == null) {
+                        Events.emit(EventType.BOOK_NOT_FOUND, ISBN);
+                        return false;
+                    }
+                    book = found;
+                    current = book.getStatus();
+                    long borrower = current == BookStatus.BORROWED ? loans.borrowerOf(ISBN) : borrowerID;
+                    if (borrower != borrowerID && borrower != LoanTable.NO_BORROWER) {
+                        // Lent to someone else since we looked; lock the borrower it has now
+                        continue;
+                    }
+                    // Borrowed with no loan is a checkout between its two steps
+                    if (!current.canChangeTo(next) || borrower == LoanTable.NO_BORROWER
+                            && current == BookStatus.BORROWED) {
+                        Events.emit(EventType.STATUS_CHANGE_REFUSED, ISBN, book.getTitle(), current, next);
+                        return false;
+                    }
+
+                    boolean changed;
+                    if (current == BookStatus.BORROWED) {
+                        changed = members.get(borrowerID).returnBook(book, next);
+                    } else if (next == BookStatus.AVAILABLE
+                            && (waiting = nextWaitingMember(ISBN)) != HoldQueues.NO_HOLDER) {
+                        changed = book.changeStatus(current, BookStatus.RESERVED);
+                        if (changed) {
+                            readyUntil = setAside(ISBN, waiting, System.currentTimeMillis());
+                        }
+                    } else {
+                        // An Available book may be checked out without the book's lock
+                        changed = book.changeStatus(current, next);
+                    }
+                    if (!changed) {
+                        Events.emit(EventType.STATUS_CHANGE_REFUSED, ISBN, book.getTitle(), current, next);
+                        return false;
+                    }
+                    runIfPresent(onSuccess);
+                } finally {
+                    bookLock.unlock();
+                }
+            } finally {
+                if (memberLock != null) {
+                    memberLock.unlock();
+                }
+            }
+
+            Events.emit(EventType.BOOK_STATUS_CHANGED, ISBN, book.getTitle(), book.getStatus());
+            if (readyUntil != 0) {
+                Events.emit(EventType.HOLD_READY, waiting, ISBN, book.getTitle(), Instant.ofEpochMilli(readyUntil));
+            }
             return true;
         }
+    }
+
+    // ==================== HOLDS ====================
+    
+    /**
+     * Get the queues of members waiting for books
+     * @return The hold queues
+     */
+    public HoldQueues getHolds() {
+        return holds;
+    }
+    
+    /**
+     * Get how long a returned book is set aside for the next member in its queue
+     * @return The pickup window in milliseconds
+     */
+    public long getHoldPickupMillis() {
+        return holdPickupMillis;
+    }
+    
+    /**
+     * Set how long a returned book is set aside for the next member in its
+     * queue. Books already set aside keep the window they were given.
+     * @param millis The pickup window in milliseconds
+     */
+    public void setHoldPickupMillis(long millis) {
+        if (millis <= 0) {
+            throw new IllegalArgumentException("Hold pickup window must be positive");
+        }
+        holdPickupMillis = millis;
+    }
+    
+    /**
+     * Put a member in the queue for a book that is out
+     * @param memberID The member's ID
+     * @param ISBN The book's ISBN
+     * @param onSuccess Run while the book is still locked if the hold was placed, may be null
+     * @return The member's place in the queue counting from 1, or 0 if the hold was refused
+     */
+    public int placeHold(long memberID, long ISBN, Runnable onSuccess) {
+        Member member = findMember(memberID);
+        if (member == null) {
+            Events.emit(EventType.MEMBER_NOT_FOUND, memberID);
+            return 0;
+        }
+        Book book = findBook(ISBN);
+        if (book == null) {
+            Events.emit(EventType.BOOK_NOT_FOUND, ISBN);
+            return 0;
+        }
+        
+        int position;
+        ReentrantLock lock = bookLocks.lockFor(ISBN);
+        lock.lock();
+        try {
+            if (books.get(ISBN) != book) {
+                Events.emit(EventType.BOOK_NOT_FOUND, ISBN);
+                return 0;
+            }
+            // Only books that will come back to the shelf through a return can be queued for
+            BookStatus status = book.getStatus();
+            if (status == BookStatus.AVAILABLE) {
+                Events.emit(EventType.HOLD_NOT_NEEDED, ISBN, book.getTitle());
+                return 0;
+            }
+            if (status != BookStatus.BORROWED && status != BookStatus.RESERVED) {
+                Events.emit(EventType.BOOK_UNAVAILABLE, ISBN, book.getTitle());
+                return 0;
+            }
+            if (member.hasBorrowed(ISBN)) {
+                Events.emit(EventType.ALREADY_BORROWED, memberID, member.getName(), ISBN, book.getTitle());
+                return 0;
+            }
+            position = holds.add(ISBN, memberID, System.currentTimeMillis());
+            if (position == HoldQueues.NOT_HELD) {
+                Events.emit(EventType.ALREADY_ON_HOLD, memberID, member.getName(), ISBN, book.getTitle());
+                return 0;
+            }
+            runIfPresent(onSuccess);
+        } finally {
+            lock.unlock();
+        }
+        
+        HOLDS_PLACED.increment();
+        Events.emit(EventType.HOLD_PLACED, memberID, member.getName(), ISBN, book.getTitle(), position);
+        return position;
+    }
+    
+    /**
+     * Take a member's hold on a book away. If the book was set aside for
+     * them it passes to the next member in the queue.
+     * @param memberID The member's ID
+     * @param ISBN The book's ISBN
+     * @param onSuccess Run while the book is still locked if a hold was cancelled, may be null
+     * @return true if the member had a hold on the book
+     */
+    public boolean cancelHold(long memberID, long ISBN, Runnable onSuccess) {
+        Member member = findMember(memberID);
+        if (member == null) {
+            Events.emit(EventType.MEMBER_NOT_FOUND, memberID);
+            return false;
+        }
+        Book book = findBook(ISBN);
+        if (book == null) {
+            Events.emit(EventType.BOOK_NOT_FOUND, ISBN);
+            return false;
+        }
         
-        return false;
+        long next = HoldQueues.NO_HOLDER;
+        long readyUntil = 0;
+        long now = System.currentTimeMillis();
+        ReentrantLock lock = bookLocks.lockFor(ISBN);
+        lock.lock();
+        try {
+            if (!holds.remove(ISBN, memberID)) {
+                if (!holds.clearReady(ISBN, memberID)) {
+                    Events.emit(EventType.NO_HOLD, memberID, member.getName(), ISBN, book.getTitle());
+                    return false;
+                }
+                next = passOn(book, now);
+                readyUntil = holds.readyUntil(ISBN);
+            }
+            runIfPresent(onSuccess);
+        } finally {
+            lock.unlock();
+        }
+        
+        Events.emit(EventType.HOLD_CANCELLED, memberID, member.getName(), ISBN, book.getTitle());
+        if (next != HoldQueues.NO_HOLDER) {
+            Events.emit(EventType.HOLD_READY, next, ISBN, book.getTitle(), Instant.ofEpochMilli(readyUntil));
+        }
+        return true;
+    }
+    
+    /**
+     * Take the books whose pickup window may have run out by a time. Each
+     * should then be passed to {@link #expireHold(long, long, Runnable)},
+     * which checks whether its hold really has run out.
+     * @param nowMillis The current time
+     * @return ISBNs of the books, each at most once per call
+     */
+    public long[] takeDueHolds(long nowMillis) {
+        long[] due = holdTimers.advance(nowMillis);
+        if (due.length > 1) {
+            // A book can be scheduled again before its earlier deadline comes up
+            Arrays.sort(due);
+            int distinct = 1;
+            for (int i = 1; i < due.length; i++) {
+                if (due[i] != due[distinct - 1]) {
+                    due[distinct++] = due[i];
+                }
+            }
+            due = Arrays.copyOf(due, distinct);
+        }
+        return due;
+    }
+    
+    /**
+     * End a book's ready hold if its pickup window has run out, passing the
+     * book to the next member in its queue or back to the shelf
+     * @param ISBN The book's ISBN
+     * @param nowMillis The current time
+     * @param onSuccess Run while the book is still locked if the hold ended, may be null
+     * @return true if the hold had run out
+     */
+    public boolean expireHold(long ISBN, long nowMillis, Runnable onSuccess) {
+        long holder;
+        long next;
+        long readyUntil;
+        Book book;
+        ReentrantLock lock = bookLocks.lockFor(ISBN);
+        lock.lock();
+        try {
+            holder = holds.readyFor(ISBN);
+            // Collected, cancelled or set aside again since it was scheduled
+            if (holder == HoldQueues.NO_HOLDER || holds.readyUntil(ISBN) > nowMillis) {
+                return false;
+            }
+            book = findBook(ISBN);
+            if (book == null) {
+                holds.clear(ISBN);
+                return false;
+            }
+            holds.clearReady(ISBN, holder);
+            next = passOn(book, nowMillis);
+            readyUntil = holds.readyUntil(ISBN);
+            runIfPresent(onSuccess);
+        } finally {
+            lock.unlock();
+        }
+        
+        HOLDS_EXPIRED.increment();
+        Events.emit(EventType.HOLD_EXPIRED, holder, ISBN, book.getTitle());
+        if (next != HoldQueues.NO_HOLDER) {
+            Events.emit(EventType.HOLD_READY, next, ISBN, book.getTitle(), Instant.ofEpochMilli(readyUntil));
+        }
+        return true;
+    }
+    
+    /**
+     * Replace a book's holds with ones read back from the journal or a hold
+     * file. The book is set aside or put back on the shelf to match, and a
+     * ready hold's pickup deadline is scheduled again.
+     * @param state The book's holds
+     */
+    public void restoreHolds(HoldQueues.State state) {
+        long ISBN = state.getISBN();
+        ReentrantLock lock = bookLocks.lockFor(ISBN);
+        lock.lock();
+        try {
+            Book book = findBook(ISBN);
+            if (book == null) {
+                holds.clear(ISBN);
+                return;
+            }
+            holds.restore(state);
+            if (state.getReadyMember() != HoldQueues.NO_HOLDER) {
+                book.changeStatus(BookStatus.AVAILABLE, BookStatus.RESERVED);
+                holdTimers.schedule(ISBN, state.getReadyUntil());
+            } else {
+                book.changeStatus(BookStatus.RESERVED, BookStatus.AVAILABLE);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    
+    /**
+     * First member in a book's queue who is still registered. Members removed
+     * since they queued are dropped here rather than searched for on removal.
+     * Called with the book locked.
+     */
+    private long nextWaitingMember(long ISBN) {
+        while (true) {
+            long memberID = holds.peek(ISBN);
+            if (memberID == HoldQueues.NO_HOLDER || members.get(memberID) != null) {
+                return memberID;
+            }
+            holds.poll(ISBN);
+        }
+    }
+    
+    /**
+     * Take a member off the front of a book's queue and set the book aside
+     * for them. Called with the book locked.
+     * @return When their pickup window ends
+     */
+    private long setAside(long ISBN, long memberID, long nowMillis) {
+        holds.poll(ISBN);
+        long until = nowMillis + holdPickupMillis;
+        holds.setReady(ISBN, memberID, until);
+        holdTimers.schedule(ISBN, until);
+        return until;
+    }
+    
+    /**
+     * Pass a Reserved book whose ready hold has ended to the next member
+     * waiting, or back to the shelf. Called with the book locked.
+     * @return The member it was set aside for, or {@link HoldQueues#NO_HOLDER}
+     */
+    private long passOn(Book book, long nowMillis) {
+        long next = nextWaitingMember(book.getISBN());
+        if (next == HoldQueues.NO_HOLDER) {
+            book.changeStatus(BookStatus.RESERVED, BookStatus.AVAILABLE);
+        } else {
+            setAside(book.getISBN(), next, nowMillis);
+        }
+        return next;
+    }
+    
+    private static void runIfPresent(Runnable action) {
+        if (action != null) {
+            action.run();
+        }
     }
     
     // ==================== UTILITY METHODS ====================
@@ -298,7 +1510,7 @@ public class Library implements Serializable {
      * @return Total book count
      */
     public int getTotalBooks() {
-        return books.size();
+        return (int) (books.size() + catalogPending.get());
     }
     
     /**
@@ -314,7 +1526,7 @@ public class Library implements Serializable {
      * @return Count of available books
      */
     public int getAvailableBooksCount() {
-        return getAvailableBooks().size();
+        return getBooksCount(BookStatus.AVAILABLE);
     }
     
     /**
@@ -322,13 +1534,24 @@ public class Library implements Serializable {
      * @return Count of borrowed books
      */
     public int getBorrowedBooksCount() {
-        int count = 0;
-        for (Book book : books.values()) {
-            if ("Borrowed".equalsIgnoreCase(book.getStatus())) {
-                count++;
-            }
-        }
-        return count;
+        return getBooksCount(BookStatus.BORROWED);
+    }
+    
+    /**
+     * Get number of books with a status
+     * @param status The status to count
+     * @return Count of books with that status
+     */
+    public int getBooksCount(BookStatus status) {
+        return (int) statusCounts[status.getCode()].sum();
+    }
+    
+    /**
+     * Get number of members with at least one borrowed book
+     * @return Count of active members
+     */
+    public int getActiveMembersCount() {
+        return loans.countBorrowers();
     }
     
     /**
@@ -340,6 +1563,7 @@ public class Library implements Serializable {
         System.out.println("Available Books: " + getAvailableBooksCount());
         System.out.println("Borrowed Books: " + getBorrowedBooksCount());
         System.out.println("Total Members: " + getTotalMembers());
+        System.out.println("Active Members: " + getActiveMembersCount());
         System.out.println("========================\n");
     }
     
@@ -353,11 +1577,10 @@ public class Library implements Serializable {
         try (FileOutputStream fileOut = new FileOutputStream(LIBRARY_DATA_FILE);
              ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
             out.writeObject(this);
-            System.out.println("Library data saved successfully to " + LIBRARY_DATA_FILE);
+            Events.info("Library data saved successfully to " + LIBRARY_DATA_FILE);
             return true;
         } catch (IOException e) {
-            System.out.println("Error saving library data: " + e.getMessage());
-            e.printStackTrace();
+            Events.error("Error saving library data: " + e.getMessage(), e);
             return false;
         }
     }
@@ -370,17 +1593,50 @@ public class Library implements Serializable {
         try (FileInputStream fileIn = new FileInputStream(LIBRARY_DATA_FILE);
              ObjectInputStream in = new ObjectInputStream(fileIn)) {
             Library library = (Library) in.readObject();
-            System.out.println("Library data loaded successfully from " + LIBRARY_DATA_FILE);
+            Events.info("Library data loaded successfully from " + LIBRARY_DATA_FILE);
             return library;
         } catch (FileNotFoundException e) {
-            System.out.println("No saved data found. Creating new library.");
+            Events.info("No saved data found. Creating new library.");
             return new Library();
         } catch (IOException | ClassNotFoundException e) {
-            System.out.println("Error loading library data: " + e.getMessage());
+            Events.error("Error loading library data: " + e.getMessage());
             return new Library();
         }
     }
     
+    /**
+     * Write books and members in the legacy map form, including the books
+     * still only in the catalog
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ConcurrentHashMap<Long, Book> bookMap = new ConcurrentHashMap<>();
+        snapshotBooks().forEach(book -> bookMap.put(book.getISBN(), book));
+        ConcurrentHashMap<Long, Member> memberMap = new ConcurrentHashMap<>();
+        members.forEachValue(member -> memberMap.put(member.getMemberID(), member));
+        
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("books", bookMap);
+        fields.put("members", memberMap);
+        out.writeFields();
+    }
+    
+    /**
+     * Rebuild the maps, search indexes, status counts and loan table after deserialization
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        initTransientState();
+        for (Object value : ((Map<?, ?>) fields.get("books", Map.of())).values()) {
+            attach((Book) value, false);
+        }
+        for (Object value : ((Map<?, ?>) fields.get("members", Map.of())).values()) {
+            Member member = (Member) value;
+            members.put(member.getMemberID(), member);
+            member.setLibrary(this);
+            memberOrder.add(member.getMemberID());
+        }
+    }
+    
     @Override
     public String toString() {
         return "Library{" +
@@ -0,0 +1,464 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The library's record of which member has borrowed which book.
+ * This is the only place loans are kept: members and books read it rather
+ * than holding copies of each other, and it is saved once as ISBN and
+ * member ID pairs.
+ *
+ * Loans are kept by ISBN in primitive maps, with a per-member list of ISBNs
+ * alongside for member views. Both are split into segments with their own
+ * locks, and no lock is held while another is taken.
+ *
+ * Each loan also has the time it was borrowed and the time it is due, and
+ * each segment keeps its loans in due date order ({@link DueDates}) under
+ * the same lock. The loans due in a time range are found by a heap merge
+ * of the segments, each read a few loans at a time from the start of the
+ * range, so reading k loans costs O(S log n + k log S) for S segments and
+ * no other loan is visited. Counting the overdue loans walks each
+ * segment's due times up to the present without copying any loan.
+ *
+ * @author Obakeng Phale
+ */
+public class LoanTable {
+    /** Member ID returned for a book that is not on loan */
+    public static final long NO_BORROWER = 0;
+
+    private static final int SEGMENT_BITS = 6;
+    private static final long[] NO_LOANS = new long[0];
+    // Loans read from a segment at a time when listing loans by due date
+    private static final int DUE_BATCH = 8;
+
+    private final Segment[] segments;
+
+    // Members with at least one loan, kept current so it can be read without a scan
+    private final AtomicInteger borrowerCount = new AtomicInteger();
+
+    public LoanTable() {
+        segments = new Segment[1 << SEGMENT_BITS];
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * Find who has borrowed a book
+     * @param ISBN The book's ISBN
+     * @return The borrower's member ID, or {@link #NO_BORROWER}
+     */
+    public long borrowerOf(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            return segment.borrowers.get(ISBN);
+        }
+    }
+
+    /**
+     * Get a book's loan with its dates
+     * @param ISBN The book's ISBN
+     * @return The loan, or null if the book is not on loan
+     */
+    public DueLoan loanOf(long ISBN) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            long memberID = segment.borrowers.get(ISBN);
+            if (memberID == NO_BORROWER) {
+                return null;
+            }
+            return new DueLoan(ISBN, memberID, segment.borrowedAt.get(ISBN), segment.dueAt.get(ISBN));
+        }
+    }
+
+    /**
+     * Record a loan if the book is not already on loan
+     * @param ISBN The book's ISBN
+     * @param memberID The borrower's member ID
+     * @param borrowedMillis When it was borrowed
+     * @param dueMillis When it is due back
+     * @return true if the loan was recorded, false if the book is already on loan
+     */
+    public boolean lend(long ISBN, long memberID, long borrowedMillis, long dueMillis) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            if (segment.borrowers.get(ISBN) != NO_BORROWER) {
+                return false;
+            }
+            segment.borrowers.put(ISBN, memberID);
+            segment.borrowedAt.put(ISBN, borrowedMillis);
+            segment.dueAt.put(ISBN, dueMillis);
+            segment.dueDates.add(ISBN, dueMillis);
+        }
+        addToMember(memberID, ISBN);
+        return true;
+    }
+
+    /**
+     * Record a loan, moving it from any other borrower (used when rebuilding state)
+     * @param ISBN The book's ISBN
+     * @param memberID The borrower's member ID
+     * @param borrowedMillis When it was borrowed
+     * @param dueMillis When it is due back
+     */
+    public void restore(long ISBN, long memberID, long borrowedMillis, long dueMillis) {
+        long previous;
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            previous = segment.borrowers.put(ISBN, memberID);
+            segment.borrowedAt.put(ISBN, borrowedMillis);
+            long previousDue = segment.dueAt.put(ISBN, dueMillis);
+            if (previous != NO_BORROWER) {
+                segment.dueDates.remove(ISBN, previousDue);
+            }
+            segment.dueDates.add(ISBN, dueMillis);
+        }
+        if (previous == memberID) {
+            return;
+        }
+        if (previous != NO_BORROWER) {
+            removeFromMember(previous, ISBN);
+        }
+        addToMember(memberID, ISBN);
+    }
+
+    /**
+     * End a loan
+     * @param ISBN The book's ISBN
+     * @param memberID The member returning it
+     * @return true if the member had the book, false otherwise
+     */
+    public boolean release(long ISBN, long memberID) {
+        Segment segment = segmentFor(ISBN);
+        synchronized (segment) {
+            if (segment.borrowers.get(ISBN) != memberID || memberID == NO_BORROWER) {
+                return false;
+            }
+            segment.borrowers.remove(ISBN);
+            segment.borrowedAt.remove(ISBN);
+            segment.dueDates.remove(ISBN, segment.dueAt.remove(ISBN));
+        }
+        removeFromMember(memberID, ISBN);
+        return true;
+    }
+
+    /**
+     * Find the loans due in a time range, earliest first. Each segment is
+     * locked only while a few of its loans are read, and is read no further
+     * than the merge needs.
+     * @param fromMillis Start of the range, inclusive
+     * @param toMillis End of the range, exclusive
+     * @param limit Maximum number of loans to return
+     * @return The loans, ordered by due date and then ISBN
+     */
+    public List<DueLoan> dueBetween(long fromMillis, long toMillis, int limit) {
+        List<DueLoan> loans = new ArrayList<>(Math.min(limit, DUE_BATCH * 4));
+        if (limit <= 0 || fromMillis >= toMillis) {
+            return loans;
+        }
+        // Each segment's earliest unread loan, earliest first
+        PriorityQueue<DueCursor> heads = new PriorityQueue<>(segments.length,
+                (a, b) -> a.head().comesBefore(b.head()) ? -1 : 1);
+        int batch = Math.min(limit, DUE_BATCH);
+        for (Segment segment : segments) {
+            DueCursor cursor = new DueCursor(segment, fromMillis, toMillis, batch);
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        while (loans.size() < limit && !heads.isEmpty()) {
+            DueCursor cursor = heads.poll();
+            loans.add(cursor.head());
+            if (cursor.advance()) {
+                heads.add(cursor);
+            }
+        }
+        return loans;
+    }
+
+    /**
+     * Count the loans that are overdue
+     * @param nowMillis The current time
+     * @return Number of loans due before nowMillis
+     */
+    public int countOverdue(long nowMillis) {
+        int overdue = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                overdue += segment.dueDates.countBefore(nowMillis);
+            }
+        }
+        return overdue;
+    }
+
+    /**
+     * Get the ISBNs a member currently has on loan
+     * @param memberID The member's ID
+     * @return Copy of the ISBNs, empty if none
+     */
+    public long[] booksBorrowedBy(long memberID) {
+        Segment segment = segmentFor(memberID);
+        synchronized (segment) {
+            long[] isbns = segment.loansByMember.get(memberID);
+            return isbns == null ? NO_LOANS : isbns.clone();
+        }
+    }
+
+    /**
+     * Count the books a member currently has on loan
+     * @param memberID The member's ID
+     * @return Number of books on loan
+     */
+    public int countBorrowedBy(long memberID) {
+        Segment segment = segmentFor(memberID);
+        synchronized (segment) {
+            long[] isbns = segment.loansByMember.get(memberID);
+            return isbns == null ? 0 : isbns.length;
+        }
+    }
+
+    /**
+     * Get the number of books on loan
+     * @return Loan count
+     */
+    public int size() {
+        int size = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                size += segment.borrowers.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * Get the number of members with at least one book on loan
+     * @return Borrower count
+     */
+    public int countBorrowers() {
+        return borrowerCount.get();
+    }
+
+    /**
+     * Visit every loan. Each segment is locked only while it is being read.
+     * @param action Called with each ISBN and borrower's member ID
+     */
+    public void forEach(Loan action) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.borrowers.forEach(action::accept);
+            }
+        }
+    }
+
+    /**
+     * Visit every loan with its dates. Each segment is locked only while it is being read.
+     * @param action Called with each ISBN, borrower's member ID, borrowed time and due time
+     */
+    public void forEachDated(DatedLoan action) {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.borrowers.forEach((ISBN, memberID) -> action.accept(ISBN, memberID,
+                        segment.borrowedAt.get(ISBN), segment.dueAt.get(ISBN)));
+            }
+        }
+    }
+
+    /**
+     * Remove every loan
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                segment.borrowers.clear();
+                segment.borrowedAt.clear();
+                segment.dueAt.clear();
+                segment.dueDates.clear();
+                borrowerCount.addAndGet(-segment.loansByMember.size());
+                segment.loansByMember.clear();
+            }
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private Segment segmentFor(long key) {
+        return segments[LongHash.segment(key, SEGMENT_BITS)];
+    }
+
+    private void addToMember(long memberID, long ISBN) {
+        Segment segment = segmentFor(memberID);
+        synchronized (segment) {
+            long[] isbns = segment.loansByMember.get(memberID);
+            if (isbns == null) {
+                isbns = new long[] {ISBN};
+                borrowerCount.incrementAndGet();
+            } else {
+                isbns = Arrays.copyOf(isbns, isbns.length + 1);
+                isbns[isbns.length - 1] = ISBN;
+            }
+            segment.loansByMember.put(memberID, isbns);
+        }
+    }
+
+    private void removeFromMember(long memberID, long ISBN) {
+        Segment segment = segmentFor(memberID);
+        synchronized (segment) {
+            long[] isbns = segment.loansByMember.get(memberID);
+            if (isbns == null) {
+                return;
+            }
+            for (int i = 0; i < isbns.length; i++) {
+                if (isbns[i] == ISBN) {
+                    if (isbns.length == 1) {
+                        segment.loansByMember.remove(memberID);
+                        borrowerCount.decrementAndGet();
+                    } else {
+                        long[] remaining = new long[isbns.length - 1];
+                        System.arraycopy(isbns, 0, remaining, 0, i);
+                        System.arraycopy(isbns, i + 1, remaining, i, remaining.length - i);
+                        segment.loansByMember.put(memberID, remaining);
+                    }
+                    return;
+                }
+            }
+        }
+    }
+
+    private static final class Segment {
+        // ISBN -> member ID for books whose ISBN falls in this segment
+        final LongLongMap borrowers = new LongLongMap(NO_BORROWER);
+        // ISBN -> when it was borrowed and when it is due, for the same books
+        final LongLongMap borrowedAt = new LongLongMap(0);
+        final LongLongMap dueAt = new LongLongMap(0);
+        // The same books in due date order
+        final DueDates dueDates = new DueDates();
+        // Member ID -> ISBNs for members whose ID falls in this segment
+        final LongObjectMap<long[]> loansByMember = new LongObjectMap<>();
+    }
+
+    /**
+     * Reads one segment's loans in a time range a batch at a time, resuming
+     * after the last loan read, for {@link #dueBetween(long, long, int)}
+     */
+    private static final class DueCursor {
+        private final Segment segment;
+        private final long toMillis;
+        private final long[] pairs;
+        private final DueLoan[] loans;
+        private int count;
+        private int next;
+        private boolean exhausted;
+        // Position of the last loan read: the next read starts after it
+        private long afterDue;
+        private long afterISBN;
+
+        DueCursor(Segment segment, long fromMillis, long toMillis, int batch) {
+            this.segment = segment;
+            this.toMillis = toMillis;
+            this.pairs = new long[batch * 2];
+            this.loans = new DueLoan[batch];
+            // Everything due at fromMillis - 1 is skipped, so reading starts at fromMillis
+            this.afterDue = fromMillis == Long.MIN_VALUE ? Long.MIN_VALUE : fromMillis - 1;
+            this.afterISBN = Long.MAX_VALUE;
+            this.next = -1;
+        }
+
+        DueLoan head() {
+            return loans[next];
+        }
+
+        /**
+         * Move to the next loan, reading another batch if this one is used up
+         * @return false if the segment has no more loans in the range
+         */
+        boolean advance() {
+            if (++next < count) {
+                return true;
+            }
+            if (exhausted) {
+                return false;
+            }
+            synchronized (segment) {
+                count = segment.dueDates.dueAfter(afterDue, afterISBN, toMillis, pairs);
+                for (int i = 0; i < count; i++) {
+                    long ISBN = pairs[i * 2 + 1];
+                    loans[i] = new DueLoan(ISBN, segment.borrowers.get(ISBN),
+                            segment.borrowedAt.get(ISBN), pairs[i * 2]);
+                }
+            }
+            exhausted = count < loans.length;
+            next = 0;
+            if (count == 0) {
+                return false;
+            }
+            afterDue = pairs[(count - 1) * 2];
+            afterISBN = pairs[(count - 1) * 2 + 1];
+            return true;
+        }
+    }
+
+    /**
+     * Receives loans from {@link #forEach(Loan)}
+     */
+    public interface Loan {
+        void accept(long ISBN, long memberID);
+    }
+
+    /**
+     * Receives loans from {@link #forEachDated(DatedLoan)}
+     */
+    public interface DatedLoan {
+        void accept(long ISBN, long memberID, long borrowedMillis, long dueMillis);
+    }
+
+    /**
+     * One loan and its dates, as read at one moment
+     */
+    public static final class DueLoan {
+        private final long ISBN;
+        private final long memberID;
+        private final long borrowedMillis;
+        private final long dueMillis;
+
+        public DueLoan(long ISBN, long memberID, long borrowedMillis, long dueMillis) {
+            this.ISBN = ISBN;
+            this.memberID = memberID;
+            this.borrowedMillis = borrowedMillis;
+            this.dueMillis = dueMillis;
+        }
+
+        public long getISBN() {
+            return ISBN;
+        }
+
+        public long getMemberID() {
+            return memberID;
+        }
+
+        public long getBorrowedMillis() {
+            return borrowedMillis;
+        }
+
+        public long getDueMillis() {
+            return dueMillis;
+        }
+
+        /**
+         * Check whether the loan is overdue
+         * @param nowMillis The current time
+         * @return true if it was due before nowMillis
+         */
+        public boolean isOverdue(long nowMillis) {
+            return dueMillis < nowMillis;
+        }
+
+        private boolean comesBefore(DueLoan other) {
+            return dueMillis != other.dueMillis ? dueMillis < other.dueMillis : ISBN < other.ISBN;
+        }
+    }
+}
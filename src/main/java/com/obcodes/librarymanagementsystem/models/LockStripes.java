@@ -0,0 +1,39 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A fixed set of locks shared out by key.
+ * Operations on different ISBNs or member IDs almost always land on different
+ * stripes, so they run in parallel without a single library-wide lock.
+ *
+ * @author Obakeng Phale
+ */
+public class LockStripes {
+    private final ReentrantLock[] locks;
+    private final int mask;
+
+    /**
+     * Create a set of stripes
+     * @param stripes Requested number of stripes, rounded up to a power of two
+     */
+    public LockStripes(int stripes) {
+        int size = Integer.highestOneBit(Math.max(1, stripes - 1)) << 1;
+        this.locks = new ReentrantLock[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    /**
+     * Get the lock guarding a key
+     * @param key The ISBN or member ID
+     * @return The stripe lock for that key
+     */
+    public ReentrantLock lockFor(long key) {
+        // Spread sequential keys across stripes
+        long hash = key * 0x9E3779B97F4A7C15L;
+        return locks[(int) (hash >>> 40) & mask];
+    }
+}
@@ -0,0 +1,37 @@
+package com.obcodes.librarymanagementsystem.models;
+
+/**
+ * Hashing shared by the primitive long-keyed maps.
+ * ISBNs and member IDs are often sequential, so keys are spread with a
+ * multiplicative hash. Table slots are taken from the middle bits of the
+ * hash and segments from the top bits, so the keys of one segment still
+ * spread across all of its slots.
+ *
+ * @author Obakeng Phale
+ */
+final class LongHash {
+    private static final long GOLDEN = 0x9E3779B97F4A7C15L;
+
+    private LongHash() {
+    }
+
+    /**
+     * Home slot of a key in a table
+     * @param key The key
+     * @param mask Table size minus one, where the size is a power of two up to 2^26
+     * @return The slot index
+     */
+    static int slot(long key, int mask) {
+        return (int) ((key * GOLDEN) >>> 32) & mask;
+    }
+
+    /**
+     * Segment a key belongs to
+     * @param key The key
+     * @param segmentBits Log2 of the number of segments, at most 6
+     * @return The segment index
+     */
+    static int segment(long key, int segmentBits) {
+        return (int) ((key * GOLDEN) >>> (64 - segmentBits));
+    }
+}
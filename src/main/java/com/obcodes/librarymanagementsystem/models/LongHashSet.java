@@ -0,0 +1,201 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.Arrays;
+import java.util.function.LongConsumer;
+
+/**
+ * A set of longs stored in one primitive array.
+ * Uses open addressing with linear probing and backward-shift deletion, so
+ * lookups never box or allocate. Key 0 is used to mark empty slots and is
+ * kept in a separate field when it is stored.
+ * Not thread-safe: callers provide their own locking.
+ *
+ * @author Obakeng Phale
+ */
+final class LongHashSet {
+    private static final int MIN_CAPACITY = 8;
+
+    private long[] keys;
+    private int size;
+    private boolean hasZeroKey;
+
+    LongHashSet() {
+        this.keys = new long[MIN_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    boolean contains(long key) {
+        if (key == 0) {
+            return hasZeroKey;
+        }
+        int mask = keys.length - 1;
+        for (int slot = LongHash.slot(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Add a key
+     * @param key The key
+     * @return true if the key was not already in the set
+     */
+    boolean add(long key) {
+        if (key == 0) {
+            if (hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = true;
+            size++;
+            return true;
+        }
+
+        int mask = keys.length - 1;
+        int slot = LongHash.slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        if (++size > keys.length * 3 / 4) {
+            resize(keys.length * 2);
+        }
+        return true;
+    }
+
+    /**
+     * Add every key of another set
+     * @param other The keys to add
+     */
+    void addAll(LongHashSet other) {
+        if (size == 0 && !other.hasZeroKey && other.keys.length > keys.length) {
+            // Nothing here yet: take a copy of the other table instead of rehashing it
+            keys = other.keys.clone();
+            size = other.size;
+            return;
+        }
+        other.forEach(this::add);
+    }
+
+    /**
+     * Remove a key
+     * @param key The key
+     * @return true if the key was in the set
+     */
+    boolean remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return false;
+            }
+            hasZeroKey = false;
+            size--;
+            return true;
+        }
+
+        int mask = keys.length - 1;
+        int slot = LongHash.slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        shiftBack(slot, mask);
+        size--;
+        return true;
+    }
+
+    /**
+     * Keep only the keys that are also in another set
+     * @param other The keys to keep
+     */
+    void retainAll(LongHashSet other) {
+        if (hasZeroKey && !other.hasZeroKey) {
+            hasZeroKey = false;
+            size--;
+        }
+        // Removing shifts later keys back, so collect the keys first
+        long[] dropped = new long[size];
+        int count = 0;
+        for (long key : keys) {
+            if (key != 0 && !other.contains(key)) {
+                dropped[count++] = key;
+            }
+        }
+        for (int i = 0; i < count; i++) {
+            remove(dropped[i]);
+        }
+    }
+
+    /**
+     * Visit every key
+     * @param action Called once for each key
+     */
+    void forEach(LongConsumer action) {
+        if (hasZeroKey) {
+            action.accept(0);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Close the gap left by a removed slot by moving later keys of the
+     * same probe run back, so lookups never need tombstones
+     */
+    private void shiftBack(int gap, int mask) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                break;
+            }
+            int home = LongHash.slot(key, mask);
+            // Move the key if its home slot is not between the gap and its current slot
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        keys = new long[capacity];
+
+        int mask = capacity - 1;
+        for (long key : oldKeys) {
+            if (key != 0) {
+                int slot = LongHash.slot(key, mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = key;
+            }
+        }
+    }
+}
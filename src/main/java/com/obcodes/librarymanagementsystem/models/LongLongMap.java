@@ -0,0 +1,191 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.Arrays;
+
+/**
+ * A map from long keys to long values stored in two primitive arrays.
+ * Uses open addressing with linear probing and backward-shift deletion, so
+ * lookups never allocate. Key 0 is used to mark empty slots and is kept in
+ * a separate field when it is stored.
+ * Not thread-safe: callers provide their own locking.
+ *
+ * @author Obakeng Phale
+ */
+final class LongLongMap {
+    private static final int MIN_CAPACITY = 16;
+
+    private final long missing;
+    private long[] keys;
+    private long[] values;
+    private int size;
+    private boolean hasZeroKey;
+    private long zeroValue;
+
+    /**
+     * Create an empty map
+     * @param missing Value returned for keys that are not in the map
+     */
+    LongLongMap(long missing) {
+        this.missing = missing;
+        this.keys = new long[MIN_CAPACITY];
+        this.values = new long[MIN_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the value stored for a key
+     * @param key The key
+     * @return The value, or the missing value if the key is absent
+     */
+    long get(long key) {
+        if (key == 0) {
+            return hasZeroKey ? zeroValue : missing;
+        }
+        int mask = keys.length - 1;
+        for (int slot = LongHash.slot(key, mask); keys[slot] != 0; slot = (slot + 1) & mask) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Store a value for a key
+     * @param key The key
+     * @param value The value
+     * @return The previous value, or the missing value if the key was absent
+     */
+    long put(long key, long value) {
+        if (key == 0) {
+            long previous = hasZeroKey ? zeroValue : missing;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return previous;
+        }
+
+        int mask = keys.length - 1;
+        int slot = LongHash.slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                long previous = values[slot];
+                values[slot] = value;
+                return previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        keys[slot] = key;
+        values[slot] = value;
+        if (++size > keys.length * 3 / 4) {
+            resize(keys.length * 2);
+        }
+        return missing;
+    }
+
+    /**
+     * Remove a key
+     * @param key The key
+     * @return The removed value, or the missing value if the key was absent
+     */
+    long remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return missing;
+            }
+            hasZeroKey = false;
+            size--;
+            return zeroValue;
+        }
+
+        int mask = keys.length - 1;
+        int slot = LongHash.slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return missing;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        long previous = values[slot];
+        shiftBack(slot, mask);
+        size--;
+        return previous;
+    }
+
+    /**
+     * Visit every entry
+     * @param action Called once for each key and value
+     */
+    void forEach(Entry action) {
+        if (hasZeroKey) {
+            action.accept(0, zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], values[i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        hasZeroKey = false;
+        size = 0;
+    }
+
+    /**
+     * Close the gap left by a removed slot by moving later entries of the
+     * same probe run back, so lookups never need tombstones
+     */
+    private void shiftBack(int gap, int mask) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                break;
+            }
+            int home = LongHash.slot(key, mask);
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                keys[gap] = key;
+                values[gap] = values[slot];
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        keys = new long[capacity];
+        values = new long[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = LongHash.slot(oldKeys[i], mask);
+                while (keys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = oldKeys[i];
+                values[slot] = oldValues[i];
+            }
+        }
+    }
+
+    /**
+     * Receives map entries from {@link #forEach(Entry)}
+     */
+    interface Entry {
+        void accept(long key, long value);
+    }
+}
@@ -0,0 +1,233 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.Arrays;
+import java.util.function.Consumer;
+
+/**
+ * A map from long keys to objects stored in a primitive key array and a
+ * parallel value array. Uses open addressing with linear probing and
+ * backward-shift deletion; lookups never box the key or allocate.
+ * Key 0 is used to mark empty slots and is kept in a separate field when
+ * it is stored.
+ *
+ * Not thread-safe: callers provide their own locking. {@link #get(long)} may
+ * also be called while a writer is active, as long as the caller discards
+ * the result if a write happened (see {@link ConcurrentLongObjectMap}); it
+ * never throws or loops forever on a torn table.
+ *
+ * @author Obakeng Phale
+ */
+final class LongObjectMap<V> {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] keys;
+    private Object[] values;
+    private int size;
+    private boolean hasZeroKey;
+    private Object zeroValue;
+
+    LongObjectMap() {
+        this.keys = new long[MIN_CAPACITY];
+        this.values = new Object[MIN_CAPACITY];
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Get the value stored for a key
+     * @param key The key
+     * @return The value, or null if the key is absent
+     */
+    @SuppressWarnings("unchecked")
+    V get(long key) {
+        if (key == 0) {
+            return hasZeroKey ? (V) zeroValue : null;
+        }
+
+        long[] keys = this.keys;
+        Object[] values = this.values;
+        if (keys.length != values.length) {
+            return null; // caught mid-resize
+        }
+        int mask = keys.length - 1;
+        int slot = LongHash.slot(key, mask);
+        for (int probes = 0; probes <= mask; probes++) {
+            long candidate = keys[slot];
+            if (candidate == key) {
+                return (V) values[slot];
+            }
+            if (candidate == 0) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return null;
+    }
+
+    /**
+     * Store a value for a key
+     * @param key The key
+     * @param value The value, not null
+     * @return The previous value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    V put(long key, V value) {
+        if (key == 0) {
+            Object previous = hasZeroKey ? zeroValue : null;
+            if (!hasZeroKey) {
+                hasZeroKey = true;
+                size++;
+            }
+            zeroValue = value;
+            return (V) previous;
+        }
+
+        int mask = keys.length - 1;
+        int slot = LongHash.slot(key, mask);
+        while (keys[slot] != 0) {
+            if (keys[slot] == key) {
+                Object previous = values[slot];
+                values[slot] = value;
+                return (V) previous;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        // Value first, so a racing get never pairs the key with a stale value
+        values[slot] = value;
+        keys[slot] = key;
+        if (++size > keys.length * 3 / 4) {
+            resize(keys.length * 2);
+        }
+        return null;
+    }
+
+    /**
+     * Remove a key
+     * @param key The key
+     * @return The removed value, or null if the key was absent
+     */
+    @SuppressWarnings("unchecked")
+    V remove(long key) {
+        if (key == 0) {
+            if (!hasZeroKey) {
+                return null;
+            }
+            Object previous = zeroValue;
+            hasZeroKey = false;
+            zeroValue = null;
+            size--;
+            return (V) previous;
+        }
+
+        int mask = keys.length - 1;
+        int slot = LongHash.slot(key, mask);
+        while (keys[slot] != key) {
+            if (keys[slot] == 0) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        Object previous = values[slot];
+        shiftBack(slot, mask);
+        size--;
+        return (V) previous;
+    }
+
+    /**
+     * Visit every value
+     * @param action Called once for each value
+     */
+    @SuppressWarnings("unchecked")
+    void forEachValue(Consumer<? super V> action) {
+        if (hasZeroKey) {
+            action.accept((V) zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept((V) values[i]);
+            }
+        }
+    }
+
+    /**
+     * Visit every entry
+     * @param action Called once for each key and value
+     */
+    @SuppressWarnings("unchecked")
+    void forEach(Entry<? super V> action) {
+        if (hasZeroKey) {
+            action.accept(0, (V) zeroValue);
+        }
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != 0) {
+                action.accept(keys[i], (V) values[i]);
+            }
+        }
+    }
+
+    void clear() {
+        Arrays.fill(keys, 0);
+        Arrays.fill(values, null);
+        hasZeroKey = false;
+        zeroValue = null;
+        size = 0;
+    }
+
+    /**
+     * Close the gap left by a removed slot by moving later entries of the
+     * same probe run back, so lookups never need tombstones
+     */
+    private void shiftBack(int gap, int mask) {
+        int slot = gap;
+        while (true) {
+            slot = (slot + 1) & mask;
+            long key = keys[slot];
+            if (key == 0) {
+                break;
+            }
+            int home = LongHash.slot(key, mask);
+            // Move the entry if its home slot is not between the gap and its current slot
+            if (((slot - home) & mask) >= ((slot - gap) & mask)) {
+                values[gap] = values[slot];
+                keys[gap] = key;
+                gap = slot;
+            }
+        }
+        keys[gap] = 0;
+        values[gap] = null;
+    }
+
+    private void resize(int capacity) {
+        long[] oldKeys = keys;
+        Object[] oldValues = values;
+        long[] newKeys = new long[capacity];
+        Object[] newValues = new Object[capacity];
+
+        int mask = capacity - 1;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != 0) {
+                int slot = LongHash.slot(oldKeys[i], mask);
+                while (newKeys[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                newKeys[slot] = oldKeys[i];
+                newValues[slot] = oldValues[i];
+            }
+        }
+
+        // Publish the new arrays only once they are complete
+        values = newValues;
+        keys = newKeys;
+    }
+
+    /**
+     * Receives map entries from {@link #forEach(Entry)}
+     */
+    interface Entry<V> {
+        void accept(long key, V value);
+    }
+}
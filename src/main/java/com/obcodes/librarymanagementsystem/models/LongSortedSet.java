@@ -0,0 +1,204 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.ArrayList;
+
+/**
+ * A sorted set of longs kept in blocks of up to {@value #BLOCK_SIZE} keys.
+ * Each block is a sorted primitive array and blocks are ordered by their
+ * first key, so finding a key is a binary search over blocks and then
+ * within one block. Adding or removing moves at most one block's keys, and
+ * reading the keys after a given key costs only the keys read, which is
+ * what keyset paging needs. Keys never box and cost about 8 bytes each.
+ *
+ * Not thread-safe: callers provide their own locking.
+ *
+ * @author Obakeng Phale
+ */
+final class LongSortedSet {
+    private static final int BLOCK_SIZE = 512;
+    // A block this small is merged into its neighbour when they fit in one
+    private static final int MERGE_SIZE = BLOCK_SIZE / 4;
+
+    private final ArrayList<Block> blocks = new ArrayList<>();
+    private int size;
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Add a key
+     * @param key The key
+     * @return true if the key was not already present
+     */
+    boolean add(long key) {
+        if (blocks.isEmpty()) {
+            blocks.add(new Block());
+        }
+        int b = blockFor(key);
+        Block block = blocks.get(b);
+        int i = block.indexOf(key);
+        if (i >= 0) {
+            return false;
+        }
+        i = -i - 1;
+
+        if (block.size == BLOCK_SIZE) {
+            // Split in half and insert into whichever half the key belongs to
+            Block upper = new Block();
+            int half = BLOCK_SIZE / 2;
+            System.arraycopy(block.keys, half, upper.keys, 0, BLOCK_SIZE - half);
+            upper.size = BLOCK_SIZE - half;
+            block.size = half;
+            blocks.add(b + 1, upper);
+            if (i > half) {
+                block = upper;
+                i -= half;
+            }
+        }
+
+        System.arraycopy(block.keys, i, block.keys, i + 1, block.size - i);
+        block.keys[i] = key;
+        block.size++;
+        size++;
+        return true;
+    }
+
+    /**
+     * Add many keys at once. Into an empty set the blocks are filled
+     * directly, three quarters full so later adds rarely split them; otherwise
+     * the keys are added one at a time.
+     * @param sorted The keys in ascending order, without repeats
+     * @param count Number of keys to add from the start of the array
+     */
+    void addAll(long[] sorted, int count) {
+        if (!blocks.isEmpty()) {
+            for (int i = 0; i < count; i++) {
+                add(sorted[i]);
+            }
+            return;
+        }
+        int fill = BLOCK_SIZE * 3 / 4;
+        for (int from = 0; from < count; from += fill) {
+            Block block = new Block();
+            block.size = Math.min(fill, count - from);
+            System.arraycopy(sorted, from, block.keys, 0, block.size);
+            blocks.add(block);
+        }
+        size = count;
+    }
+
+    /**
+     * Remove a key
+     * @param key The key
+     * @return true if the key was present
+     */
+    boolean remove(long key) {
+        if (blocks.isEmpty()) {
+            return false;
+        }
+        int b = blockFor(key);
+        Block block = blocks.get(b);
+        int i = block.indexOf(key);
+        if (i < 0) {
+            return false;
+        }
+
+        System.arraycopy(block.keys, i + 1, block.keys, i, block.size - i - 1);
+        block.size--;
+        size--;
+
+        if (block.size == 0) {
+            blocks.remove(b);
+        } else if (block.size < MERGE_SIZE && b + 1 < blocks.size()
+                && block.size + blocks.get(b + 1).size <= BLOCK_SIZE / 2) {
+            Block next = blocks.remove(b + 1);
+            System.arraycopy(next.keys, 0, block.keys, block.size, next.size);
+            block.size += next.size;
+        }
+        return true;
+    }
+
+    boolean contains(long key) {
+        return !blocks.isEmpty() && blocks.get(blockFor(key)).indexOf(key) >= 0;
+    }
+
+    /**
+     * Copy the keys greater than a key, in ascending order
+     * @param after Only keys greater than this are copied
+     * @param out Array to copy into
+     * @param offset Position in out of the first key copied
+     * @param limit Maximum number of keys to copy
+     * @return Number of keys copied
+     */
+    int keysAfter(long after, long[] out, int offset, int limit) {
+        if (blocks.isEmpty() || limit <= 0) {
+            return 0;
+        }
+        int b = blockFor(after);
+        int i = blocks.get(b).indexOf(after);
+        i = i >= 0 ? i + 1 : -i - 1;
+
+        int copied = 0;
+        for (; b < blocks.size() && copied < limit; b++, i = 0) {
+            Block block = blocks.get(b);
+            int n = Math.min(block.size - i, limit - copied);
+            if (n > 0) {
+                System.arraycopy(block.keys, i, out, offset + copied, n);
+                copied += n;
+            }
+        }
+        return copied;
+    }
+
+    void clear() {
+        blocks.clear();
+        size = 0;
+    }
+
+    /**
+     * Find the block a key is in or would be added to: the last block
+     * whose first key is not greater than it, or the first block
+     */
+    private int blockFor(long key) {
+        int low = 1;
+        int high = blocks.size() - 1;
+        int found = 0;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (blocks.get(mid).keys[0] <= key) {
+                found = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return found;
+    }
+
+    private static final class Block {
+        final long[] keys = new long[BLOCK_SIZE];
+        int size;
+
+        /**
+         * Binary search within the block
+         * @return The key's index, or -(insertion point) - 1 if absent
+         */
+        int indexOf(long key) {
+            int low = 0;
+            int high = size - 1;
+            while (low <= high) {
+                int mid = (low + high) >>> 1;
+                long value = keys[mid];
+                if (value < key) {
+                    low = mid + 1;
+                } else if (value > key) {
+                    high = mid - 1;
+                } else {
+                    return mid;
+                }
+            }
+            return -(low + 1);
+        }
+    }
+}
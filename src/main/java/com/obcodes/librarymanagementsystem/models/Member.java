@@ -1,33 +1,56 @@
 package com.obcodes.librarymanagementsystem.models;
+import com.obcodes.librarymanagementsystem.events.EventType;
+import com.obcodes.librarymanagementsystem.events.Events;
 import java.io.*;
 import java.util.ArrayList;
-import java.util.Random;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
 
 /**
+ * A library member. Loans are not stored on the member: they live in the
+ * library's {@link LoanTable}, and the loan methods here are views over it.
+ * A member therefore has to be added to a library before it can borrow.
  * @author Obakeng Phale
  */
 public class Member implements Serializable {
     private static final long serialVersionUID = 1L;
     private static final String FILENAME = "data/members.dat";
-    private static final int MAX_BORROWED_BOOKS = 5;
+    static final int MAX_BORROWED_BOOKS = 5;
     
-    private final long memberID;
+    // Serialized form is unchanged from when loans were a list of Book copies
+    private static final ObjectStreamField[] serialPersistentFields = {
+        new ObjectStreamField("memberID", long.class),
+        new ObjectStreamField("name", String.class),
+        new ObjectStreamField("borrowedBooks", ArrayList.class)
+    };
+    
+    private long memberID;
     private String name;
-    private ArrayList<Book> borrowedBooks;
+    
+    // Library this member belongs to, holding its loans
+    private transient Library library;
+    
+    // Loans read before the member joined a library, handed over when it does
+    private transient long[] pendingLoans;
    
     public Member(String name) {
         this.memberID = generateMemberID();
         this.name = name;
-        this.borrowedBooks = new ArrayList<>();
     }
-   
-    // Auto-generate member ID
+
+    // Constructor for an existing member (used when loading saved data)
+    public Member(long memberID, String name) {
+        this.memberID = memberID;
+        this.name = name;
+    }
+
+    // Auto-generate a random member ID. Random IDs can collide; LibraryService
+    // allocates unique ones from IdAllocator instead.
     private long generateMemberID() {
         long min = 100000000000L; // Start from 100 billion (12 digits)
         long max = 999999999999L; // Up to 999 billion (12 digits)
        
-        Random random = new Random();
-        return min + (long)(random.nextDouble() * (max - min + 1));
+        return ThreadLocalRandom.current().nextLong(min, max + 1);
     }
    
     // Getters
@@ -39,8 +62,32 @@ public class Member implements Serializable {
         return name;
     }
     
+    /**
+     * Get the books currently borrowed
+     * @return List of the library's borrowed Book objects
+     */
     public ArrayList<Book> getBorrowedBooks() {
-        return borrowedBooks;
+        long[] isbns = getBorrowedISBNs();
+        ArrayList<Book> books = new ArrayList<>(isbns.length);
+        for (long ISBN : isbns) {
+            Book book = library == null ? null : library.findBook(ISBN);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+    
+    /**
+     * Get the ISBNs of the books currently borrowed
+     * @return Copy of the ISBNs
+     */
+    public long[] getBorrowedISBNs() {
+        Library owner = library;
+        if (owner == null) {
+            return pendingLoans == null ? new long[0] : pendingLoans.clone();
+        }
+        return owner.getLoans().booksBorrowedBy(memberID);
     }
     
     // Setters
@@ -54,27 +101,45 @@ public class Member implements Serializable {
      * @return true if successful, false otherwise
      */
     public boolean borrowBook(Book book) {
-        // Check if member can borrow more books
-        if (borrowedBooks.size() >= MAX_BORROWED_BOOKS) {
-            System.out.println("Cannot borrow more books. Limit reached (" + MAX_BORROWED_BOOKS + ")");
+        return borrowBook(book, BookStatus.AVAILABLE);
+    }
+    
+    /**
+     * Borrow a book that is in a given state, such as one set aside for this member
+     * @param book The book to borrow
+     * @param from The status the book must have
+     * @return true if successful, false otherwise
+     */
+    boolean borrowBook(Book book, BookStatus from) {
+        Library owner = library;
+        if (owner == null) {
+            Events.emit(EventType.MEMBER_NOT_REGISTERED, memberID);
             return false;
         }
         
-        // Check if book is available
-        if (!book.getStatus().equalsIgnoreCase("Available")) {
-            System.out.println("Book is not available for borrowing");
+        // Check if member can borrow more books
+        if (!canBorrowMore()) {
+            Events.emit(EventType.LOAN_LIMIT_REACHED, memberID, name, MAX_BORROWED_BOOKS);
             return false;
         }
         
         // Check if member already has this book
-        if (borrowedBooks.contains(book)) {
-            System.out.println("You already have this book");
+        if (hasBorrowed(book.getISBN())) {
+            Events.emit(EventType.ALREADY_BORROWED, memberID, name, book.getISBN(), book.getTitle());
             return false;
         }
         
-        // Borrow the book
-        borrowedBooks.add(book);
-        book.setStatus("Borrowed");
+        // Borrow the book; only one member can move it out of its current state
+        if (!book.changeStatus(from, BookStatus.BORROWED)) {
+            Events.emit(EventType.BOOK_UNAVAILABLE, book.getISBN(), book.getTitle());
+            return false;
+        }
+        long now = System.currentTimeMillis();
+        if (!owner.getLoans().lend(book.getISBN(), memberID, now, now + owner.getLoanPeriodMillis())) {
+            book.changeStatus(BookStatus.BORROWED, from);
+            Events.emit(EventType.BOOK_UNAVAILABLE, book.getISBN(), book.getTitle());
+            return false;
+        }
         return true;
     }
    
@@ -84,11 +149,23 @@ public class Member implements Serializable {
      * @return true if successful, false otherwise
      */
     public boolean returnBook(Book book) {
-        if (borrowedBooks.remove(book)) {
-            book.setStatus("Available");
+        return returnBook(book, BookStatus.AVAILABLE);
+    }
+    
+    /**
+     * Return a borrowed book, leaving it in a given state such as set aside
+     * for the next member waiting
+     * @param book The book to return
+     * @param to The status the book moves to
+     * @return true if successful, false otherwise
+     */
+    boolean returnBook(Book book, BookStatus to) {
+        Library owner = library;
+        if (owner != null && owner.getLoans().release(book.getISBN(), memberID)) {
+            book.changeStatus(BookStatus.BORROWED, to);
             return true;
         }
-        System.out.println("This book was not borrowed by this member");
+        Events.emit(EventType.NOT_BORROWED_BY, memberID, name, book.getISBN(), book.getTitle());
         return false;
     }
     
@@ -97,7 +174,87 @@ public class Member implements Serializable {
      * @return number of borrowed books
      */
     public int getBorrowedBooksCount() {
-        return borrowedBooks.size();
+        Library owner = library;
+        if (owner == null) {
+            return pendingLoans == null ? 0 : pendingLoans.length;
+        }
+        return owner.getLoans().countBorrowedBy(memberID);
+    }
+    
+    /**
+     * Check if member currently has a book with the given ISBN
+     * @param ISBN The book's ISBN
+     * @return true if the book is among the borrowed books
+     */
+    public boolean hasBorrowed(long ISBN) {
+        Library owner = library;
+        if (owner == null) {
+            return pendingLoans != null && Arrays.stream(pendingLoans).anyMatch(i -> i == ISBN);
+        }
+        return owner.getLoans().borrowerOf(ISBN) == memberID;
+    }
+    
+    /**
+     * Record a loan without checking borrowing rules (used when loading saved data)
+     * @param book The borrowed book
+     */
+    public void restoreLoan(Book book) {
+        restoreLoan(book, 0, 0);
+    }
+    
+    /**
+     * Record a loan and its dates without checking borrowing rules (used when loading saved data).
+     * A loan saved without dates keeps the dates it already has here, or is
+     * given a full loan period from now. A book whose status may not become
+     * Borrowed, such as one marked lost, is not lent.
+     * @param book The borrowed book
+     * @param borrowedMillis When it was borrowed, or 0 if not known
+     * @param dueMillis When it is due back, or 0 if not known
+     */
+    public void restoreLoan(Book book, long borrowedMillis, long dueMillis) {
+        if (!book.changeStatus(BookStatus.BORROWED)) {
+            Events.emit(EventType.BOOK_UNAVAILABLE, book.getISBN(), book.getTitle());
+            return;
+        }
+        Library owner = library;
+        if (owner == null) {
+            if (!hasBorrowed(book.getISBN())) {
+                long[] loans = pendingLoans == null ? new long[0] : pendingLoans;
+                pendingLoans = Arrays.copyOf(loans, loans.length + 1);
+                pendingLoans[loans.length] = book.getISBN();
+            }
+        } else {
+            if (dueMillis == 0) {
+                LoanTable.DueLoan current = owner.getLoans().loanOf(book.getISBN());
+                if (current != null && current.getMemberID() == memberID) {
+                    borrowedMillis = current.getBorrowedMillis();
+                    dueMillis = current.getDueMillis();
+                } else {
+                    long now = System.currentTimeMillis();
+                    borrowedMillis = now;
+                    dueMillis = now + owner.getLoanPeriodMillis();
+                }
+            }
+            owner.getLoans().restore(book.getISBN(), memberID, borrowedMillis, dueMillis);
+        }
+    }
+    
+    /**
+     * Set or clear the owning library (called by Library.addMember/removeMember).
+     * Loans read from the legacy serialized form are handed to the library's loan table.
+     */
+    void setLibrary(Library library) {
+        this.library = library;
+        long[] loans = pendingLoans;
+        if (library != null && loans != null) {
+            pendingLoans = null;
+            for (long ISBN : loans) {
+                Book book = library.findBook(ISBN);
+                if (book != null) {
+                    restoreLoan(book);
+                }
+            }
+        }
     }
     
     /**
@@ -105,7 +262,7 @@ public class Member implements Serializable {
      * @return true if member can borrow more books
      */
     public boolean canBorrowMore() {
-        return borrowedBooks.size() < MAX_BORROWED_BOOKS;
+        return getBorrowedBooksCount() < MAX_BORROWED_BOOKS;
     }
     
     /**
@@ -115,9 +272,37 @@ public class Member implements Serializable {
         try (FileOutputStream fileOut = new FileOutputStream(FILENAME);
              ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
             out.writeObject(this);
-            System.out.println("Member serialized and saved to " + FILENAME);
+            Events.info("Member serialized and saved to " + FILENAME);
         } catch (IOException e) {
-            e.printStackTrace();
+            Events.error("Error saving to " + FILENAME + ": " + e.getMessage(), e);
+        }
+    }
+    
+    /**
+     * Write loans in the legacy form, as the list of borrowed books
+     */
+    private void writeObject(ObjectOutputStream out) throws IOException {
+        ObjectOutputStream.PutField fields = out.putFields();
+        fields.put("memberID", memberID);
+        fields.put("name", name);
+        fields.put("borrowedBooks", getBorrowedBooks());
+        out.writeFields();
+    }
+    
+    /**
+     * Read the legacy form, keeping the borrowed ISBNs until the member joins a library
+     */
+    private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream.GetField fields = in.readFields();
+        memberID = fields.get("memberID", 0L);
+        name = (String) fields.get("name", null);
+        
+        ArrayList<?> borrowed = (ArrayList<?>) fields.get("borrowedBooks", null);
+        if (borrowed != null && !borrowed.isEmpty()) {
+            pendingLoans = new long[borrowed.size()];
+            for (int i = 0; i < pendingLoans.length; i++) {
+                pendingLoans[i] = ((Book) borrowed.get(i)).getISBN();
+            }
         }
     }
     
@@ -126,7 +311,7 @@ public class Member implements Serializable {
         return "Member{" +
                "memberID=" + memberID +
                ", name='" + name + '\'' +
-               ", borrowedBooks=" + borrowedBooks.size() +
+               ", borrowedBooks=" + getBorrowedBooksCount() +
                " book(s)" +
                '}';
     }
@@ -135,6 +320,7 @@ public class Member implements Serializable {
      * Display all borrowed books
      */
     public void displayBorrowedBooks() {
+        ArrayList<Book> borrowedBooks = getBorrowedBooks();
         if (borrowedBooks.isEmpty()) {
             System.out.println(name + " has no borrowed books.");
         } else {
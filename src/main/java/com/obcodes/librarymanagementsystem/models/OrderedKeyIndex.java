@@ -0,0 +1,90 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * The ISBNs or member IDs of a library in ascending order, so listings can
+ * be read a page at a time: each page starts after the last key of the one
+ * before (keyset paging) and costs only the keys on it, wherever it falls.
+ * Readers share a read lock; adding or removing a key takes the write lock.
+ *
+ * @author Obakeng Phale
+ */
+public class OrderedKeyIndex {
+    private final LongSortedSet keys = new LongSortedSet();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    public void add(long key) {
+        lock.writeLock().lock();
+        try {
+            keys.add(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Add many keys under one lock, e.g. when a library is loaded
+     * @param sorted The keys in ascending order, without repeats
+     * @param count Number of keys to add from the start of the array
+     */
+    public void addAll(long[] sorted, int count) {
+        lock.writeLock().lock();
+        try {
+            keys.addAll(sorted, count);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long key) {
+        lock.readLock().lock();
+        try {
+            return keys.contains(key);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void remove(long key) {
+        lock.writeLock().lock();
+        try {
+            keys.remove(key);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Copy the keys greater than a key, in ascending order
+     * @param after Only keys greater than this are copied
+     * @param out Array to copy into, at most out.length keys are copied
+     * @return Number of keys copied
+     */
+    public int keysAfter(long after, long[] out) {
+        lock.readLock().lock();
+        try {
+            return keys.keysAfter(after, out, 0, out.length);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return keys.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            keys.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One page of a listing in key order (ISBN for books, ID for members).
+ * The next page is requested with {@link #getNextCursor()}, so pages stay
+ * consistent while records are added or removed between requests.
+ *
+ * @author Obakeng Phale
+ */
+public final class Page<T> {
+    /** Cursor for the first page */
+    public static final long START = Long.MIN_VALUE;
+
+    private final List<T> items;
+    private final long nextCursor;
+    private final boolean hasMore;
+
+    Page(List<T> items, long nextCursor, boolean hasMore) {
+        this.items = Collections.unmodifiableList(items);
+        this.nextCursor = nextCursor;
+        this.hasMore = hasMore;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    /**
+     * Get the cursor to pass for the page after this one
+     * @return The key of the last item on this page, or the cursor this page
+     *         was requested with if it is empty
+     */
+    public long getNextCursor() {
+        return nextCursor;
+    }
+
+    /**
+     * Check whether there are more items after this page
+     * @return true if at least one more item followed this page when it was read
+     */
+    public boolean hasMore() {
+        return hasMore;
+    }
+
+    public boolean isEmpty() {
+        return items.isEmpty();
+    }
+}
@@ -0,0 +1,106 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * The ISBNs of a library's books grouped by status, each group in ISBN
+ * order, so listing the books with one status costs the size of the
+ * listing rather than the size of the catalog.
+ *
+ * Books are split across segments by ISBN hash, each with its own lock and
+ * one sorted set per status, so checkouts of different books rarely wait
+ * for each other. A page is merged from the segments' sets.
+ *
+ * Status changes are applied after the book's compare-and-set, so two
+ * changes to one book can reach the index in either order. Each update
+ * therefore reads the book's status again under the segment lock and files
+ * the book under that: whichever update runs last sees the final status.
+ *
+ * @author Obakeng Phale
+ */
+final class StatusIndex {
+    private static final int SEGMENT_BITS = 4;
+
+    private final Segment[] segments = new Segment[1 << SEGMENT_BITS];
+
+    StatusIndex() {
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment();
+        }
+    }
+
+    /**
+     * File a book under its current status after it has changed
+     * @param book The book
+     * @param previous The status it had before the change, or null if it was
+     *                 not in the index
+     */
+    void update(Book book, BookStatus previous) {
+        Segment segment = segments[LongHash.segment(book.getISBN(), SEGMENT_BITS)];
+        segment.lock.lock();
+        try {
+            // Null once the book has left the library
+            BookStatus current = book.countedStatus();
+            if (previous != null && previous != current) {
+                segment.byStatus[previous.getCode()].remove(book.getISBN());
+            }
+            if (current != null) {
+                segment.byStatus[current.getCode()].add(book.getISBN());
+            }
+        } finally {
+            segment.lock.unlock();
+        }
+    }
+
+    /**
+     * Copy the ISBNs of books with a status that are greater than an ISBN, in ascending order
+     * @param status The status
+     * @param after Only ISBNs greater than this are copied
+     * @param out Array to copy into, at most out.length ISBNs are copied
+     * @return Number of ISBNs copied
+     */
+    int keysAfter(BookStatus status, long after, long[] out) {
+        int limit = out.length;
+        // The first ISBNs after the cursor in each segment; the answer is the
+        // smallest of them, found by merging
+        long[][] heads = new long[segments.length][];
+        int[] counts = new int[segments.length];
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            heads[i] = new long[limit];
+            segment.lock.lock();
+            try {
+                counts[i] = segment.byStatus[status.getCode()].keysAfter(after, heads[i], 0, limit);
+            } finally {
+                segment.lock.unlock();
+            }
+        }
+
+        int[] next = new int[segments.length];
+        int copied = 0;
+        while (copied < limit) {
+            int min = -1;
+            for (int i = 0; i < segments.length; i++) {
+                if (next[i] < counts[i] && (min < 0 || heads[i][next[i]] < heads[min][next[min]])) {
+                    min = i;
+                }
+            }
+            if (min < 0) {
+                break;
+            }
+            out[copied++] = heads[min][next[min]++];
+        }
+        return copied;
+    }
+
+    private static final class Segment {
+        final ReentrantLock lock = new ReentrantLock();
+        final LongSortedSet[] byStatus = new LongSortedSet[BookStatus.count()];
+
+        Segment() {
+            for (int i = 0; i < byStatus.length; i++) {
+                byStatus[i] = new LongSortedSet();
+            }
+        }
+    }
+}
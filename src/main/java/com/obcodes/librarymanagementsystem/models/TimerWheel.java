@@ -0,0 +1,123 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.Arrays;
+
+/**
+ * A hashed timer wheel: a ring of slots, one per tick, each holding the
+ * keys that come due in that tick of this or a later turn of the wheel.
+ * Scheduling adds a key to one slot and advancing visits only the slots of
+ * the ticks that have passed, so neither costs more as more keys wait.
+ *
+ * Keys are never cancelled. When a key comes due the caller checks whether
+ * its deadline still applies, so a key may be scheduled more than once.
+ *
+ * @author Obakeng Phale
+ */
+final class TimerWheel {
+    private static final long[] EMPTY = new long[0];
+
+    private final long tickMillis;
+    private final int mask;
+    // Per slot: key and deadline pairs, then unused space
+    private final long[][] entries;
+    // Longs in use per slot
+    private final int[] used;
+    // Next tick to visit
+    private long tick;
+    private int size;
+
+    /**
+     * @param slots Number of slots, rounded up to a power of two
+     * @param tickMillis Length of a tick
+     * @param nowMillis Current time; the first tick visited is the one after it
+     */
+    TimerWheel(int slots, long tickMillis, long nowMillis) {
+        int size = Integer.highestOneBit(Math.max(1, slots - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.mask = size - 1;
+        this.entries = new long[size][];
+        this.used = new int[size];
+        Arrays.fill(entries, EMPTY);
+        this.tick = nowMillis / tickMillis;
+    }
+
+    /**
+     * Add a key to come due at a time
+     * @param key The key
+     * @param deadlineMillis When it is due; past deadlines are due at the next advance
+     */
+    synchronized void schedule(long key, long deadlineMillis) {
+        // The first tick that starts at or after the deadline, so the key is due when visited
+        long due = Math.max(Math.ceilDiv(deadlineMillis, tickMillis), tick);
+        int slot = (int) (due & mask);
+        long[] slotEntries = entries[slot];
+        int n = used[slot];
+        if (n == slotEntries.length) {
+            slotEntries = Arrays.copyOf(slotEntries, Math.max(4, n * 2));
+            entries[slot] = slotEntries;
+        }
+        slotEntries[n] = key;
+        slotEntries[n + 1] = deadlineMillis;
+        used[slot] = n + 2;
+        size++;
+    }
+
+    /**
+     * Visit the ticks up to a time and take out the keys that are due.
+     * After a gap of more than one turn each slot is visited once.
+     * @param nowMillis The current time
+     * @return Keys whose deadline is at or before nowMillis, in no set order
+     */
+    synchronized long[] advance(long nowMillis) {
+        long last = nowMillis / tickMillis;
+        if (last < tick) {
+            return EMPTY;
+        }
+        long[] due = EMPTY;
+        int count = 0;
+        long end = Math.min(last, tick + mask);
+        for (long t = tick; t <= end; t++) {
+            int slot = (int) (t & mask);
+            long[] slotEntries = entries[slot];
+            int n = used[slot];
+            int kept = 0;
+            for (int i = 0; i < n; i += 2) {
+                if (slotEntries[i + 1] <= nowMillis) {
+                    if (count == due.length) {
+                        due = Arrays.copyOf(due, Math.max(16, count * 2));
+                    }
+                    due[count++] = slotEntries[i];
+                } else {
+                    // Due in a later turn
+                    slotEntries[kept] = slotEntries[i];
+                    slotEntries[kept + 1] = slotEntries[i + 1];
+                    kept += 2;
+                }
+            }
+            used[slot] = kept;
+            if (kept == 0 && slotEntries.length > 64) {
+                entries[slot] = EMPTY;
+            }
+        }
+        tick = last + 1;
+        size -= count;
+        return count == due.length ? due : Arrays.copyOf(due, count);
+    }
+
+    /**
+     * Get the number of keys waiting
+     * @return Key count
+     */
+    synchronized int size() {
+        return size;
+    }
+
+    /**
+     * Remove every key
+     */
+    synchronized void clear() {
+        Arrays.fill(entries, EMPTY);
+        Arrays.fill(used, 0);
+        size = 0;
+    }
+}
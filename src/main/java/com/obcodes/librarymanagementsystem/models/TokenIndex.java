@@ -0,0 +1,249 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Inverted index over one text field of the catalog (title or author).
+ * Text is normalized once when a book is indexed. A query only visits the
+ * postings of vocabulary tokens that can contain it, instead of every book.
+ * Substring lookups within a token go through a trigram map over the
+ * vocabulary; queries of one or two characters, too short for a trigram,
+ * go through a separate map of every one- and two-character substring, so
+ * neither scans the catalog or the vocabulary. Postings are primitive long
+ * sets, so a search never boxes an ISBN until it builds its result.
+ * Searches share a read lock; indexing a book takes the write lock.
+ *
+ * @author Obakeng Phale
+ */
+public class TokenIndex {
+    private static final int GRAM = 3;
+
+    // ISBN -> normalized text, used to confirm a candidate really matches
+    private final LongObjectMap<String> texts = new LongObjectMap<>();
+    // token -> ISBNs of books whose text contains that token
+    private final Map<String, LongHashSet> postings = new HashMap<>();
+    // trigram -> vocabulary tokens containing that trigram
+    private final Map<String, Set<String>> grams = new HashMap<>();
+    // one- or two-character substring -> vocabulary tokens containing it
+    private final Map<String, Set<String>> shortGrams = new HashMap<>();
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * Index the text of a book, replacing any text previously indexed for it
+     * @param ISBN The book's ISBN
+     * @param text The text to index
+     */
+    public void put(long ISBN, String text) {
+        String normalized = normalize(text);
+        ArrayList<String> tokens = tokenize(normalized);
+        lock.writeLock().lock();
+        try {
+            removeLocked(ISBN);
+            texts.put(ISBN, normalized);
+            for (String token : tokens) {
+                LongHashSet isbns = postings.get(token);
+                if (isbns == null) {
+                    isbns = new LongHashSet();
+                    postings.put(token, isbns);
+                    addGrams(token);
+                }
+                isbns.add(ISBN);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Remove a book from the index
+     * @param ISBN The book's ISBN
+     */
+    public void remove(long ISBN) {
+        lock.writeLock().lock();
+        try {
+            removeLocked(ISBN);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(long ISBN) {
+        String normalized = texts.remove(ISBN);
+        if (normalized == null) {
+            return;
+        }
+        for (String token : tokenize(normalized)) {
+            LongHashSet isbns = postings.get(token);
+            if (isbns != null && isbns.remove(ISBN) && isbns.isEmpty()) {
+                postings.remove(token);
+                removeGrams(token);
+            }
+        }
+    }
+
+    /**
+     * Find books whose text contains the query (case-insensitive substring match)
+     * @param query The text to search for
+     * @return ISBNs of matching books
+     */
+    public ArrayList<Long> search(String query) {
+        String needle = normalize(query);
+        ArrayList<String> queryTokens = tokenize(needle);
+        lock.readLock().lock();
+        try {
+            return searchLocked(needle, queryTokens);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private ArrayList<Long> searchLocked(String needle, ArrayList<String> queryTokens) {
+        // Nothing to look up in the postings: fall back to checking every text
+        if (queryTokens.isEmpty()) {
+            ArrayList<Long> results = new ArrayList<>();
+            texts.forEach((ISBN, text) -> {
+                if (text.contains(needle)) {
+                    results.add(ISBN);
+                }
+            });
+            return results;
+        }
+
+        // Every query token must appear inside some token of a matching text
+        LongHashSet candidates = null;
+        for (String queryToken : queryTokens) {
+            LongHashSet matches = booksWithTokenContaining(queryToken);
+            if (candidates == null || matches.size() < candidates.size()) {
+                if (candidates != null) {
+                    matches.retainAll(candidates);
+                }
+                candidates = matches;
+            } else {
+                candidates.retainAll(matches);
+            }
+            if (candidates.isEmpty()) {
+                return new ArrayList<>();
+            }
+        }
+
+        // Confirm the whole query, including spacing and punctuation
+        ArrayList<Long> results = new ArrayList<>(candidates.size());
+        candidates.forEach(ISBN -> {
+            if (texts.get(ISBN).contains(needle)) {
+                results.add(ISBN);
+            }
+        });
+        return results;
+    }
+
+    /**
+     * Get the number of indexed books
+     * @return Indexed book count
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return texts.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Remove every book from the index
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            texts.clear();
+            postings.clear();
+            grams.clear();
+            shortGrams.clear();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    // ==================== HELPERS ====================
+
+    private LongHashSet booksWithTokenContaining(String queryToken) {
+        LongHashSet isbns = new LongHashSet();
+        for (String token : tokensContaining(queryToken)) {
+            isbns.addAll(postings.get(token));
+        }
+        return isbns;
+    }
+
+    private Iterable<String> tokensContaining(String queryToken) {
+        // Too short for a trigram: the short-gram map holds exactly the tokens containing it
+        if (queryToken.length() < GRAM) {
+            Set<String> tokens = shortGrams.get(queryToken);
+            return tokens == null ? Collections.emptyList() : tokens;
+        }
+
+        // Intersect the token sets of every trigram in the query token
+        Set<String> tokens = null;
+        for (int i = 0; i + GRAM <= queryToken.length(); i++) {
+            Set<String> withGram = grams.get(queryToken.substring(i, i + GRAM));
+            if (withGram == null) {
+                return Collections.emptyList();
+            }
+            if (tokens == null) {
+                tokens = new HashSet<>(withGram);
+            } else {
+                tokens.retainAll(withGram);
+            }
+        }
+        tokens.removeIf(token -> !token.contains(queryToken));
+        return tokens;
+    }
+
+    private void addGrams(String token) {
+        for (int length = 1; length <= GRAM; length++) {
+            Map<String, Set<String>> index = length < GRAM ? shortGrams : grams;
+            for (int i = 0; i + length <= token.length(); i++) {
+                index.computeIfAbsent(token.substring(i, i + length), g -> new HashSet<>()).add(token);
+            }
+        }
+    }
+
+    private void removeGrams(String token) {
+        for (int length = 1; length <= GRAM; length++) {
+            Map<String, Set<String>> index = length < GRAM ? shortGrams : grams;
+            for (int i = 0; i + length <= token.length(); i++) {
+                String gram = token.substring(i, i + length);
+                Set<String> tokens = index.get(gram);
+                if (tokens != null && tokens.remove(token) && tokens.isEmpty()) {
+                    index.remove(gram);
+                }
+            }
+        }
+    }
+
+    static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    static ArrayList<String> tokenize(String normalized) {
+        ArrayList<String> tokens = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean wordChar = i < normalized.length()
+                    && Character.isLetterOrDigit(normalized.charAt(i));
+            if (wordChar && start < 0) {
+                start = i;
+            } else if (!wordChar && start >= 0) {
+                tokens.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+}
@@ -0,0 +1,230 @@
+package com.obcodes.librarymanagementsystem.server;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * The little JSON the server needs: writing objects and arrays of strings,
+ * numbers and booleans, and reading request bodies that are a single flat
+ * object. Nested request values are rejected.
+ *
+ * @author Obakeng Phale
+ */
+final class Json {
+    private Json() {
+    }
+
+    /**
+     * A value that is already JSON, written as it is
+     */
+    static final class Raw {
+        final String json;
+
+        Raw(String json) {
+            this.json = json;
+        }
+
+        @Override
+        public String toString() {
+            return json;
+        }
+    }
+
+    /**
+     * Write an object from alternating names and values
+     * @param fields Name, value, name, value...; values may be strings, numbers,
+     *               booleans, null, {@link Raw} or collections of these
+     * @return The JSON text
+     */
+    static Raw object(Object... fields) {
+        StringBuilder sb = new StringBuilder("{");
+        for (int i = 0; i < fields.length; i += 2) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            appendString(sb, (String) fields[i]);
+            sb.append(':');
+            appendValue(sb, fields[i + 1]);
+        }
+        return new Raw(sb.append('}').toString());
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        if (value == null) {
+            sb.append("null");
+        } else if (value instanceof Raw || value instanceof Number || value instanceof Boolean) {
+            sb.append(value);
+        } else if (value instanceof Collection<?> values) {
+            sb.append('[');
+            boolean first = true;
+            for (Object element : values) {
+                if (!first) {
+                    sb.append(',');
+                }
+                appendValue(sb, element);
+                first = false;
+            }
+            sb.append(']');
+        } else {
+            appendString(sb, value.toString());
+        }
+    }
+
+    private static void appendString(StringBuilder sb, String value) {
+        sb.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Read a flat object such as {"memberId": 100000000001, "isbn": "9780000000001"}
+     * @param text The JSON text
+     * @return The fields in order, with numbers and booleans as their text and null as null
+     * @throws IllegalArgumentException if the text is not a flat object
+     */
+    static Map<String, String> parseObject(String text) {
+        Parser parser = new Parser(text);
+        Map<String, String> fields = parser.object();
+        parser.skipSpace();
+        if (parser.at != text.length()) {
+            throw new IllegalArgumentException("Unexpected text after the JSON object");
+        }
+        return fields;
+    }
+
+    private static final class Parser {
+        final String text;
+        int at;
+
+        Parser(String text) {
+            this.text = text;
+        }
+
+        Map<String, String> object() {
+            Map<String, String> fields = new LinkedHashMap<>();
+            expect('{');
+            skipSpace();
+            if (peek() == '}') {
+                at++;
+                return fields;
+            }
+            while (true) {
+                skipSpace();
+                String name = string();
+                skipSpace();
+                expect(':');
+                skipSpace();
+                fields.put(name, value());
+                skipSpace();
+                char c = next();
+                if (c == '}') {
+                    return fields;
+                }
+                if (c != ',') {
+                    throw new IllegalArgumentException("Expected , or } at position " + (at - 1));
+                }
+            }
+        }
+
+        String value() {
+            char c = peek();
+            if (c == '"') {
+                return string();
+            }
+            if (c == '{' || c == '[') {
+                throw new IllegalArgumentException("Nested values are not accepted");
+            }
+            int start = at;
+            while (at < text.length() && ",} \t\r\n".indexOf(text.charAt(at)) < 0) {
+                at++;
+            }
+            String literal = text.substring(start, at);
+            if (literal.equals("null")) {
+                return null;
+            }
+            if (literal.isEmpty() || !(literal.equals("true") || literal.equals("false")
+                    || literal.matches("-?\\d+(\\.\\d+)?([eE][+-]?\\d+)?"))) {
+                throw new IllegalArgumentException("Invalid JSON value at position " + start);
+            }
+            return literal;
+        }
+
+        String string() {
+            expect('"');
+            StringBuilder sb = new StringBuilder();
+            while (true) {
+                char c = next();
+                if (c == '"') {
+                    return sb.toString();
+                }
+                if (c != '\\') {
+                    sb.append(c);
+                    continue;
+                }
+                char escaped = next();
+                switch (escaped) {
+                    case '"', '\\', '/' -> sb.append(escaped);
+                    case 'b' -> sb.append('\b');
+                    case 'f' -> sb.append('\f');
+                    case 'n' -> sb.append('\n');
+                    case 'r' -> sb.append('\r');
+                    case 't' -> sb.append('\t');
+                    case 'u' -> {
+                        if (at + 4 > text.length()) {
+                            throw new IllegalArgumentException("Unterminated JSON string");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(text.substring(at, at + 4), 16));
+                        } catch (NumberFormatException e) {
+                            throw new IllegalArgumentException("Invalid \\u escape at position " + at);
+                        }
+                        at += 4;
+                    }
+                    default -> throw new IllegalArgumentException("Invalid escape at position " + (at - 1));
+                }
+            }
+        }
+
+        void skipSpace() {
+            while (at < text.length() && Character.isWhitespace(text.charAt(at))) {
+                at++;
+            }
+        }
+
+        char peek() {
+            if (at >= text.length()) {
+                throw new IllegalArgumentException("Unexpected end of JSON");
+            }
+            return text.charAt(at);
+        }
+
+        char next() {
+            char c = peek();
+            at++;
+            return c;
+        }
+
+        void expect(char c) {
+            if (next() != c) {
+                throw new IllegalArgumentException("Expected " + c + " at position " + (at - 1));
+            }
+        }
+    }
+}
@@ -0,0 +1,448 @@
+package com.obcodes.librarymanagementsystem.server;
+
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.metrics.Counter;
+import com.obcodes.librarymanagementsystem.metrics.LatencyHistogram;
+import com.obcodes.librarymanagementsystem.metrics.Metrics;
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.LoanTable;
+import com.obcodes.librarymanagementsystem.models.Member;
+import com.obcodes.librarymanagementsystem.services.LibraryService;
+import com.obcodes.librarymanagementsystem.services.NotFoundException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An HTTP server that exposes the library's operations as JSON, so many
+ * kiosks and catalogue terminals can share one library.
+ *
+ * Every request runs on its own virtual thread. A request that waits for
+ * its change to reach disk parks only its virtual thread, so thousands of
+ * clients can be waiting at once without a thread pool to size.
+ *
+ * Endpoints:
+ *   GET  /books?title=...  or  /books?author=...   search, at most {@value #MAX_RESULTS} books
+ *   GET  /books/{isbn}                             one book
+ *   POST /books      {"title", "author"[, "isbn"]}  add a book
+ *   GET  /members/{id}                             one member and the ISBNs they have borrowed
+ *   POST /members    {"name"}                      register a member
+ *   POST /loans      {"memberId", "isbn"}          borrow a book
+ *   GET  /loans[?dueWithinDays=...]                overdue loans, or those due in the coming days
+ *   POST /returns    {"isbn"[, "memberId"]}        return a book
+ *   POST /holds      {"memberId", "isbn"}          queue for a book that is out
+ *   DELETE /holds?memberId=...&isbn=...            cancel a hold
+ *   POST /status     {"isbn", "status"}            mark a book lost, in repair or available
+ *   GET  /stats                                    book and member counts
+ *   GET  /metrics                                  every metric, in text exposition format
+ *
+ * POST bodies are flat JSON objects; query parameters of the same names
+ * are accepted too. Failures are answered with {"error": "..."}: 400 for a
+ * bad request, 404 for an unknown book, member or path, 409 for an
+ * operation the library refused, e.g. borrowing a book already on loan.
+ *
+ * @author Obakeng Phale
+ */
+public final class LibraryServer implements AutoCloseable {
+    public static final int DEFAULT_PORT = 8080;
+    static final int MAX_RESULTS = 100;
+    // Connections the operating system queues before the server accepts them
+    private static final int BACKLOG = 1024;
+    // Largest request body read
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+    // Seconds to let requests in progress finish when the server stops
+    private static final int STOP_DELAY_SECONDS = 2;
+
+    private static final LatencyHistogram REQUESTS =
+        Metrics.histogram("server_request_seconds", "Time to answer an HTTP request");
+    private static final Counter CLIENT_ERRORS =
+        Metrics.counter("server_client_errors_total", "Requests answered with a 4xx status");
+    private static final Counter SERVER_ERRORS =
+        Metrics.counter("server_errors_total", "Requests answered with a 5xx status");
+
+    private final LibraryService service;
+    private final Library library;
+    private final HttpServer server;
+    private final ExecutorService executor;
+
+    /**
+     * Start a server
+     * @param service The library to serve
+     * @param address The address and port to listen on; port 0 picks a free port
+     * @throws IOException if the address cannot be bound
+     */
+    public LibraryServer(LibraryService service, InetSocketAddress address) throws IOException {
+        this.service = service;
+        this.library = service.getLibrary();
+        this.server = HttpServer.create(address, BACKLOG);
+        this.executor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(executor);
+        server.createContext("/", this::handle);
+        server.start();
+        Events.info("Library server listening on " + getAddress());
+    }
+
+    /**
+     * Get the address the server is listening on, with the port it was given
+     * @return The bound address
+     */
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Stop accepting requests, let those in progress finish and stop the server
+     */
+    @Override
+    public void close() {
+        server.stop(STOP_DELAY_SECONDS);
+        executor.close();
+        Events.info("Library server stopped");
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        long start = System.nanoTime();
+        try (exchange) {
+            Response response;
+            try {
+                response = route(exchange);
+            } catch (RequestException e) {
+                response = Response.error(e.status, e.getMessage());
+            } catch (NotFoundException e) {
+                response = Response.error(404, e.getMessage());
+            } catch (IllegalArgumentException e) {
+                response = Response.error(400, e.getMessage());
+            } catch (IllegalStateException e) {
+                response = Response.error(409, e.getMessage());
+            } catch (RuntimeException e) {
+                Events.error("Error answering " + exchange.getRequestMethod() + " "
+                        + exchange.getRequestURI() + ": " + e.getMessage(), e);
+                response = Response.error(500, "Internal error");
+            }
+            send(exchange, response);
+        } finally {
+            REQUESTS.recordSince(start);
+        }
+    }
+
+    private Response route(HttpExchange exchange) throws IOException {
+        String method = exchange.getRequestMethod();
+        String[] path = exchange.getRequestURI().getPath().replaceAll("^/+|/+$", "").split("/+");
+        String resource = path[0];
+
+        if (path.length == 2) {
+            requireMethod(method, "GET");
+            return switch (resource) {
+                case "books" -> getBook(parseNumber("isbn", path[1]));
+                case "members" -> getMember(parseNumber("memberId", path[1]));
+                default -> throw new RequestException(404, "No such resource");
+            };
+        }
+        if (path.length > 2) {
+            throw new RequestException(404, "No such resource");
+        }
+
+        return switch (resource) {
+            case "books" -> method.equals("POST") ? addBook(parameters(exchange))
+                    : searchBooks(requireMethod(method, "GET", parameters(exchange)));
+            case "members" -> registerMember(requireMethod(method, "POST", parameters(exchange)));
+            case "loans" -> method.equals("GET") ? listLoans(parameters(exchange))
+                    : borrowBook(requireMethod(method, "POST", parameters(exchange)));
+            case "returns" -> returnBook(requireMethod(method, "POST", parameters(exchange)));
+            case "holds" -> method.equals("DELETE") ? cancelHold(parameters(exchange))
+                    : placeHold(requireMethod(method, "POST", parameters(exchange)));
+            case "status" -> changeStatus(requireMethod(method, "POST", parameters(exchange)));
+            case "stats" -> {
+                requireMethod(method, "GET");
+                yield stats();
+            }
+            case "metrics" -> {
+                requireMethod(method, "GET");
+                yield new Response(200, "text/plain; version=0.0.4", Metrics.snapshot().toText());
+            }
+            default -> throw new RequestException(404, "No such resource");
+        };
+    }
+
+    // ==================== OPERATIONS ====================
+
+    private Response searchBooks(Map<String, String> parameters) {
+        String title = parameters.get("title");
+        String author = parameters.get("author");
+        if ((title == null) == (author == null) || (title != null ? title : author).isBlank()) {
+            throw new RequestException(400, "Give either title or author to search by");
+        }
+        List<Book> found = title != null ? library.searchBooksByTitle(title.trim())
+                : library.searchBooksByAuthor(author.trim());
+        List<Json.Raw> books = new ArrayList<>();
+        for (Book book : found.subList(0, Math.min(found.size(), MAX_RESULTS))) {
+            books.add(book(book));
+        }
+        return Response.ok(Json.object("total", found.size(), "books", books));
+    }
+
+    private Response getBook(long ISBN) {
+        return Response.ok(book(requireBook(ISBN)));
+    }
+
+    private Response addBook(Map<String, String> parameters) {
+        String title = parameters.get("title");
+        String author = parameters.get("author");
+        String isbn = parameters.get("isbn");
+        long ISBN = isbn == null ? service.addNewBook(title, author)
+                : service.addNewBook(title, author, parseNumber("isbn", isbn));
+        // Another request may remove the book before it is looked up again
+        return new Response(201, book(requireBook(ISBN)));
+    }
+
+    private Response getMember(long memberID) {
+        Member member = requireMember(memberID);
+        List<Long> borrowed = new ArrayList<>();
+        for (long ISBN : member.getBorrowedISBNs()) {
+            borrowed.add(ISBN);
+        }
+        return Response.ok(Json.object("memberId", member.getMemberID(), "name", member.getName(),
+                "borrowed", borrowed));
+    }
+
+    private Response registerMember(Map<String, String> parameters) {
+        long memberID = service.registerMember(parameters.get("name"));
+        return new Response(201, Json.object("memberId", memberID, "name", requireMember(memberID).getName()));
+    }
+
+    private Response borrowBook(Map<String, String> parameters) {
+        long memberID = parseNumber("memberId", required(parameters, "memberId"));
+        long ISBN = parseNumber("isbn", required(parameters, "isbn"));
+        if (!service.borrowBook(memberID, ISBN)) {
+            throw new RequestException(409, "Book " + ISBN + " cannot be borrowed by member " + memberID);
+        }
+        return Response.ok(Json.object("memberId", memberID, "isbn", ISBN, "borrowed", true));
+    }
+
+    private Response listLoans(Map<String, String> parameters) {
+        String days = parameters.get("dueWithinDays");
+        List<LoanTable.DueLoan> found = days == null ? service.getOverdueLoans(MAX_RESULTS)
+                : service.getLoansDueWithin((int) Math.min(parseNumber("dueWithinDays", days), Integer.MAX_VALUE),
+                        MAX_RESULTS);
+        List<Json.Raw> loans = new ArrayList<>();
+        for (LoanTable.DueLoan loan : found) {
+            loans.add(Json.object("isbn", loan.getISBN(), "memberId", loan.getMemberID(),
+                    "borrowed", Instant.ofEpochMilli(loan.getBorrowedMillis()).toString(),
+                    "due", Instant.ofEpochMilli(loan.getDueMillis()).toString()));
+        }
+        return Response.ok(Json.object("loans", loans));
+    }
+
+    private Response returnBook(Map<String, String> parameters) {
+        long ISBN = parseNumber("isbn", required(parameters, "isbn"));
+        String memberId = parameters.get("memberId");
+        boolean returned = memberId == null ? service.returnBook(ISBN)
+                : service.returnBook(parseNumber("memberId", memberId), ISBN);
+        if (!returned) {
+            throw new RequestException(409, "Book " + ISBN + " is not on loan"
+                    + (memberId == null ? "" : " to member " + memberId));
+        }
+        return Response.ok(Json.object("isbn", ISBN, "returned", true));
+    }
+
+    private Response placeHold(Map<String, String> parameters) {
+        long memberID = parseNumber("memberId", required(parameters, "memberId"));
+        long ISBN = parseNumber("isbn", required(parameters, "isbn"));
+        int position = service.placeHold(memberID, ISBN);
+        if (position == 0) {
+            throw new RequestException(409, "Member " + memberID + " cannot place a hold on book " + ISBN);
+        }
+        return new Response(201, Json.object("memberId", memberID, "isbn", ISBN, "position", position));
+    }
+
+    private Response cancelHold(Map<String, String> parameters) {
+        long memberID = parseNumber("memberId", required(parameters, "memberId"));
+        long ISBN = parseNumber("isbn", required(parameters, "isbn"));
+        if (!service.cancelHold(memberID, ISBN)) {
+            throw new RequestException(409, "Member " + memberID + " has no hold on book " + ISBN);
+        }
+        return Response.ok(Json.object("memberId", memberID, "isbn", ISBN, "cancelled", true));
+    }
+
+    private Response changeStatus(Map<String, String> parameters) {
+        long ISBN = parseNumber("isbn", required(parameters, "isbn"));
+        BookStatus status = BookStatus.parse(required(parameters, "status"));
+        boolean changed = switch (status) {
+            case LOST -> service.markBookLost(ISBN);
+            case IN_REPAIR -> service.sendBookForRepair(ISBN);
+            case AVAILABLE -> service.returnBookToShelf(ISBN);
+            default -> throw new RequestException(400, "A book becomes " + status + " through a loan or hold");
+        };
+        if (!changed) {
+            throw new RequestException(409, "Book " + ISBN + " cannot be made " + status + " now");
+        }
+        return Response.ok(Json.object("isbn", ISBN, "status", status.name().toLowerCase()));
+    }
+
+    private Response stats() {
+        List<Object> fields = new ArrayList<>(List.of(
+                "books", library.getTotalBooks(),
+                "members", library.getTotalMembers(),
+                "activeMembers", library.getActiveMembersCount(),
+                "booksHeld", library.getHolds().size()));
+        for (BookStatus status : BookStatus.values()) {
+            fields.add(status.name().toLowerCase());
+            fields.add(library.getBooksCount(status));
+        }
+        return Response.ok(Json.object(fields.toArray()));
+    }
+
+    private Book requireBook(long ISBN) {
+        Book book = library.findBook(ISBN);
+        if (book == null) {
+            throw new RequestException(404, "Book with ISBN " + ISBN + " not found");
+        }
+        return book;
+    }
+
+    private Member requireMember(long memberID) {
+        Member member = library.findMember(memberID);
+        if (member == null) {
+            throw new RequestException(404, "Member with ID " + memberID + " not found");
+        }
+        return member;
+    }
+
+    private Json.Raw book(Book book) {
+        return Json.object("isbn", book.getISBN(), "title", book.getTitle(), "author", book.getAuthor(),
+                "status", book.getStatus().name().toLowerCase(),
+                "holds", library.getHolds().queueLength(book.getISBN()));
+    }
+
+    // ==================== REQUESTS AND RESPONSES ====================
+
+    /**
+     * Read the query parameters and, for a POST, the JSON body; body fields win
+     */
+    private static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+        Map<String, String> parameters = new HashMap<>();
+        String query = exchange.getRequestURI().getRawQuery();
+        if (query != null) {
+            for (String pair : query.split("&")) {
+                int equals = pair.indexOf('=');
+                if (equals > 0) {
+                    parameters.put(URLDecoder.decode(pair.substring(0, equals), StandardCharsets.UTF_8),
+                            URLDecoder.decode(pair.substring(equals + 1), StandardCharsets.UTF_8));
+                }
+            }
+        }
+
+        if (exchange.getRequestMethod().equals("POST")) {
+            String body = readBody(exchange.getRequestBody());
+            if (!body.isBlank()) {
+                try {
+                    parameters.putAll(Json.parseObject(body));
+                } catch (IllegalArgumentException e) {
+                    throw new RequestException(400, "Body is not a flat JSON object: " + e.getMessage());
+                }
+            }
+        }
+        return parameters;
+    }
+
+    private static String readBody(InputStream in) throws IOException {
+        byte[] body = in.readNBytes(MAX_BODY_BYTES + 1);
+        if (body.length > MAX_BODY_BYTES) {
+            throw new RequestException(413, "Request body is larger than " + MAX_BODY_BYTES + " bytes");
+        }
+        return new String(body, StandardCharsets.UTF_8);
+    }
+
+    private static void requireMethod(String method, String allowed) {
+        if (!method.equals(allowed)) {
+            throw new RequestException(405, "Use " + allowed);
+        }
+    }
+
+    private static Map<String, String> requireMethod(String method, String allowed, Map<String, String> parameters) {
+        requireMethod(method, allowed);
+        return parameters;
+    }
+
+    private static String required(Map<String, String> parameters, String name) {
+        String value = parameters.get(name);
+        if (value == null || value.isBlank()) {
+            throw new RequestException(400, "Missing " + name);
+        }
+        return value;
+    }
+
+    private static long parseNumber(String name, String value) {
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            throw new RequestException(400, "Invalid " + name + ": " + value);
+        }
+    }
+
+    private static void send(HttpExchange exchange, Response response) throws IOException {
+        if (response.status >= 500) {
+            SERVER_ERRORS.increment();
+        } else if (response.status >= 400) {
+            CLIENT_ERRORS.increment();
+        }
+        byte[] body = response.body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", response.contentType);
+        exchange.sendResponseHeaders(response.status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static final class Response {
+        final int status;
+        final String contentType;
+        final String body;
+
+        Response(int status, String contentType, String body) {
+            this.status = status;
+            this.contentType = contentType;
+            this.body = body;
+        }
+
+        Response(int status, Json.Raw body) {
+            this(status, "application/json; charset=utf-8", body.json);
+        }
+
+        static Response ok(Json.Raw body) {
+            return new Response(200, body);
+        }
+
+        static Response error(int status, String message) {
+            return new Response(status, Json.object("error", message == null ? "Error" : message));
+        }
+    }
+
+    /**
+     * A request the server refuses, with the status to answer it with
+     */
+    private static final class RequestException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        final int status;
+
+        RequestException(int status, String message) {
+            super(message);
+            this.status = status;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * BackgroundPersistenceService makes library changes durable on a writer
+ * thread so callers never wait for the disk.
+ * Changes only mark the books, members and hold queues they touched as dirty. Every flush
+ * interval the writer appends the current state of each dirty record to the
+ * journal in one batch with one sync, so a book changed many times within an
+ * interval is written once. The flush interval is the most work a crash can lose.
+ *
+ * @author Obakeng Phale
+ */
+public final class BackgroundPersistenceService {
+    private final Library library;
+    private final FileService fileService;
+    private final long flushIntervalMillis;
+    private final Runnable afterFlush;
+    private final ScheduledExecutorService writer;
+
+    // ISBNs and member IDs changed since they were last written
+    private final Set<Long> dirtyBooks = ConcurrentHashMap.newKeySet();
+    private final Set<Long> dirtyMembers = ConcurrentHashMap.newKeySet();
+    // ISBNs whose hold queue changed since it was last written
+    private final Set<Long> dirtyHolds = ConcurrentHashMap.newKeySet();
+
+    private volatile boolean closed;
+
+    /**
+     * Start the writer thread
+     * @param library The library whose records are written
+     * @param fileService The file service whose journal receives the records
+     * @param flushIntervalMillis Time between flushes
+     * @param afterFlush Callback run on the writer thread after each flush, may be null
+     */
+    public BackgroundPersistenceService(Library library, FileService fileService,
+                                        long flushIntervalMillis, Runnable afterFlush) {
+        if (flushIntervalMillis < 1) {
+            throw new IllegalArgumentException("Flush interval must be at least 1 ms");
+        }
+
+        this.library = library;
+        this.fileService = fileService;
+        this.flushIntervalMillis = flushIntervalMillis;
+        this.afterFlush = afterFlush;
+        this.writer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "library-persistence");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.writer.scheduleWithFixedDelay(this::flushAndCompact,
+                flushIntervalMillis, flushIntervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Mark the records a change touched as dirty
+     * @param record The change; loans are part of the book's record
+     */
+    public void record(JournalRecord record) {
+        switch (record.getType()) {
+            case ADD_MEMBER, REMOVE_MEMBER, MEMBER_STATE -> markMemberDirty(record.getMemberID());
+            case HOLD_STATE -> dirtyHolds.add(record.getISBN());
+            default -> markBookDirty(record.getISBN());
+        }
+    }
+
+    public void markBookDirty(long ISBN) {
+        dirtyBooks.add(ISBN);
+    }
+
+    public void markMemberDirty(long memberID) {
+        dirtyMembers.add(memberID);
+    }
+
+    /**
+     * Get the number of records waiting to be written
+     * @return Dirty book, member and hold queue count
+     */
+    public int getDirtyCount() {
+        return dirtyBooks.size() + dirtyMembers.size() + dirtyHolds.size();
+    }
+
+    public long getFlushIntervalMillis() {
+        return flushIntervalMillis;
+    }
+
+    /**
+     * Write every dirty record now and sync the journal
+     * @return true if everything dirty is durable, false if the write failed
+     */
+    public synchronized boolean flush() {
+        // Books are collected before members: a book naming a borrower was
+        // changed after the borrower joined, so the borrower is collected too
+        List<JournalRecord> books = new ArrayList<>();
+        for (Long ISBN : dirtyBooks) {
+            // Removed before reading, so a change made after the read marks it again
+            dirtyBooks.remove(ISBN);
+            Book book = library.findBook(ISBN);
+            books.add(book == null
+                    ? JournalRecord.removeBook(ISBN)
+                    : JournalRecord.bookState(book, library.getLoans().loanOf(ISBN)));
+        }
+
+        List<JournalRecord> records = new ArrayList<>();
+        for (Long memberID : dirtyMembers) {
+            dirtyMembers.remove(memberID);
+            Member member = library.findMember(memberID);
+            records.add(member == null
+                    ? JournalRecord.removeMember(memberID)
+                    : JournalRecord.memberState(member));
+        }
+        // Members first, so replayed loans find their borrowers
+        records.addAll(books);
+
+        // Holds last, so they find their books and set them aside
+        for (Long ISBN : dirtyHolds) {
+            dirtyHolds.remove(ISBN);
+            records.add(JournalRecord.holdState(library.getHolds().get(ISBN)));
+        }
+
+        if (records.isEmpty() || fileService.appendJournal(records)) {
+            return true;
+        }
+
+        // Keep them dirty so the next flush tries again
+        for (JournalRecord record : records) {
+            record(record);
+        }
+        return false;
+    }
+
+    private void flushAndCompact() {
+        try {
+            flush();
+            if (afterFlush != null) {
+                afterFlush.run();
+            }
+        } catch (RuntimeException e) {
+            Events.error("Error in background persistence: " + e.getMessage());
+        }
+    }
+
+    /**
+     * Stop the writer thread, then write and sync everything still dirty
+     * @return true if everything dirty is durable
+     */
+    public boolean close() {
+        if (closed) {
+            return true;
+        }
+        closed = true;
+        writer.shutdown();
+        try {
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return flush();
+    }
+}
@@ -0,0 +1,559 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.events.EventType;
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.metrics.Counter;
+import com.obcodes.librarymanagementsystem.metrics.Metrics;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.zip.CRC32;
+
+/**
+ * BackupStore keeps past versions of the data files without storing the
+ * same bytes twice, so a backup costs about as much as the data that changed
+ * since the previous one.
+ *
+ * A file is cut into chunks where its content says so: a rolling hash over
+ * the last 64 bytes marks a boundary whenever its top bits are zero, giving
+ * chunks of about 8 KiB. An insertion therefore moves only the boundaries
+ * near it, and the chunks after it are found again unchanged. Each chunk is
+ * stored once, under its SHA-256, in chunks/ab/abcd...; a version is just the
+ * list of its chunks' hashes.
+ *
+ * Versions are appended to catalog.bin, framed like the journal as
+ * [length][crc32][payload] so a torn append is dropped when the store is
+ * opened. The catalog is read into memory once, so finding a version never
+ * lists a directory. Old versions are pruned in batches: when a file has
+ * twice as many versions as are kept, the oldest are dropped, the catalog is
+ * rewritten and chunks no version refers to any more are deleted.
+ *
+ * A file whose size and modification time are what they were at its latest
+ * backup is not read again. The times are kept in memory, so the first
+ * backup of each file after the store is opened reads it in full.
+ *
+ * @author Obakeng Phale
+ */
+public class BackupStore implements Closeable {
+    public static final int MAGIC = 0x4C4D5343; // "LMSC"
+    public static final short FORMAT_VERSION = 1;
+
+    static final int HASH_SIZE = 32;
+
+    // Chunks are cut at content-defined boundaries, within these limits
+    static final int MIN_CHUNK_SIZE = 2 * 1024;
+    static final int MAX_CHUNK_SIZE = 64 * 1024;
+    // A boundary falls where the top 13 bits of the rolling hash are zero: one in 8 KiB
+    private static final long BOUNDARY_MASK = -1L << (64 - 13);
+    // Random value per byte for the rolling hash; fixed, so boundaries never move between runs
+    private static final long[] GEAR = gearTable();
+
+    private static final int HEADER_SIZE = 4 + 2;
+    private static final int FRAME_HEADER_SIZE = 8;
+    // Coarsest modification time kept by common file systems; a file changed
+    // closer than this to being read could change again without its time moving
+    private static final long MODIFIED_TIME_RESOLUTION_MILLIS = 2000;
+
+    private static final Counter CHUNKS_WRITTEN =
+        Metrics.counter("backup_chunks_written_total", "Chunks stored by backups");
+    private static final Counter BYTES_WRITTEN =
+        Metrics.counter("backup_bytes_written_total", "Bytes of new chunks stored by backups");
+    private static final Counter BYTES_DEDUPLICATED =
+        Metrics.counter("backup_bytes_deduplicated_total", "Bytes backed up that were already stored");
+
+    private final Path chunkDir;
+    private final Path catalogPath;
+    private final int keptVersions;
+    private final MessageDigest sha256;
+    private FileChannel catalog;
+
+    // Every version in sequence order, and how many versions use each chunk
+    private final List<BackupVersion> versions = new ArrayList<>();
+    private final HashMap<String, Integer> references = new HashMap<>();
+    // Size and modification time of each file when its latest version was taken
+    private final HashMap<String, Stamp> stamps = new HashMap<>();
+    private long lastSequence;
+    private long lastTimeMillis;
+
+    /**
+     * Open the store in a directory, creating it if necessary
+     * @param directory The backup directory
+     * @param keptVersions Number of versions of each file kept after pruning
+     * @throws IOException if the catalog cannot be read or created
+     */
+    public BackupStore(Path directory, int keptVersions) throws IOException {
+        if (keptVersions < 1) {
+            throw new IllegalArgumentException("At least one version must be kept");
+        }
+        this.chunkDir = directory.resolve("chunks");
+        this.catalogPath = directory.resolve("catalog.bin");
+        this.keptVersions = keptVersions;
+        try {
+            this.sha256 = MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+
+        Files.createDirectories(chunkDir);
+        openCatalog();
+    }
+
+    /**
+     * The size and modification time a file had when a version of it was taken
+     */
+    private record Stamp(long sequence, long size, FileTime modified) {
+    }
+
+    /**
+     * Store the current content of a file as a new version. Only chunks the
+     * store does not hold yet are written. If the file has not changed since
+     * its latest version, nothing is written and that version is returned;
+     * a file whose size and modification time have not changed is not read.
+     * @param file The file to back up
+     * @return The file's latest version, or null if the file does not exist
+     * @throws IOException if the file cannot be read or the version cannot be stored
+     */
+    public synchronized BackupVersion backup(Path file) throws IOException {
+        if (!Files.exists(file)) {
+            return null;
+        }
+        String fileName = file.getFileName().toString();
+        BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+        BackupVersion previous = latest(fileName);
+        Stamp stamp = stamps.get(fileName);
+        if (previous != null && stamp != null && stamp.sequence() == previous.getSequence()
+                && stamp.size() == attributes.size() && stamp.modified().equals(attributes.lastModifiedTime())) {
+            return previous;
+        }
+        long readMillis = System.currentTimeMillis();
+
+        ChunkWriter writer = new ChunkWriter();
+        long size = 0;
+        try (InputStream in = Files.newInputStream(file)) {
+            byte[] chunk = new byte[MAX_CHUNK_SIZE];
+            byte[] buffer = new byte[1 << 20];
+            int length = 0;
+            long hash = 0;
+            int read;
+            while ((read = in.read(buffer)) > 0) {
+                size += read;
+                for (int i = 0; i < read; i++) {
+                    byte value = buffer[i];
+                    chunk[length++] = value;
+                    hash = (hash << 1) + GEAR[value & 0xFF];
+                    if ((length >= MIN_CHUNK_SIZE && (hash & BOUNDARY_MASK) == 0)
+                            || length == MAX_CHUNK_SIZE) {
+                        writer.add(chunk, length);
+                        length = 0;
+                    }
+                }
+            }
+            if (length > 0) {
+                writer.add(chunk, length);
+            }
+        }
+
+        // New chunks must survive a crash before the catalog refers to them
+        for (Path directory : writer.directories) {
+            FileService.syncDirectory(directory);
+        }
+        byte[] hashes = writer.hashes.toByteArray();
+        if (previous != null && previous.getSize() == size
+                && Arrays.equals(previous.getChunkHashes(), hashes)) {
+            remember(previous, attributes, size, readMillis);
+            return previous;
+        }
+
+        // Never earlier than the previous version, so versions sort the same by time and sequence
+        long timeMillis = Math.max(System.currentTimeMillis(), lastTimeMillis);
+        BackupVersion version = new BackupVersion(lastSequence + 1, fileName, timeMillis, size, hashes);
+        ByteBuffer frame = encode(version);
+        long end = catalog.position();
+        try {
+            while (frame.hasRemaining()) {
+                catalog.write(frame);
+            }
+            catalog.force(false);
+        } catch (IOException e) {
+            // Cut off the partial entry, or it would hide every entry appended after it
+            catalog.truncate(end);
+            catalog.position(end);
+            throw e;
+        }
+        add(version);
+        remember(version, attributes, size, readMillis);
+
+        CHUNKS_WRITTEN.add(writer.newChunks);
+        BYTES_WRITTEN.add(writer.newBytes);
+        BYTES_DEDUPLICATED.add(size - writer.newBytes);
+        Events.emit(EventType.BACKUP_CREATED, fileName, version.getSequence(), writer.newChunks, writer.newBytes);
+
+        if (versions(fileName).size() >= 2 * keptVersions) {
+            prune();
+        }
+        return version;
+    }
+
+    /**
+     * Note the size and modification time the file had before it was read,
+     * unless it was modified too close to the read to trust its time
+     */
+    private void remember(BackupVersion version, BasicFileAttributes attributes, long size, long readMillis) {
+        if (attributes.size() == size
+                && attributes.lastModifiedTime().toMillis() < readMillis - MODIFIED_TIME_RESOLUTION_MILLIS) {
+            stamps.put(version.getFileName(),
+                    new Stamp(version.getSequence(), size, attributes.lastModifiedTime()));
+        } else {
+            stamps.remove(version.getFileName());
+        }
+    }
+
+    /**
+     * Get every stored version of every file
+     * @return The versions, oldest first
+     */
+    public synchronized List<BackupVersion> versions() {
+        return new ArrayList<>(versions);
+    }
+
+    /**
+     * Get the stored versions of one file
+     * @param fileName The file name, e.g. books.bin
+     * @return The versions, oldest first
+     */
+    public synchronized List<BackupVersion> versions(String fileName) {
+        List<BackupVersion> result = new ArrayList<>();
+        for (BackupVersion version : versions) {
+            if (version.getFileName().equals(fileName)) {
+                result.add(version);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get the most recent version of a file
+     * @param fileName The file name, e.g. books.bin
+     * @return The version, or null if the file has never been backed up
+     */
+    public synchronized BackupVersion latest(String fileName) {
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            if (versions.get(i).getFileName().equals(fileName)) {
+                return versions.get(i);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Get the version a file had at a point in time
+     * @param fileName The file name, e.g. books.bin
+     * @param time The point in time
+     * @return The latest version stored at or before that time, or null if there is none
+     */
+    public synchronized BackupVersion asOf(String fileName, Instant time) {
+        long timeMillis = time.toEpochMilli();
+        for (int i = versions.size() - 1; i >= 0; i--) {
+            BackupVersion version = versions.get(i);
+            if (version.getFileName().equals(fileName) && version.getTimeMillis() <= timeMillis) {
+                return version;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Write a stored version to a file, replacing the file in one step once
+     * every chunk has been read back and checked against its hash
+     * @param version The version to restore
+     * @param target The file to write
+     * @throws IOException if a chunk is missing or damaged, or the file cannot be written
+     */
+    public synchronized void restore(BackupVersion version, Path target) throws IOException {
+        Path temp = target.resolveSibling(target.getFileName() + ".restore");
+        byte[] hashes = version.getChunkHashes();
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (int offset = 0; offset < hashes.length; offset += HASH_SIZE) {
+                byte[] hash = Arrays.copyOfRange(hashes, offset, offset + HASH_SIZE);
+                byte[] chunk = Files.readAllBytes(chunkPath(hex(hash)));
+                if (!Arrays.equals(sha256.digest(chunk), hash)) {
+                    throw new IOException("Backup chunk " + hex(hash) + " is damaged");
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(chunk);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+            }
+            if (out.size() != version.getSize()) {
+                throw new IOException("Restored " + out.size() + " bytes of " + version.getFileName()
+                        + ", expected " + version.getSize());
+            }
+            out.force(true);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+        FileService.replaceAtomically(temp, target);
+    }
+
+    /**
+     * Close the catalog
+     */
+    @Override
+    public synchronized void close() {
+        if (catalog != null) {
+            try {
+                catalog.close();
+            } catch (IOException e) {
+                Events.error("Error closing backup catalog: " + e.getMessage());
+            }
+            catalog = null;
+        }
+    }
+
+    // ==================== CATALOG ====================
+
+    private void openCatalog() throws IOException {
+        catalog = FileChannel.open(catalogPath, StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        if (catalog.size() == 0) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(FORMAT_VERSION).flip();
+            while (header.hasRemaining()) {
+                catalog.write(header);
+            }
+            catalog.force(true);
+            return;
+        }
+
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(catalogPath)))) {
+            if (in.readInt() != MAGIC || in.readShort() != FORMAT_VERSION) {
+                catalog.close();
+                throw new IOException(catalogPath + " is not a backup catalog");
+            }
+            long valid = HEADER_SIZE;
+            while (true) {
+                int length;
+                int crc;
+                byte[] payload;
+                try {
+                    length = in.readInt();
+                    crc = in.readInt();
+                    if (length <= 0 || length > catalog.size()) {
+                        break;
+                    }
+                    payload = new byte[length];
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    break;
+                }
+                if (crc32(payload) != crc) {
+                    break;
+                }
+                add(decode(payload));
+                valid += FRAME_HEADER_SIZE + length;
+            }
+            if (valid < catalog.size()) {
+                // A backup was interrupted while its entry was being appended
+                Events.warn("Dropping " + (catalog.size() - valid) + " damaged byte(s) at the end of " + catalogPath);
+                catalog.truncate(valid);
+            }
+            catalog.position(valid);
+        }
+    }
+
+    private void add(BackupVersion version) {
+        versions.add(version);
+        lastSequence = Math.max(lastSequence, version.getSequence());
+        lastTimeMillis = Math.max(lastTimeMillis, version.getTimeMillis());
+        for (String hash : distinctChunks(version)) {
+            references.merge(hash, 1, Integer::sum);
+        }
+    }
+
+    /**
+     * Drop the oldest versions of any file with more than the kept number,
+     * rewrite the catalog without them and delete chunks left unused
+     */
+    private void prune() throws IOException {
+        HashMap<String, Integer> remaining = new HashMap<>();
+        for (BackupVersion version : versions) {
+            remaining.merge(version.getFileName(), 1, Integer::sum);
+        }
+
+        List<BackupVersion> kept = new ArrayList<>();
+        List<BackupVersion> dropped = new ArrayList<>();
+        for (BackupVersion version : versions) {
+            int left = remaining.get(version.getFileName());
+            if (left > keptVersions) {
+                dropped.add(version);
+                remaining.put(version.getFileName(), left - 1);
+            } else {
+                kept.add(version);
+            }
+        }
+        if (dropped.isEmpty()) {
+            return;
+        }
+
+        // The new catalog is in place before any chunk goes, so no version ever loses one
+        Path temp = catalogPath.resolveSibling(catalogPath.getFileName() + ".tmp");
+        try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).putInt(MAGIC).putShort(FORMAT_VERSION).flip();
+            while (header.hasRemaining()) {
+                out.write(header);
+            }
+            for (BackupVersion version : kept) {
+                ByteBuffer frame = encode(version);
+                while (frame.hasRemaining()) {
+                    out.write(frame);
+                }
+            }
+            out.force(true);
+        }
+        catalog.close();
+        try {
+            FileService.replaceAtomically(temp, catalogPath);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        } finally {
+            // The old catalog if the new one could not be put in place, so backups go on either way
+            catalog = FileChannel.open(catalogPath, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            catalog.position(catalog.size());
+        }
+
+        versions.clear();
+        versions.addAll(kept);
+        int deleted = 0;
+        for (BackupVersion version : dropped) {
+            for (String hash : distinctChunks(version)) {
+                if (references.merge(hash, -1, Integer::sum) == 0) {
+                    references.remove(hash);
+                    if (Files.deleteIfExists(chunkPath(hash))) {
+                        deleted++;
+                    }
+                }
+            }
+        }
+        Events.info("Pruned " + dropped.size() + " old backup version(s) and " + deleted + " unused chunk(s)");
+    }
+
+    private static ByteBuffer encode(BackupVersion version) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64 + version.getChunkHashes().length);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(version.getSequence());
+            out.writeLong(version.getTimeMillis());
+            out.writeLong(version.getSize());
+            out.writeUTF(version.getFileName());
+            out.writeInt(version.getChunkCount());
+            out.write(version.getChunkHashes());
+        }
+        byte[] payload = bytes.toByteArray();
+        return ByteBuffer.allocate(FRAME_HEADER_SIZE + payload.length)
+                .putInt(payload.length).putInt(crc32(payload)).put(payload).flip();
+    }
+
+    private static BackupVersion decode(byte[] payload) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(payload));
+        long sequence = in.readLong();
+        long timeMillis = in.readLong();
+        long size = in.readLong();
+        String fileName = in.readUTF();
+        byte[] hashes = new byte[in.readInt() * HASH_SIZE];
+        in.readFully(hashes);
+        return new BackupVersion(sequence, fileName, timeMillis, size, hashes);
+    }
+
+    private static int crc32(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    // ==================== CHUNKS ====================
+
+    /**
+     * Hashes the chunks of one backup and writes those not stored yet
+     */
+    private final class ChunkWriter {
+        final ByteArrayOutputStream hashes = new ByteArrayOutputStream();
+        final HashSet<String> written = new HashSet<>();
+        final HashSet<Path> directories = new HashSet<>();
+        long newChunks;
+        long newBytes;
+
+        void add(byte[] chunk, int length) throws IOException {
+            sha256.update(chunk, 0, length);
+            byte[] hash = sha256.digest();
+            hashes.write(hash);
+
+            String name = hex(hash);
+            if (references.containsKey(name) || !written.add(name)) {
+                return;
+            }
+            Path path = chunkPath(name);
+            if (Files.exists(path)) {
+                // Left by a backup that failed before its catalog entry was written
+                return;
+            }
+            Files.createDirectories(path.getParent());
+            Path temp = path.resolveSibling(name + ".tmp");
+            try (FileChannel out = FileChannel.open(temp, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+                ByteBuffer buffer = ByteBuffer.wrap(chunk, 0, length);
+                while (buffer.hasRemaining()) {
+                    out.write(buffer);
+                }
+                out.force(false);
+            }
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            directories.add(path.getParent());
+            newChunks++;
+            newBytes += length;
+        }
+    }
+
+    private Path chunkPath(String hash) {
+        return chunkDir.resolve(hash.substring(0, 2)).resolve(hash);
+    }
+
+    private static HashSet<String> distinctChunks(BackupVersion version) {
+        byte[] hashes = version.getChunkHashes();
+        HashSet<String> chunks = new HashSet<>();
+        for (int offset = 0; offset < hashes.length; offset += HASH_SIZE) {
+            chunks.add(hex(Arrays.copyOfRange(hashes, offset, offset + HASH_SIZE)));
+        }
+        return chunks;
+    }
+
+    private static String hex(byte[] hash) {
+        return HexFormat.of().formatHex(hash);
+    }
+
+    private static long[] gearTable() {
+        SplittableRandom random = new SplittableRandom(MAGIC);
+        long[] table = new long[256];
+        for (int i = 0; i < table.length; i++) {
+            table[i] = random.nextLong();
+        }
+        return table;
+    }
+}
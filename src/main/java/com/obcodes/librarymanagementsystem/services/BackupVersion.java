@@ -0,0 +1,80 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import java.time.Instant;
+
+/**
+ * One saved version of a data file in the {@link BackupStore}: when it was
+ * taken, how large the file was, and the chunks it is made of.
+ *
+ * @author Obakeng Phale
+ */
+public final class BackupVersion {
+    private final long sequence;
+    private final String fileName;
+    private final long timeMillis;
+    private final long size;
+    // SHA-256 of each chunk in file order, HASH_SIZE bytes apiece
+    private final byte[] chunkHashes;
+
+    BackupVersion(long sequence, String fileName, long timeMillis, long size, byte[] chunkHashes) {
+        this.sequence = sequence;
+        this.fileName = fileName;
+        this.timeMillis = timeMillis;
+        this.size = size;
+        this.chunkHashes = chunkHashes;
+    }
+
+    /**
+     * Get the version's number, which increases with every version stored
+     * @return The sequence number
+     */
+    public long getSequence() {
+        return sequence;
+    }
+
+    /**
+     * Get the name of the data file, e.g. books.bin
+     * @return The file name without its directory
+     */
+    public String getFileName() {
+        return fileName;
+    }
+
+    /**
+     * Get the time the file had this content
+     * @return The time the version was stored
+     */
+    public Instant getTime() {
+        return Instant.ofEpochMilli(timeMillis);
+    }
+
+    long getTimeMillis() {
+        return timeMillis;
+    }
+
+    /**
+     * Get the size of the file
+     * @return Size in bytes
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Get the number of chunks the file is made of
+     * @return Chunk count
+     */
+    public int getChunkCount() {
+        return chunkHashes.length / BackupStore.HASH_SIZE;
+    }
+
+    byte[] getChunkHashes() {
+        return chunkHashes;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("#%d %s %s (%,d bytes, %d chunks)",
+                sequence, getTime(), fileName, size, getChunkCount());
+    }
+}
@@ -0,0 +1,351 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.Isbn;
+import com.obcodes.librarymanagementsystem.models.Library;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * BookImportService loads large delimited book files into a library.
+ * Each line holds an ISBN, title, author and optionally a status, separated
+ * by commas, tabs or vertical bars; the separator is taken from the first
+ * line, which is skipped if it is a header. Fields may be quoted CSV-style,
+ * but a record cannot span lines.
+ *
+ * The file is split into chunks at line boundaries and the chunks are parsed
+ * and validated in parallel. Parsed chunks are then added to the library one
+ * after another in file order, so when an ISBN appears twice the first line
+ * wins, and the same file always gives the same result. Only a few chunks are
+ * in memory at once whatever the size of the file.
+ *
+ * Nothing is saved here; the caller persists once the whole file is in.
+ *
+ * @author Obakeng Phale
+ */
+public class BookImportService {
+    static final int DEFAULT_CHUNK_BYTES = 4 << 20;
+    // Enough of the file to find its first line
+    private static final int SNIFF_BYTES = 64 << 10;
+
+    private final Library library;
+    private final boolean verifyCheckDigits;
+    private final int chunkBytes;
+
+    /**
+     * @param library The library to add books to
+     * @param verifyCheckDigits true to reject ISBNs whose check digit is wrong
+     */
+    public BookImportService(Library library, boolean verifyCheckDigits) {
+        this(library, verifyCheckDigits, DEFAULT_CHUNK_BYTES);
+    }
+
+    BookImportService(Library library, boolean verifyCheckDigits, int chunkBytes) {
+        this.library = library;
+        this.verifyCheckDigits = verifyCheckDigits;
+        this.chunkBytes = chunkBytes;
+    }
+
+    /**
+     * Import every valid line of a file
+     * @param file The file to import
+     * @param rejectsFile File to write every rejected line to, may be null
+     * @return What was imported and rejected
+     * @throws IOException if the file cannot be read or the rejects file written
+     */
+    public ImportReport importFile(Path file, Path rejectsFile) throws IOException {
+        ImportReport report = new ImportReport(file.toString());
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+             BufferedWriter rejects = rejectsFile == null ? null : Files.newBufferedWriter(rejectsFile)) {
+            long size = channel.size();
+            Format format = sniff(channel);
+            // Chunks parsed at once; each wave is added before the next is read
+            int wave = Math.max(2, ForkJoinPool.getCommonPoolParallelism());
+
+            long position = 0;
+            long firstLine = 1;
+            while (position < size) {
+                List<long[]> ranges = new ArrayList<>(wave);
+                while (ranges.size() < wave && position < size) {
+                    long end = lineEnd(channel, Math.min(size, position + chunkBytes), size);
+                    ranges.add(new long[] {position, end});
+                    position = end;
+                }
+
+                long start = System.nanoTime();
+                List<Chunk> chunks;
+                try {
+                    chunks = ranges.parallelStream()
+                            .map(range -> parse(channel, range[0], range[1], format))
+                            .toList();
+                } catch (UncheckedIOException e) {
+                    throw e.getCause();
+                }
+                report.addParseNanos(System.nanoTime() - start);
+
+                start = System.nanoTime();
+                for (Chunk chunk : chunks) {
+                    add(chunk, firstLine, report, rejects);
+                    firstLine += chunk.lines;
+                }
+                report.addInsertNanos(System.nanoTime() - start);
+            }
+            report.addBytes(size);
+        }
+        return report;
+    }
+
+    /**
+     * Add a parsed chunk to the library and report its rejected lines in line order
+     */
+    private void add(Chunk chunk, long firstLine, ImportReport report,
+                     BufferedWriter rejects) throws IOException {
+        List<Rejected> duplicates = new ArrayList<>();
+        int added = library.addBooks(chunk.books, i -> duplicates.add(new Rejected(
+                chunk.bookLines[i], ImportReport.Reason.DUPLICATE,
+                Long.toString(chunk.books.get(i).getISBN()))));
+
+        report.addLines(chunk.lines);
+        report.addImported(added);
+
+        // Both lists are already in line order
+        int p = 0;
+        int d = 0;
+        while (p < chunk.rejected.size() || d < duplicates.size()) {
+            Rejected next = d == duplicates.size()
+                    || (p < chunk.rejected.size() && chunk.rejected.get(p).line < duplicates.get(d).line)
+                    ? chunk.rejected.get(p++) : duplicates.get(d++);
+            long line = firstLine - 1 + next.line;
+            report.reject(line, next.reason, next.detail);
+            if (rejects != null) {
+                rejects.write(ImportReport.formatReject(line, next.reason, next.detail));
+                rejects.newLine();
+            }
+        }
+    }
+
+    /**
+     * Read and parse the lines between two file positions
+     */
+    private Chunk parse(FileChannel channel, long start, long end, Format format) {
+        byte[] bytes = new byte[(int) (end - start)];
+        try {
+            readFully(channel, ByteBuffer.wrap(bytes), start);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        String text = new String(bytes, StandardCharsets.UTF_8);
+
+        Chunk chunk = new Chunk();
+        StringBuilder field = new StringBuilder();
+        int from = 0;
+        while (from < text.length()) {
+            int newline = text.indexOf('\n', from);
+            int to = newline < 0 ? text.length() : newline;
+            chunk.lines++;
+            if (start == 0 && chunk.lines == 1) {
+                if (format.header) {
+                    from = to + 1;
+                    continue;
+                }
+                if (text.charAt(0) == '\uFEFF') {
+                    from++;
+                }
+            }
+            parseLine(text.substring(from, to > from && text.charAt(to - 1) == '\r' ? to - 1 : to),
+                    chunk, format.delimiter, field);
+            from = to + 1;
+        }
+        return chunk;
+    }
+
+    private void parseLine(String line, Chunk chunk, char delimiter, StringBuilder field) {
+        if (line.isBlank()) {
+            return;
+        }
+        List<String> fields = split(line, delimiter, field);
+        if (fields.size() < 3) {
+            chunk.reject(ImportReport.Reason.MALFORMED, line);
+            return;
+        }
+
+        long ISBN = Isbn.parse(fields.get(0), verifyCheckDigits);
+        if (ISBN == Isbn.INVALID) {
+            chunk.reject(ImportReport.Reason.INVALID_ISBN, fields.get(0));
+            return;
+        }
+        if (ISBN == Isbn.BAD_CHECK_DIGIT) {
+            chunk.reject(ImportReport.Reason.BAD_CHECK_DIGIT, fields.get(0));
+            return;
+        }
+        if (fields.get(1).isEmpty()) {
+            chunk.reject(ImportReport.Reason.MISSING_TITLE, line);
+            return;
+        }
+        if (fields.get(2).isEmpty()) {
+            chunk.reject(ImportReport.Reason.MISSING_AUTHOR, line);
+            return;
+        }
+
+        BookStatus status = BookStatus.AVAILABLE;
+        if (fields.size() > 3 && !fields.get(3).isEmpty()) {
+            try {
+                status = BookStatus.parse(fields.get(3));
+            } catch (IllegalArgumentException e) {
+                status = null;
+            }
+            // A borrowed book needs a borrower, which an import cannot give it
+            if (status == null || status == BookStatus.BORROWED) {
+                chunk.reject(ImportReport.Reason.BAD_STATUS, fields.get(3));
+                return;
+            }
+        }
+
+        chunk.add(new Book(fields.get(1), fields.get(2), ISBN, status));
+    }
+
+    /**
+     * Split a line into trimmed fields. A field starting with a double quote
+     * runs to the next lone double quote; doubled quotes inside it stand for one.
+     */
+    static List<String> split(String line, char delimiter, StringBuilder field) {
+        List<String> fields = new ArrayList<>(4);
+        field.setLength(0);
+        boolean quoted = false;
+        boolean atStart = true;
+
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == delimiter) {
+                fields.add(field.toString().trim());
+                field.setLength(0);
+                atStart = true;
+            } else if (c == '"' && atStart) {
+                quoted = true;
+                atStart = false;
+                field.setLength(0);
+            } else {
+                field.append(c);
+                atStart &= Character.isWhitespace(c);
+            }
+        }
+        fields.add(field.toString().trim());
+        return fields;
+    }
+
+    /**
+     * Work out the separator and whether there is a header from the first line
+     */
+    private Format sniff(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(SNIFF_BYTES, channel.size()));
+        readFully(channel, buffer, 0);
+        String text = new String(buffer.array(), 0, buffer.position(), StandardCharsets.UTF_8);
+        int newline = text.indexOf('\n');
+        String first = (newline < 0 ? text : text.substring(0, newline)).replace("\uFEFF", "");
+
+        char delimiter = first.indexOf('\t') >= 0 ? '\t' : first.indexOf('|') >= 0 ? '|' : ',';
+        String isbnField = split(first, delimiter, new StringBuilder()).get(0);
+        boolean header = Isbn.parse(isbnField, false) == Isbn.INVALID
+                && isbnField.toLowerCase().contains("isbn");
+        return new Format(delimiter, header);
+    }
+
+    /**
+     * Find the end of the line a position falls in
+     * @return The position just past the next newline at or after it, or the file size
+     */
+    private static long lineEnd(FileChannel channel, long position, long size) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position);
+            if (read < 0) {
+                break;
+            }
+            position += read;
+        }
+    }
+
+    private static final class Format {
+        final char delimiter;
+        final boolean header;
+
+        Format(char delimiter, boolean header) {
+            this.delimiter = delimiter;
+            this.header = header;
+        }
+    }
+
+    private static final class Rejected {
+        // Line number within the chunk, from 1
+        final int line;
+        final ImportReport.Reason reason;
+        final String detail;
+
+        Rejected(int line, ImportReport.Reason reason, String detail) {
+            this.line = line;
+            this.reason = reason;
+            this.detail = detail;
+        }
+    }
+
+    /**
+     * The valid books and rejected lines of one chunk, in line order
+     */
+    private static final class Chunk {
+        final List<Book> books = new ArrayList<>();
+        int[] bookLines = new int[256];
+        final List<Rejected> rejected = new ArrayList<>();
+        int lines;
+
+        void add(Book book) {
+            if (books.size() == bookLines.length) {
+                bookLines = Arrays.copyOf(bookLines, bookLines.length * 2);
+            }
+            bookLines[books.size()] = lines;
+            books.add(book);
+        }
+
+        void reject(ImportReport.Reason reason, String detail) {
+            rejected.add(new Rejected(lines, reason, detail));
+        }
+    }
+}
@@ -1,36 +1,126 @@
 package com.obcodes.librarymanagementsystem.services;
 
+import com.obcodes.librarymanagementsystem.events.EventType;
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.metrics.LatencyHistogram;
+import com.obcodes.librarymanagementsystem.metrics.Metrics;
 import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookCatalog;
+import com.obcodes.librarymanagementsystem.models.HoldQueues;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.LoanTable;
 import com.obcodes.librarymanagementsystem.models.Member;
 import java.io.*;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.HashMap;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * FileService handles all file operations for the Library Management System
- * Provides data persistence through serialization
+ * Provides data persistence through compact binary record files, with the
+ * original serialized .dat files still readable for conversion
  * @author Obakeng Phale
  */
 public class FileService {
+    // Default data directory, relative to the working directory
+    public static final String DEFAULT_DATA_DIR = "data";
+    
     // File paths
-    private static final String DATA_DIR = "data";
-    private static final String BACKUP_DIR = "data/backups";
-    private static final String BOOKS_FILE = DATA_DIR + "/books.dat";
-    private static final String MEMBERS_FILE = DATA_DIR + "/members.dat";
+    private final String dataDir;
+    private final String backupDir;
+    private final String booksFile;
+    private final String membersFile;
+    private final String journalFile;
+    private final String bookRecordsFile;
+    private final String memberRecordsFile;
+    private final String loanRecordsFile;
+    private final String holdRecordsFile;
+    private final String idAllocationFile;
+    
+    // Number of journal records after which a compacted snapshot is taken
+    private static final int COMPACTION_THRESHOLD = 10000;
+    
+    // Versions of each data file kept in the backup store
+    private static final int KEPT_BACKUP_VERSIONS = 50;
+    
+    // Latency of each persistence call
+    private static final LatencyHistogram SAVE_BOOKS =
+        Metrics.histogram("file_service_save_books_seconds", "Time to write the legacy books file");
+    private static final LatencyHistogram LOAD_BOOKS =
+        Metrics.histogram("file_service_load_books_seconds", "Time to read the legacy books file");
+    private static final LatencyHistogram SAVE_MEMBERS =
+        Metrics.histogram("file_service_save_members_seconds", "Time to write the legacy members file");
+    private static final LatencyHistogram LOAD_MEMBERS =
+        Metrics.histogram("file_service_load_members_seconds", "Time to read the legacy members file");
+    private static final LatencyHistogram SAVE_BOOK_RECORDS =
+        Metrics.histogram("file_service_save_book_records_seconds", "Time to write books.bin, backup included");
+    private static final LatencyHistogram SAVE_MEMBER_RECORDS =
+        Metrics.histogram("file_service_save_member_records_seconds", "Time to write members.bin, backup included");
+    private static final LatencyHistogram SAVE_LOAN_RECORDS =
+        Metrics.histogram("file_service_save_loan_records_seconds", "Time to write loans.bin, backup included");
+    private static final LatencyHistogram SAVE_HOLD_RECORDS =
+        Metrics.histogram("file_service_save_hold_records_seconds", "Time to write holds.bin, backup included");
+    private static final LatencyHistogram LOAD_RECORDS =
+        Metrics.histogram("file_service_load_records_seconds", "Time to map books.bin and read members.bin, loans.bin and holds.bin");
+    private static final LatencyHistogram CONVERT_LEGACY =
+        Metrics.histogram("file_service_convert_legacy_data_seconds", "Time to convert the legacy .dat files");
+    private static final LatencyHistogram APPEND_JOURNAL =
+        Metrics.histogram("file_service_append_journal_seconds", "Time to append and sync journal records");
+    private static final LatencyHistogram REPLAY_JOURNAL =
+        Metrics.histogram("file_service_replay_journal_seconds", "Time to replay the journal at startup");
+    private static final LatencyHistogram ROTATE_JOURNAL =
+        Metrics.histogram("file_service_rotate_journal_seconds", "Time to start a fresh journal before a snapshot");
+    private static final LatencyHistogram DISCARD_JOURNAL =
+        Metrics.histogram("file_service_discard_rotated_journal_seconds", "Time to delete the journal a snapshot replaced");
+    private static final LatencyHistogram CREATE_BACKUP =
+        Metrics.histogram("file_service_create_backup_seconds", "Time to store a data file's new chunks in the backup store");
+    private static final LatencyHistogram RESTORE_BACKUP =
+        Metrics.histogram("file_service_restore_from_backup_seconds", "Time to restore a data file from its latest backup");
+    private static final LatencyHistogram RESTORE_AS_OF =
+        Metrics.histogram("file_service_restore_as_of_seconds", "Time to restore the record files to a point in time");
+    private static final LatencyHistogram DELETE_ALL =
+        Metrics.histogram("file_service_delete_all_data_seconds", "Time to delete every data file");
+    
+    // Journal used when journaling mode is enabled, null otherwise
+    private JournalService journal;
     
-    // Backup file naming
-    private static final DateTimeFormatter BACKUP_FORMATTER = 
-        DateTimeFormatter.ofPattern("yyyyMMdd_HHmmss");
+    // Reader/writer for the binary record files
+    private final RecordFileService records = new RecordFileService();
+    
+    // Past versions of the data files, null if the backup directory could not be opened
+    private BackupStore backups;
     
     /**
      * Initialize FileService - creates necessary directories
      */
     public FileService() {
+        this(DEFAULT_DATA_DIR);
+    }
+    
+    /**
+     * Initialize FileService on another data directory (used by tools and benchmarks)
+     * @param dataDir Directory holding the data files, created if missing
+     */
+    public FileService(String dataDir) {
+        this.dataDir = dataDir;
+        this.backupDir = dataDir + "/backups";
+        this.booksFile = dataDir + "/books.dat";
+        this.membersFile = dataDir + "/members.dat";
+        this.journalFile = dataDir + "/library.journal";
+        this.bookRecordsFile = dataDir + "/books.bin";
+        this.memberRecordsFile = dataDir + "/members.bin";
+        this.loanRecordsFile = dataDir + "/loans.bin";
+        this.holdRecordsFile = dataDir + "/holds.bin";
+        this.idAllocationFile = dataDir + "/ids.bin";
         initializeDirectories();
     }
     
@@ -39,24 +129,34 @@ public class FileService {
      */
     private void initializeDirectories() {
         try {
-            Path dataPath = Paths.get(DATA_DIR);
-            Path backupPath = Paths.get(BACKUP_DIR);
+            Path dataPath = Paths.get(dataDir);
+            Path backupPath = Paths.get(backupDir);
             
             if (!Files.exists(dataPath)) {
                 Files.createDirectories(dataPath);
-                System.out.println("Created data directory: " + DATA_DIR);
+                Events.info("Created data directory: " + dataDir);
             }
             
             if (!Files.exists(backupPath)) {
                 Files.createDirectories(backupPath);
-                System.out.println("Created backup directory: " + BACKUP_DIR);
+                Events.info("Created backup directory: " + backupDir);
             }
+            
+            backups = new BackupStore(backupPath, KEPT_BACKUP_VERSIONS);
         } catch (IOException e) {
-            System.err.println("Error creating directories: " + e.getMessage());
-            e.printStackTrace();
+            Events.error("Error creating directories: " + e.getMessage(), e);
         }
     }
     
+    /**
+     * Open the allocator for new ISBNs and member IDs, which keeps its
+     * reservations in this data directory
+     * @return The allocator
+     */
+    public IdAllocator openIdAllocator() {
+        return new IdAllocator(Paths.get(idAllocationFile));
+    }
+    
     // ==================== BOOK OPERATIONS ====================
     
     /**
@@ -65,28 +165,38 @@ public class FileService {
      * @return true if saved successfully, false otherwise
      */
     public boolean saveBooks(HashMap<Long, Book> books) {
-        if (books == null) {
-            System.err.println("Cannot save null books collection");
-            return false;
-        }
-        
-        // Create backup before saving
-        createBackup(BOOKS_FILE);
-        
-        try (FileOutputStream fileOut = new FileOutputStream(BOOKS_FILE);
-             ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
-            
-            out.writeObject(books);
-            System.out.println("Successfully saved " + books.size() + " book(s) to " + BOOKS_FILE);
-            return true;
+        long start = System.nanoTime();
+        try {
+            if (books == null) {
+                Events.error("Cannot save null books collection");
+                return false;
+            }
             
-        } catch (IOException e) {
-            System.err.println("Error saving books: " + e.getMessage());
-            e.printStackTrace();
+            // Written beside the old file and swapped in, so a crash leaves one or the other
+            Path target = Paths.get(booksFile);
+            Path temp = Paths.get(booksFile + ".tmp");
+            try {
+                try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+                     ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fileOut))) {
+                    
+                    out.writeObject(books);
+                    out.flush();
+                    fileOut.getChannel().force(true);
+                }
+                replaceAtomically(temp, target);
+                
+            } catch (IOException e) {
+                Events.error("Error saving books: " + e.getMessage(), e);
+                deleteQuietly(temp);
+                return false;
+            }
             
-            // Attempt to restore from backup
-            restoreFromBackup(BOOKS_FILE);
-            return false;
+            // Keep the new version in the backup store
+            createBackup(booksFile);
+            Events.emit(EventType.RECORDS_SAVED, "book(s)", books.size(), booksFile);
+            return true;
+        } finally {
+            SAVE_BOOKS.recordSince(start);
         }
     }
     
@@ -96,42 +206,40 @@ public class FileService {
      */
     @SuppressWarnings("unchecked")
     public HashMap<Long, Book> loadBooks() {
-        File file = new File(BOOKS_FILE);
-        
-        // If file doesn't exist, return empty HashMap
-        if (!file.exists()) {
-            System.out.println("Books file not found. Starting with empty collection.");
-            return new HashMap<>();
-        }
-        
-        try (FileInputStream fileIn = new FileInputStream(BOOKS_FILE);
-             ObjectInputStream in = new ObjectInputStream(fileIn)) {
-            
-            HashMap<Long, Book> books = (HashMap<Long, Book>) in.readObject();
-            System.out.println("Successfully loaded " + books.size() + " book(s) from " + BOOKS_FILE);
-            return books;
-            
-        } catch (FileNotFoundException e) {
-            System.out.println("Books file not found. Starting with empty collection.");
-            return new HashMap<>();
+        long start = System.nanoTime();
+        try {
+            File file = new File(booksFile);
             
-        } catch (EOFException e) {
-            System.err.println("Books file is empty or corrupted. Starting with empty collection.");
-            // Try to restore from backup
-            if (restoreFromBackup(BOOKS_FILE)) {
-                return loadBooks(); // Try loading again after restore
+            // If file doesn't exist, return empty HashMap
+            if (!file.exists()) {
+                Events.info("Books file not found. Starting with empty collection.");
+                return new HashMap<>();
             }
-            return new HashMap<>();
             
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading books: " + e.getMessage());
-            e.printStackTrace();
-            
-            // Try to restore from backup
-            if (restoreFromBackup(BOOKS_FILE)) {
-                return loadBooks(); // Try loading again after restore
+            // A damaged file is restored from the latest backup and read once more
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try (FileInputStream fileIn = new FileInputStream(booksFile);
+                     ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(fileIn))) {
+                    
+                    HashMap<Long, Book> books = (HashMap<Long, Book>) in.readObject();
+                    Events.emit(EventType.RECORDS_LOADED, "book(s)", books.size(), booksFile);
+                    return books;
+                    
+                } catch (FileNotFoundException e) {
+                    Events.info("Books file not found. Starting with empty collection.");
+                    return new HashMap<>();
+                    
+                } catch (IOException | ClassNotFoundException e) {
+                    Events.error("Error loading books: " + e.getMessage(), e);
+                    if (attempt > 0 || !restoreFromBackup(booksFile)) {
+                        break;
+                    }
+                }
             }
+            Events.warn("Books file is corrupted. Starting with empty collection.");
             return new HashMap<>();
+        } finally {
+            LOAD_BOOKS.recordSince(start);
         }
     }
     
@@ -143,28 +251,38 @@ public class FileService {
      * @return true if saved successfully, false otherwise
      */
     public boolean saveMembers(HashMap<Long, Member> members) {
-        if (members == null) {
-            System.err.println("Cannot save null members collection");
-            return false;
-        }
-        
-        // Create backup before saving
-        createBackup(MEMBERS_FILE);
-        
-        try (FileOutputStream fileOut = new FileOutputStream(MEMBERS_FILE);
-             ObjectOutputStream out = new ObjectOutputStream(fileOut)) {
-            
-            out.writeObject(members);
-            System.out.println("Successfully saved " + members.size() + " member(s) to " + MEMBERS_FILE);
-            return true;
+        long start = System.nanoTime();
+        try {
+            if (members == null) {
+                Events.error("Cannot save null members collection");
+                return false;
+            }
             
-        } catch (IOException e) {
-            System.err.println("Error saving members: " + e.getMessage());
-            e.printStackTrace();
+            // Written beside the old file and swapped in, so a crash leaves one or the other
+            Path target = Paths.get(membersFile);
+            Path temp = Paths.get(membersFile + ".tmp");
+            try {
+                try (FileOutputStream fileOut = new FileOutputStream(temp.toFile());
+                     ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(fileOut))) {
+                    
+                    out.writeObject(members);
+                    out.flush();
+                    fileOut.getChannel().force(true);
+                }
+                replaceAtomically(temp, target);
+                
+            } catch (IOException e) {
+                Events.error("Error saving members: " + e.getMessage(), e);
+                deleteQuietly(temp);
+                return false;
+            }
             
-            // Attempt to restore from backup
-            restoreFromBackup(MEMBERS_FILE);
-            return false;
+            // Keep the new version in the backup store
+            createBackup(membersFile);
+            Events.emit(EventType.RECORDS_SAVED, "member(s)", members.size(), membersFile);
+            return true;
+        } finally {
+            SAVE_MEMBERS.recordSince(start);
         }
     }
     
@@ -174,156 +292,727 @@ public class FileService {
      */
     @SuppressWarnings("unchecked")
     public HashMap<Long, Member> loadMembers() {
-        File file = new File(MEMBERS_FILE);
-        
-        // If file doesn't exist, return empty HashMap
-        if (!file.exists()) {
-            System.out.println("Members file not found. Starting with empty collection.");
-            return new HashMap<>();
-        }
-        
-        try (FileInputStream fileIn = new FileInputStream(MEMBERS_FILE);
-             ObjectInputStream in = new ObjectInputStream(fileIn)) {
+        long start = System.nanoTime();
+        try {
+            File file = new File(membersFile);
             
-            HashMap<Long, Member> members = (HashMap<Long, Member>) in.readObject();
-            System.out.println("Successfully loaded " + members.size() + " member(s) from " + MEMBERS_FILE);
-            return members;
+            // If file doesn't exist, return empty HashMap
+            if (!file.exists()) {
+                Events.info("Members file not found. Starting with empty collection.");
+                return new HashMap<>();
+            }
             
-        } catch (FileNotFoundException e) {
-            System.out.println("Members file not found. Starting with empty collection.");
+            // A damaged file is restored from the latest backup and read once more
+            for (int attempt = 0; attempt < 2; attempt++) {
+                try (FileInputStream fileIn = new FileInputStream(membersFile);
+                     ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(fileIn))) {
+                    
+                    HashMap<Long, Member> members = (HashMap<Long, Member>) in.readObject();
+                    Events.emit(EventType.RECORDS_LOADED, "member(s)", members.size(), membersFile);
+                    return members;
+                    
+                } catch (FileNotFoundException e) {
+                    Events.info("Members file not found. Starting with empty collection.");
+                    return new HashMap<>();
+                    
+                } catch (IOException | ClassNotFoundException e) {
+                    Events.error("Error loading members: " + e.getMessage(), e);
+                    if (attempt > 0 || !restoreFromBackup(membersFile)) {
+                        break;
+                    }
+                }
+            }
+            Events.warn("Members file is corrupted. Starting with empty collection.");
             return new HashMap<>();
+        } finally {
+            LOAD_MEMBERS.recordSince(start);
+        }
+    }
+    
+    // ==================== RECORD FILE OPERATIONS ====================
+    
+    /**
+     * Save books to the binary record file
+     * @param books The books to save, read once
+     * @return true if saved successfully, false otherwise
+     */
+    public boolean saveBookRecords(Iterable<Book> books) {
+        long start = System.nanoTime();
+        try {
+            if (books == null) {
+                Events.error("Cannot save null books collection");
+                return false;
+            }
             
-        } catch (EOFException e) {
-            System.err.println("Members file is empty or corrupted. Starting with empty collection.");
-            // Try to restore from backup
-            if (restoreFromBackup(MEMBERS_FILE)) {
-                return loadMembers(); // Try loading again after restore
+            // Write beside the old file and swap it in: the old file may still be mapped
+            Path target = Paths.get(bookRecordsFile);
+            Path temp = Paths.get(bookRecordsFile + ".tmp");
+            try {
+                long count = records.writeBooks(temp, books);
+                replaceAtomically(temp, target);
+                createBackup(bookRecordsFile);
+                Events.emit(EventType.RECORDS_SAVED, "book(s)", count, bookRecordsFile);
+                return true;
+            } catch (IOException e) {
+                Events.error("Error saving books: " + e.getMessage());
+                deleteQuietly(temp);
+                return false;
+            }
+        } finally {
+            SAVE_BOOK_RECORDS.recordSince(start);
+        }
+    }
+    
+    /**
+     * Save members to the binary record file
+     * @param members The members to save
+     * @return true if saved successfully, false otherwise
+     */
+    public boolean saveMemberRecords(Collection<Member> members) {
+        long start = System.nanoTime();
+        try {
+            if (members == null) {
+                Events.error("Cannot save null members collection");
+                return false;
             }
-            return new HashMap<>();
             
-        } catch (IOException | ClassNotFoundException e) {
-            System.err.println("Error loading members: " + e.getMessage());
-            e.printStackTrace();
+            Path target = Paths.get(memberRecordsFile);
+            Path temp = Paths.get(memberRecordsFile + ".tmp");
+            try {
+                long count = records.writeMembers(temp, members);
+                replaceAtomically(temp, target);
+                createBackup(memberRecordsFile);
+                Events.emit(EventType.RECORDS_SAVED, "member(s)", count, memberRecordsFile);
+                return true;
+            } catch (IOException e) {
+                Events.error("Error saving members: " + e.getMessage());
+                deleteQuietly(temp);
+                return false;
+            }
+        } finally {
+            SAVE_MEMBER_RECORDS.recordSince(start);
+        }
+    }
+    
+    /**
+     * Save the loan table to the binary record file
+     * @param loans The loans to save
+     * @return true if saved successfully, false otherwise
+     */
+    public boolean saveLoanRecords(LoanTable loans) {
+        long start = System.nanoTime();
+        try {
+            if (loans == null) {
+                Events.error("Cannot save null loan table");
+                return false;
+            }
             
-            // Try to restore from backup
-            if (restoreFromBackup(MEMBERS_FILE)) {
-                return loadMembers(); // Try loading again after restore
+            Path target = Paths.get(loanRecordsFile);
+            Path temp = Paths.get(loanRecordsFile + ".tmp");
+            try {
+                long count = records.writeLoans(temp, loans);
+                replaceAtomically(temp, target);
+                createBackup(loanRecordsFile);
+                Events.emit(EventType.RECORDS_SAVED, "loan(s)", count, loanRecordsFile);
+                return true;
+            } catch (IOException e) {
+                Events.error("Error saving loans: " + e.getMessage());
+                deleteQuietly(temp);
+                return false;
             }
-            return new HashMap<>();
+        } finally {
+            SAVE_LOAN_RECORDS.recordSince(start);
         }
     }
     
-    // ==================== BACKUP OPERATIONS ====================
+    /**
+     * Save the hold queues to the binary record file
+     * @param holds The holds to save
+     * @return true if saved successfully, false otherwise
+     */
+    public boolean saveHoldRecords(HoldQueues holds) {
+        long start = System.nanoTime();
+        try {
+            if (holds == null) {
+                Events.error("Cannot save null hold queues");
+                return false;
+            }
+            
+            Path target = Paths.get(holdRecordsFile);
+            Path temp = Paths.get(holdRecordsFile + ".tmp");
+            try {
+                long count = records.writeHolds(temp, holds);
+                replaceAtomically(temp, target);
+                createBackup(holdRecordsFile);
+                Events.emit(EventType.RECORDS_SAVED, "hold queue(s)", count, holdRecordsFile);
+                return true;
+            } catch (IOException e) {
+                Events.error("Error saving holds: " + e.getMessage());
+                deleteQuietly(temp);
+                return false;
+            }
+        } finally {
+            SAVE_HOLD_RECORDS.recordSince(start);
+        }
+    }
     
     /**
-     * Create a backup of a file before modifying it
-     * @param filePath Path to the file to backup
-     * @return true if backup created successfully, false otherwise
+     * Put a fully written file in place of another in one step, and make the
+     * rename itself durable. The file must already be forced to disk, so after
+     * a crash the target holds either its old content or the new, never a mix.
+     * @param temp The new file, in the same directory as the target
+     * @param target The file to replace
+     * @throws IOException if the file cannot be moved
      */
-    private boolean createBackup(String filePath) {
-        File sourceFile = new File(filePath);
+    static void replaceAtomically(Path temp, Path target) throws IOException {
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        syncDirectory(target.toAbsolutePath().getParent());
+    }
+    
+    /**
+     * Force a directory's entries to disk, so files created or renamed in it
+     * are still there after a crash
+     * @param directory The directory
+     */
+    static void syncDirectory(Path directory) {
+        try (FileChannel channel = FileChannel.open(directory, StandardOpenOption.READ)) {
+            channel.force(true);
+        } catch (IOException e) {
+            // Some platforms cannot open or sync a directory; renames are still atomic there
+        }
+    }
+    
+    private void deleteQuietly(Path path) {
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            Events.error("Could not delete " + path + ": " + e.getMessage());
+        }
+    }
+    
+    /**
+     * Load books, members, then loans and holds from the record files into the library.
+     * An indexed book file is mapped and attached as the library's catalog, so
+     * books are only read when they are first looked up. Other files are read
+     * in parallel, members at the same time as books.
+     * If a file is damaged it is restored from the latest backup and read once more.
+     * @param library The library to load into
+     * @return true if every file was read (or does not exist yet), false otherwise
+     */
+    public boolean loadRecords(Library library) {
+        return loadRecords(library, new LoadReport());
+    }
+    
+    /**
+     * Load the record files into the library, noting in a report how many
+     * records each file held and how long it took
+     * @param library The library to load into
+     * @param report The report to fill in
+     * @return true if every file was read (or does not exist yet), false otherwise
+     */
+    public boolean loadRecords(Library library, LoadReport report) {
+        long start = System.nanoTime();
+        try {
+            // Members in version 1 files carry their loans, which need the books in place
+            Path memberPath = Paths.get(memberRecordsFile);
+            boolean readConcurrently = !Files.exists(memberPath) || !records.holdsMemberLoans(memberPath);
+            CompletableFuture<Long> members = readConcurrently
+                    ? CompletableFuture.supplyAsync(() -> loadMemberRecords(library, report))
+                    : null;
+            
+            long bookStart = System.nanoTime();
+            boolean mapped = mapBookRecords(library);
+            long books = mapped ? library.getTotalBooks()
+                    : loadRecordFile(bookRecordsFile, library, "book(s)", records::readBooks);
+            report.setBooks(books, mapped, System.nanoTime() - bookStart);
+            
+            long memberCount = members != null ? members.join() : loadMemberRecords(library, report);
+            
+            long loanStart = System.nanoTime();
+            long loans = loadRecordFile(loanRecordsFile, library, "loan(s)", records::readLoans);
+            report.setLoans(loans, System.nanoTime() - loanStart);
+            
+            // Holds last: restoring them sets aside books that are back on the shelf
+            long holdStart = System.nanoTime();
+            long holds = loadRecordFile(holdRecordsFile, library, "hold queue(s)", records::readHolds);
+            report.setHolds(holds, System.nanoTime() - holdStart);
+            return books >= 0 && memberCount >= 0 && loans >= 0 && holds >= 0;
+        } finally {
+            report.setElapsedNanos(System.nanoTime() - start);
+            LOAD_RECORDS.recordSince(start);
+        }
+    }
+    
+    private long loadMemberRecords(Library library, LoadReport report) {
+        long start = System.nanoTime();
+        long count = loadRecordFile(memberRecordsFile, library, "member(s)", records::readMembers);
+        report.setMembers(count, System.nanoTime() - start);
+        return count;
+    }
+    
+    /**
+     * Attach the book record file to the library as a memory-mapped catalog
+     * @param library The library to attach to
+     * @return true if the catalog was attached, false if the file must be streamed instead
+     */
+    private boolean mapBookRecords(Library library) {
+        Path path = Paths.get(bookRecordsFile);
+        if (!Files.exists(path) || library.getTotalBooks() > 0) {
+            return false;
+        }
         
-        // Only create backup if source file exists
-        if (!sourceFile.exists()) {
+        try {
+            BookCatalog catalog = records.openCatalog(path);
+            if (catalog == null) {
+                return false;
+            }
+            library.attachCatalog(catalog);
+            Events.info("Mapped " + catalog.size() + " book(s) from " + bookRecordsFile);
+            return true;
+        } catch (IOException e) {
+            Events.error("Error mapping " + bookRecordsFile + ": " + e.getMessage());
             return false;
         }
+    }
+    
+    /**
+     * Read a record file, restoring it from the latest backup once if it is damaged
+     * @return Number of records read, 0 if the file does not exist, or -1 if it could not be read
+     */
+    private long loadRecordFile(String filePath, Library library, String kind, 
+                                RecordReader reader) {
+        Path path = Paths.get(filePath);
+        if (!Files.exists(path)) {
+            Events.info(filePath + " not found. Starting with empty collection.");
+            return 0;
+        }
         
+        for (int attempt = 0; attempt < 2; attempt++) {
+            try {
+                long count = reader.read(path, library);
+                Events.emit(EventType.RECORDS_LOADED, kind, count, filePath);
+                return count;
+            } catch (IOException e) {
+                Events.error("Error loading " + filePath + ": " + e.getMessage());
+                if (attempt > 0 || !restoreFromBackup(filePath)) {
+                    return -1;
+                }
+            }
+        }
+        return -1;
+    }
+    
+    /**
+     * Check if the binary record files exist. Converting legacy data renames
+     * books.bin into place last, so its presence means a conversion finished.
+     * @return true if the book record file exists
+     */
+    public boolean recordFilesExist() {
+        return new File(bookRecordsFile).exists();
+    }
+    
+    /**
+     * Convert the legacy serialized books.dat and members.dat into record files.
+     * Loans embedded in the members are moved to the loan file.
+     * The legacy files are left in place. Each file is written beside its
+     * final name and renamed into place once all three are on disk, books.bin
+     * last, so a crash part way leaves the conversion to be run again.
+     * @return true if converted successfully, false otherwise
+     */
+    public boolean convertLegacyData() {
+        long start = System.nanoTime();
         try {
-            // Generate backup filename with timestamp
-            String fileName = sourceFile.getName();
-            String timestamp = LocalDateTime.now().format(BACKUP_FORMATTER);
-            String backupFileName = fileName.replace(".dat", "_" + timestamp + ".dat");
-            Path backupPath = Paths.get(BACKUP_DIR, backupFileName);
-            
-            // Copy file to backup location
-            Files.copy(sourceFile.toPath(), backupPath, StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("Backup created: " + backupPath);
+            if (!new File(booksFile).exists() && !new File(membersFile).exists()) {
+                return true;
+            }
             
-            // Clean old backups (keep only last 5)
-            cleanOldBackups(fileName);
+            // Members hand their loans to the loan table as they are added
+            Library converted = new Library();
+            for (Book book : loadBooks().values()) {
+                converted.addBook(book);
+            }
+            for (Member member : loadMembers().values()) {
+                converted.addMember(member);
+            }
             
+            Path booksTemp = Paths.get(bookRecordsFile + ".tmp");
+            Path membersTemp = Paths.get(memberRecordsFile + ".tmp");
+            Path loansTemp = Paths.get(loanRecordsFile + ".tmp");
+            try {
+                records.writeBooks(booksTemp, converted.getAllBooks());
+                records.writeMembers(membersTemp, converted.getAllMembers());
+                records.writeLoans(loansTemp, converted.getLoans());
+                replaceAtomically(loansTemp, Paths.get(loanRecordsFile));
+                replaceAtomically(membersTemp, Paths.get(memberRecordsFile));
+                replaceAtomically(booksTemp, Paths.get(bookRecordsFile));
+                Events.info("Converted " + converted.getTotalBooks() + " book(s), " + 
+                                 converted.getTotalMembers() + " member(s) and " + 
+                                 converted.getLoans().size() + " loan(s) from legacy data files");
+                return true;
+            } catch (IOException e) {
+                Events.error("Error converting legacy data: " + e.getMessage());
+                deleteQuietly(booksTemp);
+                deleteQuietly(membersTemp);
+                deleteQuietly(loansTemp);
+                return false;
+            }
+        } finally {
+            CONVERT_LEGACY.recordSince(start);
+        }
+    }
+    
+    // ==================== JOURNAL OPERATIONS ====================
+    
+    /**
+     * Switch to journaling mode. Mutations are appended to the journal instead of
+     * rewriting books.bin and members.bin, which then serve as periodic snapshots.
+     * @return true if the journal was opened successfully, false otherwise
+     */
+    public boolean enableJournaling() {
+        if (journal != null) {
+            return true;
+        }
+        
+        try {
+            JournalService newJournal = new JournalService(journalFile);
+            newJournal.open();
+            journal = newJournal;
             return true;
-            
         } catch (IOException e) {
-            System.err.println("Error creating backup: " + e.getMessage());
+            Events.error("Error opening journal: " + e.getMessage());
             return false;
         }
     }
     
     /**
-     * Restore a file from the most recent backup
-     * @param filePath Path to the file to restore
-     * @return true if restored successfully, false otherwise
+     * Check if journaling mode is enabled
+     * @return true if mutations are journaled
      */
-    private boolean restoreFromBackup(String filePath) {
+    public boolean isJournalingEnabled() {
+        return journal != null;
+    }
+    
+    /**
+     * Append a record to the journal and force it to disk
+     * @param record The mutation to record
+     * @return true if the record is durable, false otherwise
+     */
+    public boolean appendJournal(JournalRecord record) {
+        long start = System.nanoTime();
         try {
-            File sourceFile = new File(filePath);
-            String fileName = sourceFile.getName();
-            String baseFileName = fileName.replace(".dat", "");
+            if (journal == null) {
+                Events.error("Journaling is not enabled");
+                return false;
+            }
             
-            // Find the most recent backup
-            File backupDir = new File(BACKUP_DIR);
-            File[] backups = backupDir.listFiles((dir, name) -> 
-                name.startsWith(baseFileName) && name.endsWith(".dat"));
+            try {
+                journal.append(record);
+                journal.sync();
+                return true;
+            } catch (IOException e) {
+                Events.error("Error writing journal record: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            APPEND_JOURNAL.recordSince(start);
+        }
+    }
+    
+    /**
+     * Append a batch of records to the journal with one write and one sync
+     * @param records The mutations to record, in order
+     * @return true if every record is durable, false otherwise
+     */
+    public boolean appendJournal(List<JournalRecord> records) {
+        long start = System.nanoTime();
+        try {
+            if (journal == null) {
+                Events.error("Journaling is not enabled");
+                return false;
+            }
             
-            if (backups == null || backups.length == 0) {
-                System.err.println("No backup files found for " + fileName);
+            try {
+                journal.appendAll(records);
+                journal.sync();
+                return true;
+            } catch (IOException e) {
+                Events.error("Error writing journal batch: " + e.getMessage());
                 return false;
             }
+        } finally {
+            APPEND_JOURNAL.recordSince(start);
+        }
+    }
+    
+    /**
+     * Replay the journal on top of the snapshot already loaded into the library
+     * @param library The library to rebuild
+     * @return Number of records replayed, or -1 on error
+     */
+    public int replayJournal(Library library) {
+        long start = System.nanoTime();
+        try {
+            if (journal == null) {
+                return 0;
+            }
             
-            // Sort by last modified (most recent first)
-            File mostRecentBackup = backups[0];
-            for (File backup : backups) {
-                if (backup.lastModified() > mostRecentBackup.lastModified()) {
-                    mostRecentBackup = backup;
+            try {
+                int replayed = journal.replay(library);
+                if (replayed > 0) {
+                    Events.info("Replayed " + replayed + " journal record(s) from " + journalFile);
                 }
+                return replayed;
+            } catch (IOException e) {
+                Events.error("Error replaying journal: " + e.getMessage());
+                return -1;
             }
-            
-            // Restore the backup
-            Files.copy(mostRecentBackup.toPath(), sourceFile.toPath(), 
-                      StandardCopyOption.REPLACE_EXISTING);
-            System.out.println("Restored from backup: " + mostRecentBackup.getName());
-            return true;
-            
-        } catch (IOException e) {
-            System.err.println("Error restoring from backup: " + e.getMessage());
-            return false;
+        } finally {
+            REPLAY_JOURNAL.recordSince(start);
         }
     }
     
     /**
-     * Clean old backup files, keeping only the most recent ones
-     * @param fileName Base filename to clean backups for
+     * Check if enough records have accumulated to warrant a compacted snapshot
+     * @return true if a snapshot should be taken
+     */
+    public boolean isCompactionDue() {
+        return journal != null && journal.getRecordCount() >= COMPACTION_THRESHOLD;
+    }
+    
+    /**
+     * Start a snapshot: move the journal aside so changes made while the snapshot
+     * is written go to a fresh journal
+     * @return true if the journal was rotated, false otherwise
      */
-    private void cleanOldBackups(String fileName) {
+    public boolean rotateJournal() {
+        long start = System.nanoTime();
         try {
-            String baseFileName = fileName.replace(".dat", "");
-            File backupDir = new File(BACKUP_DIR);
+            if (journal == null) {
+                return true;
+            }
             
-            File[] backups = backupDir.listFiles((dir, name) -> 
-                name.startsWith(baseFileName) && name.endsWith(".dat"));
+            try {
+                journal.rotate();
+                return true;
+            } catch (IOException e) {
+                Events.error("Error rotating journal: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            ROTATE_JOURNAL.recordSince(start);
+        }
+    }
+    
+    /**
+     * Finish a snapshot: drop the rotated journal now that the snapshot covers it
+     * @return true if the rotated journal was discarded, false otherwise
+     */
+    public boolean discardRotatedJournal() {
+        long start = System.nanoTime();
+        try {
+            if (journal == null) {
+                return true;
+            }
             
-            if (backups == null || backups.length <= 5) {
-                return; // Keep all if 5 or fewer
+            try {
+                journal.discardRotated();
+                return true;
+            } catch (IOException e) {
+                Events.error("Error discarding rotated journal: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            DISCARD_JOURNAL.recordSince(start);
+        }
+    }
+    
+    /**
+     * Close the journal file if journaling is enabled
+     */
+    public void closeJournal() {
+        if (journal != null) {
+            journal.close();
+        }
+    }
+    
+    // ==================== BACKUP OPERATIONS ====================
+    
+    /**
+     * Store the current content of a file in the backup store. Only the
+     * chunks that changed since the file's previous version are written.
+     * @param filePath Path to the file to backup
+     * @return true if backup created successfully, false otherwise
+     */
+    private boolean createBackup(String filePath) {
+        long start = System.nanoTime();
+        try {
+            if (backups == null) {
+                return false;
             }
             
-            // Sort by last modified (oldest first)
-            java.util.Arrays.sort(backups, 
-                (f1, f2) -> Long.compare(f1.lastModified(), f2.lastModified()));
+            try {
+                return backups.backup(Paths.get(filePath)) != null;
+            } catch (IOException e) {
+                Events.error("Error creating backup: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            CREATE_BACKUP.recordSince(start);
+        }
+    }
+    
+    /**
+     * Restore a file from the most recent backup
+     * @param filePath Path to the file to restore
+     * @return true if restored successfully, false otherwise
+     */
+    private boolean restoreFromBackup(String filePath) {
+        long start = System.nanoTime();
+        try {
+            try {
+                File sourceFile = new File(filePath);
+                BackupVersion latest = backups == null ? null : backups.latest(sourceFile.getName());
+                if (latest == null) {
+                    return restoreFromCopy(sourceFile);
+                }
+                
+                backups.restore(latest, sourceFile.toPath());
+                Events.info("Restored " + sourceFile.getName() + " from backup version " + latest.getSequence() 
+                            + " of " + latest.getTime());
+                return true;
+                
+            } catch (IOException e) {
+                Events.error("Error restoring from backup: " + e.getMessage());
+                return false;
+            }
+        } finally {
+            RESTORE_BACKUP.recordSince(start);
+        }
+    }
+    
+    /**
+     * Restore a file from the newest full copy made by earlier versions,
+     * named like books_20240101_120000.bin, for data files that have no
+     * version in the backup store yet
+     * @param sourceFile The file to restore
+     * @return true if restored successfully, false otherwise
+     */
+    private boolean restoreFromCopy(File sourceFile) throws IOException {
+        String fileName = sourceFile.getName();
+        String baseFileName = baseName(fileName) + "_";
+        String extension = extension(fileName);
+        
+        // Find the most recent backup
+        File backupFolder = new File(backupDir);
+        File[] copies = backupFolder.listFiles((dir, name) -> 
+            name.startsWith(baseFileName) && name.endsWith(extension));
+        
+        if (copies == null || copies.length == 0) {
+            Events.warn("No backup files found for " + fileName);
+            return false;
+        }
+        
+        File mostRecentCopy = copies[0];
+        for (File copy : copies) {
+            if (copy.lastModified() > mostRecentCopy.lastModified()) {
+                mostRecentCopy = copy;
+            }
+        }
+        
+        Files.copy(mostRecentCopy.toPath(), sourceFile.toPath(), 
+                  StandardCopyOption.REPLACE_EXISTING);
+        Events.info("Restored from backup: " + mostRecentCopy.getName());
+        return true;
+    }
+    
+    /**
+     * List the versions of the data files held in the backup store
+     * @return Every version, oldest first; empty if the store could not be opened
+     */
+    public List<BackupVersion> listBackups() {
+        return backups == null ? List.of() : backups.versions();
+    }
+    
+    /**
+     * Put books.bin, members.bin and loans.bin back to how they were at a
+     * point in time. A version is stored each time a file is saved: after
+     * every change without journaling, at each snapshot with it.
+     * 
+     * Call this before the data is loaded; a library already in memory is
+     * not changed. Nothing is lost: the files as they are now are backed up
+     * first, so the restore can itself be undone by restoring to a later
+     * time, and the journal, whose changes come after the restored snapshot,
+     * is moved into the backup store.
+     * @param time The point in time
+     * @return true if every record file was restored, false if one has no version that old or on error
+     */
+    public boolean restoreAsOf(Instant time) {
+        long start = System.nanoTime();
+        try {
+            if (backups == null) {
+                Events.error("Backup store is not available");
+                return false;
+            }
             
-            // Delete oldest backups, keep only 5 most recent
-            int toDelete = backups.length - 5;
-            for (int i = 0; i < toDelete; i++) {
-                if (backups[i].delete()) {
-                    System.out.println("Deleted old backup: " + backups[i].getName());
+            String[] recordFiles = {bookRecordsFile, memberRecordsFile, loanRecordsFile, holdRecordsFile};
+            for (String recordFile : Arrays.copyOf(recordFiles, 3)) {
+                // Holds may be newer than the time asked for; then there were none
+                Path path = Paths.get(recordFile);
+                if (Files.exists(path) && backups.asOf(path.getFileName().toString(), time) == null) {
+                    Events.error("No backup of " + recordFile + " from " + time + " or earlier");
+                    return false;
                 }
             }
             
-        } catch (Exception e) {
-            System.err.println("Error cleaning old backups: " + e.getMessage());
+            boolean journaling = isJournalingEnabled();
+            closeJournal();
+            journal = null;
+            try {
+                for (String journalPath : new String[] {journalFile, journalFile + ".old"}) {
+                    Path path = Paths.get(journalPath);
+                    if (Files.exists(path) && Files.size(path) > 0) {
+                        backups.backup(path);
+                    }
+                    Files.deleteIfExists(path);
+                }
+                for (String recordFile : recordFiles) {
+                    Path path = Paths.get(recordFile);
+                    backups.backup(path);
+                    BackupVersion version = backups.asOf(path.getFileName().toString(), time);
+                    if (version == null) {
+                        // The file was first saved after that time
+                        Files.deleteIfExists(path);
+                    } else {
+                        backups.restore(version, path);
+                    }
+                }
+                Events.info("Restored the record files to " + time);
+                return true;
+            } catch (IOException e) {
+                Events.error("Error restoring to " + time + ": " + e.getMessage());
+                return false;
+            } finally {
+                if (journaling) {
+                    enableJournaling();
+                }
+            }
+        } finally {
+            RESTORE_AS_OF.recordSince(start);
         }
     }
     
+    // File name without its extension, e.g. "books" for "books.bin"
+    private static String baseName(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? fileName : fileName.substring(0, dot);
+    }
+    
+    // Extension including the dot, e.g. ".bin" for "books.bin"
+    private static String extension(String fileName) {
+        int dot = fileName.lastIndexOf('.');
+        return dot < 0 ? "" : fileName.substring(dot);
+    }
+    
     // ==================== UTILITY METHODS ====================
     
     /**
@@ -331,7 +1020,7 @@ public class FileService {
      * @return true if file exists, false otherwise
      */
     public boolean booksFileExists() {
-        return new File(BOOKS_FILE).exists();
+        return new File(booksFile).exists();
     }
     
     /**
@@ -339,7 +1028,7 @@ public class FileService {
      * @return true if file exists, false otherwise
      */
     public boolean membersFileExists() {
-        return new File(MEMBERS_FILE).exists();
+        return new File(membersFile).exists();
     }
     
     /**
@@ -347,26 +1036,35 @@ public class FileService {
      * @return true if deleted successfully, false otherwise
      */
     public boolean deleteAllData() {
-        boolean booksDeleted = true;
-        boolean membersDeleted = true;
-        
-        File booksFile = new File(BOOKS_FILE);
-        File membersFile = new File(MEMBERS_FILE);
-        
-        if (booksFile.exists()) {
-            booksDeleted = booksFile.delete();
-        }
-        
-        if (membersFile.exists()) {
-            membersDeleted = membersFile.delete();
-        }
-        
-        if (booksDeleted && membersDeleted) {
-            System.out.println("All data files deleted successfully");
-            return true;
-        } else {
-            System.err.println("Error deleting some data files");
-            return false;
+        long start = System.nanoTime();
+        try {
+            boolean allDeleted = true;
+            String[] dataFiles = {booksFile, membersFile, bookRecordsFile, 
+                                  memberRecordsFile, loanRecordsFile, holdRecordsFile, journalFile};
+            
+            // The journal is closed while its file is deleted, then started afresh
+            boolean journaling = isJournalingEnabled();
+            closeJournal();
+            journal = null;
+            for (String dataFile : dataFiles) {
+                File file = new File(dataFile);
+                if (file.exists() && !file.delete()) {
+                    allDeleted = false;
+                }
+            }
+            if (journaling) {
+                enableJournaling();
+            }
+            
+            if (allDeleted) {
+                Events.info("All data files deleted successfully");
+                return true;
+            } else {
+                Events.error("Error deleting some data files");
+                return false;
+            }
+        } finally {
+            DELETE_ALL.recordSince(start);
         }
     }
     
@@ -395,8 +1093,17 @@ public class FileService {
      */
     public void displayFilesInfo() {
         System.out.println("\n=== DATA FILES INFORMATION ===");
-        System.out.println(getFileInfo(BOOKS_FILE));
-        System.out.println("\n" + getFileInfo(MEMBERS_FILE));
+        System.out.println(getFileInfo(bookRecordsFile));
+        System.out.println("\n" + getFileInfo(memberRecordsFile));
+        System.out.println("\n" + getFileInfo(loanRecordsFile));
+        System.out.println("\n" + getFileInfo(holdRecordsFile));
         System.out.println("==============================\n");
     }
-}
\ No newline at end of file
+    
+    /**
+     * Reads one kind of record file into a library
+     */
+    private interface RecordReader {
+        long read(Path path, Library library) throws IOException;
+    }
+}
@@ -0,0 +1,195 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.events.Events;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * GroupCommitService batches journal records from many concurrent callers so
+ * they share a single write and a single fsync.
+ * A batch is flushed when it reaches the maximum size or when the maximum delay
+ * since its first record has passed, whichever comes first.
+ * Every future handed out completes: with the batch written, or
+ * exceptionally if the write failed or the service was already closed.
+ *
+ * @author Obakeng Phale
+ */
+public class GroupCommitService {
+    private static final long IDLE_POLL_MILLIS = 50;
+
+    private final FileService fileService;
+    private final int maxBatchSize;
+    private final long maxDelayNanos;
+    private final Runnable afterBatch;
+    private final LinkedBlockingQueue<PendingCommit> queue = new LinkedBlockingQueue<>();
+    private final Thread flusher;
+    // Submitters share the read lock so close() cannot slip between the check and the enqueue
+    private final ReentrantReadWriteLock closing = new ReentrantReadWriteLock();
+    private volatile boolean closed;
+
+    /**
+     * A record waiting to be made durable, with the future its caller is holding
+     */
+    private record PendingCommit(JournalRecord record, CompletableFuture<Boolean> durable) {
+    }
+
+    /**
+     * Start a group commit pipeline
+     * @param fileService The file service whose journal receives the batches
+     * @param maxBatchSize Maximum number of records per batch
+     * @param maxDelayMillis Maximum time to wait for a batch to fill
+     * @param afterBatch Callback run on the flusher thread after each batch, may be null
+     */
+    public GroupCommitService(FileService fileService, int maxBatchSize,
+                              long maxDelayMillis, Runnable afterBatch) {
+        if (maxBatchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be at least 1");
+        }
+        if (maxDelayMillis < 0) {
+            throw new IllegalArgumentException("Batch delay cannot be negative");
+        }
+
+        this.fileService = fileService;
+        this.maxBatchSize = maxBatchSize;
+        this.maxDelayNanos = TimeUnit.MILLISECONDS.toNanos(maxDelayMillis);
+        this.afterBatch = afterBatch;
+        this.flusher = new Thread(this::runFlusher, "group-commit-flusher");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue a record for the next batch
+     * @param record The record to make durable
+     * @return A future that completes with true once the record's batch is on disk,
+     *         or exceptionally if the batch could not be written
+     */
+    public CompletableFuture<Boolean> submit(JournalRecord record) {
+        CompletableFuture<Boolean> durable = new CompletableFuture<>();
+        closing.readLock().lock();
+        try {
+            if (closed) {
+                durable.completeExceptionally(new IllegalStateException("Group commit is closed"));
+                return durable;
+            }
+            queue.add(new PendingCommit(record, durable));
+        } finally {
+            closing.readLock().unlock();
+        }
+        return durable;
+    }
+
+    /**
+     * Get the number of records waiting to be flushed
+     * @return Queue length
+     */
+    public int getPendingCount() {
+        return queue.size();
+    }
+
+    /**
+     * Stop accepting records, flush everything already queued and stop the flusher.
+     * Anything the flusher could not take before it stopped is failed rather than left waiting.
+     */
+    public void close() {
+        closing.writeLock().lock();
+        try {
+            closed = true;
+        } finally {
+            closing.writeLock().unlock();
+        }
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!flusher.isAlive()) {
+            List<PendingCommit> left = new ArrayList<>();
+            queue.drainTo(left);
+            IllegalStateException failure = new IllegalStateException("Group commit closed before the record was written");
+            for (PendingCommit pending : left) {
+                pending.durable().completeExceptionally(failure);
+            }
+        }
+    }
+
+    // ==================== FLUSHER ====================
+
+    private void runFlusher() {
+        List<PendingCommit> batch = new ArrayList<>(maxBatchSize);
+
+        while (!closed || !queue.isEmpty()) {
+            try {
+                PendingCommit first = queue.poll(IDLE_POLL_MILLIS, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+
+                batch.add(first);
+                queue.drainTo(batch, maxBatchSize - batch.size());
+
+                // Give concurrent callers a short window to join this batch
+                long deadline = System.nanoTime() + maxDelayNanos;
+                while (batch.size() < maxBatchSize && !closed) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        break;
+                    }
+                    PendingCommit next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                    queue.drainTo(batch, maxBatchSize - batch.size());
+                }
+            } catch (InterruptedException e) {
+                // Keep draining; close() relies on the flag, not on interrupts
+            }
+
+            // Whatever was gathered is written, even if waiting for more was interrupted
+            if (!batch.isEmpty()) {
+                flush(batch);
+                batch.clear();
+            }
+        }
+    }
+
+    private void flush(List<PendingCommit> batch) {
+        List<JournalRecord> records = new ArrayList<>(batch.size());
+        for (PendingCommit pending : batch) {
+            records.add(pending.record());
+        }
+
+        boolean written;
+        try {
+            written = fileService.appendJournal(records);
+        } catch (RuntimeException e) {
+            Events.error("Error writing journal batch: " + e.getMessage());
+            written = false;
+        }
+        if (written) {
+            for (PendingCommit pending : batch) {
+                pending.durable().complete(true);
+            }
+        } else {
+            IOException failure = new IOException("Failed to write journal batch of " + batch.size());
+            for (PendingCommit pending : batch) {
+                pending.durable().completeExceptionally(failure);
+            }
+        }
+
+        if (afterBatch != null) {
+            try {
+                afterBatch.run();
+            } catch (RuntimeException e) {
+                Events.error("Error after group commit: " + e.getMessage());
+            }
+        }
+    }
+}
@@ -0,0 +1,187 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.models.Isbn;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * IdAllocator issues ISBNs for new books and IDs for new members from
+ * sequences, so two allocations never return the same value and no caller
+ * ever has to retry.
+ *
+ * Each sequence hands out numbers with a single atomic increment. Numbers
+ * are reserved in blocks of {@value #BLOCK_SIZE}: before the first number of
+ * a block is issued, the end of the block is written to the allocation file
+ * and forced to disk. After a restart each sequence continues from the end
+ * of its last reserved block, so numbers issued before the restart are never
+ * issued again; at most one block per sequence is skipped.
+ *
+ * ISBNs are taken from group 979-9, which is not assigned to any registration
+ * agency, and carry a valid ISBN-13 check digit. Member IDs are 12 digits,
+ * like the randomly generated ones of earlier versions.
+ *
+ * File layout: magic (int), version (short), next ISBN body (long),
+ * next member ID (long), CRC-32 of the two values (int). The file is
+ * replaced whole by writing a temporary file and renaming it.
+ *
+ * @author Obakeng Phale
+ */
+public class IdAllocator {
+    public static final int MAGIC = 0x4C4D5349; // "LMSI"
+    public static final short FORMAT_VERSION = 1;
+
+    // Reserved ISBN range, as the first 12 digits (the check digit is appended)
+    public static final long FIRST_ISBN_BODY = 979_900_000_000L;
+    public static final long LAST_ISBN_BODY = 979_999_999_999L;
+
+    // Member IDs have 12 digits
+    public static final long FIRST_MEMBER_ID = 100_000_000_000L;
+    public static final long LAST_MEMBER_ID = 999_999_999_999L;
+
+    static final int BLOCK_SIZE = 1024;
+    private static final int FILE_SIZE = 4 + 2 + 8 + 8 + 4;
+
+    private final Path file;
+    private final Sequence isbnBodies;
+    private final Sequence memberIDs;
+
+    /**
+     * Open the allocator, continuing after the blocks recorded in a file
+     * @param file The allocation file; a missing file starts both sequences at their first value
+     */
+    public IdAllocator(Path file) {
+        this.file = file;
+        long nextIsbnBody = FIRST_ISBN_BODY;
+        long nextMemberID = FIRST_MEMBER_ID;
+
+        if (Files.exists(file)) {
+            try {
+                ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+                if (buffer.remaining() != FILE_SIZE || buffer.getInt() != MAGIC
+                        || buffer.getShort() != FORMAT_VERSION) {
+                    throw new IOException("not an ID allocation file");
+                }
+                long isbnValue = buffer.getLong();
+                long memberValue = buffer.getLong();
+                if (buffer.getInt() != checksum(isbnValue, memberValue)) {
+                    throw new IOException("checksum mismatch");
+                }
+                nextIsbnBody = Math.max(isbnValue, FIRST_ISBN_BODY);
+                nextMemberID = Math.max(memberValue, FIRST_MEMBER_ID);
+            } catch (IOException e) {
+                // Values still in use are skipped by the caller, but values of
+                // removed books and members may come round again
+                Events.error("Error reading ID allocation file " + file + ": " + e.getMessage()
+                        + "; starting from the beginning of each range");
+            }
+        }
+
+        this.isbnBodies = new Sequence("ISBN", nextIsbnBody, LAST_ISBN_BODY);
+        this.memberIDs = new Sequence("member ID", nextMemberID, LAST_MEMBER_ID);
+    }
+
+    /**
+     * Allocate an ISBN that has not been allocated before
+     * @return A 13-digit ISBN with a valid check digit
+     * @throws IllegalStateException if the range is used up or the reservation could not be saved
+     */
+    public long nextISBN() {
+        long body = isbnBodies.next();
+        return body * 10 + Isbn.checkDigit13(body);
+    }
+
+    /**
+     * Allocate a member ID that has not been allocated before
+     * @return A 12-digit member ID
+     * @throws IllegalStateException if the range is used up or the reservation could not be saved
+     */
+    public long nextMemberID() {
+        return memberIDs.next();
+    }
+
+    /**
+     * Reserve the block holding a number, and any blocks before it, in the
+     * allocation file. Runs once per block; every other allocation only
+     * increments a counter.
+     */
+    private synchronized void reserve(Sequence sequence, long value) {
+        long limit = sequence.limit;
+        if (value < limit) {
+            // Another thread reserved it while we waited
+            return;
+        }
+        while (limit <= value) {
+            limit += BLOCK_SIZE;
+        }
+
+        long isbnLimit = sequence == isbnBodies ? limit : isbnBodies.limit;
+        long memberLimit = sequence == memberIDs ? limit : memberIDs.limit;
+        try {
+            save(isbnLimit, memberLimit);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not reserve " + sequence.name + "s in " + file + ": "
+                    + e.getMessage(), e);
+        }
+        sequence.limit = limit;
+    }
+
+    private void save(long isbnLimit, long memberLimit) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(FILE_SIZE);
+        buffer.putInt(MAGIC).putShort(FORMAT_VERSION)
+              .putLong(isbnLimit).putLong(memberLimit)
+              .putInt(checksum(isbnLimit, memberLimit));
+        buffer.flip();
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        FileService.replaceAtomically(temp, file);
+    }
+
+    private static int checksum(long isbnValue, long memberValue) {
+        CRC32 crc = new CRC32();
+        crc.update(ByteBuffer.allocate(16).putLong(isbnValue).putLong(memberValue).flip());
+        return (int) crc.getValue();
+    }
+
+    /**
+     * One range of numbers: a counter, and the end of the reserved blocks
+     */
+    private final class Sequence {
+        final String name;
+        final long last;
+        final AtomicLong next;
+        // Numbers below this are recorded in the allocation file
+        volatile long limit;
+
+        Sequence(String name, long first, long last) {
+            this.name = name;
+            this.last = last;
+            this.next = new AtomicLong(first);
+            this.limit = first;
+        }
+
+        long next() {
+            long value = next.getAndIncrement();
+            if (value > last) {
+                throw new IllegalStateException("No " + name + "s left to allocate");
+            }
+            if (value >= limit) {
+                reserve(this, value);
+            }
+            return value;
+        }
+    }
+}
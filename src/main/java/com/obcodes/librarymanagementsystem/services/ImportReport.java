@@ -0,0 +1,172 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * What a bulk import did: how many lines were read, imported and rejected,
+ * why lines were rejected, and how long each stage took.
+ *
+ * @author Obakeng Phale
+ */
+public class ImportReport {
+    // Rejected lines kept in the report itself; the rejects file has them all
+    static final int MAX_SAMPLES = 20;
+
+    public enum Reason {
+        MALFORMED("Too few fields"),
+        INVALID_ISBN("Not an ISBN"),
+        BAD_CHECK_DIGIT("Wrong ISBN check digit"),
+        MISSING_TITLE("Missing title"),
+        MISSING_AUTHOR("Missing author"),
+        BAD_STATUS("Unknown or unimportable status"),
+        DUPLICATE("ISBN already in the library or earlier in the file");
+
+        private final String description;
+
+        Reason(String description) {
+            this.description = description;
+        }
+
+        public String getDescription() {
+            return description;
+        }
+    }
+
+    private final String source;
+    private long bytesRead;
+    private long linesRead;
+    private long imported;
+    private final EnumMap<Reason, Long> rejects = new EnumMap<>(Reason.class);
+    private final List<String> samples = new ArrayList<>();
+    private long parseNanos;
+    private long insertNanos;
+    private long saveNanos;
+    private boolean saved;
+
+    ImportReport(String source) {
+        this.source = source;
+    }
+
+    void addBytes(long bytes) {
+        bytesRead += bytes;
+    }
+
+    void addLines(long lines) {
+        linesRead += lines;
+    }
+
+    void addImported(long count) {
+        imported += count;
+    }
+
+    void reject(long line, Reason reason, String detail) {
+        rejects.merge(reason, 1L, Long::sum);
+        if (samples.size() < MAX_SAMPLES) {
+            samples.add(formatReject(line, reason, detail));
+        }
+    }
+
+    void addParseNanos(long nanos) {
+        parseNanos += nanos;
+    }
+
+    void addInsertNanos(long nanos) {
+        insertNanos += nanos;
+    }
+
+    void setSave(boolean saved, long nanos) {
+        this.saved = saved;
+        this.saveNanos = nanos;
+    }
+
+    /**
+     * Format one rejected line as it appears in the report and the rejects file
+     */
+    static String formatReject(long line, Reason reason, String detail) {
+        return "line " + line + ": " + reason.getDescription() + ": " + detail;
+    }
+
+    public String getSource() {
+        return source;
+    }
+
+    public long getBytesRead() {
+        return bytesRead;
+    }
+
+    public long getLinesRead() {
+        return linesRead;
+    }
+
+    public long getImported() {
+        return imported;
+    }
+
+    public long getRejected() {
+        long total = 0;
+        for (long count : rejects.values()) {
+            total += count;
+        }
+        return total;
+    }
+
+    public long getRejected(Reason reason) {
+        return rejects.getOrDefault(reason, 0L);
+    }
+
+    /**
+     * Get the first rejected lines, in file order
+     */
+    public List<String> getSampleRejects() {
+        return Collections.unmodifiableList(samples);
+    }
+
+    public boolean isSaved() {
+        return saved;
+    }
+
+    public long getElapsedNanos() {
+        return parseNanos + insertNanos + saveNanos;
+    }
+
+    /**
+     * Get the import rate, counting every line read
+     * @return Lines per second
+     */
+    public double getLinesPerSecond() {
+        long elapsed = getElapsedNanos();
+        return elapsed == 0 ? 0 : linesRead * 1e9 / elapsed;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== IMPORT REPORT ===\n")
+          .append("Source: ").append(source).append("\n")
+          .append("Lines read: ").append(linesRead).append("\n")
+          .append("Books imported: ").append(imported).append("\n")
+          .append("Lines rejected: ").append(getRejected()).append("\n");
+        for (Map.Entry<Reason, Long> entry : rejects.entrySet()) {
+            sb.append("  ").append(entry.getKey().getDescription())
+              .append(": ").append(entry.getValue()).append("\n");
+        }
+        if (!samples.isEmpty()) {
+            sb.append("First rejected lines:\n");
+            for (String sample : samples) {
+                sb.append("  ").append(sample).append("\n");
+            }
+        }
+
+        double seconds = getElapsedNanos() / 1e9;
+        sb.append(String.format("Parse: %.2f s, insert: %.2f s, save: %.2f s%s%n",
+                  parseNanos / 1e9, insertNanos / 1e9, saveNanos / 1e9, saved ? "" : " (FAILED)"))
+          .append(String.format("Throughput: %.0f lines/s, %.1f MB/s%n",
+                  getLinesPerSecond(), seconds == 0 ? 0 : bytesRead / 1e6 / seconds))
+          .append("=====================\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,404 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.HoldQueues;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.LoanTable;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.io.*;
+
+/**
+ * A single mutation recorded in the library journal.
+ * Records describe the resulting state rather than the request, so replaying
+ * a record that is already reflected in the snapshot leaves the library unchanged.
+ *
+ * Checkouts and book states carry the loan's borrowed and due times after
+ * their other fields. Records written before loans had dates end without
+ * them, and their loans are dated when they are replayed.
+ *
+ * @author Obakeng Phale
+ */
+public final class JournalRecord {
+
+    /**
+     * Kinds of mutation that can be journaled. The code is the byte written to disk.
+     */
+    public enum Type {
+        ADD_BOOK(1),
+        REMOVE_BOOK(2),
+        ADD_MEMBER(3),
+        REMOVE_MEMBER(4),
+        CHECKOUT(5),
+        RETURN(6),
+        BOOK_STATE(7),
+        MEMBER_STATE(8),
+        HOLD_STATE(9);
+
+        private final byte code;
+
+        Type(int code) {
+            this.code = (byte) code;
+        }
+
+        public byte getCode() {
+            return code;
+        }
+
+        static Type fromCode(byte code) throws IOException {
+            for (Type type : values()) {
+                if (type.code == code) {
+                    return type;
+                }
+            }
+            throw new IOException("Unknown journal record type: " + code);
+        }
+    }
+
+    private final Type type;
+    private final long ISBN;
+    private final long memberID;
+    private final String title;
+    private final String author;
+    private final BookStatus status;
+    private final String name;
+    private final HoldQueues.State holds;
+    // Dates of the loan in a checkout or book state, 0 if not known
+    private final long borrowedMillis;
+    private final long dueMillis;
+
+    private JournalRecord(Type type, long ISBN, long memberID,
+                          String title, String author, BookStatus status, String name) {
+        this(type, ISBN, memberID, title, author, status, name, null, 0, 0);
+    }
+
+    private JournalRecord(Type type, long ISBN, long memberID,
+                          String title, String author, BookStatus status, String name,
+                          HoldQueues.State holds, long borrowedMillis, long dueMillis) {
+        this.type = type;
+        this.ISBN = ISBN;
+        this.memberID = memberID;
+        this.title = title;
+        this.author = author;
+        this.status = status;
+        this.name = name;
+        this.holds = holds;
+        this.borrowedMillis = borrowedMillis;
+        this.dueMillis = dueMillis;
+    }
+
+    // ==================== FACTORIES ====================
+
+    public static JournalRecord addBook(Book book) {
+        return new JournalRecord(Type.ADD_BOOK, book.getISBN(), 0,
+                book.getTitle(), book.getAuthor(), book.getStatus(), null);
+    }
+
+    public static JournalRecord removeBook(long ISBN) {
+        return new JournalRecord(Type.REMOVE_BOOK, ISBN, 0, null, null, null, null);
+    }
+
+    public static JournalRecord addMember(Member member) {
+        return new JournalRecord(Type.ADD_MEMBER, 0, member.getMemberID(),
+                null, null, null, member.getName());
+    }
+
+    public static JournalRecord removeMember(long memberID) {
+        return new JournalRecord(Type.REMOVE_MEMBER, 0, memberID, null, null, null, null);
+    }
+
+    public static JournalRecord checkout(long memberID, long ISBN) {
+        return checkout(memberID, ISBN, 0, 0);
+    }
+
+    /**
+     * Record a checkout with the loan's dates
+     * @param memberID The borrower's member ID
+     * @param ISBN The book's ISBN
+     * @param borrowedMillis When it was borrowed, or 0 if not known
+     * @param dueMillis When it is due back, or 0 if not known
+     */
+    public static JournalRecord checkout(long memberID, long ISBN, long borrowedMillis, long dueMillis) {
+        return new JournalRecord(Type.CHECKOUT, ISBN, memberID, null, null, null, null,
+                null, borrowedMillis, dueMillis);
+    }
+
+    public static JournalRecord returned(long memberID, long ISBN) {
+        return new JournalRecord(Type.RETURN, ISBN, memberID, null, null, null, null);
+    }
+
+    /**
+     * Record everything about a book as it is now, including who has it and until when
+     * @param book The book
+     * @param loan The book's loan, or null if it is not on loan
+     */
+    public static JournalRecord bookState(Book book, LoanTable.DueLoan loan) {
+        if (loan == null) {
+            return new JournalRecord(Type.BOOK_STATE, book.getISBN(), LoanTable.NO_BORROWER,
+                    book.getTitle(), book.getAuthor(), book.getStatus(), null);
+        }
+        return new JournalRecord(Type.BOOK_STATE, book.getISBN(), loan.getMemberID(),
+                book.getTitle(), book.getAuthor(), book.getStatus(), null,
+                null, loan.getBorrowedMillis(), loan.getDueMillis());
+    }
+
+    /**
+     * Record everything about a member as it is now. Loans are part of the books' state.
+     * @param member The member
+     */
+    public static JournalRecord memberState(Member member) {
+        return new JournalRecord(Type.MEMBER_STATE, 0, member.getMemberID(),
+                null, null, null, member.getName());
+    }
+
+    /**
+     * Record a book's holds as they are now: its queue and who it is set aside for
+     * @param holds The book's holds, empty if it has none
+     */
+    public static JournalRecord holdState(HoldQueues.State holds) {
+        return new JournalRecord(Type.HOLD_STATE, holds.getISBN(), holds.getReadyMember(),
+                null, null, null, null, holds, 0, 0);
+    }
+
+    // ==================== GETTERS ====================
+
+    public Type getType() {
+        return type;
+    }
+
+    public long getISBN() {
+        return ISBN;
+    }
+
+    public long getMemberID() {
+        return memberID;
+    }
+
+    // ==================== ENCODING ====================
+
+    /**
+     * Write the record payload (without framing) to the given stream
+     * @param out The stream to write to
+     * @throws IOException if the stream cannot be written
+     */
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeByte(type.getCode());
+        switch (type) {
+            case ADD_BOOK -> {
+                out.writeLong(ISBN);
+                out.writeUTF(title);
+                out.writeUTF(author);
+                out.writeUTF(status.getLabel());
+            }
+            case REMOVE_BOOK -> out.writeLong(ISBN);
+            case ADD_MEMBER -> {
+                out.writeLong(memberID);
+                out.writeUTF(name);
+            }
+            case REMOVE_MEMBER -> out.writeLong(memberID);
+            case CHECKOUT -> {
+                out.writeLong(memberID);
+                out.writeLong(ISBN);
+                out.writeLong(borrowedMillis);
+                out.writeLong(dueMillis);
+            }
+            case RETURN -> {
+                out.writeLong(memberID);
+                out.writeLong(ISBN);
+            }
+            case BOOK_STATE -> {
+                out.writeLong(ISBN);
+                out.writeUTF(title);
+                out.writeUTF(author);
+                out.writeByte(status.getCode());
+                out.writeLong(memberID);
+                out.writeLong(borrowedMillis);
+                out.writeLong(dueMillis);
+            }
+            case MEMBER_STATE -> {
+                out.writeLong(memberID);
+                out.writeUTF(name);
+            }
+            case HOLD_STATE -> {
+                out.writeLong(ISBN);
+                out.writeLong(holds.getReadyMember());
+                out.writeLong(holds.getReadyUntil());
+                long[] members = holds.getMembers();
+                long[] placed = holds.getPlacedMillis();
+                out.writeInt(members.length);
+                for (int i = 0; i < members.length; i++) {
+                    out.writeLong(members[i]);
+                    out.writeLong(placed[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a record payload written by {@link #writeTo(DataOutputStream)}
+     * @param in The stream to read from
+     * @return The decoded record
+     * @throws IOException if the payload is malformed
+     */
+    static JournalRecord readFrom(DataInputStream in) throws IOException {
+        Type type = Type.fromCode(in.readByte());
+        return switch (type) {
+            case ADD_BOOK -> new JournalRecord(type, in.readLong(), 0,
+                    in.readUTF(), in.readUTF(), RecordFileService.parseStatus(in.readUTF()), null);
+            case REMOVE_BOOK -> removeBook(in.readLong());
+            case ADD_MEMBER -> new JournalRecord(type, 0, in.readLong(),
+                    null, null, null, in.readUTF());
+            case REMOVE_MEMBER -> removeMember(in.readLong());
+            case CHECKOUT -> {
+                long member = in.readLong();
+                long ISBN = in.readLong();
+                boolean dated = in.available() >= 16;
+                yield checkout(member, ISBN, dated ? in.readLong() : 0, dated ? in.readLong() : 0);
+            }
+            case RETURN -> {
+                long member = in.readLong();
+                yield returned(member, in.readLong());
+            }
+            case BOOK_STATE -> {
+                long ISBN = in.readLong();
+                String title = in.readUTF();
+                String author = in.readUTF();
+                BookStatus status = RecordFileService.statusOf(in.readByte());
+                long member = in.readLong();
+                boolean dated = in.available() >= 16;
+                yield new JournalRecord(type, ISBN, member, title, author, status, null,
+                        null, dated ? in.readLong() : 0, dated ? in.readLong() : 0);
+            }
+            case MEMBER_STATE -> new JournalRecord(type, 0, in.readLong(),
+                    null, null, null, in.readUTF());
+            case HOLD_STATE -> holdState(readHolds(in));
+        };
+    }
+
+    /**
+     * Read a book's holds as written by a HOLD_STATE record or a hold file
+     */
+    static HoldQueues.State readHolds(DataInput in) throws IOException {
+        long ISBN = in.readLong();
+        long readyMember = in.readLong();
+        long readyUntil = in.readLong();
+        int count = in.readInt();
+        if (count < 0 || count > RecordFileService.MAX_RECORD_SIZE / 16) {
+            throw new IOException("Corrupt hold queue length " + count);
+        }
+        long[] members = new long[count];
+        long[] placed = new long[count];
+        for (int i = 0; i < count; i++) {
+            members[i] = in.readLong();
+            placed[i] = in.readLong();
+        }
+        return new HoldQueues.State(ISBN, readyMember, readyUntil, members, placed);
+    }
+
+    // ==================== REPLAY ====================
+
+    /**
+     * Apply this record to a library during replay.
+     * Borrowing rules are not re-checked: the record was only written after the
+     * live operation had already passed them.
+     * @param library The library being rebuilt
+     */
+    void applyTo(Library library) {
+        switch (type) {
+            case ADD_BOOK -> {
+                if (library.findBook(ISBN) == null) {
+                    library.addBook(new Book(title, author, ISBN, status));
+                }
+            }
+            case REMOVE_BOOK -> {
+                if (library.findBook(ISBN) != null) {
+                    library.removeBook(ISBN);
+                }
+            }
+            case ADD_MEMBER -> {
+                if (library.findMember(memberID) == null) {
+                    library.addMember(new Member(memberID, name));
+                }
+            }
+            case REMOVE_MEMBER -> {
+                if (library.findMember(memberID) != null) {
+                    library.removeMember(memberID);
+                }
+            }
+            case CHECKOUT -> {
+                Member member = library.findMember(memberID);
+                Book book = library.findBook(ISBN);
+                if (member != null && book != null) {
+                    member.restoreLoan(book, borrowedMillis, dueMillis);
+                    // A checkout by the member a book was set aside for collects it
+                    library.getHolds().clearReady(ISBN, memberID);
+                }
+            }
+            case RETURN -> {
+                Member member = library.findMember(memberID);
+                Book book = library.findBook(ISBN);
+                if (member != null && book != null && member.hasBorrowed(ISBN)) {
+                    member.returnBook(book);
+                } else if (book != null && library.getLoans().borrowerOf(ISBN) == LoanTable.NO_BORROWER) {
+                    // Another member's later checkout may already be replayed
+                    book.setStatus(BookStatus.AVAILABLE);
+                }
+            }
+            case BOOK_STATE -> applyBookState(library);
+            case HOLD_STATE -> library.restoreHolds(holds);
+            case MEMBER_STATE -> {
+                Member member = library.findMember(memberID);
+                if (member == null) {
+                    library.addMember(new Member(memberID, name));
+                } else if (!name.equals(member.getName())) {
+                    member.setName(name);
+                }
+            }
+        }
+    }
+
+    /**
+     * Make a book match this record: create or update it, then move its loan
+     * to the recorded borrower or end it
+     */
+    private void applyBookState(Library library) {
+        Book book = library.findBook(ISBN);
+        if (book == null) {
+            book = new Book(title, author, ISBN, status);
+            library.addBook(book);
+        } else {
+            if (!title.equals(book.getTitle())) {
+                book.setTitle(title);
+            }
+            if (!author.equals(book.getAuthor())) {
+                book.setAuthor(author);
+            }
+        }
+
+        LoanTable loans = library.getLoans();
+        long current = loans.borrowerOf(ISBN);
+        if (current != LoanTable.NO_BORROWER && current != memberID) {
+            loans.release(ISBN, current);
+        }
+
+        Member borrower = memberID == LoanTable.NO_BORROWER ? null : library.findMember(memberID);
+        if (borrower != null) {
+            // The recorded status first, so the loan is restored from it
+            book.setStatus(status);
+            borrower.restoreLoan(book, borrowedMillis, dueMillis);
+            library.getHolds().clearReady(ISBN, memberID);
+        } else {
+            // A book caught between its status change and its loan has no borrower yet
+            book.setStatus(status == BookStatus.BORROWED ? BookStatus.AVAILABLE : status);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "JournalRecord{" +
+               "type=" + type +
+               ", ISBN=" + ISBN +
+               ", memberID=" + memberID +
+               '}';
+    }
+}
@@ -0,0 +1,269 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.models.Library;
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.zip.CRC32;
+
+/**
+ * JournalService maintains the append-only write-ahead log of library mutations.
+ * Each record is framed as [length][crc32][payload] so a torn write at the end
+ * of the file is detected and discarded on replay.
+ * Before a snapshot the journal is rotated aside rather than truncated, so changes
+ * made while the snapshot is being written are never lost; the rotated file is
+ * deleted once the snapshot is safely on disk.
+ *
+ * @author Obakeng Phale
+ */
+public class JournalService {
+    private static final int HEADER_SIZE = 8;
+
+    private final Path journalPath;
+    private final Path rotatedPath;
+    private FileChannel channel;
+    private int recordsSinceReset;
+
+    /**
+     * Create a journal backed by the given file
+     * @param journalFile Path to the journal file
+     */
+    public JournalService(String journalFile) {
+        this.journalPath = Paths.get(journalFile);
+        this.rotatedPath = Paths.get(journalFile + ".old");
+    }
+
+    /**
+     * Open the journal for appending, creating it if necessary
+     * @throws IOException if the file cannot be opened
+     */
+    public synchronized void open() throws IOException {
+        if (channel == null) {
+            channel = FileChannel.open(journalPath, StandardOpenOption.CREATE,
+                    StandardOpenOption.READ, StandardOpenOption.WRITE);
+            channel.position(channel.size());
+        }
+    }
+
+    /**
+     * Append a record to the end of the journal. The write is not forced to disk;
+     * call {@link #sync()} to make it durable.
+     * @param record The record to append
+     * @throws IOException if the record cannot be written
+     */
+    public synchronized void append(JournalRecord record) throws IOException {
+        ensureOpen();
+        ByteBuffer frame = encode(record);
+        while (frame.hasRemaining()) {
+            channel.write(frame);
+        }
+        recordsSinceReset++;
+    }
+
+    /**
+     * Append several records with a single write. Used by group commit so a whole
+     * batch costs one sequential write and one sync.
+     * @param records The records to append, in order
+     * @throws IOException if the records cannot be written
+     */
+    public synchronized void appendAll(List<JournalRecord> records) throws IOException {
+        ensureOpen();
+        ByteArrayOutputStream batch = new ByteArrayOutputStream(records.size() * 48);
+        for (JournalRecord record : records) {
+            ByteBuffer frame = encode(record);
+            batch.write(frame.array(), 0, frame.limit());
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(batch.toByteArray());
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        recordsSinceReset += records.size();
+    }
+
+    /**
+     * Force all appended records to disk
+     * @throws IOException if the journal cannot be synced
+     */
+    public synchronized void sync() throws IOException {
+        ensureOpen();
+        channel.force(false);
+    }
+
+    /**
+     * Replay every intact record onto the library: first a rotated journal left
+     * behind by an interrupted snapshot, then the current journal.
+     * Replay stops at the first torn or corrupt record, and the current journal is
+     * truncated there so later appends follow the last good record.
+     * @param library The library to rebuild
+     * @return Number of records replayed
+     * @throws IOException if the journal cannot be read
+     */
+    public synchronized int replay(Library library) throws IOException {
+        long replayed = 0;
+        File rotated = rotatedPath.toFile();
+        if (rotated.exists()) {
+            replayed += replayFile(rotated, library)[0];
+        }
+
+        File file = journalPath.toFile();
+        if (file.exists()) {
+            long[] result = replayFile(file, library);
+            if (result[1] < file.length()) {
+                ensureOpen();
+                channel.truncate(result[1]);
+                channel.position(result[1]);
+            }
+            replayed += result[0];
+        }
+
+        // Compaction keeps journals far below this; a larger count means a corrupt file
+        recordsSinceReset = Math.toIntExact(replayed);
+        return recordsSinceReset;
+    }
+
+    /**
+     * Replay one journal file
+     * @return {records replayed, length of the intact prefix}
+     */
+    private long[] replayFile(File file, Library library) throws IOException {
+        long replayed = 0;
+        long validLength = 0;
+        CRC32 crc = new CRC32();
+
+        try (DataInputStream in = new DataInputStream(
+                new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            while (true) {
+                int length;
+                int checksum;
+                try {
+                    length = in.readInt();
+                    checksum = in.readInt();
+                } catch (EOFException e) {
+                    break;
+                }
+
+                if (length <= 0 || length > file.length()) {
+                    Events.error("Journal record at offset " + validLength + " is corrupt");
+                    break;
+                }
+
+                byte[] payload = new byte[length];
+                try {
+                    in.readFully(payload);
+                } catch (EOFException e) {
+                    Events.warn("Journal ends with a partial record; discarding it");
+                    break;
+                }
+
+                crc.reset();
+                crc.update(payload);
+                if ((int) crc.getValue() != checksum) {
+                    Events.error("Journal record at offset " + validLength + " failed checksum");
+                    break;
+                }
+
+                JournalRecord record = JournalRecord.readFrom(
+                        new DataInputStream(new ByteArrayInputStream(payload)));
+                record.applyTo(library);
+                replayed++;
+                validLength += HEADER_SIZE + length;
+            }
+        }
+
+        return new long[] {replayed, validLength};
+    }
+
+    /**
+     * Move the current records aside and start an empty journal.
+     * Call before taking a snapshot: every record in the rotated file describes a
+     * change already applied in memory, so the snapshot will include it.
+     * @throws IOException if the journal cannot be rotated
+     */
+    public synchronized void rotate() throws IOException {
+        ensureOpen();
+        channel.force(false);
+
+        if (Files.exists(rotatedPath)) {
+            // An earlier snapshot failed; keep its records and add ours after them
+            try (FileChannel rotated = FileChannel.open(rotatedPath, StandardOpenOption.APPEND)) {
+                long size = channel.size();
+                long copied = 0;
+                while (copied < size) {
+                    copied += channel.transferTo(copied, size - copied, rotated);
+                }
+                rotated.force(false);
+            }
+            channel.truncate(0);
+            channel.position(0);
+        } else {
+            channel.close();
+            channel = null;
+            Files.move(journalPath, rotatedPath, StandardCopyOption.ATOMIC_MOVE);
+            open();
+        }
+        channel.force(true);
+        recordsSinceReset = 0;
+    }
+
+    /**
+     * Delete the rotated journal once the snapshot that covers it is on disk
+     * @throws IOException if the file cannot be deleted
+     */
+    public synchronized void discardRotated() throws IOException {
+        Files.deleteIfExists(rotatedPath);
+    }
+
+    /**
+     * Get the number of records appended since the last reset
+     * @return Record count
+     */
+    public synchronized int getRecordCount() {
+        return recordsSinceReset;
+    }
+
+    /**
+     * Close the journal file
+     */
+    public synchronized void close() {
+        if (channel != null) {
+            try {
+                channel.force(false);
+                channel.close();
+            } catch (IOException e) {
+                Events.error("Error closing journal: " + e.getMessage());
+            }
+            channel = null;
+        }
+    }
+
+    private void ensureOpen() throws IOException {
+        if (channel == null) {
+            open();
+        }
+    }
+
+    private ByteBuffer encode(JournalRecord record) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            record.writeTo(out);
+        }
+        byte[] payload = bytes.toByteArray();
+
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+
+        ByteBuffer frame = ByteBuffer.allocate(HEADER_SIZE + payload.length);
+        frame.putInt(payload.length);
+        frame.putInt((int) crc.getValue());
+        frame.put(payload);
+        frame.flip();
+        return frame;
+    }
+}
@@ -1,11 +1,38 @@
 package com.obcodes.librarymanagementsystem.services;
 
+import com.obcodes.librarymanagementsystem.events.EventType;
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.metrics.LatencyHistogram;
+import com.obcodes.librarymanagementsystem.metrics.Metrics;
+import com.obcodes.librarymanagementsystem.models.HoldQueues;
 import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.LoanTable;
 import com.obcodes.librarymanagementsystem.models.Member;
 import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.Page;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.time.Instant;
 import java.time.LocalDate;
+import java.time.ZoneId;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
 
 /**
  * Service layer class that handles business logic for the library system.
@@ -13,12 +40,125 @@ import java.util.HashMap;
  * 
  * @author Obakeng Phale
  */
-public class LibraryService {
+public final class LibraryService {
+    // Group commit defaults: flush at 256 records or 1 ms, whichever comes first
+    private static final int DEFAULT_BATCH_SIZE = 256;
+    private static final long DEFAULT_BATCH_DELAY_MILLIS = 1;
+    
+    // Background persistence writes dirty records this often; 0 waits for every change instead
+    public static final String FLUSH_INTERVAL_PROPERTY = "library.flushIntervalMillis";
+    private static final long DEFAULT_FLUSH_INTERVAL_MILLIS = 1000;
+    
+    // How long a returned book waits for the next member in its queue
+    public static final String HOLD_PICKUP_PROPERTY = "library.holdPickupMillis";
+    
+    // How long a member may keep a book, and how often loans are checked for having fallen overdue
+    public static final String LOAN_PERIOD_PROPERTY = "library.loanPeriodMillis";
+    public static final String OVERDUE_CHECK_PROPERTY = "library.overdueCheckMillis";
+    private static final long DEFAULT_OVERDUE_CHECK_MILLIS = 60_000;
+    
+    // Latency of each operation
+    private static final LatencyHistogram REGISTER_MEMBER =
+        Metrics.histogram("library_service_register_member_seconds", "Time to register a member, until durable");
+    private static final LatencyHistogram ADD_BOOK =
+        Metrics.histogram("library_service_add_book_seconds", "Time to add a book, until durable");
+    private static final LatencyHistogram IMPORT_BOOKS =
+        Metrics.histogram("library_service_import_books_seconds", "Time to import a book file, save included");
+    private static final LatencyHistogram BORROW_BOOK =
+        Metrics.histogram("library_service_borrow_book_seconds", "Time to check out a book, until durable");
+    private static final LatencyHistogram BORROW_BOOK_ASYNC =
+        Metrics.histogram("library_service_borrow_book_async_seconds", "Time to check out a book without waiting for the disk");
+    private static final LatencyHistogram RETURN_BOOK =
+        Metrics.histogram("library_service_return_book_seconds", "Time to return a book, until durable");
+    private static final LatencyHistogram RETURN_BOOK_ASYNC =
+        Metrics.histogram("library_service_return_book_async_seconds", "Time to return a book without waiting for the disk");
+    private static final LatencyHistogram PLACE_HOLD =
+        Metrics.histogram("library_service_place_hold_seconds", "Time to place a hold, until durable");
+    private static final LatencyHistogram CANCEL_HOLD =
+        Metrics.histogram("library_service_cancel_hold_seconds", "Time to cancel a hold, until durable");
+    private static final LatencyHistogram CHANGE_STATUS =
+        Metrics.histogram("library_service_change_status_seconds", "Time to mark a book lost, in repair or back on the shelf, until durable");
+    private static final LatencyHistogram EXPIRE_HOLDS =
+        Metrics.histogram("library_service_expire_holds_seconds", "Time to pass on the books whose pickup window ran out");
+    private static final LatencyHistogram CHECK_OVERDUE =
+        Metrics.histogram("library_service_check_overdue_seconds", "Time to report the loans that fell overdue since the last check");
+    private static final LatencyHistogram OVERDUE_LOANS =
+        Metrics.histogram("library_service_overdue_loans_seconds", "Time to list the overdue loans");
+    private static final LatencyHistogram LOANS_DUE =
+        Metrics.histogram("library_service_loans_due_seconds", "Time to list the loans due in the coming days");
+    private static final LatencyHistogram GET_BORROWER =
+        Metrics.histogram("library_service_get_borrower_seconds", "Time to find who has borrowed a book");
+    private static final LatencyHistogram SAVE_ALL =
+        Metrics.histogram("library_service_save_all_data_seconds", "Time to write a full snapshot");
+    private static final LatencyHistogram LOAD_ALL =
+        Metrics.histogram("library_service_load_all_data_seconds", "Time to load the data files and replay the journal");
+    private static final LatencyHistogram FLUSH =
+        Metrics.histogram("library_service_flush_seconds", "Time to write every pending change");
+    private static final LatencyHistogram LIST_BOOKS =
+        Metrics.histogram("library_service_list_books_seconds", "Time to list every book");
+    private static final LatencyHistogram LIST_MEMBERS =
+        Metrics.histogram("library_service_list_members_seconds", "Time to list every member");
+    private static final LatencyHistogram BOOKS_PAGE =
+        Metrics.histogram("library_service_books_page_seconds", "Time to read one page of books");
+    private static final LatencyHistogram MEMBERS_PAGE =
+        Metrics.histogram("library_service_members_page_seconds", "Time to read one page of members");
+    private static final LatencyHistogram FIND_BY_TITLE =
+        Metrics.histogram("library_service_find_book_by_title_seconds", "Time to search books by title");
+    private static final LatencyHistogram FIND_BY_ISBN =
+        Metrics.histogram("library_service_find_book_by_isbn_seconds", "Time to look a book up by ISBN");
+    private static final LatencyHistogram FIND_MEMBER =
+        Metrics.histogram("library_service_find_member_by_id_seconds", "Time to look a member up by ID");
+    private static final LatencyHistogram MEMBER_LOANS =
+        Metrics.histogram("library_service_member_borrowed_books_seconds", "Time to list the books a member has borrowed");
+    private static final LatencyHistogram LIST_AVAILABLE =
+        Metrics.histogram("library_service_list_available_books_seconds", "Time to list the available books");
+    private static final LatencyHistogram LIST_BORROWED =
+        Metrics.histogram("library_service_list_borrowed_books_seconds", "Time to list the borrowed books");
+    private static final LatencyHistogram FIND_BY_AUTHOR =
+        Metrics.histogram("library_service_search_books_by_author_seconds", "Time to search books by author");
+    private static final LatencyHistogram DELETE_BOOK =
+        Metrics.histogram("library_service_delete_book_seconds", "Time to delete a book, until durable");
+    private static final LatencyHistogram REMOVE_MEMBER =
+        Metrics.histogram("library_service_remove_member_seconds", "Time to remove a member, until durable");
+    private static final LatencyHistogram STATS =
+        Metrics.histogram("library_service_library_stats_seconds", "Time to build the statistics summary");
+    private static final LatencyHistogram SHUTDOWN =
+        Metrics.histogram("library_service_shutdown_seconds", "Time to flush, save and close at shutdown");
+    
     private Library library;
     private FileService fileService;
+    private GroupCommitService groupCommit;
+    private BackgroundPersistenceService backgroundPersistence;
+    
+    // Passes on books set aside and not collected in time, and reports loans
+    // that fall overdue; null until start() and again after shutdown()
+    private ScheduledExecutorService timers;
+    
+    // The gauges start() registered, by name, so shutdown() removes only its own
+    private final Map<String, LongSupplier> gauges = new LinkedHashMap<>();
+    
+    // Guards timers and gauges; checkOverdue holds the service's own lock
+    private final Object timersLock = new Object();
+    
+    // Loans due before this were reported by an earlier overdue check
+    private long overdueCheckedUntil = Long.MIN_VALUE;
+    
+    // Issues the ISBNs of books added without one and the IDs of new members
+    private IdAllocator idAllocator;
+    
+    // What the last call to loadAllData read and how long it took
+    private volatile LoadReport loadReport;
+    
+    // Set when a data file could not be read: the library holds only part of
+    // the data, so nothing may be saved over the files
+    private volatile boolean loadIncomplete;
+    
+    // Serializes snapshots; mutations never wait on it
+    private final Object snapshotLock = new Object();
     
     /**
-     * Constructor that initializes the service with a library instance
+     * Constructor that initializes the service with a library instance.
+     * No timers run and no gauges are published until start() is called.
      * 
      * @param library The library instance to manage
      * @param fileService The file service for data persistence
@@ -26,16 +166,122 @@ public class LibraryService {
     public LibraryService(Library library, FileService fileService) {
         this.library = library;
         this.fileService = fileService;
+        this.idAllocator = fileService.openIdAllocator();
     }
     
     /**
-     * Alternative constructor that creates new instances
+     * Alternative constructor that creates new instances.
+     * Changes are written in the background every second; set the
+     * library.flushIntervalMillis system property to change the interval,
+     * or to 0 to make every change durable before it returns.
      */
     public LibraryService() {
         this.library = new Library();
         this.fileService = new FileService();
+        this.idAllocator = fileService.openIdAllocator();
+        library.setHoldPickupMillis(Long.getLong(HOLD_PICKUP_PROPERTY, Library.DEFAULT_HOLD_PICKUP_MILLIS));
+        library.setLoanPeriodMillis(Long.getLong(LOAN_PERIOD_PROPERTY, Library.DEFAULT_LOAN_PERIOD_MILLIS));
+        // Journal mutations so each operation is a single small append
+        this.fileService.enableJournaling();
         // Load data automatically when creating service
         loadAllData();
+        
+        long flushInterval = Long.getLong(FLUSH_INTERVAL_PROPERTY, DEFAULT_FLUSH_INTERVAL_MILLIS);
+        if (flushInterval > 0) {
+            enableBackgroundPersistence(flushInterval);
+        } else {
+            enableGroupCommit(DEFAULT_BATCH_SIZE, DEFAULT_BATCH_DELAY_MILLIS);
+        }
+        start();
+    }
+    
+    /**
+     * Start the hold and overdue timers and publish the library's counts as
+     * gauges. The service created by the no-arg constructor is already
+     * started; calling this again does nothing. shutdown() undoes it.
+     */
+    public void start() {
+        synchronized (timersLock) {
+            if (timers != null) {
+                return;
+            }
+            registerGauges();
+            timers = startTimers();
+        }
+    }
+    
+    /**
+     * Publish the library's counts as gauges. The most recently started
+     * service is the one reported.
+     */
+    private void registerGauges() {
+        gauge("library_books", "Books in the library", () -> library.getTotalBooks());
+        gauge("library_books_available", "Books available to borrow", () -> library.getAvailableBooksCount());
+        gauge("library_books_borrowed", "Books on loan", () -> library.getBorrowedBooksCount());
+        gauge("library_members", "Registered members", () -> library.getTotalMembers());
+        gauge("library_members_active", "Members with at least one book on loan",
+                () -> library.getActiveMembersCount());
+        gauge("library_books_held", "Books with members waiting or set aside for one",
+                () -> library.getHolds().size());
+    }
+    
+    private void gauge(String name, String help, LongSupplier value) {
+        Metrics.gauge(name, help, value);
+        gauges.put(name, value);
+    }
+    
+    /**
+     * Stop the timers, waiting for a run in progress, and remove the gauges
+     * start() registered unless a later service has replaced them
+     */
+    private void stop() {
+        ScheduledExecutorService stopping;
+        synchronized (timersLock) {
+            stopping = timers;
+            timers = null;
+            gauges.forEach(Metrics::removeGauge);
+            gauges.clear();
+        }
+        if (stopping == null) {
+            return;
+        }
+        stopping.shutdown();
+        try {
+            stopping.awaitTermination(1, TimeUnit.MINUTES);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    
+    /**
+     * Start the thread that passes on books whose pickup window has run out,
+     * once per tick of the library's hold timer, and reports loans that have
+     * fallen overdue, once a minute by default
+     */
+    private ScheduledExecutorService startTimers() {
+        ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "library-timers");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.scheduleWithFixedDelay(() -> {
+            try {
+                expireHolds();
+            } catch (RuntimeException e) {
+                Events.error("Error expiring holds: " + e.getMessage(), e);
+            }
+        }, Library.HOLD_TIMER_TICK_MILLIS, Library.HOLD_TIMER_TICK_MILLIS, TimeUnit.MILLISECONDS);
+        long overdueCheck = Long.getLong(OVERDUE_CHECK_PROPERTY, DEFAULT_OVERDUE_CHECK_MILLIS);
+        if (overdueCheck > 0) {
+            timer.scheduleWithFixedDelay(() -> {
+                try {
+                    checkOverdue();
+                } catch (RuntimeException e) {
+                    Events.error("Error checking overdue loans: " + e.getMessage(), e);
+                }
+            }, 0, overdueCheck, TimeUnit.MILLISECONDS);
+        }
+        return timer;
     }
     
     /**
@@ -46,21 +292,24 @@ public class LibraryService {
      * @throws IllegalArgumentException if name is null or empty
      */
     public long registerMember(String name) {
-        if (name == null || name.trim().isEmpty()) {
-            throw new IllegalArgumentException("Member name cannot be empty");
-        }
-        
-        Member newMember = new Member(name.trim());
-        boolean added = library.addMember(newMember);
-        
-        if (added) {
-            // Auto-save after adding member
-            saveMembersData();
-            System.out.println("New member registered: " + newMember.getName() + 
-                              " (ID: " + newMember.getMemberID() + ")");
-            return newMember.getMemberID();
-        } else {
-            throw new IllegalStateException("Failed to register member. Member ID might already exist.");
+        long start = System.nanoTime();
+        try {
+            if (name == null || name.trim().isEmpty()) {
+                throw new IllegalArgumentException("Member name cannot be empty");
+            }
+            
+            Member newMember = new Member(allocateMemberID(), name.trim());
+            boolean added = awaitDurable(commit(onSuccess -> library.addMember(newMember, onSuccess),
+                    JournalRecord.addMember(newMember), false, true));
+            
+            if (added) {
+                Events.emit(EventType.MEMBER_REGISTERED, newMember.getMemberID(), newMember.getName());
+                return newMember.getMemberID();
+            } else {
+                throw new IllegalStateException("Failed to register member. Member ID might already exist.");
+            }
+        } finally {
+            REGISTER_MEMBER.recordSince(start);
         }
     }
     
@@ -73,27 +322,53 @@ public class LibraryService {
      * @throws IllegalArgumentException if title or author is empty
      */
     public long addNewBook(String title, String author) {
-        if (title == null || title.trim().isEmpty()) {
-            throw new IllegalArgumentException("Book title cannot be empty");
+        long start = System.nanoTime();
+        try {
+            if (title == null || title.trim().isEmpty()) {
+                throw new IllegalArgumentException("Book title cannot be empty");
+            }
+            if (author == null || author.trim().isEmpty()) {
+                throw new IllegalArgumentException("Book author cannot be empty");
+            }
+            
+            Book newBook = new Book(title.trim(), author.trim(), allocateISBN(), BookStatus.AVAILABLE);
+            boolean added = awaitDurable(commit(onSuccess -> library.addBook(newBook, onSuccess),
+                    JournalRecord.addBook(newBook), true, false));
+            
+            if (added) {
+                Events.emit(EventType.BOOK_CREATED, newBook.getISBN(), newBook.getTitle(), newBook.getAuthor());
+                return newBook.getISBN();
+            } else {
+                throw new IllegalStateException("Failed to add book. ISBN might already exist.");
+            }
+        } finally {
+            ADD_BOOK.recordSince(start);
         }
-        if (author == null || author.trim().isEmpty()) {
-            throw new IllegalArgumentException("Book author cannot be empty");
+    }
+    
+    /**
+     * Allocate an ISBN for a new book. Allocated ISBNs are unique, but a book
+     * imported or added with an explicit ISBN may already hold one, so those
+     * are passed over.
+     */
+    private long allocateISBN() {
+        long ISBN = idAllocator.nextISBN();
+        while (library.findBook(ISBN) != null) {
+            ISBN = idAllocator.nextISBN();
         }
-        
-        // Using constructor that auto-generates ISBN
-        Book newBook = new Book(title.trim(), author.trim(), "Available");
-        boolean added = library.addBook(newBook);
-        
-        if (added) {
-            // Auto-save after adding book
-            saveBooksData();
-            System.out.println("New book added: '" + newBook.getTitle() + 
-                              "' by " + newBook.getAuthor() + 
-                              " (ISBN: " + newBook.getISBN() + ")");
-            return newBook.getISBN();
-        } else {
-            throw new IllegalStateException("Failed to add book. ISBN might already exist.");
+        return ISBN;
+    }
+    
+    /**
+     * Allocate an ID for a new member, passing over IDs held by members
+     * registered before IDs were allocated from a sequence
+     */
+    private long allocateMemberID() {
+        long memberID = idAllocator.nextMemberID();
+        while (library.findMember(memberID) != null) {
+            memberID = idAllocator.nextMemberID();
         }
+        return memberID;
     }
     
     /**
@@ -105,150 +380,812 @@ public class LibraryService {
      * @return The ISBN of the newly added book
      */
     public long addNewBook(String title, String author, long ISBN) {
-        if (title == null || title.trim().isEmpty()) {
-            throw new IllegalArgumentException("Book title cannot be empty");
-        }
-        if (author == null || author.trim().isEmpty()) {
-            throw new IllegalArgumentException("Book author cannot be empty");
+        long start = System.nanoTime();
+        try {
+            if (title == null || title.trim().isEmpty()) {
+                throw new IllegalArgumentException("Book title cannot be empty");
+            }
+            if (author == null || author.trim().isEmpty()) {
+                throw new IllegalArgumentException("Book author cannot be empty");
+            }
+            
+            Book newBook = new Book(title.trim(), author.trim(), ISBN, BookStatus.AVAILABLE);
+            boolean added = awaitDurable(commit(onSuccess -> library.addBook(newBook, onSuccess),
+                    JournalRecord.addBook(newBook), true, false));
+            
+            if (added) {
+                Events.emit(EventType.BOOK_CREATED, newBook.getISBN(), newBook.getTitle(), newBook.getAuthor());
+                return newBook.getISBN();
+            } else {
+                throw new IllegalStateException("Failed to add book. ISBN might already exist.");
+            }
+        } finally {
+            ADD_BOOK.recordSince(start);
         }
+    }
+    
+    /**
+     * Imports books in bulk from a delimited file of ISBN, title, author and
+     * optional status, then saves once. Invalid and duplicate lines are
+     * rejected and reported rather than failing the import.
+     * 
+     * @param file The file to import
+     * @param rejectsFile File to write every rejected line to, may be null
+     * @param verifyCheckDigits true to reject ISBNs whose check digit is wrong
+     * @return What was imported and rejected, and how long it took
+     * @throws IOException if the file cannot be read or the rejects file written
+     */
+    public ImportReport importBooks(Path file, Path rejectsFile, boolean verifyCheckDigits)
+            throws IOException {
+        long start = System.nanoTime();
+        try {
+            ImportReport report = new BookImportService(library, verifyCheckDigits)
+                    .importFile(file, rejectsFile);
         
-        Book newBook = new Book(title.trim(), author.trim(), ISBN, "Available");
-        boolean added = library.addBook(newBook);
+            // One snapshot for the whole import instead of a journal record per book
+            long saveStart = System.nanoTime();
+            boolean saved = report.getImported() == 0 || saveAllData();
+            report.setSave(saved, System.nanoTime() - saveStart);
+            return report;
+        } finally {
+            IMPORT_BOOKS.recordSince(start);
+        }
+    }
+    
+    /**
+     * Allows a member to borrow a book
+     * 
+     * @param memberID The ID of the member borrowing the book
+     * @param ISBN The ISBN of the book to borrow
+     * @return true if successful, false otherwise
+     * @throws IllegalArgumentException if member or book not found
+     */
+    public boolean borrowBook(long memberID, long ISBN) {
+        long start = System.nanoTime();
+        try {
+            Member member = library.findMember(memberID);
+            Book book = library.findBook(ISBN);
+            
+            if (member == null) {
+                throw new NotFoundException("Member with ID " + memberID + " not found");
+            }
+            if (book == null) {
+                throw new NotFoundException("Book with ISBN " + ISBN + " not found");
+            }
+            
+            return awaitDurable(borrowBookAsync(memberID, ISBN));
+        } finally {
+            BORROW_BOOK.recordSince(start);
+        }
+    }
+    
+    /**
+     * Allows a member to borrow a book without waiting for the change to reach disk
+     * 
+     * @param memberID The ID of the member borrowing the book
+     * @param ISBN The ISBN of the book to borrow
+     * @return A future that completes with true once the checkout is durable,
+     *         or with false immediately if the checkout was refused
+     */
+    public CompletableFuture<Boolean> borrowBookAsync(long memberID, long ISBN) {
+        long start = System.nanoTime();
+        try {
+            // Use library's checkout method which handles all validations
+            return commit(onSuccess -> library.checkoutBook(memberID, ISBN, onSuccess),
+                    () -> List.of(checkoutRecord(memberID, ISBN)), true, true);
+        } finally {
+            BORROW_BOOK_ASYNC.recordSince(start);
+        }
+    }
+    
+    /**
+     * Describe a checkout that has just been made, with the due date it was given
+     */
+    private JournalRecord checkoutRecord(long memberID, long ISBN) {
+        LoanTable.DueLoan loan = library.getLoans().loanOf(ISBN);
+        return loan == null
+                ? JournalRecord.checkout(memberID, ISBN)
+                : JournalRecord.checkout(memberID, ISBN, loan.getBorrowedMillis(), loan.getDueMillis());
+    }
+    
+    /**
+     * Returns a borrowed book
+     * 
+     * @param memberID The ID of the member returning the book
+     * @param ISBN The ISBN of the book to return
+     * @return true if successful, false otherwise
+     * @throws IllegalArgumentException if member or book not found
+     */
+    public boolean returnBook(long memberID, long ISBN) {
+        long start = System.nanoTime();
+        try {
+            Member member = library.findMember(memberID);
+            Book book = library.findBook(ISBN);
+            
+            if (member == null) {
+                throw new NotFoundException("Member with ID " + memberID + " not found");
+            }
+            if (book == null) {
+                throw new NotFoundException("Book with ISBN " + ISBN + " not found");
+            }
+            
+            return awaitDurable(returnBookAsync(memberID, ISBN));
+        } finally {
+            RETURN_BOOK.recordSince(start);
+        }
+    }
+    
+    /**
+     * Returns a borrowed book without waiting for the change to reach disk
+     * 
+     * @param memberID The ID of the member returning the book
+     * @param ISBN The ISBN of the book to return
+     * @return A future that completes with true once the return is durable,
+     *         or with false immediately if the return was refused
+     */
+    public CompletableFuture<Boolean> returnBookAsync(long memberID, long ISBN) {
+        long start = System.nanoTime();
+        try {
+            // Use library's return method which handles all validations
+            return commit(onSuccess -> library.returnBook(memberID, ISBN, onSuccess),
+                    () -> returnRecords(memberID, ISBN), true, true);
+        } finally {
+            RETURN_BOOK_ASYNC.recordSince(start);
+        }
+    }
+    
+    /**
+     * Returns a borrowed book from whichever member has it, when only the
+     * book is at hand
+     * 
+     * @param ISBN The ISBN of the book being returned
+     * @return true if successful, false otherwise
+     * @throws IllegalArgumentException if book not found
+     */
+    public boolean returnBook(long ISBN) {
+        long start = System.nanoTime();
+        try {
+            if (library.findBook(ISBN) == null) {
+                throw new NotFoundException("Book with ISBN " + ISBN + " not found");
+            }
+            
+            return awaitDurable(returnBookAsync(ISBN));
+        } finally {
+            RETURN_BOOK.recordSince(start);
+        }
+    }
+    
+    /**
+     * Returns a borrowed book from whichever member has it, without waiting
+     * for the change to reach disk
+     * 
+     * @param ISBN The ISBN of the book being returned
+     * @return A future that completes with true once the return is durable,
+     *         or with false immediately if the return was refused
+     */
+    public CompletableFuture<Boolean> returnBookAsync(long ISBN) {
+        // The journal record names the borrower, so look it up first;
+        // the return itself checks again under the member's lock
+        long memberID = library.getLoans().borrowerOf(ISBN);
+        if (memberID == LoanTable.NO_BORROWER) {
+            Events.emit(EventType.NOT_ON_LOAN, ISBN);
+            return CompletableFuture.completedFuture(false);
+        }
+        return returnBookAsync(memberID, ISBN);
+    }
+    
+    /**
+     * The journal records of a return, read while the book is still locked.
+     * A book set aside for the next member on its way back also records its queue.
+     */
+    private List<JournalRecord> returnRecords(long memberID, long ISBN) {
+        JournalRecord returned = JournalRecord.returned(memberID, ISBN);
+        HoldQueues holds = library.getHolds();
+        if (!holds.isHeld(ISBN)) {
+            return List.of(returned);
+        }
+        return List.of(returned, JournalRecord.holdState(holds.get(ISBN)));
+    }
+    
+    /**
+     * Marks a book lost. A borrowed book's loan ends.
+     * 
+     * @param ISBN The ISBN of the book
+     * @return true if successful, false if the book may not be marked lost now
+     * @throws IllegalArgumentException if book not found
+     */
+    public boolean markBookLost(long ISBN) {
+        return changeBookStatus(ISBN, BookStatus.LOST);
+    }
+    
+    /**
+     * Sends a book that is on the shelf or was lost for repair
+     * 
+     * @param ISBN The ISBN of the book
+     * @return true if successful, false if the book may not be sent for repair now
+     * @throws IllegalArgumentException if book not found
+     */
+    public boolean sendBookForRepair(long ISBN) {
+        return changeBookStatus(ISBN, BookStatus.IN_REPAIR);
+    }
+    
+    /**
+     * Puts a book that was lost or in repair back on the shelf, or sets it
+     * aside for the first member waiting for it
+     * 
+     * @param ISBN The ISBN of the book
+     * @return true if successful, false if the book was neither lost nor in repair
+     * @throws IllegalArgumentException if book not found
+     */
+    public boolean returnBookToShelf(long ISBN) {
+        return changeBookStatus(ISBN, BookStatus.AVAILABLE);
+    }
+    
+    private boolean changeBookStatus(long ISBN, BookStatus status) {
+        long start = System.nanoTime();
+        try {
+            if (library.findBook(ISBN) == null) {
+                throw new NotFoundException("Book with ISBN " + ISBN + " not found");
+            }
+            
+            return awaitDurable(commit(onSuccess -> library.changeBookStatus(ISBN, status, onSuccess),
+                    () -> statusRecords(ISBN), true, true));
+        } finally {
+            CHANGE_STATUS.recordSince(start);
+        }
+    }
+    
+    /**
+     * The journal records of a status change, read while the book is still
+     * locked. The book's state ends any loan on replay; a book set aside on
+     * its way back to the shelf also records its queue.
+     */
+    private List<JournalRecord> statusRecords(long ISBN) {
+        JournalRecord state = JournalRecord.bookState(library.findBook(ISBN), null);
+        HoldQueues holds = library.getHolds();
+        if (!holds.isHeld(ISBN)) {
+            return List.of(state);
+        }
+        return List.of(state, JournalRecord.holdState(holds.get(ISBN)));
+    }
+    
+    /**
+     * Puts a member in the queue for a book that is out. When the book comes
+     * back it is set aside for the first member in the queue.
+     * 
+     * @param memberID The ID of the member waiting
+     * @param ISBN The ISBN of the book
+     * @return The member's place in the queue counting from 1, or 0 if the hold was refused
+     * @throws IllegalArgumentException if member or book not found
+     */
+    public int placeHold(long memberID, long ISBN) {
+        long start = System.nanoTime();
+        try {
+            if (library.findMember(memberID) == null) {
+                throw new NotFoundException("Member with ID " + memberID + " not found");
+            }
+            if (library.findBook(ISBN) == null) {
+                throw new NotFoundException("Book with ISBN " + ISBN + " not found");
+            }
+            
+            AtomicInteger position = new AtomicInteger();
+            boolean placed = awaitDurable(commit(onSuccess -> {
+                position.set(library.placeHold(memberID, ISBN, onSuccess));
+                return position.get() > 0;
+            }, () -> List.of(JournalRecord.holdState(library.getHolds().get(ISBN))), false, false));
+            return placed ? position.get() : 0;
+        } finally {
+            PLACE_HOLD.recordSince(start);
+        }
+    }
+    
+    /**
+     * Takes a member's hold on a book away. A book set aside for them passes
+     * to the next member in the queue.
+     * 
+     * @param memberID The ID of the member
+     * @param ISBN The ISBN of the book
+     * @return true if the member had a hold on the book
+     * @throws IllegalArgumentException if member or book not found
+     */
+    public boolean cancelHold(long memberID, long ISBN) {
+        long start = System.nanoTime();
+        try {
+            if (library.findMember(memberID) == null) {
+                throw new NotFoundException("Member with ID " + memberID + " not found");
+            }
+            if (library.findBook(ISBN) == null) {
+                throw new NotFoundException("Book with ISBN " + ISBN + " not found");
+            }
+            
+            return awaitDurable(commit(onSuccess -> library.cancelHold(memberID, ISBN, onSuccess),
+                    () -> List.of(JournalRecord.holdState(library.getHolds().get(ISBN))), true, false));
+        } finally {
+            CANCEL_HOLD.recordSince(start);
+        }
+    }
+    
+    /**
+     * Finds where a member stands for a book
+     * 
+     * @param memberID The ID of the member
+     * @param ISBN The ISBN of the book
+     * @return 0 if the book is set aside for them, their place in the queue
+     *         counting from 1, or {@link HoldQueues#NOT_HELD}
+     */
+    public int getHoldPosition(long memberID, long ISBN) {
+        return library.getHolds().position(ISBN, memberID);
+    }
+    
+    /**
+     * Passes on every book whose pickup window has run out, to the next
+     * member in its queue or back to the shelf. Runs once a second on the
+     * timer thread; only the books due are visited.
+     * 
+     * @return Number of holds that ran out
+     */
+    public int expireHolds() {
+        long start = System.nanoTime();
+        try {
+            long now = System.currentTimeMillis();
+            List<CompletableFuture<Boolean>> pending = new ArrayList<>();
+            for (long ISBN : library.takeDueHolds(now)) {
+                CompletableFuture<Boolean> durable = commit(onSuccess -> library.expireHold(ISBN, now, onSuccess),
+                        () -> List.of(JournalRecord.holdState(library.getHolds().get(ISBN))), true, false);
+                pending.add(durable);
+            }
+            int expired = 0;
+            for (CompletableFuture<Boolean> durable : pending) {
+                if (awaitDurable(durable)) {
+                    expired++;
+                }
+            }
+            return expired;
+        } finally {
+            EXPIRE_HOLDS.recordSince(start);
+        }
+    }
+    
+    /**
+     * Reports the loans that have fallen overdue since the last check, one
+     * event each. The first check after starting reports how many loans are
+     * already overdue in one event instead. Runs on the timer thread; only
+     * the loans that fell due since the last check are visited.
+     * 
+     * @return Number of loans reported
+     */
+    public synchronized int checkOverdue() {
+        long start = System.nanoTime();
+        try {
+            long now = System.currentTimeMillis();
+            if (overdueCheckedUntil == Long.MIN_VALUE) {
+                // Counted, not listed: there may be many
+                int overdue = library.countOverdueLoans(now);
+                if (overdue > 0) {
+                    Events.emit(EventType.LOANS_OVERDUE, overdue);
+                }
+                overdueCheckedUntil = now;
+                return overdue;
+            }
+            List<LoanTable.DueLoan> due = library.getLoansDueBetween(overdueCheckedUntil, now, Integer.MAX_VALUE);
+            for (LoanTable.DueLoan loan : due) {
+                Member member = library.findMember(loan.getMemberID());
+                Book book = library.findBook(loan.getISBN());
+                if (member != null && book != null) {
+                    Events.emit(EventType.LOAN_OVERDUE, member.getMemberID(), member.getName(),
+                            book.getISBN(), book.getTitle(), dateOf(loan.getDueMillis()));
+                }
+            }
+            overdueCheckedUntil = now;
+            return due.size();
+        } finally {
+            CHECK_OVERDUE.recordSince(start);
+        }
+    }
+    
+    /**
+     * Gets the loans that are overdue, most overdue first
+     * 
+     * @param limit Maximum number of loans to return
+     * @return The overdue loans
+     */
+    public List<LoanTable.DueLoan> getOverdueLoans(int limit) {
+        long start = System.nanoTime();
+        try {
+            return library.getOverdueLoans(System.currentTimeMillis(), limit);
+        } finally {
+            OVERDUE_LOANS.recordSince(start);
+        }
+    }
+    
+    /**
+     * Gets the loans that are not yet overdue but fall due in the coming days, earliest first
+     * 
+     * @param days Number of days to look ahead
+     * @param limit Maximum number of loans to return
+     * @return The loans due within that many days
+     */
+    public List<LoanTable.DueLoan> getLoansDueWithin(int days, int limit) {
+        long start = System.nanoTime();
+        try {
+            if (days < 0) {
+                throw new IllegalArgumentException("Days must not be negative");
+            }
+            long now = System.currentTimeMillis();
+            return library.getLoansDueBetween(now, now + TimeUnit.DAYS.toMillis(days), limit);
+        } finally {
+            LOANS_DUE.recordSince(start);
+        }
+    }
+    
+    /**
+     * Lists the overdue loans, most overdue first
+     * 
+     * @param limit Maximum number of loans to list
+     * @return String of overdue loans with their borrowers and due dates
+     */
+    public String getOverdueReport(int limit) {
+        List<LoanTable.DueLoan> overdue = getOverdueLoans(limit);
+        if (overdue.isEmpty()) {
+            return "No loans are overdue.";
+        }
+        StringBuilder sb = new StringBuilder("Overdue loans:\n");
+        for (LoanTable.DueLoan loan : overdue) {
+            Member member = library.findMember(loan.getMemberID());
+            Book book = library.findBook(loan.getISBN());
+            if (member == null || book == null) {
+                continue;
+            }
+            sb.append("- ").append(book.getTitle())
+              .append(" (ISBN: ").append(book.getISBN()).append(")")
+              .append(" borrowed by ").append(member.getName())
+              .append(" (ID: ").append(member.getMemberID()).append(")")
+              .append(", due ").append(dateOf(loan.getDueMillis())).append("\n");
+        }
+        return sb.toString();
+    }
+    
+    private static LocalDate dateOf(long millis) {
+        return LocalDate.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    }
+    
+    /**
+     * Finds the member who has borrowed a book
+     * 
+     * @param ISBN The book's ISBN
+     * @return The borrower, or null if the book is not on loan
+     */
+    public Member getBorrower(long ISBN) {
+        long start = System.nanoTime();
+        try {
+            return library.findBorrower(ISBN);
+        } finally {
+            GET_BORROWER.recordSince(start);
+        }
+    }
+    
+    /**
+     * Saves all library data to files using FileService
+     * 
+     * @return true if save was successful, false otherwise
+     */
+    public boolean saveAllData() {
+        long start = System.nanoTime();
+        try {
+            synchronized (snapshotLock) {
+                if (!canSnapshot()) {
+                    return false;
+                }
+                try {
+                    // Changes made from here on go to a fresh journal
+                    fileService.rotateJournal();
+                    
+                    // Save books data
+                    boolean booksSaved = saveBooksData();
+                    
+                    // Save members data
+                    boolean membersSaved = saveMembersData();
+                    
+                    // Save the loan table
+                    boolean loansSaved = fileService.saveLoanRecords(library.getLoans());
+                    
+                    // Save the hold queues
+                    boolean holdsSaved = fileService.saveHoldRecords(library.getHolds());
+                    
+                    if (booksSaved && membersSaved && loansSaved && holdsSaved) {
+                        // The snapshot now contains every change in the rotated journal
+                        fileService.discardRotatedJournal();
+                        Events.info("All library data saved successfully");
+                        return true;
+                    } else {
+                        Events.error("Failed to save some data");
+                        return false;
+                    }
+                } catch (Exception e) {
+                    Events.error("Failed to save library data: " + e.getMessage(), e);
+                    return false;
+                }
+            }
+        } finally {
+            SAVE_ALL.recordSince(start);
+        }
+    }
+    
+    /**
+     * Loads all library data from files using FileService. If a data file
+     * cannot be read the journal is not replayed and no snapshot is written
+     * afterwards, so the files on disk are left for recovery.
+     * 
+     * @return true if load was successful, false otherwise
+     */
+    public boolean loadAllData() {
+        long start = System.nanoTime();
+        try {
+            try {
+                // Convert the old serialized files once; they are left in place
+                if (!fileService.recordFilesExist()) {
+                    fileService.convertLegacyData();
+                }
+                
+                // Read the record files straight into the library
+                LoadReport report = new LoadReport();
+                if (!fileService.loadRecords(library, report)) {
+                    // Replaying the journal over part of the data and saving it would lose the rest
+                    loadIncomplete = true;
+                    loadReport = report;
+                    Events.error("Library data could not be fully loaded; the journal was not replayed "
+                            + "and the data files will not be saved over");
+                    return false;
+                }
+                loadIncomplete = false;
+                
+                // Apply changes recorded since the snapshot was taken
+                long replayStart = System.nanoTime();
+                int replayed = fileService.replayJournal(library);
+                report.setJournal(replayed, System.nanoTime() - replayStart);
+                report.setElapsedNanos(System.nanoTime() - start);
+                loadReport = report;
+                
+                Events.info("Library data loaded successfully");
+                Events.info("Books loaded: " + library.getTotalBooks());
+                Events.info("Members loaded: " + library.getTotalMembers());
+                Events.info(report.toString());
+                
+                return true;
+            } catch (Exception e) {
+                loadIncomplete = true;
+                Events.error("Failed to load library data: " + e.getMessage(), e);
+                return false;
+            }
+        } finally {
+            LOAD_ALL.recordSince(start);
+        }
+    }
+    
+    /**
+     * Enable group commit. Changes are still applied to the library immediately,
+     * but their journal records are batched so concurrent callers share one sync.
+     * Requires journaling mode.
+     * 
+     * @param maxBatchSize Maximum number of records per batch
+     * @param maxDelayMillis Maximum time a batch waits to fill
+     * @return true if group commit is enabled, false otherwise
+     */
+    public boolean enableGroupCommit(int maxBatchSize, long maxDelayMillis) {
+        if (!fileService.isJournalingEnabled()) {
+            Events.error("Group commit requires journaling mode");
+            return false;
+        }
+        if (groupCommit == null) {
+            groupCommit = new GroupCommitService(fileService, maxBatchSize,
+                    maxDelayMillis, this::compactIfDue);
+        }
+        return true;
+    }
+    
+    /**
+     * Enable background persistence. Changes only mark the records they touch
+     * as dirty and return at once; a writer thread appends the dirty records to
+     * the journal every flush interval. Requires journaling mode.
+     * 
+     * @param flushIntervalMillis Time between flushes, the most work a crash can lose
+     * @return true if background persistence is enabled, false otherwise
+     */
+    public boolean enableBackgroundPersistence(long flushIntervalMillis) {
+        if (!fileService.isJournalingEnabled()) {
+            Events.error("Background persistence requires journaling mode");
+            return false;
+        }
+        if (backgroundPersistence == null) {
+            backgroundPersistence = new BackgroundPersistenceService(library, fileService,
+                    flushIntervalMillis, this::compactIfDue);
+        }
+        return true;
+    }
+    
+    /**
+     * Write every change made so far to disk without waiting for the next flush
+     * 
+     * @return true if every change is durable
+     */
+    public boolean flush() {
+        long start = System.nanoTime();
+        try {
+            if (backgroundPersistence != null) {
+                return backgroundPersistence.flush();
+            }
+            return true;
+        } finally {
+            FLUSH.recordSince(start);
+        }
+    }
+    
+    /**
+     * Apply a change to the library and persist it.
+     * The record is queued by the library while it still holds the locks of the
+     * book and member involved, so records for the same book or member reach the
+     * journal in the order the changes were made. Waiting for the disk, and
+     * any snapshot or full save, happens after the locks are released. With
+     * background persistence the change is only marked dirty, and the
+     * returned future is already complete.
+     * 
+     * @param mutation The library call; it runs the given callback under its locks on success
+     * @param record The journal record describing the change
+     * @param booksChanged true if the books file is affected
+     * @param membersChanged true if the members file is affected
+     * @return A future completing with the outcome once the change is durable
+     */
+    private CompletableFuture<Boolean> commit(Predicate<Runnable> mutation, JournalRecord record,
+                                              boolean booksChanged, boolean membersChanged) {
+        return commit(mutation, () -> List.of(record), booksChanged, membersChanged);
+    }
+    
+    /**
+     * Apply a change to the library and persist it as one or more records.
+     * The records are built under the library's locks, so they can describe
+     * state the change itself decided, such as who a returned book was set aside for.
+     * 
+     * @param mutation The library call; it runs the given callback under its locks on success
+     * @param records Builds the journal records describing the change
+     * @param booksChanged true if the books file is affected
+     * @param membersChanged true if the members file is affected
+     * @return A future completing with the outcome once every record is durable
+     */
+    private CompletableFuture<Boolean> commit(Predicate<Runnable> mutation, Supplier<List<JournalRecord>> records,
+                                              boolean booksChanged, boolean membersChanged) {
+        AtomicReference<CompletableFuture<Boolean>> durable = new AtomicReference<>();
+        // Changes left to persist once the locks are released, and whether they were journaled
+        AtomicReference<List<JournalRecord>> unsaved = new AtomicReference<>();
+        AtomicBoolean journaled = new AtomicBoolean();
+        boolean applied = mutation.test(() -> {
+            List<JournalRecord> changes = records.get();
+            if (backgroundPersistence != null) {
+                for (JournalRecord record : changes) {
+                    backgroundPersistence.record(record);
+                }
+                durable.set(CompletableFuture.completedFuture(true));
+            } else if (groupCommit != null) {
+                // Batches are written in order, so the last record is durable last
+                CompletableFuture<Boolean> last = null;
+                for (JournalRecord record : changes) {
+                    last = groupCommit.submit(record);
+                }
+                durable.set(last);
+            } else {
+                journaled.set(journalChange(changes));
+                unsaved.set(changes);
+                durable.set(CompletableFuture.completedFuture(true));
+            }
+        });
         
-        if (added) {
-            saveBooksData();
-            System.out.println("New book added: '" + newBook.getTitle() + 
-                              "' by " + newBook.getAuthor() + 
-                              " (ISBN: " + newBook.getISBN() + ")");
-            return newBook.getISBN();
-        } else {
-            throw new IllegalStateException("Failed to add book. ISBN might already exist.");
+        if (!applied) {
+            return CompletableFuture.completedFuture(false);
+        }
+        if (unsaved.get() != null) {
+            persistChange(unsaved.get(), journaled.get(), booksChanged, membersChanged);
         }
+        return durable.get();
     }
     
     /**
-     * Allows a member to borrow a book
+     * Wait for a committed change to become durable
      * 
-     * @param memberID The ID of the member borrowing the book
-     * @param ISBN The ISBN of the book to borrow
-     * @return true if successful, false otherwise
-     * @throws IllegalArgumentException if member or book not found
+     * @param durable The future returned by commit
+     * @return The outcome of the change
+     * @throws UncheckedIOException if the change was made but neither the
+     *         journal nor a full save could record it
      */
-    public boolean borrowBook(long memberID, long ISBN) {
-        Member member = library.findMember(memberID);
-        Book book = library.findBook(ISBN);
-        
-        if (member == null) {
-            throw new IllegalArgumentException("Member with ID " + memberID + " not found");
-        }
-        if (book == null) {
-            throw new IllegalArgumentException("Book with ISBN " + ISBN + " not found");
+    private boolean awaitDurable(CompletableFuture<Boolean> durable) {
+        try {
+            return durable.join();
+        } catch (CompletionException e) {
+            // The change is already in memory; make it durable the slow way
+            Events.error("Group commit failed: " + e.getCause().getMessage() + "; falling back to a full save");
+            if (!saveAllData()) {
+                throw new UncheckedIOException(new IOException(
+                        "Change was made but could not be written to disk", e.getCause()));
+            }
+            return true;
         }
-        
-        // Use library's checkout method which handles all validations
-        boolean success = library.checkoutBook(memberID, ISBN);
-        
-        if (success) {
-            // Save both books and members since borrowing updates both
-            saveBooksData();
-            saveMembersData();
+    }
+    
+    /**
+     * Fold the journal into a fresh snapshot once it has grown large
+     */
+    private void compactIfDue() {
+        if (fileService.isCompactionDue()) {
+            saveAllData();
         }
-        
-        return success;
     }
     
     /**
-     * Returns a borrowed book
+     * Append a mutation's records to the journal, if journaling is enabled.
+     * Called under the library's locks, so records for the same book or
+     * member reach the journal in the order the changes were made.
      * 
-     * @param memberID The ID of the member returning the book
-     * @param ISBN The ISBN of the book to return
-     * @return true if successful, false otherwise
-     * @throws IllegalArgumentException if member or book not found
+     * @param records The journal records describing the change
+     * @return true if the records were journaled
      */
-    public boolean returnBook(long memberID, long ISBN) {
-        Member member = library.findMember(memberID);
-        Book book = library.findBook(ISBN);
-        
-        if (member == null) {
-            throw new IllegalArgumentException("Member with ID " + memberID + " not found");
-        }
-        if (book == null) {
-            throw new IllegalArgumentException("Book with ISBN " + ISBN + " not found");
+    private boolean journalChange(List<JournalRecord> records) {
+        if (!fileService.isJournalingEnabled()) {
+            return false;
         }
-        
-        // Use library's return method which handles all validations
-        boolean success = library.returnBook(memberID, ISBN);
-        
-        if (success) {
-            // Save both books and members since returning updates both
-            saveBooksData();
-            saveMembersData();
+        if (fileService.appendJournal(records)) {
+            return true;
         }
-        
-        return success;
+        Events.warn("Journal write failed, falling back to a full save");
+        return false;
     }
     
     /**
-     * Saves all library data to files using FileService
+     * Finish persisting a single mutation once the library's locks are
+     * released. A journaled change may start a compacted snapshot; otherwise
+     * the affected data files are rewritten in full. Never called under the
+     * library's locks, since a snapshot reads every book.
      * 
-     * @return true if save was successful, false otherwise
+     * @param records The journal records describing the change
+     * @param journaled true if the records are already in the journal
+     * @param booksChanged true if the books file is affected
+     * @param membersChanged true if the members file is affected
+     * @return true if the change was persisted, false otherwise
      */
-    public boolean saveAllData() {
-        try {
-            // Save books data
-            boolean booksSaved = saveBooksData();
-            
-            // Save members data
-            boolean membersSaved = saveMembersData();
-            
-            if (booksSaved && membersSaved) {
-                System.out.println("All library data saved successfully");
-                return true;
-            } else {
-                System.err.println("Failed to save some data");
-                return false;
-            }
-        } catch (Exception e) {
-            System.err.println("Failed to save library data: " + e.getMessage());
-            e.printStackTrace();
+    private boolean persistChange(List<JournalRecord> records, boolean journaled,
+                                  boolean booksChanged, boolean membersChanged) {
+        if (journaled) {
+            compactIfDue();
+            return true;
+        }
+        if (!canSnapshot()) {
             return false;
         }
+        
+        // Each save reads the library after its own change, so the last one written holds every change
+        synchronized (snapshotLock) {
+            boolean saved = true;
+            if (booksChanged) {
+                saved = saveBooksData();
+            }
+            if (membersChanged) {
+                saved = saveMembersData() && saved;
+            }
+            if (records.stream().anyMatch(record -> record.getType() == JournalRecord.Type.HOLD_STATE)) {
+                saved = fileService.saveHoldRecords(library.getHolds()) && saved;
+            }
+            return saved;
+        }
     }
     
     /**
-     * Loads all library data from files using FileService
+     * Check that the library holds all of the saved data, so writing it out loses nothing
      * 
-     * @return true if load was successful, false otherwise
+     * @return true if the data files may be saved over
      */
-    public boolean loadAllData() {
-        try {
-            // Load books
-            HashMap<Long, Book> books = fileService.loadBooks();
-            
-            // Load members
-            HashMap<Long, Member> members = fileService.loadMembers();
-            
-            // Clear existing data and add loaded data
-            // We need to add books one by one to library
-            for (Book book : books.values()) {
-                library.addBook(book);
-            }
-            
-            // Add members one by one
-            for (Member member : members.values()) {
-                library.addMember(member);
-            }
-            
-            System.out.println("Library data loaded successfully");
-            System.out.println("Books loaded: " + books.size());
-            System.out.println("Members loaded: " + members.size());
-            
-            return true;
-        } catch (Exception e) {
-            System.err.println("Failed to load library data: " + e.getMessage());
-            e.printStackTrace();
+    private boolean canSnapshot() {
+        if (loadIncomplete) {
+            Events.error("Not saving: the data files were not fully loaded");
             return false;
         }
+        return true;
     }
     
     /**
@@ -258,18 +1195,9 @@ public class LibraryService {
      */
     private boolean saveBooksData() {
         try {
-            // Get all books from library
-            ArrayList<Book> bookList = library.getAllBooks();
-            
-            // Convert to HashMap for FileService
-            HashMap<Long, Book> booksMap = new HashMap<>();
-            for (Book book : bookList) {
-                booksMap.put(book.getISBN(), book);
-            }
-            
-            return fileService.saveBooks(booksMap);
+            return fileService.saveBookRecords(library.snapshotBooks()::iterator);
         } catch (Exception e) {
-            System.err.println("Failed to save books data: " + e.getMessage());
+            Events.error("Failed to save books data: " + e.getMessage());
             return false;
         }
     }
@@ -281,18 +1209,9 @@ public class LibraryService {
      */
     private boolean saveMembersData() {
         try {
-            // Get all members from library
-            ArrayList<Member> memberList = library.getAllMembers();
-            
-            // Convert to HashMap for FileService
-            HashMap<Long, Member> membersMap = new HashMap<>();
-            for (Member member : memberList) {
-                membersMap.put(member.getMemberID(), member);
-            }
-            
-            return fileService.saveMembers(membersMap);
+            return fileService.saveMemberRecords(library.getAllMembers());
         } catch (Exception e) {
-            System.err.println("Failed to save members data: " + e.getMessage());
+            Events.error("Failed to save members data: " + e.getMessage());
             return false;
         }
     }
@@ -307,6 +1226,14 @@ public class LibraryService {
         this.library = library;
     }
     
+    /**
+     * Get what the last load read and how long each phase took
+     * @return The report, or null before the first load
+     */
+    public LoadReport getLoadReport() {
+        return loadReport;
+    }
+    
     public FileService getFileService() {
         return fileService;
     }
@@ -323,24 +1250,21 @@ public class LibraryService {
      * @return String representation of all books
      */
     public String getAllBooks() {
-        ArrayList<Book> books = library.getAllBooks();
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== ALL BOOKS ===\n");
-        
-        if (books.isEmpty()) {
-            sb.append("No books in the library.\n");
-        } else {
-            for (Book book : books) {
-                sb.append("ISBN: ").append(book.getISBN())
-                  .append(", Title: ").append(book.getTitle())
-                  .append(", Author: ").append(book.getAuthor())
-                  .append(", Status: ").append(book.getStatus())
-                  .append("\n");
+        long start = System.nanoTime();
+        try {
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== ALL BOOKS ===\n");
+            
+            int before = sb.length();
+            library.streamBooks(null).forEach(book -> sb.append(describeBook(book, true)).append("\n"));
+            if (sb.length() == before) {
+                sb.append("No books in the library.\n");
             }
+            sb.append("=================\n");
+            return sb.toString();
+        } finally {
+            LIST_BOOKS.recordSince(start);
         }
-        sb.append("=================\n");
-        return sb.toString();
     }
     
     /**
@@ -349,23 +1273,101 @@ public class LibraryService {
      * @return String representation of all members
      */
     public String getAllMembers() {
-        ArrayList<Member> members = library.getAllMembers();
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== ALL MEMBERS ===\n");
-        
-        if (members.isEmpty()) {
-            sb.append("No members registered.\n");
-        } else {
-            for (Member member : members) {
-                sb.append("ID: ").append(member.getMemberID())
-                  .append(", Name: ").append(member.getName())
-                  .append(", Books Borrowed: ").append(member.getBorrowedBooksCount())
-                  .append("\n");
+        long start = System.nanoTime();
+        try {
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== ALL MEMBERS ===\n");
+            
+            int before = sb.length();
+            library.streamMembers().forEach(member -> sb.append(describeMember(member)).append("\n"));
+            if (sb.length() == before) {
+                sb.append("No members registered.\n");
             }
+            sb.append("===================\n");
+            return sb.toString();
+        } finally {
+            LIST_MEMBERS.recordSince(start);
+        }
+    }
+    
+    /**
+     * Gets one page of books in ISBN order, for listings too large to build at once
+     * 
+     * @param afterISBN Cursor: {@link Page#START} for the first page, then the
+     *                  previous page's next cursor
+     * @param pageSize Maximum number of books on the page
+     * @param status Only books with this status, or null for all books
+     * @return The page
+     */
+    public Page<Book> getBooksPage(long afterISBN, int pageSize, BookStatus status) {
+        long start = System.nanoTime();
+        try {
+            return library.getBooksPage(afterISBN, pageSize, status);
+        } finally {
+            BOOKS_PAGE.recordSince(start);
         }
-        sb.append("===================\n");
-        return sb.toString();
+    }
+    
+    /**
+     * Gets one page of members in ID order
+     * 
+     * @param afterID Cursor: {@link Page#START} for the first page, then the
+     *                previous page's next cursor
+     * @param pageSize Maximum number of members on the page
+     * @return The page
+     */
+    public Page<Member> getMembersPage(long afterID, int pageSize) {
+        long start = System.nanoTime();
+        try {
+            return library.getMembersPage(afterID, pageSize);
+        } finally {
+            MEMBERS_PAGE.recordSince(start);
+        }
+    }
+    
+    /**
+     * Streams books in ISBN order without copying the catalog
+     * 
+     * @param status Only books with this status, or null for all books
+     * @return Stream of books
+     */
+    public Stream<Book> streamBooks(BookStatus status) {
+        return library.streamBooks(status);
+    }
+    
+    /**
+     * Streams members in ID order without copying them
+     * 
+     * @return Stream of members
+     */
+    public Stream<Member> streamMembers() {
+        return library.streamMembers();
+    }
+    
+    /**
+     * Formats one book as a line of a listing
+     * 
+     * @param book The book
+     * @param withStatus true to include the status
+     * @return The line, without a line break
+     */
+    public String describeBook(Book book, boolean withStatus) {
+        String line = "ISBN: " + book.getISBN() + 
+                      ", Title: " + book.getTitle() + 
+                      ", Author: " + book.getAuthor();
+        return withStatus ? line + ", Status: " + book.getStatus() : line;
+    }
+    
+    /**
+     * Formats one member as a line of a listing
+     * 
+     * @param member The member
+     * @return The line, without a line break
+     */
+    public String describeMember(Member member) {
+        return "ID: " + member.getMemberID() + 
+               ", Name: " + member.getName() + 
+               ", Books Borrowed: " + member.getBorrowedBooksCount();
     }
     
     /**
@@ -375,27 +1377,32 @@ public class LibraryService {
      * @return Information about the book, or "Book not found"
      */
     public String findBookByTitle(String title) {
-        if (title == null || title.trim().isEmpty()) {
-            return "Error: Book title cannot be empty.";
-        }
-        
-        ArrayList<Book> results = library.searchBooksByTitle(title.trim());
-        
-        if (results.isEmpty()) {
-            return "No books found with title containing: '" + title + "'";
+        long start = System.nanoTime();
+        try {
+            if (title == null || title.trim().isEmpty()) {
+                return "Error: Book title cannot be empty.";
+            }
+            
+            ArrayList<Book> results = library.searchBooksByTitle(title.trim());
+            
+            if (results.isEmpty()) {
+                return "No books found with title containing: '" + title + "'";
+            }
+            
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== BOOKS FOUND (").append(results.size()).append(") ===\n");
+            for (Book book : results) {
+                sb.append("ISBN: ").append(book.getISBN())
+                  .append(", Title: ").append(book.getTitle())
+                  .append(", Author: ").append(book.getAuthor())
+                  .append(", Status: ").append(book.getStatus())
+                  .append("\n");
+            }
+            sb.append("======================\n");
+            return sb.toString();
+        } finally {
+            FIND_BY_TITLE.recordSince(start);
         }
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== BOOKS FOUND (").append(results.size()).append(") ===\n");
-        for (Book book : results) {
-            sb.append("ISBN: ").append(book.getISBN())
-              .append(", Title: ").append(book.getTitle())
-              .append(", Author: ").append(book.getAuthor())
-              .append(", Status: ").append(book.getStatus())
-              .append("\n");
-        }
-        sb.append("======================\n");
-        return sb.toString();
     }
     
     /**
@@ -405,15 +1412,26 @@ public class LibraryService {
      * @return Information about the book, or "Book not found"
      */
     public String findBookByISBN(long isbn) {
-        Book book = library.findBook(isbn);
-        
-        if (book == null) {
-            return "Book not found with ISBN: " + isbn;
+        long start = System.nanoTime();
+        try {
+            Book book = library.findBook(isbn);
+            
+            if (book == null) {
+                return "Book not found with ISBN: " + isbn;
+            }
+            
+            String found = String.format(
+                "Book Found:\nISBN: %d\nTitle: %s\nAuthor: %s\nStatus: %s",
+                book.getISBN(), book.getTitle(), book.getAuthor(), book.getStatus());
+            
+            Member borrower = library.findBorrower(isbn);
+            if (borrower != null) {
+                found += String.format("\nBorrowed By: %s (ID: %d)", borrower.getName(), borrower.getMemberID());
+            }
+            return found;
+        } finally {
+            FIND_BY_ISBN.recordSince(start);
         }
-        
-        return String.format(
-            "Book Found:\nISBN: %d\nTitle: %s\nAuthor: %s\nStatus: %s",
-            book.getISBN(), book.getTitle(), book.getAuthor(), book.getStatus());
     }
     
     /**
@@ -423,27 +1441,32 @@ public class LibraryService {
      * @return Information about the member, or "Member not found"
      */
     public String findMemberByID(long memberID) {
-        Member member = library.findMember(memberID);
-        
-        if (member == null) {
-            return "Member not found with ID: " + memberID;
-        }
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("Member Found:\n")
-          .append("ID: ").append(member.getMemberID()).append("\n")
-          .append("Name: ").append(member.getName()).append("\n")
-          .append("Books Borrowed: ").append(member.getBorrowedBooksCount()).append("\n");
-        
-        if (!member.getBorrowedBooks().isEmpty()) {
-            sb.append("Borrowed Books:\n");
-            for (Book book : member.getBorrowedBooks()) {
-                sb.append("  - ").append(book.getTitle())
-                  .append(" by ").append(book.getAuthor())
-                  .append(" (ISBN: ").append(book.getISBN()).append(")\n");
+        long start = System.nanoTime();
+        try {
+            Member member = library.findMember(memberID);
+            
+            if (member == null) {
+                return "Member not found with ID: " + memberID;
+            }
+            
+            StringBuilder sb = new StringBuilder();
+            sb.append("Member Found:\n")
+              .append("ID: ").append(member.getMemberID()).append("\n")
+              .append("Name: ").append(member.getName()).append("\n")
+              .append("Books Borrowed: ").append(member.getBorrowedBooksCount()).append("\n");
+            
+            if (!member.getBorrowedBooks().isEmpty()) {
+                sb.append("Borrowed Books:\n");
+                for (Book book : member.getBorrowedBooks()) {
+                    sb.append("  - ").append(book.getTitle())
+                      .append(" by ").append(book.getAuthor())
+                      .append(" (ISBN: ").append(book.getISBN()).append(")\n");
+                }
             }
+            return sb.toString();
+        } finally {
+            FIND_MEMBER.recordSince(start);
         }
-        return sb.toString();
     }
     
     /**
@@ -453,24 +1476,36 @@ public class LibraryService {
      * @return String of borrowed books, or error message
      */
     public String getMemberBorrowedBooks(long memberID) {
-        Member member = library.findMember(memberID);
-        
-        if (member == null) {
-            return "Member not found with ID: " + memberID;
-        }
-        
-        if (member.getBorrowedBooks().isEmpty()) {
-            return member.getName() + " has no borrowed books.";
-        }
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("Books borrowed by ").append(member.getName()).append(":\n");
-        for (Book book : member.getBorrowedBooks()) {
-            sb.append("- ").append(book.getTitle())
-              .append(" by ").append(book.getAuthor())
-              .append(" (ISBN: ").append(book.getISBN()).append(")\n");
+        long start = System.nanoTime();
+        try {
+            Member member = library.findMember(memberID);
+            
+            if (member == null) {
+                return "Member not found with ID: " + memberID;
+            }
+            
+            if (member.getBorrowedBooks().isEmpty()) {
+                return member.getName() + " has no borrowed books.";
+            }
+            
+            StringBuilder sb = new StringBuilder();
+            sb.append("Books borrowed by ").append(member.getName()).append(":\n");
+            long now = System.currentTimeMillis();
+            for (Book book : member.getBorrowedBooks()) {
+                sb.append("- ").append(book.getTitle())
+                  .append(" by ").append(book.getAuthor())
+                  .append(" (ISBN: ").append(book.getISBN()).append(")");
+                LoanTable.DueLoan loan = library.getLoans().loanOf(book.getISBN());
+                if (loan != null) {
+                    sb.append(loan.isOverdue(now) ? ", OVERDUE since " : ", due ")
+                      .append(dateOf(loan.getDueMillis()));
+                }
+                sb.append("\n");
+            }
+            return sb.toString();
+        } finally {
+            MEMBER_LOANS.recordSince(start);
         }
-        return sb.toString();
     }
     
     /**
@@ -479,23 +1514,22 @@ public class LibraryService {
      * @return String of available books
      */
     public String getAvailableBooks() {
-        ArrayList<Book> availableBooks = library.getAvailableBooks();
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== AVAILABLE BOOKS ===\n");
-        
-        if (availableBooks.isEmpty()) {
-            sb.append("No available books.\n");
-        } else {
-            for (Book book : availableBooks) {
-                sb.append("ISBN: ").append(book.getISBN())
-                  .append(", Title: ").append(book.getTitle())
-                  .append(", Author: ").append(book.getAuthor())
-                  .append("\n");
+        long start = System.nanoTime();
+        try {
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== AVAILABLE BOOKS ===\n");
+            
+            int before = sb.length();
+            library.streamBooks(BookStatus.AVAILABLE)
+                   .forEach(book -> sb.append(describeBook(book, false)).append("\n"));
+            if (sb.length() == before) {
+                sb.append("No available books.\n");
             }
+            sb.append("========================\n");
+            return sb.toString();
+        } finally {
+            LIST_AVAILABLE.recordSince(start);
         }
-        sb.append("========================\n");
-        return sb.toString();
     }
     
     /**
@@ -504,27 +1538,22 @@ public class LibraryService {
      * @return String of borrowed books
      */
     public String getBorrowedBooks() {
-        ArrayList<Book> allBooks = library.getAllBooks();
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== BORROWED BOOKS ===\n");
-        
-        boolean hasBorrowedBooks = false;
-        for (Book book : allBooks) {
-            if ("Borrowed".equalsIgnoreCase(book.getStatus())) {
-                sb.append("ISBN: ").append(book.getISBN())
-                  .append(", Title: ").append(book.getTitle())
-                  .append(", Author: ").append(book.getAuthor())
-                  .append("\n");
-                hasBorrowedBooks = true;
+        long start = System.nanoTime();
+        try {
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== BORROWED BOOKS ===\n");
+            
+            int before = sb.length();
+            library.streamBooks(BookStatus.BORROWED)
+                   .forEach(book -> sb.append(describeBook(book, false)).append("\n"));
+            if (sb.length() == before) {
+                sb.append("No borrowed books.\n");
             }
+            sb.append("=======================\n");
+            return sb.toString();
+        } finally {
+            LIST_BORROWED.recordSince(start);
         }
-        
-        if (!hasBorrowedBooks) {
-            sb.append("No borrowed books.\n");
-        }
-        sb.append("=======================\n");
-        return sb.toString();
     }
     
     /**
@@ -534,27 +1563,32 @@ public class LibraryService {
      * @return String of matching books
      */
     public String searchBooksByAuthor(String author) {
-        if (author == null || author.trim().isEmpty()) {
-            return "Error: Author name cannot be empty.";
-        }
-        
-        ArrayList<Book> results = library.searchBooksByAuthor(author.trim());
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("=== BOOKS BY ").append(author.toUpperCase()).append(" ===\n");
-        
-        if (results.isEmpty()) {
-            sb.append("No books found by ").append(author).append("\n");
-        } else {
-            for (Book book : results) {
-                sb.append("ISBN: ").append(book.getISBN())
-                  .append(", Title: ").append(book.getTitle())
-                  .append(", Status: ").append(book.getStatus())
-                  .append("\n");
+        long start = System.nanoTime();
+        try {
+            if (author == null || author.trim().isEmpty()) {
+                return "Error: Author name cannot be empty.";
+            }
+            
+            ArrayList<Book> results = library.searchBooksByAuthor(author.trim());
+            
+            StringBuilder sb = new StringBuilder();
+            sb.append("=== BOOKS BY ").append(author.toUpperCase()).append(" ===\n");
+            
+            if (results.isEmpty()) {
+                sb.append("No books found by ").append(author).append("\n");
+            } else {
+                for (Book book : results) {
+                    sb.append("ISBN: ").append(book.getISBN())
+                      .append(", Title: ").append(book.getTitle())
+                      .append(", Status: ").append(book.getStatus())
+                      .append("\n");
+                }
             }
+            sb.append("=========================\n");
+            return sb.toString();
+        } finally {
+            FIND_BY_AUTHOR.recordSince(start);
         }
-        sb.append("=========================\n");
-        return sb.toString();
     }
     
     /**
@@ -564,21 +1598,26 @@ public class LibraryService {
      * @return true if deleted successfully, false otherwise
      */
     public boolean deleteBook(long isbn) {
-        // Check if book is borrowed
-        Book book = library.findBook(isbn);
-        if (book != null && "Borrowed".equalsIgnoreCase(book.getStatus())) {
-            System.out.println("Cannot delete book that is currently borrowed");
-            return false;
-        }
-        
-        boolean deleted = library.removeBook(isbn);
-        if (deleted) {
-            saveBooksData();
-            System.out.println("Book with ISBN " + isbn + " deleted successfully");
-        } else {
-            System.out.println("Book with ISBN " + isbn + " not found");
+        long start = System.nanoTime();
+        try {
+            // Check if book is borrowed
+            Book book = library.findBook(isbn);
+            if (book != null && book.getStatus() == BookStatus.BORROWED) {
+                Events.warn("Cannot delete book that is currently borrowed");
+                return false;
+            }
+            
+            boolean deleted = awaitDurable(commit(onSuccess -> library.removeBook(isbn, onSuccess),
+                    JournalRecord.removeBook(isbn), true, false));
+            if (deleted) {
+                Events.info("Book with ISBN " + isbn + " deleted successfully");
+            } else {
+                Events.warn("Book with ISBN " + isbn + " not found");
+            }
+            return deleted;
+        } finally {
+            DELETE_BOOK.recordSince(start);
         }
-        return deleted;
     }
     
     /**
@@ -588,21 +1627,26 @@ public class LibraryService {
      * @return true if removed successfully, false otherwise
      */
     public boolean removeMember(long memberID) {
-        // Check if member has borrowed books
-        Member member = library.findMember(memberID);
-        if (member != null && !member.getBorrowedBooks().isEmpty()) {
-            System.out.println("Cannot remove member who has borrowed books");
-            return false;
-        }
-        
-        boolean removed = library.removeMember(memberID);
-        if (removed) {
-            saveMembersData();
-            System.out.println("Member with ID " + memberID + " removed successfully");
-        } else {
-            System.out.println("Member with ID " + memberID + " not found");
+        long start = System.nanoTime();
+        try {
+            // Check if member has borrowed books
+            Member member = library.findMember(memberID);
+            if (member != null && !member.getBorrowedBooks().isEmpty()) {
+                Events.warn("Cannot remove member who has borrowed books");
+                return false;
+            }
+            
+            boolean removed = awaitDurable(commit(onSuccess -> library.removeMember(memberID, onSuccess),
+                    JournalRecord.removeMember(memberID), false, true));
+            if (removed) {
+                Events.info("Member with ID " + memberID + " removed successfully");
+            } else {
+                Events.warn("Member with ID " + memberID + " not found");
+            }
+            return removed;
+        } finally {
+            REMOVE_MEMBER.recordSince(start);
         }
-        return removed;
     }
     
     /**
@@ -611,50 +1655,78 @@ public class LibraryService {
      * @return String with library statistics
      */
     public String getLibraryStats() {
-        int totalBooks = library.getTotalBooks();
-        int availableBooks = library.getAvailableBooksCount();
-        int borrowedBooks = library.getBorrowedBooksCount();
-        int totalMembers = library.getTotalMembers();
-        
-        // Count members with borrowed books
-        int membersWithBooks = 0;
-        ArrayList<Member> allMembers = library.getAllMembers();
-        for (Member member : allMembers) {
-            if (!member.getBorrowedBooks().isEmpty()) {
-                membersWithBooks++;
+        long start = System.nanoTime();
+        try {
+            int totalBooks = library.getTotalBooks();
+            int availableBooks = library.getAvailableBooksCount();
+            int borrowedBooks = library.getBorrowedBooksCount();
+            int totalMembers = library.getTotalMembers();
+            int membersWithBooks = library.getActiveMembersCount();
+            
+            StringBuilder sb = new StringBuilder();
+            sb.append("\n=== LIBRARY STATISTICS ===\n")
+              .append("Total Books: ").append(totalBooks).append("\n")
+              .append("Available Books: ").append(availableBooks).append("\n")
+              .append("Borrowed Books: ").append(borrowedBooks).append("\n");
+            for (BookStatus status : BookStatus.values()) {
+                int count = library.getBooksCount(status);
+                if (status != BookStatus.AVAILABLE && status != BookStatus.BORROWED && count > 0) {
+                    sb.append(status.getLabel()).append(" Books: ").append(count).append("\n");
+                }
             }
+            int booksHeld = library.getHolds().size();
+            if (booksHeld > 0) {
+                sb.append("Books With Holds: ").append(booksHeld).append("\n");
+            }
+            int overdueLoans = library.countOverdueLoans(System.currentTimeMillis());
+            if (overdueLoans > 0) {
+                sb.append("Overdue Loans: ").append(overdueLoans).append("\n");
+            }
+            sb.append("Total Members: ").append(totalMembers).append("\n")
+              .append("Active Members (with books): ").append(membersWithBooks).append("\n")
+              .append("Inactive Members: ").append(totalMembers - membersWithBooks).append("\n");
+            
+            // Calculate borrowing percentage
+            if (totalMembers > 0) {
+                double activePercentage = (membersWithBooks * 100.0) / totalMembers;
+                sb.append(String.format("Active Members Percentage: %.1f%%\n", activePercentage));
+            }
+            
+            sb.append("===========================\n");
+            return sb.toString();
+        } finally {
+            STATS.recordSince(start);
         }
-        
-        StringBuilder sb = new StringBuilder();
-        sb.append("\n=== LIBRARY STATISTICS ===\n")
-          .append("Total Books: ").append(totalBooks).append("\n")
-          .append("Available Books: ").append(availableBooks).append("\n")
-          .append("Borrowed Books: ").append(borrowedBooks).append("\n")
-          .append("Total Members: ").append(totalMembers).append("\n")
-          .append("Active Members (with books): ").append(membersWithBooks).append("\n")
-          .append("Inactive Members: ").append(totalMembers - membersWithBooks).append("\n");
-        
-        // Calculate borrowing percentage
-        if (totalMembers > 0) {
-            double activePercentage = (membersWithBooks * 100.0) / totalMembers;
-            sb.append(String.format("Active Members Percentage: %.1f%%\n", activePercentage));
-        }
-        
-        sb.append("===========================\n");
-        return sb.toString();
     }
     
     /**
      * Clean up resources and save data
      */
     public void shutdown() {
-        System.out.println("\nShutting down LibraryService...");
-        boolean saved = saveAllData();
-        if (saved) {
-            System.out.println("All data saved successfully.");
-        } else {
-            System.out.println("Warning: Some data may not have been saved.");
+        long start = System.nanoTime();
+        try {
+            Events.info("\nShutting down LibraryService...");
+            stop();
+            if (backgroundPersistence != null) {
+                // Write and sync everything still dirty before the final snapshot
+                backgroundPersistence.close();
+                backgroundPersistence = null;
+            }
+            if (groupCommit != null) {
+                // Flush any batch still in flight before the final snapshot
+                groupCommit.close();
+                groupCommit = null;
+            }
+            boolean saved = saveAllData();
+            if (saved) {
+                Events.info("All data saved successfully.");
+            } else {
+                Events.warn("Warning: Some data may not have been saved.");
+            }
+            fileService.closeJournal();
+            Events.info("LibraryService shutdown complete.");
+        } finally {
+            SHUTDOWN.recordSince(start);
         }
-        System.out.println("LibraryService shutdown complete.");
     }
 }
\ No newline at end of file
@@ -0,0 +1,131 @@
+package com.obcodes.librarymanagementsystem.services;
+
+/**
+ * What loading the library at startup did: how many books, members, loans,
+ * hold queues and journal records were read, and how long each phase took.
+ *
+ * Books and members are read at the same time, so the total is less than
+ * the sum of the phases.
+ *
+ * @author Obakeng Phale
+ */
+public class LoadReport {
+    private long books;
+    private boolean booksMapped;
+    private long bookNanos;
+    private long members;
+    private long memberNanos;
+    private long loans;
+    private long loanNanos;
+    private long holds;
+    private long holdNanos;
+    private int journalRecords;
+    private long journalNanos;
+    private long elapsedNanos;
+
+    void setBooks(long count, boolean mapped, long nanos) {
+        this.books = count;
+        this.booksMapped = mapped;
+        this.bookNanos = nanos;
+    }
+
+    void setMembers(long count, long nanos) {
+        this.members = count;
+        this.memberNanos = nanos;
+    }
+
+    void setLoans(long count, long nanos) {
+        this.loans = count;
+        this.loanNanos = nanos;
+    }
+
+    void setHolds(long count, long nanos) {
+        this.holds = count;
+        this.holdNanos = nanos;
+    }
+
+    void setJournal(int records, long nanos) {
+        this.journalRecords = records;
+        this.journalNanos = nanos;
+    }
+
+    void setElapsedNanos(long nanos) {
+        this.elapsedNanos = nanos;
+    }
+
+    public long getBooks() {
+        return books;
+    }
+
+    /**
+     * Check whether the book file was mapped as a catalog rather than read
+     * @return true if books are read from the catalog as they are needed
+     */
+    public boolean isBooksMapped() {
+        return booksMapped;
+    }
+
+    public long getBookNanos() {
+        return bookNanos;
+    }
+
+    public long getMembers() {
+        return members;
+    }
+
+    public long getMemberNanos() {
+        return memberNanos;
+    }
+
+    public long getLoans() {
+        return loans;
+    }
+
+    public long getLoanNanos() {
+        return loanNanos;
+    }
+
+    /**
+     * Get the number of books whose holds were read
+     * @return Hold queues read
+     */
+    public long getHolds() {
+        return holds;
+    }
+
+    public long getHoldNanos() {
+        return holdNanos;
+    }
+
+    /**
+     * Get the number of journal records replayed
+     * @return Records replayed, or -1 if the journal could not be read
+     */
+    public int getJournalRecords() {
+        return journalRecords;
+    }
+
+    public long getJournalNanos() {
+        return journalNanos;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder();
+        sb.append("=== LOAD REPORT ===\n")
+          .append(String.format("Books: %,d %s in %.3f s%n",
+                  books, booksMapped ? "mapped" : "read", bookNanos / 1e9))
+          .append(String.format("Members: %,d read in %.3f s%n", members, memberNanos / 1e9))
+          .append(String.format("Loans: %,d read in %.3f s%n", loans, loanNanos / 1e9))
+          .append(String.format("Holds: %,d queue(s) read in %.3f s%n", holds, holdNanos / 1e9))
+          .append(String.format("Journal: %,d record(s) replayed in %.3f s%n",
+                  journalRecords, journalNanos / 1e9))
+          .append(String.format("Total: %.3f s%n", elapsedNanos / 1e9))
+          .append("===================\n");
+        return sb.toString();
+    }
+}
@@ -0,0 +1,306 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookCatalog;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * A book record file mapped into memory and read on demand.
+ * Opening costs the same whatever the size of the catalog: only the header
+ * and trailer are checked, and each lookup probes the ISBN index and decodes
+ * one record. Files written before status counts were stored are scanned
+ * once to count them.
+ *
+ * Version 4 files carry a checksum for each block. The blocks holding the
+ * header, trailer and status counts are checked when the file is opened,
+ * so a file cut short or damaged at either end is rejected and can be
+ * restored from a backup. Every other block is checked the first time an
+ * index slot or record in it is read; a block that does not match fails
+ * that read with an IllegalStateException rather than decoding damaged bytes.
+ *
+ * The file is mapped in 1 GB segments that overlap by the maximum record
+ * size, so any record or index slot can be read from the segment it starts in.
+ * All reads use absolute positions, which makes lookups safe from any thread.
+ *
+ * @author Obakeng Phale
+ */
+final class MappedBookCatalog implements BookCatalog {
+    private static final long SEGMENT_SIZE = 1L << 30;
+
+    private final MappedByteBuffer[] segments;
+    private final long count;
+    private final long indexOffset;
+    private final int slotMask;
+    private final short version;
+    private final long[] statusCounts = new long[BookStatus.count()];
+    // Block checksums and the length of the part of the file they cover, null for older files
+    private final int[] checksums;
+    private final long checkedSize;
+    // One bit per block, set once the block has matched its checksum
+    private final AtomicLongArray checkedBlocks;
+
+    private MappedBookCatalog(MappedByteBuffer[] segments, long count, long indexOffset,
+                              int slots, short version, int[] checksums, long checkedSize,
+                              AtomicLongArray checkedBlocks) {
+        this.segments = segments;
+        this.count = count;
+        this.indexOffset = indexOffset;
+        this.slotMask = slots - 1;
+        this.version = version;
+        this.checksums = checksums;
+        this.checkedSize = checkedSize;
+        this.checkedBlocks = checkedBlocks;
+    }
+
+    /**
+     * Map a book record file
+     * @param path The book record file
+     * @return The catalog, or null if the file has no ISBN index
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    static MappedBookCatalog open(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < RecordFileService.HEADER_SIZE) {
+                throw new EOFException("Record file is too short for a header");
+            }
+
+            MappedByteBuffer[] segments = new MappedByteBuffer[(int) ((size - 1) / SEGMENT_SIZE) + 1];
+            for (int i = 0; i < segments.length; i++) {
+                long start = i * SEGMENT_SIZE;
+                long length = Math.min(size - start, SEGMENT_SIZE + RecordFileService.MAX_RECORD_SIZE);
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+            }
+            // The mapping stays valid after the channel is closed
+
+            ByteBuffer header = segments[0];
+            short version = RecordFileService.checkHeader(header, RecordFileService.BOOK_RECORDS);
+            byte flags = header.get(RecordFileService.FLAGS_OFFSET);
+            if ((flags & RecordFileService.FLAG_INDEXED) == 0) {
+                return null;
+            }
+            int[] checksums = null;
+            AtomicLongArray checkedBlocks = null;
+            int countsSize = RecordFileService.statusCountsSize(version, flags);
+            if (version >= 4) {
+                // Everything below concerns the part of the file before the checksums
+                checksums = RecordFileService.readChecksums(channel);
+                size -= RecordFileService.FOOTER_SIZE + 4L * checksums.length;
+                checkedBlocks = new AtomicLongArray((checksums.length + 63) / 64);
+            }
+            if (size < RecordFileService.HEADER_SIZE + countsSize + RecordFileService.TRAILER_SIZE) {
+                throw new EOFException("Record file ends before its index");
+            }
+            if (checksums != null) {
+                try {
+                    check(segments, checksums, size, checkedBlocks, 0, RecordFileService.HEADER_SIZE);
+                    int tail = countsSize + RecordFileService.TRAILER_SIZE;
+                    check(segments, checksums, size, checkedBlocks, size - tail, tail);
+                } catch (IllegalStateException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+
+            long trailer = size - RecordFileService.TRAILER_SIZE;
+            ByteBuffer last = segments[(int) (trailer / SEGMENT_SIZE)];
+            int at = (int) (trailer % SEGMENT_SIZE);
+            int slots = last.getInt(at + 8);
+            long indexOffset = RecordFileService.checkTrailer(
+                    last.getLong(at), slots, last.getInt(at + 12), size, version, flags);
+
+            long count = header.getLong(8);
+            if (count < 0 || count > slots) {
+                throw new IOException("Record file header does not match its index");
+            }
+            MappedBookCatalog catalog = new MappedBookCatalog(segments, count, indexOffset, slots, version,
+                    checksums, size, checkedBlocks);
+
+            if (countsSize > 0 && version >= 3) {
+                long counts = trailer - countsSize;
+                ByteBuffer segment = catalog.segmentAt(counts);
+                int position = (int) (counts % SEGMENT_SIZE);
+                for (int i = 0; i < catalog.statusCounts.length; i++) {
+                    catalog.statusCounts[i] = segment.getLong(position + i * 8);
+                }
+            } else {
+                try {
+                    catalog.countStatuses();
+                } catch (IllegalStateException e) {
+                    throw new IOException(e.getMessage(), e);
+                }
+            }
+            return catalog;
+        }
+    }
+
+    @Override
+    public long size() {
+        return count;
+    }
+
+    @Override
+    public long count(BookStatus status) {
+        return statusCounts[status.getCode()];
+    }
+
+    @Override
+    public Book read(long ISBN) {
+        int slot = RecordFileService.indexSlot(ISBN, slotMask);
+        for (int probes = 0; probes <= slotMask; probes++) {
+            long position = indexOffset + (long) slot * RecordFileService.INDEX_SLOT_SIZE;
+            check(position, RecordFileService.INDEX_SLOT_SIZE);
+            ByteBuffer segment = segmentAt(position);
+            int at = (int) (position % SEGMENT_SIZE);
+
+            long offset = segment.getLong(at + 8);
+            if (offset == 0) {
+                return null;
+            }
+            if (segment.getLong(at) == ISBN) {
+                return decode(offset);
+            }
+            slot = (slot + 1) & slotMask;
+        }
+        return null;
+    }
+
+    @Override
+    public Stream<Book> stream() {
+        Spliterator<Book> books = new Spliterators.AbstractSpliterator<>(count,
+                Spliterator.ORDERED | Spliterator.NONNULL | Spliterator.SIZED) {
+            private long position = RecordFileService.HEADER_SIZE;
+            private long read;
+
+            @Override
+            public boolean tryAdvance(Consumer<? super Book> action) {
+                if (read == count) {
+                    return false;
+                }
+                if (position >= indexOffset) {
+                    throw new IllegalStateException("Record file holds fewer books than its header says");
+                }
+                Book book = decode(position);
+                position += 4 + segmentAt(position).getInt((int) (position % SEGMENT_SIZE));
+                read++;
+                action.accept(book);
+                return true;
+            }
+        };
+        return StreamSupport.stream(books, false);
+    }
+
+    // ==================== DECODING ====================
+
+    /**
+     * Count books by status, reading only the status of each record
+     */
+    private void countStatuses() {
+        long position = RecordFileService.HEADER_SIZE;
+        for (long i = 0; i < count && position < indexOffset; i++) {
+            ByteBuffer segment = segmentAt(position);
+            int at = (int) (position % SEGMENT_SIZE);
+            int length = segment.getInt(at);
+            if (length < 8 || position + 4 + length > indexOffset) {
+                throw new IllegalStateException("Corrupt book record at offset " + position);
+            }
+
+            int field = at + 4 + 8;
+            field += 2 + Short.toUnsignedInt(segment.getShort(field));
+            field += 2 + Short.toUnsignedInt(segment.getShort(field));
+            statusCounts[statusAt(segment, field, position).getCode()]++;
+            position += 4 + length;
+        }
+    }
+
+    private ByteBuffer segmentAt(long position) {
+        return segments[(int) (position / SEGMENT_SIZE)];
+    }
+
+    /**
+     * Check the blocks holding a range of the file, unless already checked
+     * @throws IllegalStateException if a block does not match its checksum
+     */
+    private void check(long start, int length) {
+        if (checksums != null) {
+            check(segments, checksums, checkedSize, checkedBlocks, start, length);
+        }
+    }
+
+    private static void check(MappedByteBuffer[] segments, int[] checksums, long size,
+                              AtomicLongArray checkedBlocks, long start, int length) {
+        int last = (int) ((start + length - 1) / RecordFileService.CHECKSUM_BLOCK_SIZE);
+        for (int block = (int) (start / RecordFileService.CHECKSUM_BLOCK_SIZE); block <= last; block++) {
+            long bit = 1L << block;
+            if ((checkedBlocks.get(block >>> 6) & bit) != 0) {
+                continue;
+            }
+            // Segments start on block boundaries, so a block never spans two
+            long blockStart = (long) block * RecordFileService.CHECKSUM_BLOCK_SIZE;
+            int blockLength = (int) Math.min(RecordFileService.CHECKSUM_BLOCK_SIZE, size - blockStart);
+            ByteBuffer bytes = segments[(int) (blockStart / SEGMENT_SIZE)]
+                    .slice((int) (blockStart % SEGMENT_SIZE), blockLength);
+            if (RecordFileService.checksum(bytes) != checksums[block]) {
+                throw new IllegalStateException("Record file block " + block + " (offset "
+                        + blockStart + ") does not match its checksum");
+            }
+            // Two readers may check the same block; both find it sound
+            checkedBlocks.getAndUpdate(block >>> 6, bits -> bits | bit);
+        }
+    }
+
+    /**
+     * Decode the book record starting at a file offset
+     */
+    private Book decode(long offset) {
+        ByteBuffer segment = segmentAt(offset);
+        int at = (int) (offset % SEGMENT_SIZE);
+
+        check(offset, 4);
+        int length = segment.getInt(at);
+        if (length < 8 || length > RecordFileService.MAX_RECORD_SIZE - 4
+                || offset + 4 + length > indexOffset) {
+            throw new IllegalStateException("Corrupt book record at offset " + offset);
+        }
+        check(offset + 4, length);
+        at += 4;
+
+        long ISBN = segment.getLong(at);
+        at += 8;
+        String title = getString(segment, at);
+        at += 2 + Short.toUnsignedInt(segment.getShort(at));
+        String author = getString(segment, at);
+        at += 2 + Short.toUnsignedInt(segment.getShort(at));
+        return new Book(title, author, ISBN, statusAt(segment, at, offset));
+    }
+
+    /**
+     * Decode the status field of the record starting at a file offset
+     */
+    private BookStatus statusAt(ByteBuffer segment, int at, long offset) {
+        try {
+            return version < 3 ? BookStatus.parse(getString(segment, at)) : BookStatus.fromCode(segment.get(at));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalStateException("Corrupt book record at offset " + offset + ": " + e.getMessage(), e);
+        }
+    }
+
+    private String getString(ByteBuffer segment, int at) {
+        byte[] bytes = new byte[Short.toUnsignedInt(segment.getShort(at))];
+        segment.get(at + 2, bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
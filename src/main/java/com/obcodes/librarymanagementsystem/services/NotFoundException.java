@@ -0,0 +1,16 @@
+package com.obcodes.librarymanagementsystem.services;
+
+/**
+ * Thrown by {@link LibraryService} when an operation names a book or member
+ * the library does not have. It is an {@link IllegalArgumentException}, so
+ * callers that treat every bad argument alike need not tell it apart.
+ *
+ * @author Obakeng Phale
+ */
+public class NotFoundException extends IllegalArgumentException {
+    private static final long serialVersionUID = 1L;
+
+    public NotFoundException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,286 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.events.Events;
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.IntStream;
+
+/**
+ * Reads a whole record file on the common fork-join pool, for loading large
+ * libraries at startup.
+ *
+ * The file is mapped and its block checksums are checked in parallel. One
+ * sequential pass over the record lengths then splits the records into
+ * chunks of {@value #CHUNK_RECORDS}, which are decoded in parallel with
+ * absolute reads, and the decoded records are added to the library in one
+ * bulk call. Nothing is added unless the whole file decodes.
+ *
+ * Files over 2 GB, and member files of version 1, whose members carry their
+ * loans, are left to the streaming reader.
+ *
+ * @author Obakeng Phale
+ */
+final class ParallelRecordReader {
+    static final int CHUNK_RECORDS = 8192;
+
+    private final Path path;
+    private final MappedByteBuffer data;
+    private final short version;
+    private final long expected;
+    // Records end here; the index, counts and checksums follow
+    private final int readEnd;
+    // Position of the first record of each chunk, then readEnd
+    private int[] chunkStarts;
+    private int records;
+
+    private ParallelRecordReader(Path path, MappedByteBuffer data, short version, long expected, int readEnd) {
+        this.path = path;
+        this.data = data;
+        this.version = version;
+        this.expected = expected;
+        this.readEnd = readEnd;
+    }
+
+    /**
+     * Read every book in a record file into the library
+     * @param path The file to read
+     * @param library The library to add the books to
+     * @return Number of records read, or -1 if the file must be streamed instead
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    static long readBooks(Path path, Library library) throws IOException {
+        ParallelRecordReader reader = open(path, RecordFileService.BOOK_RECORDS);
+        if (reader == null) {
+            return -1;
+        }
+        List<Book> books = reader.decode(reader::decodeBook);
+        library.addBooks(books, null);
+        return books.size();
+    }
+
+    /**
+     * Read every member in a record file into the library
+     * @param path The file to read
+     * @param library The library to add the members to
+     * @return Number of records read, or -1 if the file must be streamed instead
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    static long readMembers(Path path, Library library) throws IOException {
+        ParallelRecordReader reader = open(path, RecordFileService.MEMBER_RECORDS);
+        if (reader == null || reader.version == 1) {
+            return -1;
+        }
+        List<Member> members = reader.decode(reader::decodeMember);
+        int added = library.addMembers(members);
+        if (added < members.size()) {
+            Events.warn("Skipped " + (members.size() - added) + " member(s) in " + path
+                    + " whose ID was already in the library");
+        }
+        return members.size();
+    }
+
+    /**
+     * Map a record file and check its header, checksums and trailer
+     * @return The reader, or null if the file is too large to map at once
+     */
+    private static ParallelRecordReader open(Path path, byte recordType) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                return null;
+            }
+            if (size < RecordFileService.HEADER_SIZE) {
+                throw new EOFException("Record file is too short for a header");
+            }
+            MappedByteBuffer data = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            // The mapping stays valid after the channel is closed
+
+            short version = RecordFileService.checkHeader(data, recordType);
+            byte flags = data.get(RecordFileService.FLAGS_OFFSET);
+            long expected = data.getLong(8);
+            if (version >= 4) {
+                int[] checksums = RecordFileService.readChecksums(channel);
+                size -= RecordFileService.FOOTER_SIZE + 4L * checksums.length;
+                RecordFileService.verifyBlocks(checksums, size,
+                        (start, length) -> data.slice((int) start, length));
+            }
+
+            long readEnd = size;
+            if ((flags & RecordFileService.FLAG_INDEXED) != 0) {
+                if (size < RecordFileService.HEADER_SIZE + RecordFileService.statusCountsSize(version, flags)
+                        + RecordFileService.TRAILER_SIZE) {
+                    throw new EOFException("Record file ends before its index");
+                }
+                int trailer = (int) size - RecordFileService.TRAILER_SIZE;
+                readEnd = RecordFileService.checkTrailer(data.getLong(trailer), data.getInt(trailer + 8),
+                        data.getInt(trailer + 12), size, version, flags);
+            }
+            return new ParallelRecordReader(path, data, version, expected, (int) readEnd);
+        }
+    }
+
+    /**
+     * Split the records into chunks, decode the chunks in parallel and
+     * return the records in file order
+     */
+    private <T> List<T> decode(ChunkDecoder<T> decoder) throws IOException {
+        split();
+        if (records != expected) {
+            throw new IOException(path + " holds " + records + " record(s) but its header says "
+                    + expected + "; the file was not written completely");
+        }
+
+        List<List<T>> chunks;
+        try {
+            chunks = IntStream.range(0, chunkStarts.length - 1).parallel()
+                    .mapToObj(chunk -> {
+                        try {
+                            return decodeChunk(decoder, chunk);
+                        } catch (IOException e) {
+                            throw new UncheckedIOException(e);
+                        }
+                    })
+                    .toList();
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        List<T> all = new ArrayList<>(records);
+        for (List<T> chunk : chunks) {
+            all.addAll(chunk);
+        }
+        return all;
+    }
+
+    /**
+     * Walk the record lengths once, noting where each chunk starts
+     */
+    private void split() throws IOException {
+        int[] starts = new int[16];
+        int chunks = 0;
+        int count = 0;
+        int position = RecordFileService.HEADER_SIZE;
+        while (position < readEnd) {
+            if (readEnd - position < 4) {
+                throw new EOFException("Record file ends inside a record header");
+            }
+            int length = data.getInt(position);
+            if (length < 0 || length > RecordFileService.MAX_RECORD_SIZE - 4) {
+                throw new IOException("Corrupt record length " + length);
+            }
+            if (readEnd - position - 4 < length) {
+                throw new EOFException("Record file ends inside a record");
+            }
+            if (count % CHUNK_RECORDS == 0) {
+                if (chunks == starts.length) {
+                    starts = Arrays.copyOf(starts, chunks * 2);
+                }
+                starts[chunks++] = position;
+            }
+            position += 4 + length;
+            count++;
+        }
+        chunkStarts = Arrays.copyOf(starts, chunks + 1);
+        chunkStarts[chunks] = readEnd;
+        records = count;
+    }
+
+    private <T> List<T> decodeChunk(ChunkDecoder<T> decoder, int chunk) throws IOException {
+        List<T> decoded = new ArrayList<>(CHUNK_RECORDS);
+        byte[] scratch = new byte[0xFFFF];
+        int position = chunkStarts[chunk];
+        int end = chunkStarts[chunk + 1];
+        long index = (long) chunk * CHUNK_RECORDS;
+        while (position < end) {
+            int length = data.getInt(position);
+            int recordEnd = position + 4 + length;
+            Cursor cursor = new Cursor(position + 4, recordEnd, scratch);
+            try {
+                decoded.add(decoder.decode(cursor));
+            } catch (IndexOutOfBoundsException e) {
+                throw new IOException("Record " + index + " has an unexpected length");
+            }
+            if (cursor.at != recordEnd) {
+                throw new IOException("Record " + index + " has an unexpected length");
+            }
+            position = recordEnd;
+            index++;
+        }
+        return decoded;
+    }
+
+    private Book decodeBook(Cursor cursor) throws IOException {
+        long ISBN = cursor.getLong();
+        String title = cursor.getString();
+        String author = cursor.getString();
+        BookStatus status = version < 3
+                ? RecordFileService.parseStatus(cursor.getString())
+                : RecordFileService.statusOf(cursor.getByte());
+        return new Book(title, author, ISBN, status);
+    }
+
+    private Member decodeMember(Cursor cursor) {
+        long memberID = cursor.getLong();
+        return new Member(memberID, cursor.getString());
+    }
+
+    private interface ChunkDecoder<T> {
+        T decode(Cursor cursor) throws IOException;
+    }
+
+    /**
+     * Position within one record; reads past its end throw IndexOutOfBoundsException
+     */
+    private final class Cursor {
+        int at;
+        final int end;
+        final byte[] scratch;
+
+        Cursor(int at, int end, byte[] scratch) {
+            this.at = at;
+            this.end = end;
+            this.scratch = scratch;
+        }
+
+        private void need(int bytes) {
+            if (end - at < bytes) {
+                throw new IndexOutOfBoundsException();
+            }
+        }
+
+        long getLong() {
+            need(8);
+            long value = data.getLong(at);
+            at += 8;
+            return value;
+        }
+
+        byte getByte() {
+            need(1);
+            return data.get(at++);
+        }
+
+        String getString() {
+            need(2);
+            int length = Short.toUnsignedInt(data.getShort(at));
+            need(2 + length);
+            data.get(at + 2, scratch, 0, length);
+            at += 2 + length;
+            return new String(scratch, 0, length, StandardCharsets.UTF_8);
+        }
+    }
+}
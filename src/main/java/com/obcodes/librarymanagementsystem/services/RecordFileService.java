@@ -0,0 +1,956 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookCatalog;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.HoldQueues;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.LoanTable;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.stream.IntStream;
+import java.util.zip.CRC32C;
+
+/**
+ * RecordFileService reads and writes the compact binary record files for
+ * books, members, loans and holds.
+ *
+ * File layout:
+ *   header  - magic (int), format version (short), record type (byte),
+ *             flags (byte), record count (long)
+ *   records - length (int) followed by that many payload bytes
+ *   index   - book files only: a fixed-width open-addressing table of
+ *             (ISBN, record offset) slots, 16 bytes each, offset 0 when empty
+ *   counts  - book files with {@link #FLAG_STATUS_COUNTS} only: number of
+ *             books with each status (long each, in status code order;
+ *             version 2 held only available and borrowed)
+ *   trailer - book files only: index offset (long), slot count (int), magic (int)
+ *   checksums - version 4: CRC-32C of each {@value #CHECKSUM_BLOCK_SIZE}-byte
+ *             block of everything above (int each; the last block may be short)
+ *   footer  - version 4: length of everything above the checksums (long),
+ *             block size (int), CRC-32C of the checksums (int), magic (int)
+ *
+ * Book payload:   ISBN (long), title, author, status code (byte)
+ *                 (versions 1 and 2 had the status as a string)
+ * Member payload: member ID (long), name
+ *                 (version 1 also had loan count (short) and loaned ISBNs (long each))
+ * Loan payload:   ISBN (long), member ID (long), time borrowed (long), time due (long)
+ *                 (files written before loans had dates end after the member ID)
+ * Hold payload:   ISBN (long), member the book is set aside for (long, 0 if none),
+ *                 end of their pickup window (long), queue length (int), then
+ *                 member ID (long) and time placed (long) of each waiting member
+ * Strings are UTF-8 prefixed with an unsigned short length.
+ *
+ * The record count is written last, so a file cut short by a crash is
+ * detected on load. The index lets {@link MappedBookCatalog} find a single
+ * book without reading the rest of the file, and the status counts let the
+ * library report statistics without reading any.
+ *
+ * Files are forced to disk before a write returns. Reads check every block
+ * checksum in one pass before the first record is decoded, so a damaged
+ * file is rejected before anything is added to the library.
+ *
+ * @author Obakeng Phale
+ */
+public class RecordFileService {
+    public static final int MAGIC = 0x4C4D5342; // "LMSB"
+    public static final short FORMAT_VERSION = 4;
+
+    static final byte BOOK_RECORDS = 1;
+    static final byte MEMBER_RECORDS = 2;
+    static final byte LOAN_RECORDS = 3;
+    static final byte HOLD_RECORDS = 4;
+    static final byte FLAG_INDEXED = 1;
+    static final byte FLAG_STATUS_COUNTS = 2;
+
+    static final int HEADER_SIZE = 16;
+    static final int TRAILER_SIZE = 16;
+    private static final int V2_STATUS_COUNTS_SIZE = 16;
+    static final int INDEX_SLOT_SIZE = 16;
+    static final int MAX_RECORD_SIZE = 1 << 20;
+    static final int FLAGS_OFFSET = 7;
+    private static final int COUNT_OFFSET = 8;
+    private static final int MAX_STRING_BYTES = 0xFFFF;
+    private static final int LOAN_RECORD_LENGTH = 32;
+    private static final int UNDATED_LOAN_RECORD_LENGTH = 16;
+    static final int CHECKSUM_BLOCK_SIZE = 64 * 1024;
+    static final int FOOTER_SIZE = 20;
+
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(MAX_RECORD_SIZE);
+    private final ByteBuffer readBuffer = ByteBuffer.allocateDirect(MAX_RECORD_SIZE);
+    private final byte[] stringBytes = new byte[MAX_STRING_BYTES];
+
+    // Bytes already drained to the file being written
+    private long written;
+
+    // Checksums of the blocks drained so far, and of the block being filled
+    private final CRC32C blockChecksum = new CRC32C();
+    private int[] blockChecksums = new int[64];
+    private int blockCount;
+    private int blockFill;
+
+    // End of the record section and format version of the file being read
+    private long readEnd;
+    private short readVersion;
+
+    // ==================== WRITING ====================
+
+    /**
+     * Write every book to a record file, replacing its contents.
+     * An ISBN index and the number of books with each status are written
+     * after the records.
+     * @param path The file to write
+     * @param books The books to write
+     * @return Number of records written
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized long writeBooks(Path path, Iterable<Book> books) throws IOException {
+        try (FileChannel channel = openForWrite(path)) {
+            ByteBuffer buffer = startFile(BOOK_RECORDS, (byte) (FLAG_INDEXED | FLAG_STATUS_COUNTS));
+            long[] isbns = new long[1024];
+            long[] offsets = new long[1024];
+            int count = 0;
+            long[] statusCounts = new long[BookStatus.count()];
+
+            for (Book book : books) {
+                byte[] title = encode(book.getTitle());
+                byte[] author = encode(book.getAuthor());
+                BookStatus status = book.getStatus();
+                int length = 8 + 2 + title.length + 2 + author.length + 1;
+
+                reserve(channel, buffer, 4 + length);
+                if (count == isbns.length) {
+                    isbns = Arrays.copyOf(isbns, count * 2);
+                    offsets = Arrays.copyOf(offsets, count * 2);
+                }
+                isbns[count] = book.getISBN();
+                offsets[count] = written + buffer.position();
+                buffer.putInt(length);
+                buffer.putLong(book.getISBN());
+                putString(buffer, title);
+                putString(buffer, author);
+                buffer.put(status.getCode());
+                statusCounts[status.getCode()]++;
+                count++;
+            }
+
+            writeIndex(channel, buffer, isbns, offsets, count, statusCounts);
+            finishFile(channel, buffer, count);
+            return count;
+        }
+    }
+
+    /**
+     * Write the ISBN index, status counts and trailer after the book records
+     */
+    private void writeIndex(FileChannel channel, ByteBuffer buffer, long[] isbns, long[] offsets,
+                            int count, long[] statusCounts) throws IOException {
+        long indexOffset = written + buffer.position();
+        int slots = indexCapacity(count);
+        int mask = slots - 1;
+
+        // Slot table holds entry number + 1 so that zero means empty
+        int[] table = new int[slots];
+        for (int i = 0; i < count; i++) {
+            int slot = indexSlot(isbns[i], mask);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = i + 1;
+        }
+
+        for (int entry : table) {
+            reserve(channel, buffer, INDEX_SLOT_SIZE);
+            buffer.putLong(entry == 0 ? 0 : isbns[entry - 1]);
+            buffer.putLong(entry == 0 ? 0 : offsets[entry - 1]);
+        }
+
+        reserve(channel, buffer, statusCounts.length * 8 + TRAILER_SIZE);
+        for (long statusCount : statusCounts) {
+            buffer.putLong(statusCount);
+        }
+        buffer.putLong(indexOffset);
+        buffer.putInt(slots);
+        buffer.putInt(MAGIC);
+    }
+
+    /**
+     * Number of index slots for a book count: a power of two at most three quarters full
+     */
+    static int indexCapacity(int count) {
+        int needed = Math.max(16, count + count / 3 + 1);
+        return Integer.highestOneBit(needed - 1) << 1;
+    }
+
+    /**
+     * First slot to probe for an ISBN
+     */
+    static int indexSlot(long ISBN, int mask) {
+        return (int) ((ISBN * 0x9E3779B97F4A7C15L) >>> 32) & mask;
+    }
+
+    /**
+     * Write every member to a record file, replacing its contents.
+     * Loans are not part of member records; see {@link #writeLoans(Path, LoanTable)}.
+     * @param path The file to write
+     * @param members The members to write
+     * @return Number of records written
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized long writeMembers(Path path, Iterable<Member> members) throws IOException {
+        try (FileChannel channel = openForWrite(path)) {
+            ByteBuffer buffer = startFile(MEMBER_RECORDS, (byte) 0);
+            long count = 0;
+
+            for (Member member : members) {
+                byte[] name = encode(member.getName());
+                int length = 8 + 2 + name.length;
+
+                reserve(channel, buffer, 4 + length);
+                buffer.putInt(length);
+                buffer.putLong(member.getMemberID());
+                putString(buffer, name);
+                count++;
+            }
+
+            finishFile(channel, buffer, count);
+            return count;
+        }
+    }
+
+    /**
+     * Write every loan to a record file, replacing its contents
+     * @param path The file to write
+     * @param loans The loan table to write
+     * @return Number of records written
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized long writeLoans(Path path, LoanTable loans) throws IOException {
+        try (FileChannel channel = openForWrite(path)) {
+            ByteBuffer buffer = startFile(LOAN_RECORDS, (byte) 0);
+            long[] count = {0};
+            IOException[] failure = {null};
+
+            loans.forEachDated((ISBN, memberID, borrowedMillis, dueMillis) -> {
+                try {
+                    reserve(channel, buffer, 4 + LOAN_RECORD_LENGTH);
+                    buffer.putInt(LOAN_RECORD_LENGTH);
+                    buffer.putLong(ISBN);
+                    buffer.putLong(memberID);
+                    buffer.putLong(borrowedMillis);
+                    buffer.putLong(dueMillis);
+                    count[0]++;
+                } catch (IOException e) {
+                    if (failure[0] == null) {
+                        failure[0] = e;
+                    }
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+
+            finishFile(channel, buffer, count[0]);
+            return count[0];
+        }
+    }
+
+    /**
+     * Write the holds of every book that has any to a record file, replacing its contents
+     * @param path The file to write
+     * @param holds The hold queues to write
+     * @return Number of records written
+     * @throws IOException if the file cannot be written
+     */
+    public synchronized long writeHolds(Path path, HoldQueues holds) throws IOException {
+        try (FileChannel channel = openForWrite(path)) {
+            ByteBuffer buffer = startFile(HOLD_RECORDS, (byte) 0);
+            long[] count = {0};
+            IOException[] failure = {null};
+
+            holds.forEach(state -> {
+                if (failure[0] != null) {
+                    return;
+                }
+                try {
+                    long[] members = state.getMembers();
+                    long[] placed = state.getPlacedMillis();
+                    int length = 8 + 8 + 8 + 4 + 16 * members.length;
+                    if (length > MAX_RECORD_SIZE - 4) {
+                        throw new IOException("Hold queue for ISBN " + state.getISBN() + " is too long to save");
+                    }
+
+                    reserve(channel, buffer, 4 + length);
+                    buffer.putInt(length);
+                    buffer.putLong(state.getISBN());
+                    buffer.putLong(state.getReadyMember());
+                    buffer.putLong(state.getReadyUntil());
+                    buffer.putInt(members.length);
+                    for (int i = 0; i < members.length; i++) {
+                        buffer.putLong(members[i]);
+                        buffer.putLong(placed[i]);
+                    }
+                    count[0]++;
+                } catch (IOException e) {
+                    failure[0] = e;
+                }
+            });
+            if (failure[0] != null) {
+                throw failure[0];
+            }
+
+            finishFile(channel, buffer, count[0]);
+            return count[0];
+        }
+    }
+
+    // ==================== READING ====================
+
+    /**
+     * Read every book in a record file into the library. Files that fit in
+     * one mapping are decoded in parallel; others are streamed.
+     * Safe to call while another thread reads a different file.
+     * @param path The file to read
+     * @param library The library to add the books to
+     * @return Number of records read
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    public long readBooks(Path path, Library library) throws IOException {
+        long count = ParallelRecordReader.readBooks(path, library);
+        return count >= 0 ? count : streamBooks(path, library);
+    }
+
+    /**
+     * Read every member in a record file into the library. Files that fit
+     * in one mapping are decoded in parallel; others are streamed.
+     * Loans held in version 1 files are moved into the library's loan table,
+     * so books must be loaded first.
+     * Safe to call while another thread reads a different file.
+     * @param path The file to read
+     * @param library The library to add the members to
+     * @return Number of records read
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    public long readMembers(Path path, Library library) throws IOException {
+        long count = ParallelRecordReader.readMembers(path, library);
+        return count >= 0 ? count : streamMembers(path, library);
+    }
+
+    /**
+     * Check whether a member file holds loans, as version 1 files did, so
+     * books must be loaded before it is read
+     * @param path The member file
+     * @return true if the file is version 1; false if it is later or cannot be read
+     */
+    public boolean holdsMemberLoans(Path path) {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+            while (header.hasRemaining() && channel.read(header) >= 0) {
+                // keep reading
+            }
+            return !header.hasRemaining() && checkHeader(header, MEMBER_RECORDS) == 1;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Stream every book in a record file into the library
+     * @param path The file to read
+     * @param library The library to add the books to
+     * @return Number of records read
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    private synchronized long streamBooks(Path path, Library library) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long expected = startRead(channel, BOOK_RECORDS);
+            ByteBuffer buffer = readBuffer;
+            long count = 0;
+
+            while (nextRecord(channel, buffer)) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                long ISBN = buffer.getLong();
+                String title = getString(buffer);
+                String author = getString(buffer);
+                BookStatus status = readVersion < 3 ? parseStatus(getString(buffer)) : statusOf(buffer.get());
+                checkRecordEnd(buffer, end, count);
+
+                library.addBook(new Book(title, author, ISBN, status));
+                count++;
+            }
+
+            checkCount(path, expected, count);
+            return count;
+        }
+    }
+
+    /**
+     * Stream every member in a record file into the library.
+     * Loans held in version 1 files are moved into the library's loan table,
+     * so books must be loaded first.
+     * @param path The file to read
+     * @param library The library to add the members to
+     * @return Number of records read
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    private synchronized long streamMembers(Path path, Library library) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long expected = startRead(channel, MEMBER_RECORDS);
+            ByteBuffer buffer = readBuffer;
+            long count = 0;
+
+            while (nextRecord(channel, buffer)) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                long memberID = buffer.getLong();
+                Member member = new Member(memberID, getString(buffer));
+                if (readVersion == 1) {
+                    int loans = Short.toUnsignedInt(buffer.getShort());
+                    for (int i = 0; i < loans; i++) {
+                        Book book = library.findBook(buffer.getLong());
+                        if (book != null) {
+                            member.restoreLoan(book);
+                        }
+                    }
+                }
+                checkRecordEnd(buffer, end, count);
+
+                library.addMember(member);
+                count++;
+            }
+
+            checkCount(path, expected, count);
+            return count;
+        }
+    }
+
+    /**
+     * Stream every loan in a record file into the library's loan table.
+     * Books and members must be loaded first; loans naming either that no
+     * longer exists are skipped.
+     * @param path The file to read
+     * @param library The library to restore the loans into
+     * @return Number of records read
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    public synchronized long readLoans(Path path, Library library) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long expected = startRead(channel, LOAN_RECORDS);
+            ByteBuffer buffer = readBuffer;
+            long count = 0;
+
+            while (nextRecord(channel, buffer)) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                long ISBN = buffer.getLong();
+                long memberID = buffer.getLong();
+                long borrowedMillis = 0;
+                long dueMillis = 0;
+                if (length != UNDATED_LOAN_RECORD_LENGTH) {
+                    borrowedMillis = buffer.getLong();
+                    dueMillis = buffer.getLong();
+                }
+                checkRecordEnd(buffer, end, count);
+
+                Member member = library.findMember(memberID);
+                Book book = library.findBook(ISBN);
+                if (member != null && book != null) {
+                    // Undated loans from older files are given a loan period from now
+                    member.restoreLoan(book, borrowedMillis, dueMillis);
+                }
+                count++;
+            }
+
+            checkCount(path, expected, count);
+            return count;
+        }
+    }
+
+    /**
+     * Stream every book's holds in a record file into the library. Books and
+     * members must be loaded first; holds on books that no longer exist are
+     * skipped.
+     * @param path The file to read
+     * @param library The library to restore the holds into
+     * @return Number of records read
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    public synchronized long readHolds(Path path, Library library) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long expected = startRead(channel, HOLD_RECORDS);
+            ByteBuffer buffer = readBuffer;
+            long count = 0;
+
+            while (nextRecord(channel, buffer)) {
+                int length = buffer.getInt();
+                int end = buffer.position() + length;
+                long ISBN = buffer.getLong();
+                long readyMember = buffer.getLong();
+                long readyUntil = buffer.getLong();
+                int waiting = buffer.getInt();
+                if (waiting < 0 || waiting > (end - buffer.position()) / 16) {
+                    throw new IOException("Corrupt hold queue length " + waiting + " in record " + count);
+                }
+                long[] members = new long[waiting];
+                long[] placed = new long[waiting];
+                for (int i = 0; i < waiting; i++) {
+                    members[i] = buffer.getLong();
+                    placed[i] = buffer.getLong();
+                }
+                checkRecordEnd(buffer, end, count);
+
+                library.restoreHolds(new HoldQueues.State(ISBN, readyMember, readyUntil, members, placed));
+                count++;
+            }
+
+            checkCount(path, expected, count);
+            return count;
+        }
+    }
+
+    /**
+     * Open a book record file as a memory-mapped catalog
+     * @param path The book record file
+     * @return The catalog, or null if the file was written without an index
+     * @throws IOException if the file is missing, truncated or malformed
+     */
+    public BookCatalog openCatalog(Path path) throws IOException {
+        return MappedBookCatalog.open(path);
+    }
+
+    // ==================== HELPERS ====================
+
+    private FileChannel openForWrite(Path path) throws IOException {
+        // Read access too, to checksum the header again once its count is patched
+        return FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+    }
+
+    private ByteBuffer startFile(byte recordType, byte flags) {
+        ByteBuffer buffer = writeBuffer;
+        buffer.clear();
+        written = 0;
+        blockChecksum.reset();
+        blockCount = 0;
+        blockFill = 0;
+        buffer.putInt(MAGIC);
+        buffer.putShort(FORMAT_VERSION);
+        buffer.put(recordType);
+        buffer.put(flags);
+        buffer.putLong(0); // record count, patched in finishFile
+        return buffer;
+    }
+
+    private void reserve(FileChannel channel, ByteBuffer buffer, int bytes) throws IOException {
+        if (bytes > buffer.capacity()) {
+            throw new IOException("Record of " + bytes + " bytes exceeds the write buffer");
+        }
+        if (buffer.remaining() < bytes) {
+            drain(channel, buffer);
+        }
+    }
+
+    private void drain(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        addToChecksums(buffer);
+        while (buffer.hasRemaining()) {
+            written += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private void finishFile(FileChannel channel, ByteBuffer buffer, long count) throws IOException {
+        drain(channel, buffer);
+        if (blockFill > 0) {
+            endBlock();
+        }
+        ByteBuffer countBytes = ByteBuffer.allocate(8).putLong(count).flip();
+        while (countBytes.hasRemaining()) {
+            channel.write(countBytes, COUNT_OFFSET + countBytes.position());
+        }
+
+        // The first block was summed while the count was still zero
+        if (blockCount > 0) {
+            ByteBuffer first = ByteBuffer.allocate((int) Math.min(written, CHECKSUM_BLOCK_SIZE));
+            while (first.hasRemaining()) {
+                if (channel.read(first, first.position()) < 0) {
+                    throw new EOFException("Record file is shorter than was written");
+                }
+            }
+            blockChecksums[0] = checksum(first.flip());
+        }
+
+        ByteBuffer table = ByteBuffer.allocate(blockCount * 4);
+        for (int i = 0; i < blockCount; i++) {
+            table.putInt(blockChecksums[i]);
+        }
+        table.flip();
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE)
+                .putLong(written).putInt(CHECKSUM_BLOCK_SIZE).putInt(checksum(table.duplicate())).putInt(MAGIC)
+                .flip();
+        while (table.hasRemaining()) {
+            channel.write(table);
+        }
+        while (footer.hasRemaining()) {
+            channel.write(footer);
+        }
+        channel.force(true);
+    }
+
+    /**
+     * Add bytes about to be drained to the block checksums
+     * @param data The bytes from its position to its limit, which are left unchanged
+     */
+    private void addToChecksums(ByteBuffer data) {
+        int position = data.position();
+        while (position < data.limit()) {
+            int take = Math.min(data.limit() - position, CHECKSUM_BLOCK_SIZE - blockFill);
+            blockChecksum.update(data.slice(position, take));
+            position += take;
+            blockFill += take;
+            if (blockFill == CHECKSUM_BLOCK_SIZE) {
+                endBlock();
+            }
+        }
+    }
+
+    private void endBlock() {
+        if (blockCount == blockChecksums.length) {
+            blockChecksums = Arrays.copyOf(blockChecksums, blockCount * 2);
+        }
+        blockChecksums[blockCount++] = (int) blockChecksum.getValue();
+        blockChecksum.reset();
+        blockFill = 0;
+    }
+
+    /**
+     * CRC-32C of the bytes from a buffer's position to its limit
+     */
+    static int checksum(ByteBuffer data) {
+        CRC32C crc = new CRC32C();
+        crc.update(data);
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Read and check the block checksums of a version 4 file
+     * @param channel The open file
+     * @return One checksum per block; the blocks hold the first
+     *         {@code size - FOOTER_SIZE - 4 * checksums} bytes of the file
+     * @throws IOException if the footer or checksums are damaged or do not fit the file
+     */
+    static int[] readChecksums(FileChannel channel) throws IOException {
+        long size = channel.size();
+        if (size < HEADER_SIZE + FOOTER_SIZE) {
+            throw new EOFException("Record file ends before its checksums");
+        }
+        ByteBuffer footer = ByteBuffer.allocate(FOOTER_SIZE);
+        while (footer.hasRemaining()) {
+            if (channel.read(footer, size - FOOTER_SIZE + footer.position()) < 0) {
+                throw new EOFException("Record file ends inside its footer");
+            }
+        }
+        long bodySize = footer.getLong(0);
+        long blocks = bodySize < 0 ? -1 : (bodySize + CHECKSUM_BLOCK_SIZE - 1) / CHECKSUM_BLOCK_SIZE;
+        if (footer.getInt(16) != MAGIC || footer.getInt(8) != CHECKSUM_BLOCK_SIZE
+                || bodySize < HEADER_SIZE || bodySize + blocks * 4 + FOOTER_SIZE != size) {
+            throw new IOException("Record file was not written completely or its footer is damaged");
+        }
+
+        ByteBuffer table = ByteBuffer.allocate((int) blocks * 4);
+        while (table.hasRemaining()) {
+            if (channel.read(table, bodySize + table.position()) < 0) {
+                throw new EOFException("Record file ends inside its checksums");
+            }
+        }
+        table.flip();
+        if (checksum(table.duplicate()) != footer.getInt(12)) {
+            throw new IOException("Record file checksums are damaged");
+        }
+        int[] checksums = new int[(int) blocks];
+        table.asIntBuffer().get(checksums);
+        return checksums;
+    }
+
+    /**
+     * Check every block of a version 4 file against its checksum, reading
+     * the file once from start to end
+     * @return Length of the checked part, which ends where the checksums begin
+     * @throws IOException if a block does not match
+     */
+    private long verifyChecksums(FileChannel channel) throws IOException {
+        int[] checksums = readChecksums(channel);
+        long bodySize = channel.size() - FOOTER_SIZE - 4L * checksums.length;
+        ByteBuffer buffer = readBuffer;
+        long position = 0;
+        int block = 0;
+        while (position < bodySize) {
+            buffer.clear();
+            if (bodySize - position < buffer.capacity()) {
+                buffer.limit((int) (bodySize - position));
+            }
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, position + buffer.position()) < 0) {
+                    throw new EOFException("Record file is shorter than its footer says");
+                }
+            }
+            buffer.flip();
+            for (int at = 0; at < buffer.limit(); at += CHECKSUM_BLOCK_SIZE, block++) {
+                int length = Math.min(CHECKSUM_BLOCK_SIZE, buffer.limit() - at);
+                if (checksum(buffer.slice(at, length)) != checksums[block]) {
+                    throw new IOException("Record file block " + block + " (offset "
+                            + ((long) block * CHECKSUM_BLOCK_SIZE) + ") does not match its checksum");
+                }
+            }
+            position += buffer.limit();
+        }
+        return bodySize;
+    }
+
+    /**
+     * Check every block of a version 4 file against its checksum on the
+     * common fork-join pool
+     * @param checksums The file's block checksums
+     * @param size Length of the part of the file the checksums cover
+     * @param blocks Gives the bytes of a block; called from several threads
+     * @throws IOException if a block does not match
+     */
+    static void verifyBlocks(int[] checksums, long size, BlockSource blocks) throws IOException {
+        int damaged = IntStream.range(0, checksums.length).parallel()
+                .filter(block -> {
+                    long start = (long) block * CHECKSUM_BLOCK_SIZE;
+                    int length = (int) Math.min(CHECKSUM_BLOCK_SIZE, size - start);
+                    return checksum(blocks.block(start, length)) != checksums[block];
+                })
+                .findFirst()
+                .orElse(-1);
+        if (damaged >= 0) {
+            throw new IOException("Record file block " + damaged + " (offset "
+                    + ((long) damaged * CHECKSUM_BLOCK_SIZE) + ") does not match its checksum");
+        }
+    }
+
+    /**
+     * Where {@link #verifyBlocks} finds the bytes of each block
+     */
+    interface BlockSource {
+        ByteBuffer block(long start, int length);
+    }
+
+    /**
+     * Check the header and fill the read buffer with the first records
+     * @return The record count from the header
+     */
+    private long startRead(FileChannel channel, byte recordType) throws IOException {
+        ByteBuffer buffer = readBuffer;
+        buffer.clear().limit(HEADER_SIZE);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                throw new EOFException("Record file is too short for a header");
+            }
+        }
+
+        readVersion = checkHeader(buffer, recordType);
+        long count = buffer.getLong(COUNT_OFFSET);
+        byte flags = buffer.get(FLAGS_OFFSET);
+        long bodySize = readVersion >= 4 ? verifyChecksums(channel) : channel.size();
+        readEnd = (flags & FLAG_INDEXED) != 0
+                ? readIndexOffset(channel, bodySize, readVersion, flags)
+                : bodySize;
+
+        channel.position(HEADER_SIZE);
+        buffer.clear();
+        fill(channel, buffer);
+        buffer.flip();
+        return count;
+    }
+
+    /**
+     * Read the trailer of an indexed file to find where the records end
+     * @param size Length of the file up to its checksums, if it has them
+     */
+    private long readIndexOffset(FileChannel channel, long size, short version, byte flags) throws IOException {
+        if (size < HEADER_SIZE + statusCountsSize(version, flags) + TRAILER_SIZE) {
+            throw new EOFException("Record file ends before its index");
+        }
+
+        ByteBuffer trailer = ByteBuffer.allocate(TRAILER_SIZE);
+        while (trailer.hasRemaining()) {
+            if (channel.read(trailer, size - TRAILER_SIZE + trailer.position()) < 0) {
+                throw new EOFException("Record file ends inside its trailer");
+            }
+        }
+        return checkTrailer(trailer.getLong(0), trailer.getInt(8), trailer.getInt(12), size, version, flags);
+    }
+
+    /**
+     * Validate an index trailer against the file size
+     * @param version The file's format version
+     * @param flags The file's header flags
+     * @return The index offset
+     * @throws IOException if the trailer does not describe this file
+     */
+    static long checkTrailer(long indexOffset, int slots, int magic, long size,
+                             short version, byte flags) throws IOException {
+        if (magic != MAGIC || slots <= 0 || Integer.bitCount(slots) != 1
+                || indexOffset < HEADER_SIZE
+                || indexOffset + (long) slots * INDEX_SLOT_SIZE + statusCountsSize(version, flags)
+                        + TRAILER_SIZE != size) {
+            throw new IOException("Record file index is damaged or incomplete");
+        }
+        return indexOffset;
+    }
+
+    /**
+     * Size of the status counts between the index and the trailer
+     * @param version The file's format version
+     * @param flags The file's header flags
+     * @return The size in bytes, 0 for files written without them
+     */
+    static int statusCountsSize(short version, byte flags) {
+        if ((flags & FLAG_STATUS_COUNTS) == 0) {
+            return 0;
+        }
+        return version < 3 ? V2_STATUS_COUNTS_SIZE : BookStatus.count() * 8;
+    }
+
+    /**
+     * Decode a status code from a record
+     * @throws IOException if the code is unknown
+     */
+    static BookStatus statusOf(byte code) throws IOException {
+        try {
+            return BookStatus.fromCode(code);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decode a status string from a version 1 or 2 record
+     * @throws IOException if the string names no status
+     */
+    static BookStatus parseStatus(String label) throws IOException {
+        try {
+            return BookStatus.parse(label);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Validate a record file header
+     * @param header Buffer holding at least the header bytes, starting at index 0
+     * @param recordType The record type the caller expects
+     * @return The file's format version
+     * @throws IOException if the header does not match
+     */
+    static short checkHeader(ByteBuffer header, byte recordType) throws IOException {
+        if (header.getInt(0) != MAGIC) {
+            throw new IOException("Not a library record file");
+        }
+        short version = header.getShort(4);
+        if (version < 1 || version > FORMAT_VERSION) {
+            throw new IOException("Unsupported record format version " + version);
+        }
+        if (header.get(6) != recordType) {
+            throw new IOException("Record file holds the wrong record type");
+        }
+        return version;
+    }
+
+    /**
+     * Make sure the next whole record is in the buffer
+     * @return true if a record is available, false at a clean end of file
+     */
+    private boolean nextRecord(FileChannel channel, ByteBuffer buffer) throws IOException {
+        if (buffer.remaining() < 4) {
+            refill(channel, buffer);
+            if (!buffer.hasRemaining()) {
+                return false;
+            }
+            if (buffer.remaining() < 4) {
+                throw new EOFException("Record file ends inside a record header");
+            }
+        }
+
+        int length = buffer.getInt(buffer.position());
+        if (length < 0 || length > buffer.capacity() - 4) {
+            throw new IOException("Corrupt record length " + length);
+        }
+        if (buffer.remaining() < 4 + length) {
+            refill(channel, buffer);
+            if (buffer.remaining() < 4 + length) {
+                throw new EOFException("Record file ends inside a record");
+            }
+        }
+        return true;
+    }
+
+    private void refill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.compact();
+        fill(channel, buffer);
+        buffer.flip();
+    }
+
+    /**
+     * Read into the buffer, stopping at the end of the record section
+     */
+    private void fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int limit = buffer.limit();
+        while (buffer.hasRemaining()) {
+            long left = readEnd - channel.position();
+            if (left <= 0) {
+                break;
+            }
+            if (left < buffer.remaining()) {
+                buffer.limit(buffer.position() + (int) left);
+            }
+            int read = channel.read(buffer);
+            buffer.limit(limit);
+            if (read < 0) {
+                break;
+            }
+        }
+    }
+
+    private void checkRecordEnd(ByteBuffer buffer, int end, long index) throws IOException {
+        if (buffer.position() != end) {
+            throw new IOException("Record " + index + " has an unexpected length");
+        }
+    }
+
+    private void checkCount(Path path, long expected, long actual) throws IOException {
+        if (expected != actual) {
+            throw new IOException(path + " holds " + actual + " record(s) but its header says "
+                    + expected + "; the file was not written completely");
+        }
+    }
+
+    private byte[] encode(String value) throws IOException {
+        byte[] bytes = (value == null ? "" : value).getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > MAX_STRING_BYTES) {
+            throw new IOException("Text field longer than " + MAX_STRING_BYTES + " bytes");
+        }
+        return bytes;
+    }
+
+    private void putString(ByteBuffer buffer, byte[] bytes) {
+        buffer.putShort((short) bytes.length);
+        buffer.put(bytes);
+    }
+
+    private String getString(ByteBuffer buffer) {
+        int length = Short.toUnsignedInt(buffer.getShort());
+        buffer.get(stringBytes, 0, length);
+        return new String(stringBytes, 0, length, StandardCharsets.UTF_8);
+    }
+}
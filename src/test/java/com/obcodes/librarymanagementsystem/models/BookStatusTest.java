@@ -0,0 +1,77 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a book only moves between the statuses its state machine
+ * allows, and the lost and repair operations built on it
+ * @author Obakeng Phale
+ */
+class BookStatusTest {
+    private static final long ISBN = 9780000000003L;
+    private static final long READER = 100000000000L;
+    private static final long WAITER = 100000000001L;
+
+    private Library library;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        library = new Library();
+        book = new Book("Dune", "Frank Herbert", ISBN, BookStatus.AVAILABLE);
+        assertTrue(library.addBook(book));
+        assertTrue(library.addMember(new Member(READER, "Reader")));
+        assertTrue(library.addMember(new Member(WAITER, "Waiter")));
+    }
+
+    @Test
+    void illegalTransitionIsRejected() {
+        assertTrue(book.changeStatus(BookStatus.AVAILABLE, BookStatus.RESERVED));
+        assertThrows(IllegalArgumentException.class, () -> book.changeStatus(BookStatus.RESERVED, BookStatus.LOST));
+        assertFalse(book.changeStatus(BookStatus.IN_REPAIR));
+        assertEquals(BookStatus.RESERVED, book.getStatus());
+
+        assertTrue(book.changeStatus(BookStatus.RESERVED, BookStatus.AVAILABLE));
+        assertTrue(library.changeBookStatus(ISBN, BookStatus.LOST, null));
+        assertFalse(library.changeBookStatus(ISBN, BookStatus.LOST, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> library.changeBookStatus(ISBN, BookStatus.BORROWED, null));
+        // A lost book is not lent, even when loading a saved loan
+        assertFalse(library.checkoutBook(READER, ISBN));
+        library.findMember(READER).restoreLoan(book);
+        assertEquals(BookStatus.LOST, book.getStatus());
+        assertEquals(LoanTable.NO_BORROWER, library.getLoans().borrowerOf(ISBN));
+        assertEquals(1, library.getBooksCount(BookStatus.LOST));
+    }
+
+    @Test
+    void borrowedBookMarkedLostEndsItsLoan() {
+        assertTrue(library.checkoutBook(READER, ISBN));
+        assertTrue(library.changeBookStatus(ISBN, BookStatus.LOST, null));
+
+        assertEquals(BookStatus.LOST, book.getStatus());
+        assertFalse(library.findMember(READER).hasBorrowed(ISBN));
+        assertEquals(0, library.getLoans().size());
+        assertEquals(0, library.getBooksCount(BookStatus.BORROWED));
+    }
+
+    @Test
+    void repairedBookIsSetAsideForTheNextMemberWaiting() {
+        assertTrue(library.checkoutBook(READER, ISBN));
+        assertEquals(1, library.placeHold(WAITER, ISBN, null));
+        assertTrue(library.changeBookStatus(ISBN, BookStatus.LOST, null));
+        assertTrue(library.changeBookStatus(ISBN, BookStatus.IN_REPAIR, null));
+
+        assertTrue(library.changeBookStatus(ISBN, BookStatus.AVAILABLE, null));
+        assertEquals(BookStatus.RESERVED, book.getStatus());
+        assertEquals(WAITER, library.getHolds().readyFor(ISBN));
+        assertFalse(library.checkoutBook(READER, ISBN));
+        assertTrue(library.checkoutBook(WAITER, ISBN));
+    }
+}
@@ -0,0 +1,117 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that a library with an attached catalog saves every book without
+ * reading the catalog into memory
+ * @author Obakeng Phale
+ */
+class LibraryCatalogTest {
+    private static final int BOOKS = 1_000;
+    private static final long FIRST_ISBN = 9780000000000L;
+    private static final long MEMBER = 100000000000L;
+
+    private ListCatalog catalog;
+    private Library library;
+
+    @BeforeEach
+    void setUp() {
+        List<Book> books = new ArrayList<>();
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(new Book("Title " + i, "Author " + i, FIRST_ISBN + i, BookStatus.AVAILABLE));
+        }
+        catalog = new ListCatalog(books);
+        library = new Library();
+        library.attachCatalog(catalog);
+        assertTrue(library.addMember(new Member(MEMBER, "Reader")));
+    }
+
+    @Test
+    void snapshotHoldsChangesOnTopOfTheCatalog() {
+        long borrowed = FIRST_ISBN + 10;
+        long removed = FIRST_ISBN + 20;
+        long added = FIRST_ISBN + BOOKS;
+        assertTrue(library.checkoutBook(MEMBER, borrowed));
+        assertTrue(library.removeBook(removed));
+        assertTrue(library.addBook(new Book("New", "Author", added, BookStatus.AVAILABLE)));
+        int reads = catalog.reads;
+
+        Map<Long, Book> saved = new TreeMap<>();
+        library.snapshotBooks().forEach(book ->
+                assertEquals(null, saved.put(book.getISBN(), book), "each ISBN appears once"));
+
+        assertEquals(BOOKS, saved.size());
+        assertEquals(BookStatus.BORROWED, saved.get(borrowed).getStatus());
+        assertEquals(library.findBook(borrowed), saved.get(borrowed));
+        assertFalse(saved.containsKey(removed));
+        assertEquals("New", saved.get(added).getTitle());
+        assertEquals(reads, catalog.reads, "no book was looked up to save it");
+        // Still attached: nothing was loaded
+        assertThrows(IllegalStateException.class, () -> library.attachCatalog(catalog));
+    }
+
+    @Test
+    void snapshotAfterLoadingHoldsTheSameBooks() {
+        assertTrue(library.removeBook(FIRST_ISBN));
+        List<Long> before = isbns(library.snapshotBooks());
+        library.loadCatalog();
+        assertEquals(before, isbns(library.snapshotBooks()));
+        assertEquals(BOOKS - 1, before.size());
+    }
+
+    private static List<Long> isbns(Stream<Book> books) {
+        return books.map(Book::getISBN).sorted().collect(Collectors.toList());
+    }
+
+    /**
+     * A catalog kept in a list, counting single-book reads
+     */
+    private static final class ListCatalog implements BookCatalog {
+        private final Map<Long, Book> books = new TreeMap<>();
+        int reads;
+
+        ListCatalog(List<Book> books) {
+            books.forEach(book -> this.books.put(book.getISBN(), book));
+        }
+
+        @Override
+        public long size() {
+            return books.size();
+        }
+
+        @Override
+        public long count(BookStatus status) {
+            return books.values().stream().filter(book -> book.getStatus() == status).count();
+        }
+
+        @Override
+        public Book read(long ISBN) {
+            reads++;
+            Book book = books.get(ISBN);
+            // A new instance each time, as a real catalog decodes one
+            return book == null ? null : copy(book);
+        }
+
+        @Override
+        public Stream<Book> stream() {
+            return books.values().stream().map(ListCatalog::copy);
+        }
+
+        private static Book copy(Book book) {
+            return new Book(book.getTitle(), book.getAuthor(), book.getISBN(), book.getStatus());
+        }
+    }
+}
@@ -0,0 +1,70 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that members racing to borrow the same copy of a book resolve to
+ * exactly one loan
+ * @author Obakeng Phale
+ */
+class LibraryCheckoutTest {
+    private static final long ISBN = 9780000000002L;
+    private static final long FIRST_MEMBER = 100000000000L;
+    private static final int THREADS = 16;
+    private static final int ROUNDS = 200;
+
+    @Test
+    void concurrentCheckoutOfOneBookSucceedsOnce() throws Exception {
+        Library library = new Library();
+        Book book = new Book("Dune", "Frank Herbert", ISBN, BookStatus.AVAILABLE);
+        assertTrue(library.addBook(book));
+        for (int i = 0; i < THREADS; i++) {
+            assertTrue(library.addMember(new Member(FIRST_MEMBER + i, "Member " + i)));
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int round = 0; round < ROUNDS; round++) {
+                CountDownLatch start = new CountDownLatch(1);
+                List<Future<Boolean>> attempts = new ArrayList<>(THREADS);
+                for (int i = 0; i < THREADS; i++) {
+                    long memberID = FIRST_MEMBER + i;
+                    attempts.add(pool.submit(() -> {
+                        start.await();
+                        return library.checkoutBook(memberID, ISBN);
+                    }));
+                }
+                start.countDown();
+
+                long winner = 0;
+                int succeeded = 0;
+                for (int i = 0; i < THREADS; i++) {
+                    if (attempts.get(i).get()) {
+                        succeeded++;
+                        winner = FIRST_MEMBER + i;
+                    }
+                }
+                assertEquals(1, succeeded, "round " + round);
+                assertEquals(BookStatus.BORROWED, book.getStatus());
+                assertEquals(winner, library.getLoans().borrowerOf(ISBN));
+                assertEquals(1, library.getLoans().size());
+                assertEquals(1, library.getBooksCount(BookStatus.BORROWED));
+                assertEquals(0, library.getBooksCount(BookStatus.AVAILABLE));
+
+                assertTrue(library.returnBook(winner, ISBN));
+                assertEquals(BookStatus.AVAILABLE, book.getStatus());
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
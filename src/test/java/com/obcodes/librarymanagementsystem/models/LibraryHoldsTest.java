@@ -0,0 +1,79 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for hold queues: a returned book is set aside for the first member
+ * waiting and passes down the queue when their pickup window runs out
+ * @author Obakeng Phale
+ */
+class LibraryHoldsTest {
+    private static final long ISBN = 9780000000002L;
+    private static final long BORROWER = 100000000001L;
+    private static final long FIRST = 100000000002L;
+    private static final long SECOND = 100000000003L;
+    private static final long PICKUP_MILLIS = 60_000;
+
+    private Library library;
+    private Book book;
+
+    @BeforeEach
+    void setUp() {
+        library = new Library();
+        library.setHoldPickupMillis(PICKUP_MILLIS);
+        book = new Book("Dune", "Frank Herbert", ISBN, BookStatus.AVAILABLE);
+        assertTrue(library.addBook(book));
+        for (long memberID : new long[] {BORROWER, FIRST, SECOND}) {
+            assertTrue(library.addMember(new Member(memberID, "Member " + memberID)));
+        }
+        assertTrue(library.checkoutBook(BORROWER, ISBN));
+    }
+
+    @Test
+    void returnSetsBookAsideForFirstWaiter() {
+        assertEquals(1, library.placeHold(FIRST, ISBN, null));
+        assertEquals(2, library.placeHold(SECOND, ISBN, null));
+
+        assertTrue(library.returnBook(BORROWER, ISBN));
+
+        assertEquals(BookStatus.RESERVED, book.getStatus());
+        assertEquals(FIRST, library.getHolds().readyFor(ISBN));
+        assertFalse(library.checkoutBook(SECOND, ISBN), "only the member it is set aside for may take it");
+        assertTrue(library.checkoutBook(FIRST, ISBN));
+        assertEquals(BookStatus.BORROWED, book.getStatus());
+        assertEquals(HoldQueues.NO_HOLDER, library.getHolds().readyFor(ISBN));
+    }
+
+    @Test
+    void expiredHoldPassesToNextWaiterThenShelf() {
+        library.placeHold(FIRST, ISBN, null);
+        library.placeHold(SECOND, ISBN, null);
+        assertTrue(library.returnBook(BORROWER, ISBN));
+        long firstDeadline = library.getHolds().readyUntil(ISBN);
+
+        // Nothing is due before the pickup window runs out
+        assertFalse(library.expireHold(ISBN, firstDeadline - 1, null));
+        assertEquals(FIRST, library.getHolds().readyFor(ISBN));
+
+        // The timer wheel hands the book over at the first tick after the deadline
+        long later = firstDeadline + Library.HOLD_TIMER_TICK_MILLIS;
+        assertArrayEquals(new long[] {ISBN}, library.takeDueHolds(later));
+        assertTrue(library.expireHold(ISBN, later, null));
+        assertEquals(BookStatus.RESERVED, book.getStatus());
+        assertEquals(SECOND, library.getHolds().readyFor(ISBN));
+        assertEquals(later + PICKUP_MILLIS, library.getHolds().readyUntil(ISBN));
+        assertFalse(library.checkoutBook(FIRST, ISBN), "the first member's window has run out");
+
+        long last = later + PICKUP_MILLIS + 1;
+        assertTrue(library.expireHold(ISBN, last, null));
+        assertEquals(BookStatus.AVAILABLE, book.getStatus());
+        assertEquals(HoldQueues.NO_HOLDER, library.getHolds().readyFor(ISBN));
+        assertFalse(library.getHolds().isHeld(ISBN));
+    }
+}
@@ -0,0 +1,83 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the loan table's due date queries against a plain map of loans
+ * @author Obakeng Phale
+ */
+class LoanTableTest {
+    private static final long MEMBER = 100000000000L;
+
+    @Test
+    void countOverdueDependsOnlyOnTheTimeAsked() {
+        LoanTable loans = new LoanTable();
+        assertTrue(loans.lend(1, MEMBER, 0, 100));
+        assertTrue(loans.lend(2, MEMBER, 0, 200));
+        assertTrue(loans.lend(3, MEMBER, 0, 300));
+
+        assertEquals(3, loans.countOverdue(1_000));
+        // A clock that steps back, or an earlier question, is answered as asked
+        assertEquals(1, loans.countOverdue(150));
+        assertEquals(0, loans.countOverdue(100));
+        assertTrue(loans.release(1, MEMBER));
+        assertEquals(2, loans.countOverdue(1_000));
+        assertEquals(0, loans.countOverdue(150));
+    }
+
+    @Test
+    void dueQueriesMatchAPlainScan() {
+        Random random = new Random(7);
+        LoanTable loans = new LoanTable();
+        // ISBN -> due time
+        Map<Long, Long> expected = new HashMap<>();
+        for (int step = 0; step < 50_000; step++) {
+            long ISBN = 1 + random.nextInt(3_000);
+            int op = random.nextInt(10);
+            if (op < 5) {
+                long due = random.nextInt(500);
+                if (loans.lend(ISBN, MEMBER + random.nextInt(50), 0, due)) {
+                    expected.put(ISBN, due);
+                }
+            } else if (op < 7) {
+                long due = random.nextInt(500);
+                loans.restore(ISBN, MEMBER + random.nextInt(50), 0, due);
+                expected.put(ISBN, due);
+            } else if (op < 9) {
+                if (expected.containsKey(ISBN) && loans.release(ISBN, loans.borrowerOf(ISBN))) {
+                    expected.remove(ISBN);
+                }
+            } else {
+                long now = random.nextInt(600);
+                assertEquals(expected.values().stream().filter(due -> due < now).count(),
+                        loans.countOverdue(now));
+
+                long from = random.nextInt(500);
+                long to = from + random.nextInt(100);
+                int limit = 1 + random.nextInt(100);
+                List<long[]> inRange = new ArrayList<>();
+                expected.forEach((isbn, due) -> {
+                    if (due >= from && due < to) {
+                        inRange.add(new long[] {due, isbn});
+                    }
+                });
+                inRange.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+                List<LoanTable.DueLoan> found = loans.dueBetween(from, to, limit);
+                assertEquals(Math.min(limit, inRange.size()), found.size());
+                for (int i = 0; i < found.size(); i++) {
+                    assertEquals(inRange.get(i)[0], found.get(i).getDueMillis());
+                    assertEquals(inRange.get(i)[1], found.get(i).getISBN());
+                }
+            }
+        }
+        assertEquals(expected.size(), loans.size());
+    }
+}
@@ -0,0 +1,94 @@
+package com.obcodes.librarymanagementsystem.models;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeSet;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests that the token index finds the same books as checking every text,
+ * for queries of every length, as books are added, retitled and removed
+ * @author Obakeng Phale
+ */
+class TokenIndexTest {
+    private static final int BOOKS = 2_000;
+    private static final String[] WORDS = {
+        "the", "a", "of", "war", "peace", "dune", "odyssey", "x", "ab", "abba", "zebra", "2001", "o'brien",
+    };
+
+    @Test
+    void searchesMatchAScanOfEveryText() {
+        SplittableRandom random = new SplittableRandom(7);
+        TokenIndex index = new TokenIndex();
+        Map<Long, String> texts = new HashMap<>();
+        // ISBN 0 takes the sets' separate slot for key 0
+        for (long ISBN = 0; ISBN < BOOKS; ISBN++) {
+            String text = randomText(random);
+            index.put(ISBN, text);
+            texts.put(ISBN, text);
+        }
+        List<String> queries = List.of("", " ", "-", "a", "A", "b", "ab", "e ", "x", "2", "01", "the",
+                "ace", "zebra", "war and", "of the", "o'b", "'", "q", "qq", "dune odyssey");
+        check(index, texts, queries);
+
+        // Retitle half the books and remove a quarter, so tokens and grams come and go
+        for (long ISBN = 0; ISBN < BOOKS; ISBN++) {
+            if (ISBN % 4 == 0) {
+                index.remove(ISBN);
+                texts.remove(ISBN);
+            } else if (ISBN % 2 == 1) {
+                String text = randomText(random);
+                index.put(ISBN, text);
+                texts.put(ISBN, text);
+            }
+        }
+        check(index, texts, queries);
+        assertEquals(texts.size(), index.size());
+
+        // A token no book has any more is gone from the short grams too
+        for (long ISBN = 0; ISBN < BOOKS; ISBN++) {
+            index.put(ISBN, "plain");
+        }
+        assertEquals(0, index.search("x").size());
+        assertEquals(0, index.search("ze").size());
+        assertEquals(BOOKS, index.search("la").size());
+        assertEquals(BOOKS, index.search("n").size());
+
+        index.clear();
+        assertEquals(0, index.search("la").size());
+        assertEquals(0, index.size());
+    }
+
+    private static void check(TokenIndex index, Map<Long, String> texts, List<String> queries) {
+        for (String query : queries) {
+            String needle = TokenIndex.normalize(query);
+            TreeSet<Long> expected = new TreeSet<>();
+            texts.forEach((ISBN, text) -> {
+                if (TokenIndex.normalize(text).contains(needle)) {
+                    expected.add(ISBN);
+                }
+            });
+            ArrayList<Long> found = index.search(query);
+            assertEquals(expected.size(), found.size(), "duplicates or misses for \"" + query + "\"");
+            assertEquals(expected, new TreeSet<>(found), "\"" + query + "\"");
+        }
+    }
+
+    private static String randomText(SplittableRandom random) {
+        StringBuilder text = new StringBuilder();
+        int words = 1 + random.nextInt(5);
+        for (int i = 0; i < words; i++) {
+            if (i > 0) {
+                text.append(random.nextInt(4) == 0 ? " and " : " ");
+            }
+            String word = WORDS[random.nextInt(WORDS.length)];
+            text.append(random.nextBoolean() ? word : word.toUpperCase());
+        }
+        return text.toString();
+    }
+}
@@ -0,0 +1,129 @@
+package com.obcodes.librarymanagementsystem.server;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.services.FileService;
+import com.obcodes.librarymanagementsystem.services.LibraryService;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Path;
+import java.util.Map;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests the HTTP endpoints end to end against a library saved in a
+ * temporary directory
+ * @author Obakeng Phale
+ */
+class LibraryServerTest {
+    private static final long ISBN = 9780000000004L;
+    private static final int MAX_BODY_BYTES = 64 * 1024;
+
+    @TempDir
+    Path dataDir;
+
+    private LibraryService service;
+    private LibraryServer server;
+    private HttpClient client;
+    private String base;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        service = new LibraryService(new Library(), new FileService(dataDir.toString()));
+        server = new LibraryServer(service, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        client = HttpClient.newHttpClient();
+        base = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void tearDown() {
+        server.close();
+        service.shutdown();
+    }
+
+    @Test
+    void createGetAndBorrow() throws Exception {
+        HttpResponse<String> created = post("/books",
+                "{\"title\": \" Dune \", \"author\": \"Frank Herbert\", \"isbn\": \"" + ISBN + "\"}");
+        assertEquals(201, created.statusCode(), created.body());
+        assertTrue(created.body().contains("\"title\":\"Dune\""), created.body());
+
+        HttpResponse<String> book = get("/books/" + ISBN);
+        assertEquals(200, book.statusCode());
+        assertTrue(book.body().contains("\"status\":\"available\""), book.body());
+
+        HttpResponse<String> registered = post("/members", "{\"name\": \"Reader\"}");
+        assertEquals(201, registered.statusCode(), registered.body());
+        Map<String, String> member = Json.parseObject(registered.body());
+        assertEquals("Reader", member.get("name"));
+        long memberID = Long.parseLong(member.get("memberId"));
+
+        String loan = "{\"memberId\": " + memberID + ", \"isbn\": " + ISBN + "}";
+        assertEquals(200, post("/loans", loan).statusCode());
+        assertTrue(get("/books/" + ISBN).body().contains("\"status\":\"borrowed\""));
+        assertTrue(get("/members/" + memberID).body().contains("\"borrowed\":[" + ISBN + "]"));
+    }
+
+    @Test
+    void failuresMapToStatusCodes() throws Exception {
+        assertEquals(201, post("/books", "{\"title\": \"Dune\", \"author\": \"Frank Herbert\", \"isbn\": "
+                + ISBN + "}").statusCode());
+        long memberID = Long.parseLong(Json.parseObject(post("/members", "{\"name\": \"Reader\"}").body())
+                .get("memberId"));
+        long otherID = Long.parseLong(Json.parseObject(post("/members", "{\"name\": \"Other\"}").body())
+                .get("memberId"));
+
+        // Unknown book, member and path
+        assertEquals(404, get("/books/" + (ISBN + 1)).statusCode());
+        assertEquals(404, get("/members/" + (otherID + 1000)).statusCode());
+        assertEquals(404, post("/loans", "{\"memberId\": " + memberID + ", \"isbn\": " + (ISBN + 1) + "}")
+                .statusCode());
+        assertEquals(404, get("/shelves").statusCode());
+
+        // Refused by the library
+        assertEquals(200, post("/loans", "{\"memberId\": " + memberID + ", \"isbn\": " + ISBN + "}").statusCode());
+        assertEquals(409, post("/loans", "{\"memberId\": " + otherID + ", \"isbn\": " + ISBN + "}").statusCode());
+        assertEquals(409, post("/books", "{\"title\": \"Dune\", \"author\": \"Frank Herbert\", \"isbn\": "
+                + ISBN + "}").statusCode());
+        assertEquals(409, post("/returns", "{\"memberId\": " + otherID + ", \"isbn\": " + ISBN + "}").statusCode());
+
+        // Bad requests
+        assertEquals(400, post("/loans", "{\"memberId\": " + memberID + "}").statusCode());
+        assertEquals(400, post("/loans", "[1, 2]").statusCode());
+        assertEquals(400, get("/books/not-a-number").statusCode());
+    }
+
+    @Test
+    void bodyLargerThanTheLimitIsRefused() throws Exception {
+        String name = "x".repeat(MAX_BODY_BYTES);
+        assertEquals(413, post("/members", "{\"name\": \"" + name + "\"}").statusCode());
+        assertEquals(0, service.getLibrary().getTotalMembers());
+
+        // Just under the limit is read
+        String fits = "{\"name\": \"" + "x".repeat(MAX_BODY_BYTES - 20) + "\"}";
+        assertTrue(fits.length() <= MAX_BODY_BYTES);
+        assertEquals(201, post("/members", fits).statusCode());
+    }
+
+    private HttpResponse<String> get(String path) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(base + path)).GET().build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+
+    private HttpResponse<String> post(String path, String body) throws IOException, InterruptedException {
+        return client.send(HttpRequest.newBuilder(URI.create(base + path))
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(body)).build(),
+                HttpResponse.BodyHandlers.ofString());
+    }
+}
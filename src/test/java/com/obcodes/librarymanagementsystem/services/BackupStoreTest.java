@@ -0,0 +1,189 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that backups share unchanged chunks, skip files that have not
+ * changed, prune old versions and restore the data files to a point in time
+ * @author Obakeng Phale
+ */
+class BackupStoreTest {
+    private static final int FILE_SIZE = 1 << 20;
+    private static final long FIRST_ID = 100000000000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void chunksAreSharedAcrossBackups() throws IOException {
+        Path storeDir = dir.resolve("backups");
+        BackupStore store = new BackupStore(storeDir, 10);
+        byte[] original = randomBytes(1);
+        Path file = dir.resolve("books.bin");
+        Files.write(file, original);
+        store.backup(file);
+        long chunks = countChunks(storeDir);
+        assertTrue(chunks > 10, chunks + " chunks");
+
+        // An insertion in the middle moves only the boundaries near it
+        byte[] edited = new byte[original.length + 100];
+        System.arraycopy(original, 0, edited, 0, FILE_SIZE / 2);
+        System.arraycopy(original, FILE_SIZE / 2, edited, FILE_SIZE / 2 + 100, FILE_SIZE / 2);
+        Files.write(file, edited);
+        BackupVersion second = store.backup(file);
+        long added = countChunks(storeDir) - chunks;
+        assertTrue(added >= 1 && added <= 3, added + " new chunks");
+
+        // The same content under another name stores nothing new
+        Path copy = dir.resolve("members.bin");
+        Files.write(copy, original);
+        store.backup(copy);
+        assertEquals(chunks + added, countChunks(storeDir));
+
+        Path restored = dir.resolve("restored");
+        store.restore(store.versions("books.bin").get(0), restored);
+        assertArrayEquals(original, Files.readAllBytes(restored));
+        store.restore(second, restored);
+        assertArrayEquals(edited, Files.readAllBytes(restored));
+        store.close();
+    }
+
+    @Test
+    void fileWithTheSameSizeAndTimeIsNotReadAgain() throws IOException {
+        BackupStore store = new BackupStore(dir.resolve("backups"), 10);
+        Path file = dir.resolve("books.bin");
+        FileTime modified = FileTime.from(Instant.now().minus(1, ChronoUnit.HOURS));
+        Files.write(file, randomBytes(1));
+        Files.setLastModifiedTime(file, modified);
+        BackupVersion first = store.backup(file);
+
+        // Different content, but nothing a directory listing would show
+        Files.write(file, randomBytes(2));
+        Files.setLastModifiedTime(file, modified);
+        assertSame(first, store.backup(file));
+
+        Files.setLastModifiedTime(file, FileTime.from(modified.toInstant().plusSeconds(1)));
+        BackupVersion second = store.backup(file);
+        assertNotEquals(first.getSequence(), second.getSequence());
+        assertEquals(2, store.versions("books.bin").size());
+
+        // A file modified just before it was read is read again next time,
+        // even when its time has not moved
+        FileTime recent = FileTime.from(Instant.now());
+        Files.write(file, randomBytes(3));
+        Files.setLastModifiedTime(file, recent);
+        BackupVersion third = store.backup(file);
+        Files.write(file, randomBytes(4));
+        Files.setLastModifiedTime(file, recent);
+        assertNotEquals(third.getSequence(), store.backup(file).getSequence());
+        store.close();
+    }
+
+    @Test
+    void pruneKeepsTheNewestVersionsAndDeletesUnusedChunks() throws IOException {
+        Path storeDir = dir.resolve("backups");
+        BackupStore store = new BackupStore(storeDir, 2);
+        Path file = dir.resolve("books.bin");
+        List<byte[]> contents = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            contents.add(randomBytes(10 + i));
+            Files.write(file, contents.get(i));
+            store.backup(file);
+        }
+        long beforePrune = countChunks(storeDir);
+        assertEquals(3, store.versions("books.bin").size());
+
+        // The fourth version reaches twice the kept number and prunes the oldest two
+        contents.add(randomBytes(13));
+        Files.write(file, contents.get(3));
+        store.backup(file);
+        List<BackupVersion> kept = store.versions("books.bin");
+        assertEquals(2, kept.size());
+        assertTrue(countChunks(storeDir) < beforePrune, "the dropped versions' chunks are deleted");
+
+        // The catalog is open again for the next backup
+        contents.add(randomBytes(14));
+        Files.write(file, contents.get(4));
+        store.backup(file);
+        store.close();
+
+        BackupStore reopened = new BackupStore(storeDir, 2);
+        List<BackupVersion> versions = reopened.versions("books.bin");
+        assertEquals(3, versions.size());
+        Path restored = dir.resolve("restored");
+        for (int i = 0; i < versions.size(); i++) {
+            reopened.restore(versions.get(i), restored);
+            assertArrayEquals(contents.get(i + 2), Files.readAllBytes(restored));
+        }
+        reopened.close();
+    }
+
+    @Test
+    void restoreAsOfPutsTheRecordFilesBack() throws Exception {
+        Path dataDir = dir.resolve("data");
+        FileService files = new FileService(dataDir.toString());
+        assertTrue(files.saveMemberRecords(members("Before")));
+        Instant between = Instant.now();
+        Thread.sleep(20);
+        assertTrue(files.saveMemberRecords(members("After")));
+        Instant beforeRestore = Instant.now();
+        Thread.sleep(20);
+
+        assertTrue(files.restoreAsOf(between));
+        assertEquals("Before 0", load(dataDir).findMember(FIRST_ID).getName());
+
+        // The files as they were before the restore were backed up, so it can be undone
+        assertTrue(files.restoreAsOf(beforeRestore));
+        assertEquals("After 0", load(dataDir).findMember(FIRST_ID).getName());
+
+        // Nothing that old, so nothing is changed
+        assertFalse(files.restoreAsOf(between.minus(1, ChronoUnit.DAYS)));
+        assertEquals("After 0", load(dataDir).findMember(FIRST_ID).getName());
+    }
+
+    private static Library load(Path dataDir) {
+        Library library = new Library();
+        assertTrue(new FileService(dataDir.toString()).loadRecords(library));
+        return library;
+    }
+
+    private static List<Member> members(String name) {
+        List<Member> members = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            members.add(new Member(FIRST_ID + i, name + " " + i));
+        }
+        return members;
+    }
+
+    private static byte[] randomBytes(long seed) {
+        byte[] bytes = new byte[FILE_SIZE];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    private static long countChunks(Path storeDir) throws IOException {
+        try (Stream<Path> paths = Files.walk(storeDir.resolve("chunks"))) {
+            return paths.filter(Files::isRegularFile).count();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.Isbn;
+import com.obcodes.librarymanagementsystem.models.Library;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that an import adds every valid line once and rejects the rest
+ * with their line numbers
+ * @author Obakeng Phale
+ */
+class BookImportServiceTest {
+    @TempDir
+    Path dir;
+
+    @Test
+    void malformedLinesAndBadIsbnsAreRejected() throws IOException {
+        long first = isbn(978030640615L);
+        long second = isbn(978186197271L);
+        long lost = isbn(978014044913L);
+        long badCheck = first + 1 - (first % 10 == 9 ? 10 : 0);
+        Path file = write(
+                "ISBN,Title,Author,Status",
+                "978-0-306-40615-7,Dune,Frank Herbert",
+                "only,two",
+                "97803064061Y,Not An ISBN,Someone",
+                badCheck + ",Wrong Check,Someone",
+                second + ",,No Title",
+                second + ",No Author,",
+                second + ",Borrowed,Someone,Borrowed",
+                second + ",Unknown,Someone,Shelved",
+                "",
+                lost + ",\"Odyssey, The\",Homer,Lost",
+                second + ",\"A \"\"quoted\"\" title\",Someone");
+        Path rejectsFile = dir.resolve("rejects.txt");
+
+        Library library = new Library();
+        ImportReport report = new BookImportService(library, true).importFile(file, rejectsFile);
+
+        assertEquals(3, report.getImported());
+        assertEquals(7, report.getRejected());
+        assertEquals(1, report.getRejected(ImportReport.Reason.MALFORMED));
+        assertEquals(1, report.getRejected(ImportReport.Reason.INVALID_ISBN));
+        assertEquals(1, report.getRejected(ImportReport.Reason.BAD_CHECK_DIGIT));
+        assertEquals(1, report.getRejected(ImportReport.Reason.MISSING_TITLE));
+        assertEquals(1, report.getRejected(ImportReport.Reason.MISSING_AUTHOR));
+        assertEquals(2, report.getRejected(ImportReport.Reason.BAD_STATUS));
+
+        assertEquals("Dune", library.findBook(first).getTitle());
+        Book odyssey = library.findBook(lost);
+        assertEquals("Odyssey, The", odyssey.getTitle());
+        assertEquals(BookStatus.LOST, odyssey.getStatus());
+        assertEquals("A \"quoted\" title", library.findBook(second).getTitle());
+        assertNull(library.findBook(badCheck));
+
+        List<String> rejects = Files.readAllLines(rejectsFile);
+        assertEquals(7, rejects.size());
+        assertEquals(ImportReport.formatReject(3, ImportReport.Reason.MALFORMED, "only,two"), rejects.get(0));
+        assertEquals(ImportReport.formatReject(4, ImportReport.Reason.INVALID_ISBN, "97803064061Y"), rejects.get(1));
+        assertEquals(ImportReport.formatReject(5, ImportReport.Reason.BAD_CHECK_DIGIT, Long.toString(badCheck)),
+                rejects.get(2));
+        assertTrue(rejects.get(6).startsWith("line 9: "), rejects.get(6));
+    }
+
+    @Test
+    void checkDigitsAreOnlyVerifiedWhenAsked() throws IOException {
+        long first = isbn(978030640615L);
+        long badCheck = first + 1 - (first % 10 == 9 ? 10 : 0);
+        Path file = write(badCheck + "\tWrong Check\tSomeone");
+
+        Library library = new Library();
+        ImportReport report = new BookImportService(library, false).importFile(file, null);
+        assertEquals(1, report.getImported());
+        assertEquals("Wrong Check", library.findBook(badCheck).getTitle());
+    }
+
+    @Test
+    void duplicatesAreRemovedAndTheFirstLineWins() throws IOException {
+        Library library = new Library();
+        long existing = isbn(978000000000L);
+        assertTrue(library.addBook(new Book("Already Here", "Someone", existing, BookStatus.AVAILABLE)));
+
+        List<String> lines = new ArrayList<>();
+        int distinct = 200;
+        for (int copy = 0; copy < 3; copy++) {
+            for (int i = 0; i < distinct; i++) {
+                lines.add(isbn(978000000000L + i) + "|Title " + i + " copy " + copy + "|Author " + i);
+            }
+        }
+        // An ISBN-10 names the same book as its ISBN-13
+        lines.add("0-306-40615-2|Ten Digits|Someone");
+        lines.add("978-0-306-40615-7|Thirteen Digits|Someone");
+        Path file = write(lines.toArray(new String[0]));
+        Path rejectsFile = dir.resolve("rejects.txt");
+
+        // Small chunks so duplicates fall in other chunks than their first line
+        ImportReport report = new BookImportService(library, true, 256).importFile(file, rejectsFile);
+
+        // Every title but the one already in the library, and the ISBN-10 line
+        assertEquals(distinct, report.getImported());
+        // The later two copies, the first copy of the book already here, and the ISBN-13 line
+        assertEquals(2 * distinct + 2, report.getRejected(ImportReport.Reason.DUPLICATE));
+        assertEquals(distinct + 1, library.getTotalBooks());
+        assertEquals("Already Here", library.findBook(existing).getTitle());
+        for (int i = 1; i < distinct; i++) {
+            assertEquals("Title " + i + " copy 0", library.findBook(isbn(978000000000L + i)).getTitle());
+        }
+        assertEquals("Ten Digits", library.findBook(isbn(978030640615L)).getTitle());
+
+        // Rejects are written in line order
+        List<String> rejects = Files.readAllLines(rejectsFile);
+        assertEquals(report.getRejected(), rejects.size());
+        long previous = 0;
+        for (String reject : rejects) {
+            long line = Long.parseLong(reject.substring("line ".length(), reject.indexOf(':')));
+            assertTrue(line > previous, reject);
+            previous = line;
+        }
+        assertEquals(lines.size(), previous);
+    }
+
+    private Path write(String... lines) throws IOException {
+        Path file = dir.resolve("books.csv");
+        Files.write(file, List.of(lines));
+        return file;
+    }
+
+    private static long isbn(long first12) {
+        return first12 * 10 + Isbn.checkDigit13(first12);
+    }
+}
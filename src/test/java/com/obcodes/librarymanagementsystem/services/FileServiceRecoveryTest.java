@@ -0,0 +1,91 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that a version 4 record file damaged by a torn write is rejected
+ * by its block checksums and recovered from the backup store
+ * @author Obakeng Phale
+ */
+class FileServiceRecoveryTest {
+    // Enough members to span several checksum blocks
+    private static final int MEMBERS = 10_000;
+    private static final long FIRST_ID = 100000000000L;
+    // A page of the second block that never reached the disk
+    private static final int TORN_PAGE = 4096;
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void tornMemberFileIsRestoredFromBackup() throws IOException {
+        FileService files = new FileService(dataDir.toString());
+        assertTrue(files.saveMemberRecords(members()));
+        Path memberFile = dataDir.resolve("members.bin");
+        long size = Files.size(memberFile);
+        tear(memberFile);
+        assertEquals(size, Files.size(memberFile), "a torn page leaves the length and record count as they were");
+
+        Library library = new Library();
+        assertTrue(files.loadRecords(library));
+
+        assertEquals(MEMBERS, library.getTotalMembers());
+        Member last = library.findMember(FIRST_ID + MEMBERS - 1);
+        assertNotNull(last);
+        assertEquals("Member " + (MEMBERS - 1), last.getName());
+        // The restored file reads cleanly on its own
+        assertEquals(MEMBERS, new RecordFileService().readMembers(memberFile, new Library()));
+    }
+
+    @Test
+    void tornMemberFileWithoutBackupAddsNothing() throws IOException {
+        Path memberFile = dataDir.resolve("members.bin");
+        new RecordFileService().writeMembers(memberFile, members());
+        tear(memberFile);
+
+        Library library = new Library();
+        assertThrows(IOException.class, () -> new RecordFileService().readMembers(memberFile, library));
+        assertEquals(0, library.getTotalMembers());
+
+        FileService files = new FileService(dataDir.toString());
+        assertFalse(files.loadRecords(library));
+        assertEquals(0, library.getTotalMembers());
+    }
+
+    private static List<Member> members() {
+        List<Member> members = new ArrayList<>(MEMBERS);
+        for (int i = 0; i < MEMBERS; i++) {
+            members.add(new Member(FIRST_ID + i, "Member " + i));
+        }
+        return members;
+    }
+
+    /**
+     * Zero one page in the middle of a file, as if the write of that page was lost
+     */
+    private static void tear(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.WRITE)) {
+            long offset = RecordFileService.CHECKSUM_BLOCK_SIZE + TORN_PAGE;
+            assertTrue(offset + TORN_PAGE < channel.size());
+            channel.write(ByteBuffer.allocate(TORN_PAGE), offset);
+            channel.force(true);
+        }
+    }
+}
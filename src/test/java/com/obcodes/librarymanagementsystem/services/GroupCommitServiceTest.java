@@ -0,0 +1,80 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Library;
+import java.nio.file.Path;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that every record submitted to a group commit either reaches the
+ * journal or fails, even when the service is closed while callers submit
+ * @author Obakeng Phale
+ */
+class GroupCommitServiceTest {
+    private static final int THREADS = 8;
+    private static final long FIRST_ID = 100000000000L;
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void closeWhileSubmittingLeavesNoFutureWaiting() throws Exception {
+        FileService files = new FileService(dataDir.toString());
+        assertTrue(files.enableJournaling());
+        GroupCommitService commits = new GroupCommitService(files, 256, 1, null);
+
+        ConcurrentLinkedQueue<CompletableFuture<Boolean>> submitted = new ConcurrentLinkedQueue<>();
+        AtomicLong ids = new AtomicLong(FIRST_ID);
+        CountDownLatch started = new CountDownLatch(THREADS);
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        try {
+            for (int i = 0; i < THREADS; i++) {
+                pool.execute(() -> {
+                    started.countDown();
+                    while (true) {
+                        CompletableFuture<Boolean> durable =
+                                commits.submit(JournalRecord.removeMember(ids.getAndIncrement()));
+                        submitted.add(durable);
+                        if (durable.isCompletedExceptionally()) {
+                            return;
+                        }
+                    }
+                });
+            }
+            started.await();
+            Thread.sleep(50);
+            commits.close();
+        } finally {
+            pool.shutdown();
+            assertTrue(pool.awaitTermination(10, TimeUnit.SECONDS));
+        }
+
+        long written = 0;
+        for (CompletableFuture<Boolean> durable : submitted) {
+            try {
+                assertTrue(durable.get(5, TimeUnit.SECONDS));
+                written++;
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof IllegalStateException, e.getCause().toString());
+            }
+        }
+        assertTrue(written > 0);
+        assertEquals(0, commits.getPendingCount());
+
+        // Exactly the acknowledged records are in the journal
+        JournalService journal = new JournalService(dataDir.resolve("library.journal").toString());
+        assertEquals(written, journal.replay(new Library()));
+        journal.close();
+    }
+}
@@ -0,0 +1,123 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Isbn;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that allocated ISBNs and member IDs never repeat, within a run and
+ * across restarts, including one that cuts a block short
+ * @author Obakeng Phale
+ */
+class IdAllocatorTest {
+    private static final int THREADS = 8;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void idsStayUniqueAndIncreasingAcrossRestarts() {
+        Path file = dir.resolve("ids.bin");
+        long lastISBN = 0;
+        long lastMemberID = 0;
+        Set<Long> isbns = new HashSet<>();
+        // Each run stops at a different point in a block, as a crash would
+        int[] runs = {5, IdAllocator.BLOCK_SIZE, IdAllocator.BLOCK_SIZE + 1, 3 * IdAllocator.BLOCK_SIZE - 7, 1};
+        for (int run : runs) {
+            IdAllocator ids = new IdAllocator(file);
+            for (int i = 0; i < run; i++) {
+                long ISBN = ids.nextISBN();
+                assertTrue(ISBN > lastISBN, ISBN + " after " + lastISBN);
+                assertTrue(Isbn.isValid(ISBN));
+                assertTrue(isbns.add(ISBN));
+                lastISBN = ISBN;
+
+                long memberID = ids.nextMemberID();
+                assertTrue(memberID > lastMemberID, memberID + " after " + lastMemberID);
+                lastMemberID = memberID;
+            }
+        }
+        assertTrue(lastMemberID >= IdAllocator.FIRST_MEMBER_ID && lastMemberID <= IdAllocator.LAST_MEMBER_ID);
+    }
+
+    @Test
+    void crashMidBlockSkipsTheRestOfTheBlock() {
+        Path file = dir.resolve("ids.bin");
+        IdAllocator ids = new IdAllocator(file);
+        long first = ids.nextMemberID();
+        assertEquals(IdAllocator.FIRST_MEMBER_ID, first);
+        for (int i = 0; i < 10; i++) {
+            ids.nextMemberID();
+        }
+
+        // Abandoned without any shutdown: the next run starts after the reserved block
+        long afterRestart = new IdAllocator(file).nextMemberID();
+        assertEquals(IdAllocator.FIRST_MEMBER_ID + IdAllocator.BLOCK_SIZE, afterRestart);
+    }
+
+    @Test
+    void crashWhileReservingKeepsTheLastReservation() throws IOException {
+        Path file = dir.resolve("ids.bin");
+        IdAllocator ids = new IdAllocator(file);
+        long last = 0;
+        for (int i = 0; i < IdAllocator.BLOCK_SIZE; i++) {
+            last = ids.nextISBN();
+        }
+
+        // A reservation whose temporary file was cut short before it was renamed
+        Files.write(dir.resolve("ids.bin.tmp"), new byte[] {0x4C, 0x4D});
+
+        long next = new IdAllocator(file).nextISBN();
+        assertTrue(next > last, next + " after " + last);
+    }
+
+    @Test
+    void concurrentAllocationsNeverRepeat() throws Exception {
+        Path file = dir.resolve("ids.bin");
+        IdAllocator ids = new IdAllocator(file);
+        int each = 3 * IdAllocator.BLOCK_SIZE;
+
+        ExecutorService pool = Executors.newFixedThreadPool(THREADS);
+        List<Future<long[]>> results = new ArrayList<>();
+        try {
+            for (int t = 0; t < THREADS; t++) {
+                results.add(pool.submit(() -> {
+                    long[] taken = new long[each];
+                    for (int i = 0; i < each; i++) {
+                        taken[i] = ids.nextMemberID();
+                    }
+                    return taken;
+                }));
+            }
+
+            Set<Long> seen = new HashSet<>();
+            long highest = 0;
+            for (Future<long[]> result : results) {
+                long previous = 0;
+                for (long memberID : result.get()) {
+                    assertTrue(memberID > previous, "each caller sees increasing IDs");
+                    assertTrue(seen.add(memberID), "duplicate " + memberID);
+                    previous = memberID;
+                    highest = Math.max(highest, memberID);
+                }
+            }
+            assertEquals(THREADS * each, seen.size());
+            assertTrue(new IdAllocator(file).nextMemberID() > highest);
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
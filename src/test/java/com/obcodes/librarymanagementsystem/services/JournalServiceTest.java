@@ -0,0 +1,183 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.HoldQueues;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.LoanTable;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that the journal replays what was appended, drops a torn tail, and
+ * keeps every record across rotations until the snapshot discards them
+ * @author Obakeng Phale
+ */
+class JournalServiceTest {
+    private static final long ISBN = 9780000000005L;
+    private static final long READER = 100000000000L;
+    private static final long WAITER = 100000000001L;
+
+    @TempDir
+    Path dir;
+
+    private Path journalFile;
+    private Path rotatedFile;
+
+    @BeforeEach
+    void setUp() {
+        journalFile = dir.resolve("library.journal");
+        rotatedFile = dir.resolve("library.journal.old");
+    }
+
+    @Test
+    void replayRebuildsTheLibrary() throws IOException {
+        JournalService journal = open();
+        journal.appendAll(List.of(
+                JournalRecord.addBook(new Book("Dune", "Frank Herbert", ISBN, BookStatus.AVAILABLE)),
+                JournalRecord.addMember(new Member(READER, "Reader")),
+                JournalRecord.addMember(new Member(WAITER, "Waiter")),
+                JournalRecord.checkout(READER, ISBN, 1_000, 2_000)));
+        journal.append(JournalRecord.holdState(
+                new HoldQueues.State(ISBN, HoldQueues.NO_HOLDER, 0, new long[] {WAITER}, new long[] {1_500})));
+        journal.append(JournalRecord.memberState(new Member(READER, "Renamed Reader")));
+        journal.sync();
+        journal.close();
+
+        Library library = new Library();
+        assertEquals(6, open().replay(library));
+        Book book = library.findBook(ISBN);
+        assertEquals("Dune", book.getTitle());
+        assertEquals(BookStatus.BORROWED, book.getStatus());
+        LoanTable.DueLoan loan = library.getLoans().loanOf(ISBN);
+        assertEquals(READER, loan.getMemberID());
+        assertEquals(1_000, loan.getBorrowedMillis());
+        assertEquals(2_000, loan.getDueMillis());
+        assertEquals(1, library.getHolds().position(ISBN, WAITER));
+        assertEquals("Renamed Reader", library.findMember(READER).getName());
+    }
+
+    @Test
+    void tornTailIsDiscardedAndTruncated() throws IOException {
+        JournalService journal = open();
+        for (int i = 0; i < 3; i++) {
+            journal.append(JournalRecord.addMember(new Member(READER + i, "Member " + i)));
+        }
+        journal.close();
+        long intact = Files.size(journalFile);
+
+        // Half of a fourth record, as if the process died while writing it
+        JournalService other = new JournalService(dir.resolve("other.journal").toString());
+        other.append(JournalRecord.addMember(new Member(READER + 3, "Member 3")));
+        other.close();
+        byte[] frame = Files.readAllBytes(dir.resolve("other.journal"));
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.APPEND)) {
+            channel.write(ByteBuffer.wrap(frame, 0, frame.length / 2));
+        }
+
+        journal = open();
+        Library library = new Library();
+        assertEquals(3, journal.replay(library));
+        assertEquals(3, library.getTotalMembers());
+        assertEquals(intact, Files.size(journalFile));
+
+        // The next append follows the last good record
+        journal.append(JournalRecord.addMember(new Member(READER + 4, "Member 4")));
+        journal.close();
+        library = new Library();
+        assertEquals(4, open().replay(library));
+        assertEquals("Member 4", library.findMember(READER + 4).getName());
+    }
+
+    @Test
+    void corruptRecordStopsReplay() throws IOException {
+        JournalService journal = open();
+        journal.append(JournalRecord.addMember(new Member(READER, "Reader")));
+        long first = Files.size(journalFile);
+        journal.append(JournalRecord.addMember(new Member(WAITER, "Waiter")));
+        journal.close();
+
+        // Flip a payload byte of the second record so its checksum fails
+        try (FileChannel channel = FileChannel.open(journalFile, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(1);
+            channel.read(bytes, first + 10);
+            bytes.put(0, (byte) ~bytes.get(0)).rewind();
+            channel.write(bytes, first + 10);
+        }
+
+        Library library = new Library();
+        assertEquals(1, open().replay(library));
+        assertNull(library.findMember(WAITER));
+        assertEquals(first, Files.size(journalFile));
+    }
+
+    @Test
+    void rotatedRecordsReplayUntilDiscarded() throws IOException {
+        JournalService journal = open();
+        journal.append(JournalRecord.addMember(new Member(READER, "First")));
+        journal.rotate();
+        assertTrue(Files.exists(rotatedFile));
+        assertEquals(0, Files.size(journalFile));
+        assertEquals(0, journal.getRecordCount());
+
+        // Changes made while the snapshot is written go to the fresh journal
+        journal.append(JournalRecord.addMember(new Member(WAITER, "Second")));
+        journal.sync();
+        Library library = new Library();
+        assertEquals(2, new JournalService(journalFile.toString()).replay(library));
+        assertEquals(2, library.getTotalMembers());
+
+        journal.discardRotated();
+        assertFalse(Files.exists(rotatedFile));
+        journal.close();
+        library = new Library();
+        assertEquals(1, open().replay(library));
+        assertNull(library.findMember(READER));
+        assertEquals("Second", library.findMember(WAITER).getName());
+    }
+
+    @Test
+    void rotationAfterAFailedSnapshotKeepsTheEarlierRecords() throws IOException {
+        JournalService journal = open();
+        journal.append(JournalRecord.addMember(new Member(READER, "First")));
+        journal.rotate();
+        // The snapshot failed, so the rotated file was never discarded
+        journal.append(JournalRecord.memberState(new Member(READER, "Second")));
+        journal.rotate();
+        assertEquals(0, Files.size(journalFile));
+
+        journal.append(JournalRecord.memberState(new Member(READER, "Third")));
+        journal.close();
+
+        // A restart before the next snapshot replays all three, in order
+        Library library = new Library();
+        assertEquals(3, open().replay(library));
+        assertEquals("Third", library.findMember(READER).getName());
+
+        JournalService rotatedOnly = new JournalService(rotatedFile.toString());
+        library = new Library();
+        assertEquals(2, rotatedOnly.replay(library));
+        assertEquals("Second", library.findMember(READER).getName());
+        rotatedOnly.close();
+    }
+
+    private JournalService open() throws IOException {
+        JournalService journal = new JournalService(journalFile.toString());
+        journal.open();
+        return journal;
+    }
+}
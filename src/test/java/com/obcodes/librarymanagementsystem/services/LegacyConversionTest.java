@@ -0,0 +1,107 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.Library;
+import com.obcodes.librarymanagementsystem.models.LoanTable;
+import com.obcodes.librarymanagementsystem.models.Member;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that the legacy serialized books.dat and members.dat convert to
+ * record files holding the same books, members and loans
+ * @author Obakeng Phale
+ */
+class LegacyConversionTest {
+    private static final int BOOKS = 500;
+    private static final int MEMBERS = 50;
+    private static final long FIRST_ISBN = 9780000000000L;
+    private static final long FIRST_ID = 100000000000L;
+
+    @TempDir
+    Path dataDir;
+
+    @Test
+    void convertedRecordsMatchTheLegacyFiles() {
+        Library original = new Library();
+        HashMap<Long, Book> books = new HashMap<>();
+        HashMap<Long, Member> members = new HashMap<>();
+        for (int i = 0; i < BOOKS; i++) {
+            Book book = new Book("Title " + i, "Author " + (i % 37), FIRST_ISBN + i, BookStatus.AVAILABLE);
+            assertTrue(original.addBook(book));
+            books.put(book.getISBN(), book);
+        }
+        for (int i = 0; i < MEMBERS; i++) {
+            Member member = new Member(FIRST_ID + i, "Member " + i);
+            assertTrue(original.addMember(member));
+            members.put(member.getMemberID(), member);
+        }
+        // Every member borrows up to three books; some books are lost or in repair
+        for (int i = 0; i < MEMBERS; i++) {
+            for (int j = 0; j < i % 4; j++) {
+                assertTrue(original.checkoutBook(FIRST_ID + i, FIRST_ISBN + i * 4 + j));
+            }
+        }
+        assertTrue(original.changeBookStatus(FIRST_ISBN + BOOKS - 1, BookStatus.LOST, null));
+        assertTrue(original.changeBookStatus(FIRST_ISBN + BOOKS - 2, BookStatus.IN_REPAIR, null));
+
+        FileService files = new FileService(dataDir.toString());
+        assertTrue(files.saveBooks(books));
+        assertTrue(files.saveMembers(members));
+        assertTrue(files.convertLegacyData());
+        assertTrue(files.recordFilesExist());
+        assertTrue(Files.exists(dataDir.resolve("books.dat")), "the legacy files are left in place");
+
+        Library converted = new Library();
+        assertTrue(new FileService(dataDir.toString()).loadRecords(converted));
+
+        assertEquals(BOOKS, converted.getTotalBooks());
+        for (Book book : books.values()) {
+            Book found = converted.findBook(book.getISBN());
+            assertNotNull(found, "book " + book.getISBN());
+            assertEquals(book.getTitle(), found.getTitle());
+            assertEquals(book.getAuthor(), found.getAuthor());
+            assertEquals(book.getStatus(), found.getStatus(), "status of " + book.getISBN());
+        }
+        for (BookStatus status : BookStatus.values()) {
+            assertEquals(original.getBooksCount(status), converted.getBooksCount(status), status.name());
+        }
+
+        assertEquals(MEMBERS, converted.getTotalMembers());
+        for (Member member : members.values()) {
+            Member found = converted.findMember(member.getMemberID());
+            assertNotNull(found);
+            assertEquals(member.getName(), found.getName());
+        }
+
+        assertEquals(loans(original.getLoans()), loans(converted.getLoans()));
+        assertTrue(converted.getLoans().size() > 0);
+        // The legacy files carry no holds, and none appear
+        assertEquals(0, original.getHolds().size());
+        assertEquals(0, converted.getHolds().size());
+    }
+
+    /**
+     * ISBN to borrower for every loan; the legacy files carry no loan dates
+     */
+    private static Map<Long, Long> loans(LoanTable table) {
+        Map<Long, Long> loans = new TreeMap<>();
+        for (long i = 0; i < BOOKS; i++) {
+            long borrower = table.borrowerOf(FIRST_ISBN + i);
+            if (borrower != LoanTable.NO_BORROWER) {
+                loans.put(FIRST_ISBN + i, borrower);
+            }
+        }
+        return loans;
+    }
+}
@@ -0,0 +1,63 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.metrics.Metrics;
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import com.obcodes.librarymanagementsystem.models.Library;
+import java.nio.file.Path;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that a service given its library runs no timers and publishes no
+ * gauges until it is started, and that shutdown undoes start
+ * @author Obakeng Phale
+ */
+class LibraryServiceLifecycleTest {
+    private static final String GAUGE = "library_books";
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void timersAndGaugesRunOnlyWhileStarted() {
+        Library first = library(3);
+        LibraryService service = new LibraryService(first, new FileService(dir.resolve("first").toString()));
+        assertFalse(timersRunning());
+        assertFalse(Metrics.snapshot().getGauges().containsKey(GAUGE));
+
+        service.start();
+        service.start();
+        assertTrue(timersRunning());
+        assertEquals(3L, Metrics.snapshot().getGauges().get(GAUGE));
+
+        // A second service started later takes over the gauges, and the
+        // first one's shutdown leaves them alone
+        LibraryService other = new LibraryService(library(5), new FileService(dir.resolve("other").toString()));
+        other.start();
+        assertEquals(5L, Metrics.snapshot().getGauges().get(GAUGE));
+        service.shutdown();
+        assertEquals(5L, Metrics.snapshot().getGauges().get(GAUGE));
+
+        other.shutdown();
+        assertFalse(timersRunning());
+        assertFalse(Metrics.snapshot().getGauges().containsKey(GAUGE));
+    }
+
+    private static Library library(int books) {
+        Library library = new Library();
+        for (int i = 0; i < books; i++) {
+            library.addBook(new Book("Title " + i, "Author", 9780000000000L + i, BookStatus.AVAILABLE));
+        }
+        return library;
+    }
+
+    private static boolean timersRunning() {
+        return Thread.getAllStackTraces().keySet().stream()
+                .anyMatch(thread -> thread.isAlive() && thread.getName().equals("library-timers"));
+    }
+}
@@ -0,0 +1,104 @@
+package com.obcodes.librarymanagementsystem.services;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.obcodes.librarymanagementsystem.models.Book;
+import com.obcodes.librarymanagementsystem.models.BookStatus;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Tests that a mapped book file checks each block the first time it is
+ * read, rather than the whole file when it is opened
+ * @author Obakeng Phale
+ */
+class MappedBookCatalogTest {
+    // Enough books to span several checksum blocks
+    private static final int BOOKS = 10_000;
+    private static final long FIRST_ISBN = 9780000000000L;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void damagedBlockFailsOnlyReadsThatTouchIt() throws IOException {
+        Path file = writeBooks();
+        damage(file, RecordFileService.CHECKSUM_BLOCK_SIZE + 100);
+
+        MappedBookCatalog catalog = MappedBookCatalog.open(file);
+        assertEquals(BOOKS, catalog.size());
+        assertEquals(BOOKS, catalog.count(BookStatus.AVAILABLE));
+
+        int read = 0;
+        int rejected = 0;
+        for (int i = 0; i < BOOKS; i++) {
+            try {
+                Book book = catalog.read(FIRST_ISBN + i);
+                assertNotNull(book);
+                assertEquals("Title " + i, book.getTitle());
+                read++;
+            } catch (IllegalStateException e) {
+                assertTrue(e.getMessage().contains("block 1 "), e.getMessage());
+                rejected++;
+            }
+        }
+        assertTrue(read > 0 && rejected > 0, read + " read, " + rejected + " rejected");
+        assertThrows(IllegalStateException.class, () -> catalog.stream().forEach(book -> { }));
+    }
+
+    @Test
+    void damagedTrailerIsRejectedAtOpen() throws IOException {
+        Path file = writeBooks();
+        int[] checksums;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            checksums = RecordFileService.readChecksums(channel);
+        }
+        long bodySize = Files.size(file) - RecordFileService.FOOTER_SIZE - 4L * checksums.length;
+        damage(file, bodySize - RecordFileService.TRAILER_SIZE);
+
+        assertThrows(IOException.class, () -> MappedBookCatalog.open(file));
+    }
+
+    @Test
+    void soundFileReadsEveryBook() throws IOException {
+        MappedBookCatalog catalog = MappedBookCatalog.open(writeBooks());
+        assertEquals("Title 42", catalog.read(FIRST_ISBN + 42).getTitle());
+        assertEquals(BOOKS, catalog.stream().filter(book -> book.getISBN() >= FIRST_ISBN).count());
+    }
+
+    private Path writeBooks() throws IOException {
+        List<Book> books = new ArrayList<>(BOOKS);
+        for (int i = 0; i < BOOKS; i++) {
+            books.add(new Book("Title " + i, "Author " + i, FIRST_ISBN + i, BookStatus.AVAILABLE));
+        }
+        Path file = dir.resolve("books.bin");
+        new RecordFileService().writeBooks(file, books);
+        return file;
+    }
+
+    /**
+     * Flip the bits of a few bytes, keeping the file's length
+     */
+    private static void damage(Path path, long offset) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer bytes = ByteBuffer.allocate(8);
+            channel.read(bytes, offset);
+            for (int i = 0; i < bytes.limit(); i++) {
+                bytes.put(i, (byte) ~bytes.get(i));
+            }
+            bytes.rewind();
+            channel.write(bytes, offset);
+        }
+    }
+}